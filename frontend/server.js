@@ -5,15 +5,15 @@ const { format } = require('date-fns');
 const { toZonedTime } = require('date-fns-tz');
 
 const app = express();
-const PORT = 3001;
+const PORT = process.env.PORT || 3001;
 
 // 中间件
 app.use(cors());
 app.use(express.json());
 
-// 12306 API配置
-const API_BASE = 'https://kyfw.12306.cn';
-const WEB_URL = 'https://www.12306.cn/index/';
+// 12306 API配置，可通过环境变量指向本地模拟器
+const API_BASE = process.env.API_BASE || 'https://kyfw.12306.cn';
+const WEB_URL = process.env.WEB_URL || 'https://www.12306.cn/index/';
 
 // Cookie解析函数
 function parseCookies(cookies) {
@@ -141,7 +141,7 @@ app.get('/api/tickets', async (req, res) => {
       'User-Agent': 'Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36',
       'Accept': 'application/json, text/javascript, */*; q=0.01',
       'Accept-Language': 'zh-CN,zh;q=0.9,en;q=0.8',
-      'Referer': 'https://kyfw.12306.cn/otn/leftTicket/init',
+      'Referer': `${API_BASE}/otn/leftTicket/init`,
       'X-Requested-With': 'XMLHttpRequest'
     };
     
@@ -172,14 +172,8 @@ app.get('/api/tickets', async (req, res) => {
       return res.json({ tickets: [], message: '没有找到符合条件的车票信息' });
     }
     
-    // 解析车票数据
-    const tickets = parseTicketsData(response.data.result, response.data.map);
-    
-    // 根据车型过滤
-    let filteredTickets = tickets;
-    if (trainFilterFlags) {
-      filteredTickets = filterTicketsByTrainTypes(tickets, trainFilterFlags);
-    }
+    // 解析车票数据，车型过滤在解析时按掩码完成，不匹配的车次不再构建票价信息
+    const filteredTickets = parseTicketsData(response.data.result, response.data.map, compileTrainFilter(trainFilterFlags));
     
     console.log(`查询完成，返回 ${filteredTickets.length} 条车票信息`);
     res.json({ tickets: filteredTickets });
@@ -191,7 +185,7 @@ app.get('/api/tickets', async (req, res) => {
 });
 
 // 解析车票数据
-function parseTicketsData(resultArray, stationMap) {
+function parseTicketsData(resultArray, stationMap, filterMask = 0) {
   const tickets = [];
   
   for (const ticketString of resultArray) {
@@ -199,6 +193,10 @@ function parseTicketsData(resultArray, stationMap) {
     if (parts.length < 30) continue;
     
     try {
+      // 服务标识每行只解码一次，与车次类别合成车型掩码
+      const flagMask = decodeDWFlags(parts[46] || '');
+      if (!matchTrainMask(trainClassOf(parts[3]) | flagMask, filterMask)) continue;
+      
       const ticket = {
         trainNo: parts[2],
         startTrainCode: parts[3],
@@ -209,8 +207,12 @@ function parseTicketsData(resultArray, stationMap) {
         toStation: getStationName(stationMap, parts[7]),
         fromStationTelecode: parts[6],
         toStationTelecode: parts[7],
+        // 站序和座位类型，调用方可据此自行查询票价
+        fromStationNo: parts[16],
+        toStationNo: parts[17],
+        seatTypes: parts[35] || '',
         prices: extractPrices(parts),
-        dwFlag: extractDWFlags(parts[46] || '')
+        dwFlag: flagNames(flagMask)
       };
       
       tickets.push(ticket);
@@ -227,9 +229,23 @@ function getStationName(stationMap, stationCode) {
   return stationMap && stationMap[stationCode] ? stationMap[stationCode] : stationCode;
 }
 
-// 提取价格信息
+// 解析座位折扣信息：每5个字符一组，座位类型代码加4位折扣，如"O0085"表示二等座八五折
+function parseDiscounts(info) {
+  const discounts = {};
+  if (!info) return discounts;
+  for (let i = 0; i + 5 <= info.length; i += 5) {
+    const value = parseInt(info.slice(i + 1, i + 5), 10);
+    if (value > 0 && value < 100) {
+      discounts[info[i]] = value / 10;
+    }
+  }
+  return discounts;
+}
+
+// 提取席别余票和折扣；本服务不查询票价，price 固定为null，票价只由MCP服务的工具补全
 function extractPrices(parts) {
   const prices = [];
+  const discounts = parseDiscounts(parts[54]);
   const seatTypes = [
     { index: 32, name: '商务座', short: 'swz', code: '9' },
     { index: 31, name: '一等座', short: 'zy', code: 'M' },
@@ -251,7 +267,7 @@ function extractPrices(parts) {
         seatTypeCode: seatType.code,
         num: parts[seatType.index],
         price: null,
-        discount: null
+        discount: discounts[seatType.code] !== undefined ? discounts[seatType.code] : null
       });
     }
   }
@@ -259,65 +275,83 @@ function extractPrices(parts) {
   return prices;
 }
 
-// 提取服务标识
-function extractDWFlags(dwFlagStr) {
-  const flags = [];
-  const dwFlags = ['智能动车组', '复兴号', '静音车厢', '温馨动卧', '动感号', '支持选铺', '老年优惠'];
-  
-  if (!dwFlagStr) return flags;
+// 服务标识名称，第i位对应掩码中的 FLAG_SHIFT + i 位
+const DW_FLAGS = ['智能动车组', '复兴号', '静音车厢', '温馨动卧', '动感号', '支持选铺', '老年优惠'];
+const FLAG_SHIFT = 8;
+
+// 车次类别位
+const CLASS_G = 1;
+const CLASS_D = 1 << 1;
+const CLASS_Z = 1 << 2;
+const CLASS_T = 1 << 3;
+const CLASS_K = 1 << 4;
+const CLASS_O = 1 << 5;
+const CLASS_BY_PREFIX = { G: CLASS_G, C: CLASS_G, D: CLASS_D, Z: CLASS_Z, T: CLASS_T, K: CLASS_K };
+
+// 过滤字符对应的掩码位，F/S 对应复兴号/智能动车组服务标识
+const FILTER_BY_CHAR = {
+  G: CLASS_G, D: CLASS_D, Z: CLASS_Z, T: CLASS_T, K: CLASS_K, O: CLASS_O,
+  F: 1 << (FLAG_SHIFT + 1),
+  S: 1 << FLAG_SHIFT
+};
+
+// 按字段位置解码服务标识，与 Java 端 TrainTypeFilter.decodeFlags 一致
+function decodeDWFlags(dwFlagStr) {
+  if (!dwFlagStr) return 0;
   
-  const flagsArr = dwFlagStr.split('#');
-  for (const flag of flagsArr) {
-    for (const dwFlag of dwFlags) {
-      if (flag.includes(dwFlag)) {
-        flags.push(dwFlag);
+  let mask = 0;
+  const fields = dwFlagStr.split('#');
+  fields.forEach((field, index) => {
+    if (!field) return;
+    const nameIndex = DW_FLAGS.findIndex(name => field.startsWith(name));
+    if (nameIndex >= 0) {
+      mask |= 1 << (FLAG_SHIFT + nameIndex);
+      return;
+    }
+    switch (index) {
+      case 0: if (field === '5') mask |= 1 << FLAG_SHIFT; break;
+      case 1: if (field === '1') mask |= 1 << (FLAG_SHIFT + 1); break;
+      case 2:
+        if (field[0] === 'Q') mask |= 1 << (FLAG_SHIFT + 2);
+        else if (field[0] === 'R') mask |= 1 << (FLAG_SHIFT + 3);
         break;
-      }
+      case 5: if (field === 'D') mask |= 1 << (FLAG_SHIFT + 4); break;
+      case 6: if (field !== 'z') mask |= 1 << (FLAG_SHIFT + 5); break;
+      case 7: if (field !== 'z') mask |= 1 << (FLAG_SHIFT + 6); break;
     }
-  }
-  
-  return flags;
+  });
+  return mask;
 }
 
-// 根据车型过滤
-function filterTicketsByTrainTypes(tickets, trainFilterFlags) {
-  if (!trainFilterFlags) return tickets;
-  
-  const filters = trainFilterFlags.split('');
-  return tickets.filter(ticket => {
-    for (const filter of filters) {
-      if (matchTrainType(ticket, filter)) {
-        return true;
-      }
-    }
-    return false;
-  });
+// 掩码转换为服务标识名称列表
+function flagNames(mask) {
+  return DW_FLAGS.filter((_, i) => (mask & (1 << (FLAG_SHIFT + i))) !== 0);
 }
 
-// 匹配车型
-function matchTrainType(ticket, trainType) {
-  const trainCode = ticket.startTrainCode;
-  
-  switch (trainType.toUpperCase()) {
-    case 'G':
-      return trainCode.startsWith('G') || trainCode.startsWith('C');
-    case 'D':
-      return trainCode.startsWith('D');
-    case 'Z':
-      return trainCode.startsWith('Z');
-    case 'T':
-      return trainCode.startsWith('T');
-    case 'K':
-      return trainCode.startsWith('K');
-    case 'O':
-      return !['G', 'D', 'C', 'Z', 'T', 'K'].some(prefix => trainCode.startsWith(prefix));
-    case 'F':
-      return ticket.dwFlag && ticket.dwFlag.includes('复兴号');
-    case 'S':
-      return ticket.dwFlag && ticket.dwFlag.includes('智能动车组');
-    default:
-      return false;
+// 车次首字母对应的类别位
+function trainClassOf(trainCode) {
+  return (trainCode && CLASS_BY_PREFIX[trainCode[0]]) || CLASS_O;
+}
+
+// 只有无法识别的过滤字符时使用的掩码，车次掩码中从不设置该位，不匹配任何车次
+const MATCH_NONE = 1 << 30;
+
+// 编译车型过滤条件，返回0表示不过滤；逗号和空白为分隔符，无法识别的字符不匹配任何车次
+function compileTrainFilter(trainFilterFlags) {
+  if (!trainFilterFlags) return 0;
+  let mask = 0;
+  let hasType = false;
+  for (const c of trainFilterFlags.toUpperCase()) {
+    if (c === ',' || /\s/.test(c)) continue;
+    hasType = true;
+    mask |= FILTER_BY_CHAR[c] || 0;
   }
+  return hasType && mask === 0 ? MATCH_NONE : mask;
+}
+
+// 车型匹配只需一次按位与
+function matchTrainMask(trainMask, filterMask) {
+  return filterMask === 0 || (trainMask & filterMask) !== 0;
 }
 
 // 健康检查
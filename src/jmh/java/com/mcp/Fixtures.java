@@ -0,0 +1,91 @@
+package com.mcp;
+
+import com.mcp.utils.UpstreamTape;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基准测试数据加载工具类
+ * 数据来自 UpstreamTape 录制的上游流量磁带，同一接口录制了多个响应时取内容最长的一个。
+ * 默认使用 src/jmh/resources/fixtures/upstream.tape，由本地12306模拟器（--lines=400，北京南到上海虹桥）录制；
+ * 指定 -Dmcp.bench.tape=peak.tape 时改用对真实12306录制的磁带
+ */
+public final class Fixtures {
+    /**
+     * 车站数据接口
+     */
+    public static final String STATION_NAMES = "/otn/resources/js/framework/station_name.js";
+
+    /**
+     * 余票查询接口
+     */
+    public static final String LEFT_TICKET = "/otn/leftTicket/query";
+
+    /**
+     * 中转查询接口
+     */
+    public static final String INTERLINE = "/otn/lcxx/query";
+
+    private static final String TAPE = System.getProperty("mcp.bench.tape", "");
+
+    private static final String BUNDLED_TAPE = "/fixtures/upstream.tape";
+
+    private static Map<String, List<UpstreamTape.Entry>> records;
+
+    private Fixtures() {
+    }
+
+    /**
+     * 读取接口的录制响应
+     *
+     * @param path 接口路径
+     * @return 响应内容
+     */
+    public static synchronized String load(String path) {
+        if (records == null) {
+            records = readTape();
+        }
+        String body = null;
+        for (Map.Entry<String, List<UpstreamTape.Entry>> record : records.entrySet()) {
+            if (!path.equals(pathOf(record.getKey()))) {
+                continue;
+            }
+            for (UpstreamTape.Entry entry : record.getValue()) {
+                if (entry.status() == 200 && entry.body() != null
+                        && (body == null || entry.body().length() > body.length())) {
+                    body = entry.body();
+                }
+            }
+        }
+        if (body == null) {
+            throw new IllegalStateException("磁带中没有该接口的成功响应: " + path);
+        }
+        return body;
+    }
+
+    private static Map<String, List<UpstreamTape.Entry>> readTape() {
+        try (InputStream in = TAPE.isBlank() ? Fixtures.class.getResourceAsStream(BUNDLED_TAPE) : new FileInputStream(TAPE)) {
+            if (in == null) {
+                throw new IllegalStateException("找不到基准测试数据: " + BUNDLED_TAPE);
+            }
+            return UpstreamTape.readAll(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 请求键（方法 URL?参数）中的URL路径
+     */
+    private static String pathOf(String key) {
+        String url = key.substring(key.indexOf(' ') + 1);
+        int query = url.indexOf('?');
+        return URI.create(query < 0 ? url : url.substring(0, query)).getPath();
+    }
+}
@@ -0,0 +1,69 @@
+package com.mcp.service;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+
+/**
+ * 车票格式化的对比基线
+ * 原样保留 TicketService 改为直接解析余票接口之前的 formatTicketsFromJson，输入为前端服务 /api/tickets 返回的车票数组，
+ * 只用于基准测试中与当前实现对比
+ */
+final class BaselineTicketFormatter {
+
+    private BaselineTicketFormatter() {
+    }
+
+    /**
+     * 格式化从前端服务返回的车票JSON数据
+     *
+     * @param ticketsArray 车票JSON数组
+     * @return 格式化后的车票信息字符串
+     */
+    static String formatTicketsFromJson(JSONArray ticketsArray) {
+        if (ticketsArray == null || ticketsArray.isEmpty()) {
+            return "没有找到符合条件的车票信息";
+        }
+
+        StringBuilder result = new StringBuilder();
+        result.append("车次信息查询结果：\n\n");
+
+        for (int i = 0; i < ticketsArray.size(); i++) {
+            JSONObject ticket = ticketsArray.getJSONObject(i);
+
+            result.append(String.format("车次：%s\n", ticket.getString("startTrainCode")));
+            result.append(String.format("出发站：%s -> 到达站：%s\n",
+                ticket.getString("fromStation"), ticket.getString("toStation")));
+            result.append(String.format("出发时间：%s -> 到达时间：%s\n",
+                ticket.getString("startTime"), ticket.getString("arriveTime")));
+            result.append(String.format("历时：%s\n", ticket.getString("lishi")));
+
+            // 座位信息
+            JSONArray prices = ticket.getJSONArray("prices");
+            if (prices != null && !prices.isEmpty()) {
+                result.append("座位信息：\n");
+                for (int j = 0; j < prices.size(); j++) {
+                    JSONObject price = prices.getJSONObject(j);
+                    String seatName = price.getString("seatName");
+                    String num = price.getString("num");
+                    String numDisplay = num.matches("\\d+") ? num + "张" : num;
+                    result.append(String.format("  - %s：%s剩余\n", seatName, numDisplay));
+                }
+            }
+
+            // 服务标识
+            JSONArray dwFlags = ticket.getJSONArray("dwFlag");
+            if (dwFlags != null && !dwFlags.isEmpty()) {
+                result.append("服务标识：");
+                for (int j = 0; j < dwFlags.size(); j++) {
+                    if (j > 0) result.append("、");
+                    result.append(dwFlags.getString(j));
+                }
+                result.append("\n");
+            }
+
+            result.append("\n");
+        }
+
+        return result.toString();
+    }
+}
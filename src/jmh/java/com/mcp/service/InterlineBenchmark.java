@@ -0,0 +1,76 @@
+package com.mcp.service;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.mcp.Fixtures;
+import com.mcp.model.InterlineInfo;
+import com.mcp.utils.PersistentStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 中转查询结果解析与格式化基准测试
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InterlineBenchmark {
+
+    /**
+     * 解析和格式化不访问上游和存储，票价服务使用不落盘的存储构建
+     */
+    private final InterlineService service = new InterlineService(
+            new PriceService(PersistentStore.disabled(), Executors.newSingleThreadExecutor()));
+
+    private String response;
+
+    private JSONArray interlineArray;
+
+    private List<InterlineInfo> interlineInfoList;
+
+    @Setup
+    public void setup() {
+        response = Fixtures.load(Fixtures.INTERLINE);
+        interlineArray = JSON.parseObject(response).getJSONObject("data").getJSONArray("interlist");
+        interlineInfoList = service.parseInterlineData(interlineArray);
+    }
+
+    /**
+     * 从响应字符串开始，包含JSON解析
+     */
+    @Benchmark
+    public List<InterlineInfo> parseResponse() {
+        JSONArray array = JSON.parseObject(response).getJSONObject("data").getJSONArray("interlist");
+        return service.parseInterlineData(array);
+    }
+
+    @Benchmark
+    public List<InterlineInfo> parseInterlineData() {
+        return service.parseInterlineData(interlineArray);
+    }
+
+    @Benchmark
+    public String formatInterlineInfo() {
+        return service.formatInterlineInfo(interlineInfoList);
+    }
+
+    @Benchmark
+    public String formatInterlineInfoCompact() {
+        return service.formatInterlineInfoCompact(interlineInfoList);
+    }
+}
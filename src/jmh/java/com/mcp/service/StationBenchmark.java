@@ -0,0 +1,54 @@
+package com.mcp.service;
+
+import com.mcp.Fixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 车站数据解析与模糊查询基准测试
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StationBenchmark {
+
+    @Param({"北京", "sh", "hangzhoudong", "xyz"})
+    public String keyword;
+
+    private String rawData;
+
+    private StationService loaded;
+
+    @Setup
+    public void setup() {
+        rawData = Fixtures.load(Fixtures.STATION_NAMES);
+        loaded = new StationService();
+        loaded.parseStations(rawData);
+    }
+
+    @Benchmark
+    public StationService parseStations() {
+        StationService service = new StationService();
+        service.parseStations(rawData);
+        return service;
+    }
+
+    @Benchmark
+    public String searchStations() {
+        return loaded.searchStations(keyword);
+    }
+}
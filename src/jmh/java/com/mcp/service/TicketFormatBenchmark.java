@@ -0,0 +1,126 @@
+package com.mcp.service;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.mcp.Fixtures;
+import com.mcp.model.TicketInfo;
+import com.mcp.utils.PersistentStore;
+import com.mcp.utils.SeatHistoryStore;
+import com.mcp.utils.TicketParser;
+import com.mcp.utils.TicketQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 车票解析、过滤与格式化基准测试
+ * formatTicketsFromJson 是改动前的实现（BaselineTicketFormatter），输入是由同一批车次生成的前端服务车票响应；
+ * parseFilterFormat 是当前实现，从余票接口响应开始解码、过滤并格式化
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TicketFormatBenchmark {
+
+    private final TicketService service = newService();
+
+    private String response;
+
+    private String frontendResponse;
+
+    private List<TicketInfo> tickets;
+
+    private TicketQuery.Result queryResult;
+
+    /**
+     * 格式化不访问上游和存储，依赖使用不落盘的存储构建
+     */
+    private static TicketService newService() {
+        LeftTicketService leftTicketService = new LeftTicketService(SeatHistoryStore.disabled());
+        PriceService priceService = new PriceService(PersistentStore.disabled(), Executors.newSingleThreadExecutor());
+        return new TicketService(new TicketPrefetcher(leftTicketService), leftTicketService, priceService);
+    }
+
+    @Setup
+    public void setup() {
+        response = Fixtures.load(Fixtures.LEFT_TICKET);
+        tickets = decode(response);
+        frontendResponse = JSON.toJSONString(Map.of("tickets", tickets));
+        queryResult = new TicketQuery().apply(tickets);
+    }
+
+    /**
+     * 解码余票接口响应中的全部车次
+     */
+    private static List<TicketInfo> decode(String response) {
+        JSONObject data = JSON.parseObject(response).getJSONObject("data");
+        Map<String, String> stationNames = new HashMap<>();
+        data.getJSONObject("map").forEach((code, name) -> stationNames.put(code, String.valueOf(name)));
+        JSONArray result = data.getJSONArray("result");
+        List<TicketInfo> decoded = new ArrayList<>(result.size());
+        for (int i = 0; i < result.size(); i++) {
+            decoded.add(TicketParser.toTicketInfo(TicketParser.parseRow(result.getString(i)), stationNames));
+        }
+        return decoded;
+    }
+
+    /**
+     * 改动前的实现：解析前端服务响应并逐条格式化
+     */
+    @Benchmark
+    public String formatTicketsFromJson() {
+        JSONArray ticketsArray = JSON.parseObject(frontendResponse).getJSONArray("tickets");
+        return BaselineTicketFormatter.formatTicketsFromJson(ticketsArray);
+    }
+
+    /**
+     * 当前实现：从余票接口响应开始，依次完成车次解码、流水线过滤和文本格式化
+     */
+    @Benchmark
+    public String parseFilterFormat() {
+        List<TicketInfo> parsed = decode(response);
+        TicketQuery.Result result = new TicketQuery()
+                .departBetween("08:00", "20:00")
+                .sortBy("departure")
+                .apply(parsed);
+        return service.formatTickets(result, parsed.size());
+    }
+
+    @Benchmark
+    public TicketQuery.Result filterAndSort() {
+        return new TicketQuery()
+                .departBetween("08:00", "20:00")
+                .minSeats(5, "ze")
+                .sortBy("-seats,duration")
+                .page(1, 20)
+                .apply(tickets);
+    }
+
+    @Benchmark
+    public String formatTickets() {
+        return service.formatTickets(queryResult, tickets.size());
+    }
+
+    @Benchmark
+    public String formatTicketsCompact() {
+        return service.formatTicketsCompact(queryResult);
+    }
+}
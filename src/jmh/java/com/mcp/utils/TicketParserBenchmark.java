@@ -0,0 +1,86 @@
+package com.mcp.utils;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.mcp.Fixtures;
+import com.mcp.model.TicketData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 余票车次行拆分与解码基准测试
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TicketParserBenchmark {
+
+    private String response;
+
+    private String[] rows;
+
+    private Map<String, String> stationNames;
+
+    @Setup
+    public void setup() {
+        response = Fixtures.load(Fixtures.LEFT_TICKET);
+        JSONObject data = JSON.parseObject(response).getJSONObject("data");
+        JSONArray result = data.getJSONArray("result");
+        rows = new String[result.size()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = result.getString(i);
+        }
+        stationNames = new HashMap<>();
+        data.getJSONObject("map").forEach((code, name) -> stationNames.put(code, String.valueOf(name)));
+    }
+
+    /**
+     * 只拆分车次行
+     */
+    @Benchmark
+    public void parseRows(Blackhole blackhole) {
+        for (String row : rows) {
+            blackhole.consume(TicketParser.parseRow(row));
+        }
+    }
+
+    /**
+     * 拆分并转换为车票信息（含服务标识解码和余票提取）
+     */
+    @Benchmark
+    public void decodeRows(Blackhole blackhole) {
+        for (String row : rows) {
+            TicketData data = TicketParser.parseRow(row);
+            blackhole.consume(TicketParser.toTicketInfo(data, stationNames));
+        }
+    }
+
+    /**
+     * 从响应字符串开始，包含JSON解析
+     */
+    @Benchmark
+    public void decodeResponse(Blackhole blackhole) {
+        JSONArray result = JSON.parseObject(response).getJSONObject("data").getJSONArray("result");
+        for (int i = 0; i < result.size(); i++) {
+            TicketData data = TicketParser.parseRow(result.getString(i));
+            blackhole.consume(TicketParser.toTicketInfo(data, stationNames));
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.mcp.config;
+
+import com.mcp.utils.Deadline;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+import java.util.function.Supplier;
+
+/**
+ * 带截止时间的工具回调
+ * 每次调用创建一个截止时间，调用期间的上游请求、排队和并行分发共用同一份时间预算，
+ * 先查列车编号再查经停站这类链式调用的总耗时不会累加成各请求超时之和
+ */
+public class DeadlineToolCallback implements ToolCallback {
+
+    private final ToolCallback delegate;
+
+    private final long budgetMillis;
+
+    public DeadlineToolCallback(ToolCallback delegate, long budgetMillis) {
+        this.delegate = delegate;
+        this.budgetMillis = budgetMillis;
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return delegate.getToolDefinition();
+    }
+
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return delegate.getToolMetadata();
+    }
+
+    @Override
+    public String call(String toolInput) {
+        return withDeadline(() -> delegate.call(toolInput));
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        return withDeadline(() -> delegate.call(toolInput, toolContext));
+    }
+
+    private String withDeadline(Supplier<String> call) {
+        return Deadline.within(Deadline.after(budgetMillis), call);
+    }
+}
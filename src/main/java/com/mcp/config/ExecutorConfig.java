@@ -0,0 +1,37 @@
+package com.mcp.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 线程池配置类
+ * 提供并行查询12306接口使用的线程池
+ */
+@Configuration
+public class ExecutorConfig {
+    /**
+     * 上游并发请求线程数
+     */
+    private static final int UPSTREAM_THREADS = 8;
+
+    /**
+     * 上游请求线程池，用于多段查询的并行分发
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService upstreamExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(UPSTREAM_THREADS, UPSTREAM_THREADS,
+                60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "upstream-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+}
@@ -0,0 +1,76 @@
+package com.mcp.config;
+
+import com.mcp.utils.AdaptiveConcurrencyLimiter;
+import com.mcp.utils.ToolMetrics;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.execution.DefaultToolCallResultConverter;
+import org.springframework.ai.tool.execution.ToolCallResultConverter;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+import java.util.function.Supplier;
+
+/**
+ * 带自适应并发限制的工具回调
+ * 包装需要访问12306的工具，超过并发上限时不排队，直接返回"服务繁忙，请稍后重试"，
+ * 避免上游变慢时阻塞的调用占满线程，拖慢车站查询等不访问网络的工具
+ */
+public class LimitedToolCallback implements ToolCallback {
+
+    private static final ToolCallResultConverter RESULT_CONVERTER = new DefaultToolCallResultConverter();
+
+    private final ToolCallback delegate;
+
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    public LimitedToolCallback(ToolCallback delegate, AdaptiveConcurrencyLimiter limiter) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+        ToolMetrics.concurrencyLimit(delegate.getToolDefinition().name(), limiter::getLimit, limiter::getInFlight);
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return delegate.getToolDefinition();
+    }
+
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return delegate.getToolMetadata();
+    }
+
+    @Override
+    public String call(String toolInput) {
+        return limited(() -> delegate.call(toolInput));
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        return limited(() -> delegate.call(toolInput, toolContext));
+    }
+
+    private String limited(Supplier<String> call) {
+        String tool = delegate.getToolDefinition().name();
+        if (!limiter.tryAcquire()) {
+            ToolMetrics.toolRejected(tool);
+            // 与@Tool方法的返回值使用相同的转换，客户端看到的格式一致
+            return RESULT_CONVERTER.convert("服务繁忙：" + tool + " 当前并发查询已达上限（" + limiter.getLimit()
+                    + "），12306响应变慢，请稍后重试", String.class);
+        }
+
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            String result = call.get();
+            success = true;
+            return result;
+        } finally {
+            if (success) {
+                limiter.onSuccess(System.nanoTime() - start);
+            } else {
+                limiter.onDropped();
+            }
+        }
+    }
+}
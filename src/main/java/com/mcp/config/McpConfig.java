@@ -1,17 +1,50 @@
 package com.mcp.config;
 
 import com.mcp.service.*;
+import com.mcp.utils.AdaptiveConcurrencyLimiter;
+import org.springframework.ai.tool.ToolCallback;
 import org.springframework.ai.tool.ToolCallbackProvider;
 import org.springframework.ai.tool.method.MethodToolCallbackProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 /**
  * MCP服务器配置类
- * 显式注册所有工具服务
+ * 显式注册所有工具服务，并为每个工具记录调用指标；
+ * 访问12306的工具另外加上截止时间和自适应并发限制，车站、日期、余票订阅和余票历史工具不受影响
  */
 @Configuration
 public class McpConfig {
+    /**
+     * 是否启用自适应并发限制
+     */
+    @Value("${mcp.concurrency.enabled:true}")
+    private boolean concurrencyEnabled;
+
+    /**
+     * 每个工具的初始并发上限
+     */
+    @Value("${mcp.concurrency.initial-limit:16}")
+    private int initialLimit;
+
+    /**
+     * 每个工具并发上限的下限
+     */
+    @Value("${mcp.concurrency.min-limit:2}")
+    private int minLimit;
+
+    /**
+     * 每个工具并发上限的上限
+     */
+    @Value("${mcp.concurrency.max-limit:128}")
+    private int maxLimit;
+
+    /**
+     * 每次上游工具调用的总时间预算（毫秒），0表示不限制
+     */
+    @Value("${mcp.deadline.tool-millis:20000}")
+    private long toolDeadlineMillis;
 
     @Bean
     public ToolCallbackProvider toolCallbackProvider(
@@ -19,11 +52,39 @@ public class McpConfig {
             StationService stationService,
             TicketService ticketService,
             RouteService routeService,
-            InterlineService interlineService) {
+            InterlineService interlineService,
+            SplitTicketService splitTicketService,
+            RoundTripService roundTripService,
+            TicketWatchService ticketWatchService,
+            SeatHistoryService seatHistoryService,
+            TrainIndexService trainIndexService) {
+        
+        // 使用MethodToolCallbackProvider来注册@Tool方法，本地工具和访问上游的工具分开注册；
+        // 余票订阅只登记订阅，轮询在后台线程中进行；余票历史和车站车次索引只读本地数据，都按本地工具注册
+        ToolCallback[] localCallbacks = MethodToolCallbackProvider.builder()
+                .toolObjects(dateService, stationService, ticketWatchService, seatHistoryService, trainIndexService)
+                .build()
+                .getToolCallbacks();
+        ToolCallback[] upstreamCallbacks = MethodToolCallbackProvider.builder()
+                .toolObjects(ticketService, routeService, interlineService, splitTicketService, roundTripService)
+                .build()
+                .getToolCallbacks();
         
-        // 使用MethodToolCallbackProvider来注册@Tool方法
-        return MethodToolCallbackProvider.builder()
-                .toolObjects(dateService, stationService, ticketService, routeService, interlineService)
-                .build();
+        // 包装每个工具回调以记录调用耗时，上游工具在计时之外再加截止时间和并发限制，被拒绝的调用不计入耗时
+        ToolCallback[] wrapped = new ToolCallback[localCallbacks.length + upstreamCallbacks.length];
+        int index = 0;
+        for (ToolCallback callback : localCallbacks) {
+            wrapped[index++] = new TimedToolCallback(callback);
+        }
+        for (ToolCallback callback : upstreamCallbacks) {
+            ToolCallback timed = new TimedToolCallback(callback);
+            if (toolDeadlineMillis > 0) {
+                timed = new DeadlineToolCallback(timed, toolDeadlineMillis);
+            }
+            wrapped[index++] = concurrencyEnabled
+                    ? new LimitedToolCallback(timed, new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit))
+                    : timed;
+        }
+        return ToolCallbackProvider.from(wrapped);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,76 @@
+package com.mcp.config;
+
+import com.mcp.service.TicketWatchService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * MCP会话断开监听
+ * SSE连接建立后服务端先发送endpoint事件，其中的消息地址带有会话编号（?sessionId=...）；
+ * 从该事件中取出会话编号，连接断开时通知余票订阅服务移除该会话的订阅，不必等到订阅过期。
+ * 只处理接受text/event-stream的GET请求，其他请求原样放行
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class McpSessionFilter implements WebFilter {
+    private static final Pattern SESSION_ID = Pattern.compile("sessionId=([0-9A-Za-z-]+)");
+
+    private final TicketWatchService ticketWatchService;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        if (request.getMethod() != HttpMethod.GET || request.getHeaders().getAccept().stream()
+                .noneMatch(MediaType.TEXT_EVENT_STREAM::equalsTypeAndSubtype)) {
+            return chain.filter(exchange);
+        }
+
+        AtomicReference<String> sessionId = new AtomicReference<>();
+        ServerHttpResponseDecorator response = new ServerHttpResponseDecorator(exchange.getResponse()) {
+            @Override
+            public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+                return super.writeAndFlushWith(Flux.from(body)
+                        .map(events -> Flux.<DataBuffer>from(events).doOnNext(buffer -> capture(buffer, sessionId))));
+            }
+        };
+        return chain.filter(exchange.mutate().response(response).build())
+                .doFinally(signal -> {
+                    String id = sessionId.get();
+                    if (id != null) {
+                        log.debug("MCP会话 {} 的SSE连接已结束: {}", id, signal);
+                        ticketWatchService.sessionClosed(id);
+                    }
+                });
+    }
+
+    /**
+     * 在会话编号未知时从SSE事件中查找，不改变缓冲区的读取位置
+     */
+    private static void capture(DataBuffer buffer, AtomicReference<String> sessionId) {
+        if (sessionId.get() != null) {
+            return;
+        }
+        Matcher matcher = SESSION_ID.matcher(buffer.toString(StandardCharsets.UTF_8));
+        if (matcher.find()) {
+            sessionId.set(matcher.group(1));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.mcp.config;
+
+import com.mcp.utils.PersistentStore;
+import com.mcp.utils.SeatHistoryStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 持久化存储配置类
+ * 提供车站、列车编号和时刻表等派生数据的本地持久化存储，作为内存缓存之后的第二级缓存；
+ * 以及记录每次余票查询结果的余票历史时序存储
+ */
+@Slf4j
+@Configuration
+public class StoreConfig {
+    /**
+     * 是否启用持久化存储
+     */
+    @Value("${mcp.store.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 数据目录
+     */
+    @Value("${mcp.store.dir:data/store}")
+    private String directory;
+
+    /**
+     * 单个段文件大小（MB）
+     */
+    @Value("${mcp.store.segment-mb:64}")
+    private int segmentMb;
+
+    /**
+     * 是否记录余票历史
+     */
+    @Value("${mcp.history.enabled:true}")
+    private boolean historyEnabled;
+
+    /**
+     * 余票历史数据目录
+     */
+    @Value("${mcp.history.dir:data/history}")
+    private String historyDirectory;
+
+    /**
+     * 余票历史分区时长（小时）
+     */
+    @Value("${mcp.history.partition-hours:24}")
+    private long partitionHours;
+
+    /**
+     * 单个分区文件的样本数上限
+     */
+    @Value("${mcp.history.rows-per-file:1000000}")
+    private int rowsPerFile;
+
+    /**
+     * 余票历史保留天数
+     */
+    @Value("${mcp.history.retention-days:30}")
+    private long retentionDays;
+
+    /**
+     * 同一查询两次全量采样的最小间隔（分钟），其间只记录有变化的车次
+     */
+    @Value("${mcp.history.full-sample-minutes:10}")
+    private long fullSampleMinutes;
+
+    @Bean(destroyMethod = "close")
+    public PersistentStore persistentStore() {
+        if (!enabled) {
+            log.info("持久化存储未启用");
+            return PersistentStore.disabled();
+        }
+        try {
+            return PersistentStore.open(Path.of(directory), segmentMb * 1024 * 1024);
+        } catch (IOException e) {
+            // 数据目录不可用时只用内存缓存，不影响服务启动
+            log.error("打开持久化存储失败，仅使用内存缓存: {}", e.getMessage(), e);
+            return PersistentStore.disabled();
+        }
+    }
+
+    @Bean(destroyMethod = "close")
+    public SeatHistoryStore seatHistoryStore() {
+        if (!historyEnabled) {
+            log.info("余票历史记录未启用");
+            return SeatHistoryStore.disabled();
+        }
+        try {
+            return SeatHistoryStore.open(Path.of(historyDirectory), rowsPerFile,
+                    TimeUnit.HOURS.toMillis(partitionHours), TimeUnit.DAYS.toMillis(retentionDays),
+                    TimeUnit.MINUTES.toMillis(fullSampleMinutes));
+        } catch (IOException e) {
+            log.error("打开余票历史存储失败，不记录余票历史: {}", e.getMessage(), e);
+            return SeatHistoryStore.disabled();
+        }
+    }
+}
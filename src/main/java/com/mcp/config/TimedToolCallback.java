@@ -0,0 +1,54 @@
+package com.mcp.config;
+
+import com.mcp.utils.ToolMetrics;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+import java.util.function.Supplier;
+
+/**
+ * 带计时的工具回调
+ * 包装@Tool方法生成的回调，记录每次调用的总耗时和结果
+ */
+public class TimedToolCallback implements ToolCallback {
+
+    private final ToolCallback delegate;
+
+    public TimedToolCallback(ToolCallback delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return delegate.getToolDefinition();
+    }
+
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return delegate.getToolMetadata();
+    }
+
+    @Override
+    public String call(String toolInput) {
+        return timed(() -> delegate.call(toolInput));
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        return timed(() -> delegate.call(toolInput, toolContext));
+    }
+
+    private String timed(Supplier<String> call) {
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            String result = call.get();
+            outcome = "success";
+            return result;
+        } finally {
+            ToolMetrics.recordTool(delegate.getToolDefinition().name(), outcome, System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.mcp.config;
+
+import com.mcp.utils.CircuitBreaker;
+import com.mcp.utils.HttpUtils;
+import com.mcp.utils.RequestHedger;
+import com.mcp.utils.UpstreamScheduler;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+
+/**
+ * 上游请求配置类
+ * 把 mcp.upstream 下的超时、限流、熔断和对冲配置应用到 HttpUtils 使用的静态组件上；
+ * 启动时就访问12306的服务（如加载车站数据的 StationService）依赖本配置，保证第一个上游请求已使用这里的配置
+ */
+@Configuration
+public class UpstreamConfig {
+    /**
+     * 单个上游请求的超时（毫秒）
+     */
+    @Value("${mcp.upstream.timeout-millis:10000}")
+    private int timeoutMillis;
+
+    /**
+     * 是否启用上游限流
+     */
+    @Value("${mcp.upstream.rate-limit:true}")
+    private boolean rateLimitEnabled;
+
+    /**
+     * 交互式请求等待限流令牌的最长时间（毫秒），后台请求为其3倍
+     */
+    @Value("${mcp.upstream.max-wait-millis:10000}")
+    private long maxWaitMillis;
+
+    /**
+     * 余票查询的速率上限（每秒请求数），0表示不限流，下同
+     */
+    @Value("${mcp.upstream.rate.leftTicket:10}")
+    private double leftTicketRate;
+
+    /**
+     * 经停站查询的速率上限
+     */
+    @Value("${mcp.upstream.rate.queryByTrainNo:10}")
+    private double queryByTrainNoRate;
+
+    /**
+     * 中转查询的速率上限
+     */
+    @Value("${mcp.upstream.rate.lcxx:5}")
+    private double lcxxRate;
+
+    /**
+     * 票价查询的速率上限
+     */
+    @Value("${mcp.upstream.rate.price:5}")
+    private double priceRate;
+
+    /**
+     * 首页和静态资源的速率上限
+     */
+    @Value("${mcp.upstream.rate.static:2}")
+    private double staticRate;
+
+    /**
+     * 是否启用熔断
+     */
+    @Value("${mcp.upstream.circuit-breaker:true}")
+    private boolean circuitBreakerEnabled;
+
+    /**
+     * 是否启用对冲请求
+     */
+    @Value("${mcp.upstream.hedge:true}")
+    private boolean hedgeEnabled;
+
+    /**
+     * 执行可对冲请求的最大线程数
+     */
+    @Value("${mcp.upstream.hedge-threads:32}")
+    private int hedgeThreads;
+
+    @PostConstruct
+    public void apply() {
+        HttpUtils.setTimeoutMillis(timeoutMillis);
+        UpstreamScheduler.configure(rateLimitEnabled, Map.of(
+                "leftTicket", leftTicketRate,
+                "queryByTrainNo", queryByTrainNoRate,
+                "lcxx", lcxxRate,
+                "price", priceRate,
+                "static", staticRate), maxWaitMillis);
+        CircuitBreaker.configure(circuitBreakerEnabled);
+        RequestHedger.configure(hedgeEnabled, hedgeThreads);
+    }
+}
@@ -8,14 +8,14 @@ import java.util.Map;
  */
 public class RailwayConstants {
     /**
-     * 12306 API 基础地址
+     * 12306 API 基础地址，可通过系统属性 mcp.12306.api-base 覆盖（如指向本地模拟器）
      */
-    public static final String API_BASE = "https://kyfw.12306.cn";
+    public static final String API_BASE = System.getProperty("mcp.12306.api-base", "https://kyfw.12306.cn");
     
     /**
-     * 12306 网站地址
+     * 12306 网站地址，可通过系统属性 mcp.12306.web-url 覆盖
      */
-    public static final String WEB_URL = "https://www.12306.cn/index/";
+    public static final String WEB_URL = System.getProperty("mcp.12306.web-url", "https://www.12306.cn/index/");
     
     /**
      * 座位类型简称映射
@@ -1,16 +1,30 @@
 package com.mcp.controller;
 
+import com.mcp.service.CacheSnapshotService;
+import com.mcp.service.TicketPrefetcher;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * 测试控制器 - 用于验证服务器状态
  */
 @RestController
+@RequiredArgsConstructor
 public class TestController {
     
+    private final PrometheusMeterRegistry prometheusMeterRegistry;
+    
+    private final CacheSnapshotService cacheSnapshotService;
+    
+    private final TicketPrefetcher ticketPrefetcher;
+    
     @GetMapping("/")
     public Map<String, Object> home() {
         Map<String, Object> response = new HashMap<>();
@@ -22,11 +36,35 @@ public class TestController {
         return response;
     }
     
+    /**
+     * 健康检查，缓存快照恢复完成前返回503
+     */
     @GetMapping("/health")
-    public Map<String, String> health() {
+    public ResponseEntity<Map<String, String>> health() {
         Map<String, String> response = new HashMap<>();
-        response.put("status", "UP");
         response.put("service", "12306-MCP");
-        return response;
+        if (!cacheSnapshotService.isReady()) {
+            response.put("status", "STARTING");
+            response.put("cache", "restoring");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+        }
+        response.put("status", "UP");
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * 当前的高频余票查询及其缓存剩余时间，按估计次数从高到低排序
+     */
+    @GetMapping("/hot-queries")
+    public List<Map<String, Object>> hotQueries() {
+        return ticketPrefetcher.hotQueries();
+    }
+    
+    /**
+     * Prometheus格式的指标，包含工具耗时、上游响应状态码、空结果和JSON解析失败计数
+     */
+    @GetMapping(value = "/metrics", produces = "text/plain; version=0.0.4; charset=utf-8")
+    public String metrics() {
+        return prometheusMeterRegistry.scrape();
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,29 @@
+package com.mcp.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 结果格式化事件
+ * 记录工具输出的行数和字符数，用于定位格式化阶段的分配
+ */
+@Name("com.mcp.Format")
+@Label("Format")
+@Category({"12306-MCP", "Format"})
+@Description("格式化工具输出")
+@StackTrace(false)
+public class FormatEvent extends Event {
+
+    @Label("Tool")
+    public String tool;
+
+    @Label("Row Count")
+    public int rowCount;
+
+    @Label("Output Chars")
+    public long outputChars;
+}
@@ -0,0 +1,28 @@
+package com.mcp.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 车站数据解析事件
+ * 记录station_name.js的大小和解析出的车站数量
+ */
+@Name("com.mcp.StationParse")
+@Label("Station Parse")
+@Category({"12306-MCP", "Parse"})
+@Description("解析车站数据")
+@StackTrace(false)
+public class StationParseEvent extends Event {
+
+    @Label("Chars Parsed")
+    @Description("原始数据字符数")
+    public long charsParsed;
+
+    @Label("Station Count")
+    public int stationCount;
+}
@@ -0,0 +1,39 @@
+package com.mcp.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 余票行解码事件
+ * 记录一次余票查询结果中解码的车次行数、跳过的行数和与上一次结果相同而复用的行数
+ */
+@Name("com.mcp.TicketDecode")
+@Label("Ticket Decode")
+@Category({"12306-MCP", "Parse"})
+@Description("解码余票查询结果")
+@StackTrace(false)
+public class TicketDecodeEvent extends Event {
+
+    @Label("Source")
+    @Description("数据来源：leftTicket")
+    public String source;
+
+    @Label("Query")
+    @Description("日期|出发站|到达站")
+    public String query;
+
+    @Label("Row Count")
+    public int rowCount;
+
+    @Label("Skipped Rows")
+    @Description("字段不足被跳过的行数")
+    public int skippedRows;
+
+    @Label("Reused Rows")
+    @Description("与上一次结果相同、未重新解析的行数")
+    public int reusedRows;
+}
@@ -0,0 +1,39 @@
+package com.mcp.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 上游请求事件
+ * 记录每次HTTP请求的端点、状态码、接收字节数和耗时
+ */
+@Name("com.mcp.UpstreamFetch")
+@Label("Upstream Fetch")
+@Category({"12306-MCP", "Upstream"})
+@Description("一次上游HTTP请求")
+@StackTrace(false)
+public class UpstreamFetchEvent extends Event {
+
+    @Label("Endpoint")
+    @Description("上游端点分类")
+    public String endpoint;
+
+    @Label("Method")
+    public String method;
+
+    @Label("URL")
+    public String url;
+
+    @Label("Status")
+    @Description("HTTP状态码，请求异常时为0")
+    public int status;
+
+    @Label("Bytes Received")
+    @DataAmount(DataAmount.BYTES)
+    public long bytesReceived;
+}
@@ -0,0 +1,132 @@
+package com.mcp.loadtest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 并发延迟直方图
+ * 以微秒为单位按对数分桶，每个2的幂区间再等分为32个子桶，相对误差不超过约3%，
+ * 记录为无锁的原子自增，数千个会话同时写入也不会成为瓶颈
+ */
+public class LatencyHistogram {
+    /**
+     * 每个2的幂区间的子桶位数
+     */
+    private static final int SUB_BUCKET_BITS = 5;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * 可记录的最大延迟（微秒），约19小时，超出的按最大值记录
+     */
+    private static final int MAX_EXPONENT = 36;
+
+    private static final long MAX_MICROS = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    private static final int BUCKET_COUNT = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong sum = new AtomicLong();
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * 记录一次延迟
+     *
+     * @param nanos 延迟（纳秒）
+     */
+    public void record(long nanos) {
+        long micros = Math.min(Math.max(nanos / 1000, 0), MAX_MICROS);
+        counts.incrementAndGet(index(micros));
+        count.incrementAndGet();
+        sum.addAndGet(micros);
+        max.accumulateAndGet(micros, Math::max);
+    }
+
+    /**
+     * 合并另一个直方图的计数
+     *
+     * @param other 另一个直方图
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long value = other.counts.get(i);
+            if (value > 0) {
+                counts.addAndGet(i, value);
+            }
+        }
+        count.addAndGet(other.count.get());
+        sum.addAndGet(other.sum.get());
+        max.accumulateAndGet(other.max.get(), Math::max);
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    /**
+     * 平均延迟（毫秒）
+     *
+     * @return 平均延迟，无记录时为0
+     */
+    public double meanMillis() {
+        long n = count.get();
+        return n == 0 ? 0 : sum.get() / 1000.0 / n;
+    }
+
+    /**
+     * 最大延迟（毫秒）
+     *
+     * @return 最大延迟
+     */
+    public double maxMillis() {
+        return max.get() / 1000.0;
+    }
+
+    /**
+     * 计算百分位延迟，返回所在桶的上界
+     *
+     * @param percentile 百分位，如0.99
+     * @return 延迟（毫秒），无记录时为0
+     */
+    public double percentileMillis(double percentile) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(upperBound(i), max.get()) / 1000.0;
+            }
+        }
+        return maxMillis();
+    }
+
+    static int index(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + sub;
+    }
+
+    static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = (index - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+        int sub = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    private static long upperBound(int index) {
+        return index + 1 < BUCKET_COUNT ? lowerBound(index + 1) - 1 : MAX_MICROS;
+    }
+}
@@ -0,0 +1,183 @@
+package com.mcp.loadtest;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 压测统计
+ * 按工具分别累计全程和当前阶段的延迟与结果，阶段结束时整体换出阶段窗口
+ */
+public class LoadStats {
+    /**
+     * 调用结果
+     */
+    public enum Outcome {
+        /**
+         * 正常返回
+         */
+        OK,
+        /**
+         * 工具返回isError，或返回文本是工具的失败提示（工具以普通文本返回错误）
+         */
+        TOOL_ERROR,
+        /**
+         * 服务端超过并发上限，工具直接返回"服务繁忙"
+         */
+        REJECTED,
+        /**
+         * 请求超时
+         */
+        TIMEOUT,
+        /**
+         * 传输层或协议错误
+         */
+        FAILURE
+    }
+
+    private final Map<String, Window> totals = new ConcurrentHashMap<>();
+
+    private final AtomicReference<Map<String, Window>> stage = new AtomicReference<>(new ConcurrentHashMap<>());
+
+    /**
+     * 成功建立的会话数
+     */
+    private final LongAdder sessionsOpened = new LongAdder();
+
+    /**
+     * 建立失败的会话数
+     */
+    private final LongAdder sessionsFailed = new LongAdder();
+
+    /**
+     * 建立后异常断开的会话数
+     */
+    private final LongAdder sessionsDropped = new LongAdder();
+
+    /**
+     * 会话初始化耗时
+     */
+    private final LatencyHistogram connectLatency = new LatencyHistogram();
+
+    /**
+     * 记录一次工具调用
+     *
+     * @param tool    工具名称
+     * @param nanos   耗时（纳秒）
+     * @param outcome 调用结果
+     */
+    public void record(String tool, long nanos, Outcome outcome) {
+        totals.computeIfAbsent(tool, key -> new Window()).record(nanos, outcome);
+        stage.get().computeIfAbsent(tool, key -> new Window()).record(nanos, outcome);
+    }
+
+    public void sessionOpened(long nanos) {
+        sessionsOpened.increment();
+        connectLatency.record(nanos);
+    }
+
+    public void sessionFailed() {
+        sessionsFailed.increment();
+    }
+
+    public void sessionDropped() {
+        sessionsDropped.increment();
+    }
+
+    public long getSessionsOpened() {
+        return sessionsOpened.sum();
+    }
+
+    public long getSessionsFailed() {
+        return sessionsFailed.sum();
+    }
+
+    public long getSessionsDropped() {
+        return sessionsDropped.sum();
+    }
+
+    public LatencyHistogram getConnectLatency() {
+        return connectLatency;
+    }
+
+    /**
+     * 丢弃当前阶段窗口，开始新的阶段统计（用于跳过爬坡期间的数据）
+     */
+    public void resetStage() {
+        stage.set(new ConcurrentHashMap<>());
+    }
+
+    /**
+     * 换出当前阶段窗口
+     *
+     * @return 阶段内按工具统计的窗口
+     */
+    public Map<String, Window> takeStage() {
+        return stage.getAndSet(new ConcurrentHashMap<>());
+    }
+
+    public Map<String, Window> getTotals() {
+        return totals;
+    }
+
+    /**
+     * 合并多个工具的窗口
+     *
+     * @param windows 窗口集合
+     * @return 合并后的窗口
+     */
+    public static Window merge(Collection<Window> windows) {
+        Window merged = new Window();
+        for (Window window : windows) {
+            merged.latency.add(window.latency);
+            for (Outcome outcome : Outcome.values()) {
+                merged.outcomes[outcome.ordinal()].add(window.count(outcome));
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * 统计窗口：延迟直方图和各结果计数
+     */
+    public static class Window {
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private final LongAdder[] outcomes = new LongAdder[Outcome.values().length];
+
+        Window() {
+            for (int i = 0; i < outcomes.length; i++) {
+                outcomes[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos, Outcome outcome) {
+            latency.record(nanos);
+            outcomes[outcome.ordinal()].increment();
+        }
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        public long count(Outcome outcome) {
+            return outcomes[outcome.ordinal()].sum();
+        }
+
+        public long total() {
+            return latency.count();
+        }
+
+        /**
+         * 非正常返回的比例
+         *
+         * @return 错误率，无调用时为0
+         */
+        public double errorRate() {
+            long total = total();
+            return total == 0 ? 0 : (double) (total - count(Outcome.OK)) / total;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.mcp.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * MCP压测配置
+ * 所有配置项都可以通过 load. 前缀的系统属性或 --key=value 命令行参数覆盖
+ */
+public class LoadTestConfig {
+    /**
+     * MCP服务地址
+     */
+    private String url = "http://localhost:8000";
+
+    /**
+     * SSE端点，与服务端 spring.ai.mcp.server.transport.sse.endpoint 一致
+     */
+    private String sseEndpoint = "/see";
+
+    /**
+     * 各阶段的目标会话数，逗号分隔，逐级加压用于寻找服务端的拐点
+     */
+    private String stages = "100,500,1000,2000";
+
+    /**
+     * 每个阶段新增会话的爬坡时间（秒）
+     */
+    private int rampSeconds = 10;
+
+    /**
+     * 每个阶段达到目标会话数后的保持时间（秒），阶段报告只统计这段时间
+     */
+    private int holdSeconds = 30;
+
+    /**
+     * 每个会话两次调用之间的平均思考时间（毫秒），实际值按指数分布抽取
+     */
+    private long thinkMillis = 1000;
+
+    /**
+     * 工具调用权重，形如 station:40,tickets:30,route:15,interline:15
+     */
+    private String mix = "station:40,tickets:30,route:15,interline:15";
+
+    /**
+     * 查询使用的站点对，形如 VNP-AOH，默认取真实12306和本地模拟器都存在的干线
+     */
+    private String pairs = "VNP-AOH,AOH-VNP,BXP-IZQ,IZQ-BXP,AOH-ICW,BXP-EAY,HGH-IOQ,VNP-NGH,ZAF-EAY";
+
+    /**
+     * 车站查询使用的车站名称
+     */
+    private String stations = "北京南,上海虹桥,广州南,杭州东,成都东,西安北,南京南,武汉,郑州东,深圳北";
+
+    /**
+     * 查询日期在今天之后的最大天数，每次调用在1到该值之间随机
+     */
+    private int daysAhead = 3;
+
+    /**
+     * 单次请求超时（秒）
+     */
+    private int requestTimeoutSeconds = 30;
+
+    /**
+     * 随机种子，相同种子生成相同的调用序列
+     */
+    private long seed = 12306L;
+
+    /**
+     * 从系统属性读取配置
+     *
+     * @return 配置
+     */
+    public static LoadTestConfig fromSystemProperties() {
+        return from(System.getProperties());
+    }
+
+    /**
+     * 从属性集合读取配置，键为 load.url、load.stages 等
+     *
+     * @param properties 属性集合
+     * @return 配置
+     */
+    public static LoadTestConfig from(Properties properties) {
+        LoadTestConfig config = new LoadTestConfig();
+        config.url = properties.getProperty("load.url", config.url);
+        config.sseEndpoint = properties.getProperty("load.sse-endpoint", config.sseEndpoint);
+        config.stages = properties.getProperty("load.stages", config.stages);
+        config.rampSeconds = Integer.parseInt(properties.getProperty("load.ramp-seconds", String.valueOf(config.rampSeconds)));
+        config.holdSeconds = Integer.parseInt(properties.getProperty("load.hold-seconds", String.valueOf(config.holdSeconds)));
+        config.thinkMillis = Long.parseLong(properties.getProperty("load.think-millis", String.valueOf(config.thinkMillis)));
+        config.mix = properties.getProperty("load.mix", config.mix);
+        config.pairs = properties.getProperty("load.pairs", config.pairs);
+        config.stations = properties.getProperty("load.stations", config.stations);
+        config.daysAhead = Integer.parseInt(properties.getProperty("load.days-ahead", String.valueOf(config.daysAhead)));
+        config.requestTimeoutSeconds = Integer.parseInt(properties.getProperty("load.request-timeout-seconds", String.valueOf(config.requestTimeoutSeconds)));
+        config.seed = Long.parseLong(properties.getProperty("load.seed", String.valueOf(config.seed)));
+        return config;
+    }
+
+    /**
+     * 从命令行参数读取配置，参数形如 --stages=500,1000，未指定的项使用系统属性或默认值
+     *
+     * @param args 命令行参数
+     * @return 配置
+     */
+    public static LoadTestConfig fromArgs(String[] args) {
+        Properties properties = new Properties();
+        properties.putAll(System.getProperties());
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.indexOf('=') > 2) {
+                int eq = arg.indexOf('=');
+                properties.setProperty("load." + arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+        return from(properties);
+    }
+
+    /**
+     * 解析各阶段的目标会话数，忽略不递增的值
+     *
+     * @return 递增的目标会话数列表
+     */
+    public List<Integer> stageTargets() {
+        List<Integer> targets = new ArrayList<>();
+        int last = 0;
+        for (String stage : stages.split(",")) {
+            if (stage.isBlank()) {
+                continue;
+            }
+            int target = Integer.parseInt(stage.trim());
+            if (target > last) {
+                targets.add(target);
+                last = target;
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * 最后一个阶段的目标会话数
+     *
+     * @return 最大会话数
+     */
+    public int maxSessions() {
+        List<Integer> targets = stageTargets();
+        return targets.isEmpty() ? 0 : targets.get(targets.size() - 1);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public LoadTestConfig setUrl(String url) {
+        this.url = url;
+        return this;
+    }
+
+    public String getSseEndpoint() {
+        return sseEndpoint;
+    }
+
+    public LoadTestConfig setSseEndpoint(String sseEndpoint) {
+        this.sseEndpoint = sseEndpoint;
+        return this;
+    }
+
+    public String getStages() {
+        return stages;
+    }
+
+    public LoadTestConfig setStages(String stages) {
+        this.stages = stages;
+        return this;
+    }
+
+    public int getRampSeconds() {
+        return rampSeconds;
+    }
+
+    public LoadTestConfig setRampSeconds(int rampSeconds) {
+        this.rampSeconds = rampSeconds;
+        return this;
+    }
+
+    public int getHoldSeconds() {
+        return holdSeconds;
+    }
+
+    public LoadTestConfig setHoldSeconds(int holdSeconds) {
+        this.holdSeconds = holdSeconds;
+        return this;
+    }
+
+    public long getThinkMillis() {
+        return thinkMillis;
+    }
+
+    public LoadTestConfig setThinkMillis(long thinkMillis) {
+        this.thinkMillis = thinkMillis;
+        return this;
+    }
+
+    public String getMix() {
+        return mix;
+    }
+
+    public LoadTestConfig setMix(String mix) {
+        this.mix = mix;
+        return this;
+    }
+
+    public String getPairs() {
+        return pairs;
+    }
+
+    public LoadTestConfig setPairs(String pairs) {
+        this.pairs = pairs;
+        return this;
+    }
+
+    public String getStations() {
+        return stations;
+    }
+
+    public LoadTestConfig setStations(String stations) {
+        this.stations = stations;
+        return this;
+    }
+
+    public int getDaysAhead() {
+        return daysAhead;
+    }
+
+    public LoadTestConfig setDaysAhead(int daysAhead) {
+        this.daysAhead = daysAhead;
+        return this;
+    }
+
+    public int getRequestTimeoutSeconds() {
+        return requestTimeoutSeconds;
+    }
+
+    public LoadTestConfig setRequestTimeoutSeconds(int requestTimeoutSeconds) {
+        this.requestTimeoutSeconds = requestTimeoutSeconds;
+        return this;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public LoadTestConfig setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "url=" + url + sseEndpoint + ", stages=" + stages + ", ramp=" + rampSeconds + "s, hold=" + holdSeconds
+                + "s, think=" + thinkMillis + "ms, mix=" + mix + ", timeout=" + requestTimeoutSeconds + "s";
+    }
+}
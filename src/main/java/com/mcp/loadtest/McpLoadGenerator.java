@@ -0,0 +1,359 @@
+package com.mcp.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.modelcontextprotocol.client.McpAsyncClient;
+import io.modelcontextprotocol.client.McpClient;
+import io.modelcontextprotocol.client.transport.WebFluxSseClientTransport;
+import io.modelcontextprotocol.spec.McpSchema;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Pattern;
+
+/**
+ * MCP压测工具
+ * 按阶段逐级增加并发SSE会话，每个会话按加权组合循环调用工具，
+ * 每个阶段输出延迟百分位、错误率以及从服务端 /metrics 抓取的内存和线程数，用于找出WebFlux服务端性能拐点。
+ * 运行方式：java -cp target/classes:... com.mcp.loadtest.McpLoadGenerator --stages=500,1000,2000 --hold-seconds=60
+ */
+public class McpLoadGenerator {
+    /**
+     * 连续失败多少次后认为会话已经断开
+     */
+    private static final int MAX_CONSECUTIVE_FAILURES = 5;
+
+    /**
+     * 错误率超过该值的阶段标记为退化
+     */
+    private static final double DEGRADED_ERROR_RATE = 0.01;
+
+    /**
+     * p99超过首个阶段的多少倍时标记为退化
+     */
+    private static final double DEGRADED_P99_FACTOR = 2.0;
+
+    /**
+     * 超过并发上限时工具返回的提示前缀
+     */
+    private static final String BUSY_PREFIX = "服务繁忙";
+
+    /**
+     * 工具失败提示：如"查询车票信息失败，请稍后重试"、"查询中转路线出错："、"查询列车路线超时"、
+     * "请求失败："，以及参数校验失败的"请提供有效的…"
+     */
+    private static final Pattern FAILURE_TEXT = Pattern.compile(
+            "(?:(?:批量)?查询|规划|获取)[^，：:\n]{0,12}(?:失败|出错|超时|异常)|请求失败|请提供");
+
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private static final String[] PERCENTILE_LABELS = {"p50", "p90", "p99", "p999"};
+
+    private final LoadTestConfig config;
+
+    private final ToolMix mix;
+
+    private final LoadStats stats = new LoadStats();
+
+    private final ServerProbe probe;
+
+    private final WebClient.Builder webClientBuilder;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Duration requestTimeout;
+
+    private final List<LoadSession> sessions = new CopyOnWriteArrayList<>();
+
+    private final AtomicBoolean stopped = new AtomicBoolean();
+
+    private volatile boolean running = true;
+
+    public McpLoadGenerator(LoadTestConfig config) {
+        this.config = config;
+        this.mix = new ToolMix(config);
+        this.probe = new ServerProbe(config.getUrl());
+        this.requestTimeout = Duration.ofSeconds(config.getRequestTimeoutSeconds());
+
+        // 每个会话占用一条长连接的SSE流，消息POST也需要连接，连接池上限按最大会话数放宽，默认的500会先于服务端成为瓶颈
+        ConnectionProvider provider = ConnectionProvider.builder("mcp-load")
+                .maxConnections(Math.max(config.maxSessions() * 2, 500))
+                .pendingAcquireMaxCount(-1)
+                .pendingAcquireTimeout(requestTimeout)
+                .build();
+        this.webClientBuilder = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(provider)))
+                .baseUrl(config.getUrl());
+    }
+
+    public static void main(String[] args) {
+        LoadTestConfig config = LoadTestConfig.fromArgs(args);
+        McpLoadGenerator generator = new McpLoadGenerator(config);
+        Runtime.getRuntime().addShutdownHook(new Thread(generator::stop));
+        generator.run();
+        generator.stop();
+        generator.printSummary();
+    }
+
+    /**
+     * 按阶段执行压测
+     */
+    public void run() {
+        System.out.println("MCP压测开始: " + config);
+        ServerProbe.Snapshot baseline = probe.sample();
+        System.out.println("服务端基线: " + (baseline != null ? baseline : "无法抓取 /metrics"));
+
+        double firstP99 = -1;
+        for (int target : config.stageTargets()) {
+            if (!running) {
+                break;
+            }
+            rampTo(target);
+            stats.resetStage();
+            sleep(TimeUnit.SECONDS.toNanos(config.getHoldSeconds()));
+
+            Map<String, LoadStats.Window> stage = stats.takeStage();
+            LoadStats.Window merged = LoadStats.merge(stage.values());
+            double p99 = merged.getLatency().percentileMillis(0.99);
+            if (firstP99 < 0 && merged.total() > 0) {
+                firstP99 = p99;
+            }
+            boolean degraded = merged.errorRate() > DEGRADED_ERROR_RATE
+                    || (firstP99 > 0 && p99 > firstP99 * DEGRADED_P99_FACTOR);
+            printStage(target, merged, probe.sample(), degraded);
+        }
+    }
+
+    /**
+     * 停止所有会话并关闭连接
+     */
+    public void stop() {
+        if (!stopped.compareAndSet(false, true)) {
+            return;
+        }
+        running = false;
+        for (LoadSession session : sessions) {
+            Disposable loop = session.loop;
+            if (loop != null) {
+                loop.dispose();
+            }
+        }
+        Flux.fromIterable(sessions)
+                .flatMap(session -> session.client.closeGracefully().onErrorResume(e -> Mono.empty()), 256)
+                .then()
+                .block(Duration.ofSeconds(30));
+    }
+
+    /**
+     * 在爬坡时间内均匀打开新会话，直到达到目标会话数
+     */
+    private void rampTo(int target) {
+        int toOpen = target - sessions.size();
+        if (toOpen <= 0) {
+            return;
+        }
+        System.out.println("爬坡至 " + target + " 个会话...");
+        long interval = TimeUnit.SECONDS.toNanos(config.getRampSeconds()) / toOpen;
+        long next = System.nanoTime();
+        for (int i = 0; i < toOpen && running; i++) {
+            openSession(sessions.size());
+            next += interval;
+            sleep(next - System.nanoTime());
+        }
+    }
+
+    private void openSession(int id) {
+        WebFluxSseClientTransport transport = WebFluxSseClientTransport.builder(webClientBuilder)
+                .sseEndpoint(config.getSseEndpoint())
+                .objectMapper(objectMapper)
+                .build();
+        McpAsyncClient client = McpClient.async(transport)
+                .requestTimeout(requestTimeout)
+                .initializationTimeout(requestTimeout)
+                .clientInfo(new McpSchema.Implementation("12306-mcp-load", "1.0.0"))
+                .build();
+        LoadSession session = new LoadSession(client, new SplittableRandom(config.getSeed() + id));
+        sessions.add(session);
+
+        long start = System.nanoTime();
+        client.initialize().subscribe(
+                result -> {
+                    stats.sessionOpened(System.nanoTime() - start);
+                    if (running) {
+                        session.loop = loop(session).subscribe();
+                    }
+                },
+                error -> stats.sessionFailed());
+    }
+
+    /**
+     * 会话主循环：思考时间后发起一次调用，直到压测结束或会话断开
+     */
+    private Mono<Void> loop(LoadSession session) {
+        return Mono.defer(() -> Mono.delay(thinkTime(session.random)).then(call(session)))
+                .repeat(() -> running && !session.dropped)
+                .then();
+    }
+
+    private Mono<Void> call(LoadSession session) {
+        return Mono.defer(() -> {
+            ToolMix.ToolCall call = mix.next(session.random);
+            long start = System.nanoTime();
+            return session.client.callTool(new McpSchema.CallToolRequest(call.tool(), call.arguments()))
+                    .timeout(requestTimeout)
+                    .doOnNext(result -> {
+                        String text = text(result);
+                        LoadStats.Outcome outcome = classify(result, text);
+                        stats.record(call.kind(), System.nanoTime() - start, outcome);
+                        session.failures = 0;
+                        if (outcome == LoadStats.Outcome.OK) {
+                            mix.harvest(call, text);
+                        }
+                    })
+                    .onErrorResume(e -> {
+                        stats.record(call.kind(), System.nanoTime() - start,
+                                isTimeout(e) ? LoadStats.Outcome.TIMEOUT : LoadStats.Outcome.FAILURE);
+                        if (++session.failures >= MAX_CONSECUTIVE_FAILURES && !session.dropped) {
+                            session.dropped = true;
+                            stats.sessionDropped();
+                        }
+                        return Mono.empty();
+                    })
+                    .then();
+        });
+    }
+
+    /**
+     * 按指数分布抽取思考时间，模拟彼此独立的智能体会话
+     */
+    private Duration thinkTime(SplittableRandom random) {
+        if (config.getThinkMillis() <= 0) {
+            return Duration.ZERO;
+        }
+        double millis = -config.getThinkMillis() * Math.log(1 - random.nextDouble());
+        return Duration.ofMillis((long) Math.min(millis, config.getThinkMillis() * 10));
+    }
+
+    private void printStage(int target, LoadStats.Window merged, ServerProbe.Snapshot server, boolean degraded) {
+        long online = stats.getSessionsOpened() - stats.getSessionsDropped();
+        System.out.printf("[阶段 %d 会话]%s 在线 %d, 建连失败 %d, 掉线 %d | 调用 %d (%.1f/s), 错误率 %.2f%% (工具错误 %d, 繁忙拒绝 %d, 超时 %d, 失败 %d) | %s | 服务端: %s%n",
+                target, degraded ? " [退化]" : "", online, stats.getSessionsFailed(), stats.getSessionsDropped(),
+                merged.total(), (double) merged.total() / Math.max(1, config.getHoldSeconds()),
+                merged.errorRate() * 100,
+                merged.count(LoadStats.Outcome.TOOL_ERROR), merged.count(LoadStats.Outcome.REJECTED),
+                merged.count(LoadStats.Outcome.TIMEOUT),
+                merged.count(LoadStats.Outcome.FAILURE),
+                percentiles(merged.getLatency()), server != null ? server : "无法抓取 /metrics");
+    }
+
+    /**
+     * 输出全程按调用类型汇总的统计
+     */
+    public void printSummary() {
+        System.out.println("==== 全程汇总 ====");
+        LatencyHistogram connect = stats.getConnectLatency();
+        System.out.printf("会话建立 %d 个, 失败 %d 个, 掉线 %d 个, 建连耗时 %s%n",
+                stats.getSessionsOpened(), stats.getSessionsFailed(), stats.getSessionsDropped(), percentiles(connect));
+        Map<String, LoadStats.Window> totals = new TreeMap<>(stats.getTotals());
+        totals.forEach((kind, window) -> System.out.printf("%-10s 调用 %d, 错误率 %.2f%%, 平均 %.1fms, %s%n",
+                kind, window.total(), window.errorRate() * 100, window.getLatency().meanMillis(),
+                percentiles(window.getLatency())));
+        LoadStats.Window merged = LoadStats.merge(totals.values());
+        System.out.printf("%-10s 调用 %d, 错误率 %.2f%%, 平均 %.1fms, %s%n",
+                "all", merged.total(), merged.errorRate() * 100, merged.getLatency().meanMillis(),
+                percentiles(merged.getLatency()));
+    }
+
+    private static String percentiles(LatencyHistogram histogram) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            result.append(PERCENTILE_LABELS[i]).append(' ')
+                    .append(String.format("%.0f", histogram.percentileMillis(PERCENTILES[i]))).append("ms ");
+        }
+        result.append("max ").append(String.format("%.0f", histogram.maxMillis())).append("ms");
+        return result.toString();
+    }
+
+    private static String text(McpSchema.CallToolResult result) {
+        if (result.content() == null) {
+            return null;
+        }
+        StringBuilder text = new StringBuilder();
+        for (McpSchema.Content content : result.content()) {
+            if (content instanceof McpSchema.TextContent textContent) {
+                text.append(textContent.text());
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * 判断工具调用结果
+     * 工具以普通文本返回错误而不设置isError，按服务端各工具的失败提示前缀识别，快速返回的"服务繁忙"单独计数
+     */
+    static LoadStats.Outcome classify(McpSchema.CallToolResult result, String text) {
+        if (Boolean.TRUE.equals(result.isError())) {
+            return LoadStats.Outcome.TOOL_ERROR;
+        }
+        if (text == null) {
+            return LoadStats.Outcome.OK;
+        }
+        if (text.startsWith(BUSY_PREFIX)) {
+            return LoadStats.Outcome.REJECTED;
+        }
+        return FAILURE_TEXT.matcher(text).lookingAt() ? LoadStats.Outcome.TOOL_ERROR : LoadStats.Outcome.OK;
+    }
+
+    private static boolean isTimeout(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void sleep(long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        for (long remaining = nanos; remaining > 0; remaining = deadline - System.nanoTime()) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    /**
+     * 单个MCP会话
+     */
+    private static class LoadSession {
+        private final McpAsyncClient client;
+
+        /**
+         * 会话内的调用是串行的，随机数发生器不需要同步
+         */
+        private final SplittableRandom random;
+
+        private volatile Disposable loop;
+
+        private volatile boolean dropped;
+
+        private int failures;
+
+        LoadSession(McpAsyncClient client, SplittableRandom random) {
+            this.client = client;
+            this.random = random;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.mcp.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * 服务端资源探针
+ * 抓取服务端 /metrics 的Prometheus文本，汇总堆内存、非堆内存、存活线程数和进程CPU使用率
+ */
+public class ServerProbe {
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(3))
+            .build();
+
+    private final URI metricsUri;
+
+    public ServerProbe(String baseUrl) {
+        this.metricsUri = URI.create(baseUrl + "/metrics");
+    }
+
+    /**
+     * 抓取一次服务端指标
+     *
+     * @return 指标快照，抓取失败时返回null
+     */
+    public Snapshot sample() {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(metricsUri).timeout(Duration.ofSeconds(5)).GET().build();
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                return null;
+            }
+            return parse(response.body());
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    static Snapshot parse(String body) {
+        double heap = 0;
+        double nonHeap = 0;
+        double threads = -1;
+        double cpu = -1;
+        for (String line : body.split("\n")) {
+            if (line.isEmpty() || line.charAt(0) == '#') {
+                continue;
+            }
+            if (line.startsWith("jvm_memory_used_bytes{")) {
+                if (line.contains("area=\"heap\"")) {
+                    heap += value(line);
+                } else if (line.contains("area=\"nonheap\"")) {
+                    nonHeap += value(line);
+                }
+            } else if (line.startsWith("jvm_threads_live_threads")) {
+                threads = value(line);
+            } else if (line.startsWith("process_cpu_usage")) {
+                cpu = value(line);
+            }
+        }
+        return new Snapshot((long) heap, (long) nonHeap, (int) threads, cpu);
+    }
+
+    private static double value(String line) {
+        int space = line.lastIndexOf(' ');
+        try {
+            return Double.parseDouble(line.substring(space + 1).trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 服务端指标快照
+     *
+     * @param heapBytes    堆内存使用量
+     * @param nonHeapBytes 非堆内存使用量
+     * @param liveThreads  存活线程数，未知时为-1
+     * @param cpuUsage     进程CPU使用率（0~1），未知时为-1
+     */
+    public record Snapshot(long heapBytes, long nonHeapBytes, int liveThreads, double cpuUsage) {
+        @Override
+        public String toString() {
+            return "堆 " + (heapBytes >> 20) + "MB, 非堆 " + (nonHeapBytes >> 20) + "MB, 线程 " + liveThreads
+                    + (cpuUsage >= 0 ? String.format(", CPU %.0f%%", cpuUsage * 100) : "");
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.mcp.loadtest;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.random.RandomGenerator;
+
+/**
+ * 加权工具调用组合
+ * 按权重抽取车站查询、车票查询、路线查询和中转查询，并生成对应参数。
+ * 路线查询需要真实存在的车次，车次从车票查询（compact输出）的结果中采集；
+ * 某个站点对还没有采集到车次时，先发起一次该站点对的车票查询
+ */
+public class ToolMix {
+    public static final String STATION = "station";
+    public static final String TICKETS = "tickets";
+    public static final String ROUTE = "route";
+    public static final String INTERLINE = "interline";
+
+    /**
+     * 每个站点对最多保留的车次数
+     */
+    private static final int MAX_CODES_PER_PAIR = 50;
+
+    private static final ZoneId ZONE = ZoneId.of("Asia/Shanghai");
+
+    private final String[] kinds;
+
+    /**
+     * 累积权重
+     */
+    private final int[] cumulative;
+
+    private final int totalWeight;
+
+    private final List<String[]> pairs = new ArrayList<>();
+
+    private final String[] stationNames;
+
+    private final int daysAhead;
+
+    /**
+     * 站点对到已采集车次的映射
+     */
+    private final Map<String, List<String>> trainCodes = new ConcurrentHashMap<>();
+
+    public ToolMix(LoadTestConfig config) {
+        List<String> kindList = new ArrayList<>();
+        List<Integer> weightList = new ArrayList<>();
+        for (String entry : config.getMix().split(",")) {
+            String[] parts = entry.trim().split(":");
+            int weight = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1;
+            if (weight <= 0) {
+                continue;
+            }
+            String kind = parts[0].trim();
+            if (!STATION.equals(kind) && !TICKETS.equals(kind) && !ROUTE.equals(kind) && !INTERLINE.equals(kind)) {
+                throw new IllegalArgumentException("未知的调用类型: " + kind);
+            }
+            kindList.add(kind);
+            weightList.add(weight);
+        }
+        if (kindList.isEmpty()) {
+            throw new IllegalArgumentException("调用组合为空: " + config.getMix());
+        }
+
+        this.kinds = kindList.toArray(new String[0]);
+        this.cumulative = new int[kinds.length];
+        int sum = 0;
+        for (int i = 0; i < kinds.length; i++) {
+            sum += weightList.get(i);
+            cumulative[i] = sum;
+        }
+        this.totalWeight = sum;
+
+        for (String pair : config.getPairs().split(",")) {
+            String[] codes = pair.trim().split("-");
+            if (codes.length == 2) {
+                pairs.add(codes);
+            }
+        }
+        if (pairs.isEmpty()) {
+            throw new IllegalArgumentException("站点对为空: " + config.getPairs());
+        }
+        this.stationNames = config.getStations().split(",");
+        this.daysAhead = Math.max(1, config.getDaysAhead());
+    }
+
+    /**
+     * 抽取下一次调用
+     *
+     * @param random 随机数发生器
+     * @return 工具调用
+     */
+    public ToolCall next(RandomGenerator random) {
+        int roll = random.nextInt(totalWeight);
+        String kind = kinds[kinds.length - 1];
+        for (int i = 0; i < cumulative.length; i++) {
+            if (roll < cumulative[i]) {
+                kind = kinds[i];
+                break;
+            }
+        }
+
+        String[] pair = pairs.get(random.nextInt(pairs.size()));
+        String date = LocalDate.now(ZONE).plusDays(1 + random.nextInt(daysAhead)).toString();
+        Map<String, Object> arguments = new HashMap<>();
+        switch (kind) {
+            case STATION:
+                arguments.put("stationName", stationNames[random.nextInt(stationNames.length)].trim());
+                return new ToolCall(STATION, "getStationCodeByName", arguments, null);
+            case ROUTE:
+                List<String> codes = trainCodes.get(pairKey(pair));
+                if (codes != null && !codes.isEmpty()) {
+                    arguments.put("date", date);
+                    arguments.put("trainCode", codes.get(random.nextInt(codes.size())));
+                    arguments.put("fromStation", pair[0]);
+                    arguments.put("toStation", pair[1]);
+                    arguments.put("outputFormat", "compact");
+                    return new ToolCall(ROUTE, "getTrainRoute", arguments, null);
+                }
+                return tickets(pair, date, arguments);
+            case INTERLINE:
+                arguments.put("date", date);
+                arguments.put("fromStation", pair[0]);
+                arguments.put("toStation", pair[1]);
+                arguments.put("trainTypes", "");
+                arguments.put("outputFormat", "compact");
+                return new ToolCall(INTERLINE, "getInterlineRoutes", arguments, null);
+            default:
+                return tickets(pair, date, arguments);
+        }
+    }
+
+    /**
+     * 从车票查询的compact输出中采集车次，供之后的路线查询使用
+     *
+     * @param call 车票查询调用
+     * @param text 工具返回的文本
+     */
+    public void harvest(ToolCall call, String text) {
+        if (call.pairKey() == null || text == null) {
+            return;
+        }
+        List<String> codes = trainCodes.computeIfAbsent(call.pairKey(), key -> new CopyOnWriteArrayList<>());
+        if (codes.size() >= MAX_CODES_PER_PAIR) {
+            return;
+        }
+        boolean header = true;
+        for (String line : text.split("\n")) {
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            // 第一行非注释行是表头
+            if (header) {
+                header = false;
+                continue;
+            }
+            int tab = line.indexOf('\t');
+            String code = tab > 0 ? line.substring(0, tab) : line;
+            if (!codes.contains(code) && codes.size() < MAX_CODES_PER_PAIR) {
+                codes.add(code);
+            }
+        }
+    }
+
+    private ToolCall tickets(String[] pair, String date, Map<String, Object> arguments) {
+        arguments.put("date", date);
+        arguments.put("fromStation", pair[0]);
+        arguments.put("toStation", pair[1]);
+        arguments.put("trainTypes", "");
+        arguments.put("outputFormat", "compact");
+        return new ToolCall(TICKETS, "getTickets", arguments, pairKey(pair));
+    }
+
+    private static String pairKey(String[] pair) {
+        return pair[0] + "-" + pair[1];
+    }
+
+    /**
+     * 一次工具调用
+     *
+     * @param kind      调用类型，用于统计分组
+     * @param tool      MCP工具名称
+     * @param arguments 调用参数
+     * @param pairKey   需要采集车次时的站点对，其余为null
+     */
+    public record ToolCall(String kind, String tool, Map<String, Object> arguments, String pairKey) {
+    }
+}
@@ -147,4 +147,14 @@ public class InterlineInfo {
      * 服务标识列表
      */
     private List<String> dwFlags;
+    
+    /**
+     * 第一程车型掩码，见 TrainTypeFilter，不参与序列化
+     */
+    private transient int firstTrainMask;
+    
+    /**
+     * 第二程车型掩码，见 TrainTypeFilter，不参与序列化
+     */
+    private transient int secondTrainMask;
 } 
\ No newline at end of file
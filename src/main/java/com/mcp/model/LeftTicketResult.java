@@ -0,0 +1,67 @@
+package com.mcp.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 余票查询结果
+ * 一次leftTicket查询解析后的全部车次
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeftTicketResult {
+    /**
+     * 查询日期
+     */
+    private String date;
+
+    /**
+     * 出发站代码
+     */
+    private String fromStation;
+
+    /**
+     * 到达站代码
+     */
+    private String toStation;
+
+    /**
+     * 解析后的车次数据
+     */
+    private List<TicketData> rows;
+
+    /**
+     * 展示用的车票信息，与rows一一对应
+     */
+    private List<TicketInfo> tickets;
+
+    /**
+     * 车站代码与名称映射
+     */
+    private Map<String, String> stationNames;
+
+    /**
+     * 获取时间戳（毫秒）
+     */
+    private long fetchedAt;
+
+    /**
+     * 原始车次行的哈希，与rows一一对应，下次获取时内容未变的行直接复用
+     */
+    private List<Long> rowHashes;
+
+    /**
+     * 与同一查询上一次获取结果相比的车次变化，没有上一次结果时为null
+     */
+    private List<TicketDelta> deltas;
+
+    /**
+     * 上一次获取的时间戳（毫秒），没有上一次结果时为0
+     */
+    private long previousFetchedAt;
+}
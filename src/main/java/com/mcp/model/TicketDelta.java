@@ -0,0 +1,29 @@
+package com.mcp.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 车次余票变化
+ * 同一查询相邻两次获取之间，一个车次的新增、消失或席别余票变化
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TicketDelta {
+    /**
+     * 车次代码
+     */
+    private String trainCode;
+
+    /**
+     * 上一次的车票信息，新增车次为null
+     */
+    private TicketInfo before;
+
+    /**
+     * 本次的车票信息，车次已不在结果中时为null
+     */
+    private TicketInfo after;
+}
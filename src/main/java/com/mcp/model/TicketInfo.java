@@ -1,5 +1,6 @@
 package com.mcp.model;
 
+import com.alibaba.fastjson.annotation.JSONField;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -59,6 +60,24 @@ public class TicketInfo {
      */
     private String toStationTelecode;
     
+    /**
+     * 出发站在本车次中的站序，查询票价使用，不输出给调用方
+     */
+    @JSONField(serialize = false)
+    private String fromStationNo;
+    
+    /**
+     * 到达站在本车次中的站序，查询票价使用，不输出给调用方
+     */
+    @JSONField(serialize = false)
+    private String toStationNo;
+    
+    /**
+     * 本车次的座位类型代码串，查询票价使用，不输出给调用方
+     */
+    @JSONField(serialize = false)
+    private String seatTypes;
+    
     /**
      * 票价信息
      */
@@ -68,4 +87,9 @@ public class TicketInfo {
      * 服务标识列表
      */
     private List<String> dwFlag;
+    
+    /**
+     * 车型掩码（车次类别与服务标识），见 TrainTypeFilter，不参与序列化
+     */
+    private transient int trainMask;
 } 
\ No newline at end of file
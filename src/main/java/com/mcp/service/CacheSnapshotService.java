@@ -0,0 +1,114 @@
+package com.mcp.service;
+
+import com.mcp.utils.CacheSnapshot;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 缓存快照服务类
+ * 停机时把余票、列车编号和时刻表的内存缓存写入快照文件；启动时在后台线程中并行恢复，
+ * 恢复完成前 /health 不报告UP，负载均衡不会把流量切到冷节点上
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CacheSnapshotService {
+
+    private final LeftTicketService leftTicketService;
+
+    private final RouteService routeService;
+
+    /**
+     * 是否启用停机快照和启动恢复
+     */
+    @Value("${mcp.snapshot.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 快照文件
+     */
+    @Value("${mcp.snapshot.file:data/cache.snapshot}")
+    private String file;
+
+    /**
+     * 恢复时并行反序列化的线程数，0表示使用CPU核数
+     */
+    @Value("${mcp.snapshot.restore-threads:0}")
+    private int restoreThreads;
+
+    /**
+     * 启动恢复是否已完成
+     */
+    private volatile boolean ready;
+
+    /**
+     * 启动时在后台线程中恢复快照，不阻塞MCP端点启动
+     */
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            ready = true;
+            return;
+        }
+        Thread thread = new Thread(this::restore, "cache-restore");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 停机时写入快照
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            int count = CacheSnapshot.write(Path.of(file), sections());
+            log.info("缓存快照已写入 {}: {} 个条目, 耗时 {} 毫秒", file, count, (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            log.error("写入缓存快照失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 启动恢复是否已完成（未启用快照时始终为true）
+     *
+     * @return 已完成返回true
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    private void restore() {
+        long start = System.nanoTime();
+        try {
+            int threads = restoreThreads > 0 ? restoreThreads : Runtime.getRuntime().availableProcessors();
+            CacheSnapshot.RestoreResult result = CacheSnapshot.restore(Path.of(file), sections(), threads);
+            log.info("缓存快照恢复完成: 恢复 {} 个条目, 丢弃过期 {} 个, 解析失败 {} 个, 已有更新结果 {} 个, 耗时 {} 毫秒",
+                    result.restored(), result.expired(), result.failed(), result.superseded(),
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            // 快照损坏时冷启动，不影响服务
+            log.error("恢复缓存快照失败，以空缓存启动: {}", e.getMessage(), e);
+        } finally {
+            ready = true;
+        }
+    }
+
+    private List<CacheSnapshot.Section<?>> sections() {
+        List<CacheSnapshot.Section<?>> sections = new ArrayList<>();
+        sections.add(leftTicketService.snapshotSection());
+        sections.addAll(routeService.snapshotSections());
+        return sections;
+    }
+}
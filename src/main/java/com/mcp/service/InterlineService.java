@@ -7,8 +7,15 @@ import com.mcp.constants.RailwayConstants;
 import com.mcp.model.InterlineInfo;
 import com.mcp.model.Price;
 import com.mcp.model.TicketInfo;
+import com.mcp.utils.CompactWriter;
 import com.mcp.utils.DateUtils;
 import com.mcp.utils.HttpUtils;
+import com.mcp.utils.NegativeCache;
+import com.mcp.utils.TicketParser;
+import com.mcp.utils.ToolMetrics;
+import com.mcp.utils.TrainTypeFilter;
+import com.mcp.utils.TtlCache;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
@@ -27,7 +34,34 @@ import java.util.stream.Collectors;
  */
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class InterlineService {
+    /**
+     * 工具名称，用于指标标签
+     */
+    private static final String TOOL_NAME = "getInterlineRoutes";
+    
+    /**
+     * 最近成功响应的保留时间（毫秒），仅在上游失败时使用
+     */
+    private static final long LAST_GOOD_TTL_MILLIS = 30 * 60_000;
+    
+    /**
+     * 否定结果的保留时间（毫秒）
+     */
+    private static final long NEGATIVE_TTL_MILLIS = 2 * 60_000;
+    
+    /**
+     * 最近一次成功的中转查询响应，以"日期|出发站|到达站"为键
+     */
+    private final TtlCache<String, String> lastGoodResponses = new TtlCache<>(LAST_GOOD_TTL_MILLIS, 500);
+    
+    /**
+     * 没有中转方案或被12306拒绝的查询，以"日期|出发站|到达站"为键，容量独立于最近成功响应
+     */
+    private final NegativeCache negativeResults = new NegativeCache("interline", NEGATIVE_TTL_MILLIS, 1000);
+    
+    private final PriceService priceService;
     
     /**
      * 查询两站之间的中转路线方案
@@ -36,14 +70,18 @@ public class InterlineService {
      * @param fromStation 出发站代码
      * @param toStation  到达站代码
      * @param trainTypes 列车类型过滤，如G,D,K等，多种类型用逗号分隔
+     * @param outputFormat 输出模式，json或compact
+     * @param fares      是否查询票价
      * @return 中转路线信息的JSON字符串
      */
-    @Tool(description = "查询两站之间的中转乘车方案，支持按车型筛选")
+    @Tool(description = "查询两站之间的中转乘车方案，支持按车型筛选，可选查询票价")
     public String getInterlineRoutes(
             @ToolParam(description = "查询日期，格式为yyyy-MM-dd") String date,
             @ToolParam(description = "出发站代码") String fromStation,
             @ToolParam(description = "到达站代码") String toStation,
-            @ToolParam(description = "列车类型过滤，如G,D,K等，多种类型用逗号分隔，可为空") String trainTypes) {
+            @ToolParam(description = "列车类型过滤，如G,D,K等，多种类型用逗号分隔，可为空") String trainTypes,
+            @ToolParam(description = "输出模式：json（默认）或compact（表头一次、制表符分隔，节省上下文）", required = false) String outputFormat,
+            @ToolParam(description = "是否查询各程票价并计算方案最低票价，默认不查询；未缓存的票价需要额外请求12306", required = false) Boolean fares) {
         
         log.debug("开始查询中转路线: 日期={}, 出发站={}, 到达站={}, 车型过滤={}", date, fromStation, toStation, trainTypes);
         
@@ -59,6 +97,15 @@ public class InterlineService {
         }
         
         try {
+            // 短时间内查不到中转方案的查询直接返回上次的提示，重试不再请求12306
+            String cacheKey = date + "|" + fromStation + "|" + toStation;
+            String negative = negativeResults.get(cacheKey);
+            if (negative != null) {
+                log.info("命中否定结果缓存: {}", cacheKey);
+                ToolMetrics.emptyResult(TOOL_NAME);
+                return negative;
+            }
+            
             log.info("查询中转路线: {} 从 {} 到 {}", date, fromStation, toStation);
             
             // 请求12306 API获取中转路线信息
@@ -78,7 +125,7 @@ public class InterlineService {
             headers.put("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/86.0.4240.111 Safari/537.36");
             
             // 获取Cookie
-            Map<String, String> cookies = HttpUtils.getCookie(RailwayConstants.WEB_URL);
+            Map<String, String> cookies = HttpUtils.getCachedCookie(RailwayConstants.WEB_URL);
             if (!cookies.isEmpty()) {
                 String cookieString = HttpUtils.formatCookies(cookies);
                 headers.put("Cookie", cookieString);
@@ -89,49 +136,81 @@ public class InterlineService {
             
             // 发送请求
             log.info("发送中转查询API请求: {}", url);
-            String response = HttpUtils.get(url, params, headers);
-            if (response == null) {
-                log.error("API返回为空");
-                return "查询中转路线失败，请稍后重试";
+            String response = ToolMetrics.phase(TOOL_NAME, ToolMetrics.PHASE_FETCH,
+                    () -> HttpUtils.get(url, params, headers));
+            boolean fromCache = response == null;
+            if (fromCache) {
+                // 上游失败或熔断时降级返回最近一次成功的响应
+                response = lastGoodResponses.get(cacheKey);
+                if (response == null) {
+                    log.error("API返回为空");
+                    return "查询中转路线失败，请稍后重试";
+                }
+                log.warn("中转查询失败，返回缓存的中转方案: {}", cacheKey);
+                ToolMetrics.staleServed("lcxx");
             }
             
             // 解析响应数据
             log.debug("解析中转查询API响应");
-            JSONObject jsonResponse = JSON.parseObject(response);
+            JSONObject jsonResponse = HttpUtils.parseJsonResponse(response, JSONObject.class, "lcxx");
+            if (jsonResponse == null) {
+                log.error("中转查询API响应解析失败");
+                return "查询中转路线失败，响应格式错误";
+            }
             if (jsonResponse.getIntValue("httpstatus") != 200) {
                 String errorMsg = jsonResponse.getString("messages");
                 log.error("API请求失败: {}", errorMsg);
-                return "请求失败：" + errorMsg;
+                return rememberNegative(cacheKey, fromCache, "请求失败：" + errorMsg);
+            }
+            if (!fromCache) {
+                lastGoodResponses.put(cacheKey, response);
             }
             
             JSONObject data = jsonResponse.getJSONObject("data");
             if (data == null || !data.containsKey("interlist") || !data.containsKey("timeSpan")) {
                 log.warn("API响应中无中转路线数据");
-                return "没有找到中转路线信息";
+                ToolMetrics.emptyResult(TOOL_NAME);
+                return rememberNegative(cacheKey, fromCache, "没有找到中转路线信息");
             }
             
             JSONArray interlineArray = data.getJSONArray("interlist");
             if (interlineArray == null || interlineArray.isEmpty()) {
                 log.info("查询结果为空: {} 从 {} 到 {}", date, fromStation, toStation);
-                return "没有找到符合条件的中转路线信息";
+                ToolMetrics.emptyResult(TOOL_NAME);
+                return rememberNegative(cacheKey, fromCache, "没有找到符合条件的中转路线信息");
             }
             
             log.info("查询到 {} 条中转路线信息", interlineArray.size());
             
             // 解析中转路线数据
-            List<InterlineInfo> interlineInfoList = parseInterlineData(interlineArray);
+            List<InterlineInfo> interlineInfoList = ToolMetrics.phase(TOOL_NAME, ToolMetrics.PHASE_PARSE,
+                    () -> parseInterlineData(interlineArray));
             log.debug("解析中转路线数据完成，共 {} 条", interlineInfoList.size());
             
             // 根据列车类型过滤
             if (StringUtils.hasLength(trainTypes)) {
                 log.debug("按车型过滤: {}", trainTypes);
                 int beforeCount = interlineInfoList.size();
-                interlineInfoList = filterInterlineInfoByTrainTypes(interlineInfoList, trainTypes);
+                List<InterlineInfo> unfiltered = interlineInfoList;
+                interlineInfoList = ToolMetrics.phase(TOOL_NAME, ToolMetrics.PHASE_FILTER,
+                        () -> filterInterlineInfoByTrainTypes(unfiltered, trainTypes));
                 log.info("车型过滤后剩余 {} 条中转路线信息（过滤前 {} 条）", interlineInfoList.size(), beforeCount);
             }
             
+            // 调用方需要时为各程补全票价，票价按区间长期缓存
+            List<InterlineInfo> filtered = interlineInfoList;
+            int unpriced = Boolean.TRUE.equals(fares)
+                    ? ToolMetrics.phase(TOOL_NAME, ToolMetrics.PHASE_FETCH, () -> fillPrices(date, filtered))
+                    : 0;
+            
             // 格式化结果
-            String result = formatInterlineInfo(interlineInfoList);
+            boolean compact = CompactWriter.isCompact(outputFormat);
+            String result = ToolMetrics.format(TOOL_NAME, filtered.size(),
+                    () -> compact ? formatInterlineInfoCompact(filtered) : formatInterlineInfo(filtered));
+            if (compact && unpriced > 0) {
+                result += "# " + unpriced + "个车次未查询到票价，所在方案不显示最低票价（单次最多查询"
+                        + PriceService.MAX_FETCH_PER_CALL + "个区间）\n";
+            }
             log.info("查询完成，返回 {} 条中转路线信息", interlineInfoList.size());
             return result;
             
@@ -141,13 +220,44 @@ public class InterlineService {
         }
     }
     
+    /**
+     * 为各方案的各程补全票价，把补全后的车票副本写回方案
+     *
+     * @return 没有票价的车次数
+     */
+    private int fillPrices(String date, List<InterlineInfo> interlineInfoList) {
+        List<TicketInfo> legs = interlineInfoList.stream()
+                .flatMap(info -> info.getTicketsInfo().stream())
+                .collect(Collectors.toList());
+        PriceService.Priced priced = priceService.fillPrices(date, legs);
+        int offset = 0;
+        for (InterlineInfo info : interlineInfoList) {
+            int size = info.getTicketsInfo().size();
+            info.setTicketsInfo(new ArrayList<>(priced.tickets().subList(offset, offset + size)));
+            offset += size;
+        }
+        return priced.unpriced();
+    }
+    
+    /**
+     * 记录上游返回的否定结果，降级使用的旧响应不记录
+     *
+     * @return 原样返回提示信息
+     */
+    private String rememberNegative(String cacheKey, boolean fromCache, String message) {
+        if (!fromCache) {
+            negativeResults.put(cacheKey, message);
+        }
+        return message;
+    }
+    
     /**
      * 解析中转路线数据
      *
      * @param interlineArray 中转路线数据数组
      * @return 中转路线信息列表
      */
-    private List<InterlineInfo> parseInterlineData(JSONArray interlineArray) {
+    List<InterlineInfo> parseInterlineData(JSONArray interlineArray) {
         log.debug("开始解析中转路线数据，共 {} 条", interlineArray.size());
         List<InterlineInfo> interlineInfoList = new ArrayList<>();
         
@@ -170,8 +280,13 @@ public class InterlineService {
                 // 提取车票信息
                 interlineInfo.setTicketsInfo(parseTicketInfoFromInterline(interlineObject));
                 
-                // 提取DW标识
-                interlineInfo.setDwFlags(extractDWFlags(interlineObject));
+                // 解码两程的服务标识，并与车次类别合成车型掩码
+                JSONArray fullList = interlineObject.getJSONArray("fullList");
+                int firstFlags = segmentFlags(fullList, 0);
+                int secondFlags = fullList != null && fullList.size() > 1 ? segmentFlags(fullList, 1) : firstFlags;
+                interlineInfo.setDwFlags(TrainTypeFilter.flagNames(firstFlags));
+                interlineInfo.setFirstTrainMask(TrainTypeFilter.trainMask(interlineInfo.getFirstTrain(), firstFlags));
+                interlineInfo.setSecondTrainMask(TrainTypeFilter.trainMask(interlineInfo.getSecondTrain(), secondFlags));
                 
                 interlineInfoList.add(interlineInfo);
                 log.trace("解析中转路线: {} -> {} -> {}, 第一程: {}, 第二程: {}", 
@@ -196,42 +311,44 @@ public class InterlineService {
         List<TicketInfo> ticketInfoList = new ArrayList<>();
         
         JSONArray fullList = interlineObject.getJSONArray("fullList");
-        if (fullList != null && !fullList.isEmpty()) {
-            JSONObject firstSegment = fullList.getJSONObject(0);
-            String trainCode = firstSegment.getString("station_train_code");
+        if (fullList == null) {
+            return ticketInfoList;
+        }
+        
+        // 每一程一条车票信息
+        for (int i = 0; i < fullList.size(); i++) {
+            JSONObject segment = fullList.getJSONObject(i);
+            String trainCode = segment.getString("station_train_code");
             
             TicketInfo ticketInfo = new TicketInfo();
-            ticketInfo.setTrainNo(firstSegment.getString("train_no"));
+            ticketInfo.setTrainNo(segment.getString("train_no"));
             ticketInfo.setStartTrainCode(trainCode);
-            ticketInfo.setStartTime(firstSegment.getString("start_time"));
-            ticketInfo.setArriveTime(firstSegment.getString("arrive_time"));
-            ticketInfo.setLishi(firstSegment.getString("lishi"));
-            ticketInfo.setFromStation(firstSegment.getString("from_station_name"));
-            ticketInfo.setToStation(firstSegment.getString("to_station_name"));
-            ticketInfo.setFromStationTelecode(firstSegment.getString("from_station_telecode"));
-            ticketInfo.setToStationTelecode(firstSegment.getString("to_station_telecode"));
+            ticketInfo.setStartTime(segment.getString("start_time"));
+            ticketInfo.setArriveTime(segment.getString("arrive_time"));
+            ticketInfo.setLishi(segment.getString("lishi"));
+            ticketInfo.setFromStation(segment.getString("from_station_name"));
+            ticketInfo.setToStation(segment.getString("to_station_name"));
+            ticketInfo.setFromStationTelecode(segment.getString("from_station_telecode"));
+            ticketInfo.setToStationTelecode(segment.getString("to_station_telecode"));
+            ticketInfo.setFromStationNo(segment.getString("from_station_no"));
+            ticketInfo.setToStationNo(segment.getString("to_station_no"));
+            ticketInfo.setSeatTypes(segment.getString("seat_types"));
             
             // 提取服务标识
-            List<String> dwFlags = extractDWFlags(firstSegment.getString("dw_flag"));
-            ticketInfo.setDwFlag(dwFlags);
+            int flagMask = TrainTypeFilter.decodeFlags(segment.getString("dw_flag"));
+            ticketInfo.setDwFlag(TrainTypeFilter.flagNames(flagMask));
+            ticketInfo.setTrainMask(TrainTypeFilter.trainMask(trainCode, flagMask));
             
-            // 提取座位价格信息，这里简化处理，实际可能需要从接口获取
+            // 提取有余票信息的座位，票价在过滤后统一补全
             List<Price> prices = new ArrayList<>();
-            
-            // 高级软卧
-            if (!"无".equals(firstSegment.getString("gr_num"))) {
-                Price price = new Price();
-                price.setSeatName("高级软卧");
-                price.setShortName("gr");
-                price.setSeatTypeCode("6");
-                price.setNum(firstSegment.getString("gr_num"));
-                price.setPrice(null);
-                price.setDiscount(null);
-                prices.add(price);
+            for (int seat = 0; seat < TicketParser.seatClassCount(); seat++) {
+                String num = segment.getString(TicketParser.seatShortName(seat) + "_num");
+                if (StringUtils.hasLength(num) && !"无".equals(num) && !"--".equals(num)) {
+                    prices.add(new Price(TicketParser.seatName(seat), TicketParser.seatShortName(seat),
+                            TicketParser.seatTypeCode(seat), num, null, null));
+                }
             }
             
-            // 其他座位类型类似处理...
-            
             ticketInfo.setPrices(prices);
             ticketInfoList.add(ticketInfo);
         }
@@ -240,52 +357,17 @@ public class InterlineService {
     }
     
     /**
-     * 提取服务标识
+     * 解码中转方案中指定一程的服务标识
      *
-     * @param dwFlagStr 服务标识字符串
-     * @return 服务标识列表
+     * @param fullList 各程车次列表
+     * @param index    程序号
+     * @return 服务标识掩码
      */
-    private List<String> extractDWFlags(String dwFlagStr) {
-        List<String> flags = new ArrayList<>();
-        
-        if (!StringUtils.hasLength(dwFlagStr)) {
-            return flags;
-        }
-        
-        String[] flagsArr = dwFlagStr.split("#");
-        for (String flag : flagsArr) {
-            if (StringUtils.hasLength(flag)) {
-                for (String dwFlag : RailwayConstants.DW_FLAGS) {
-                    if (flag.contains(dwFlag)) {
-                        flags.add(dwFlag);
-                        break;
-                    }
-                }
-            }
+    private int segmentFlags(JSONArray fullList, int index) {
+        if (fullList == null || fullList.size() <= index) {
+            return 0;
         }
-        
-        return flags;
-    }
-    
-    /**
-     * 从中转对象中提取服务标识
-     *
-     * @param interlineObject 中转路线对象
-     * @return 服务标识列表
-     */
-    private List<String> extractDWFlags(JSONObject interlineObject) {
-        List<String> flags = new ArrayList<>();
-        
-        JSONArray fullList = interlineObject.getJSONArray("fullList");
-        if (fullList != null && !fullList.isEmpty()) {
-            JSONObject firstSegment = fullList.getJSONObject(0);
-            String dwFlagStr = firstSegment.getString("dw_flag");
-            
-            // 使用字符串版本的方法提取标识
-            return extractDWFlags(dwFlagStr);
-        }
-        
-        return flags;
+        return TrainTypeFilter.decodeFlags(fullList.getJSONObject(index).getString("dw_flag"));
     }
     
     /**
@@ -294,7 +376,7 @@ public class InterlineService {
      * @param interlineInfoList 中转路线信息列表
      * @return 格式化后的JSON字符串
      */
-    private String formatInterlineInfo(List<InterlineInfo> interlineInfoList) {
+    String formatInterlineInfo(List<InterlineInfo> interlineInfoList) {
         if (interlineInfoList == null || interlineInfoList.isEmpty()) {
             return "没有找到符合条件的中转路线";
         }
@@ -314,6 +396,7 @@ public class InterlineService {
             obj.put("total_time", info.getTotalTime());
             obj.put("wait_time", info.getWaitTime());
             obj.put("same_station", info.getSameStation());
+            obj.put("lowest_fare", lowestFare(info));
             
             formattedList.add(obj);
         }
@@ -322,93 +405,82 @@ public class InterlineService {
     }
     
     /**
-     * 根据列车类型过滤中转路线信息
+     * 以紧凑表格格式输出中转路线信息
      *
      * @param interlineInfoList 中转路线信息列表
-     * @param trainTypes        列车类型，用逗号分隔
-     * @return 过滤后的中转路线信息列表
+     * @return 表头一次、制表符分隔的中转路线信息
      */
-    private List<InterlineInfo> filterInterlineInfoByTrainTypes(List<InterlineInfo> interlineInfoList, String trainTypes) {
-        if (!StringUtils.hasLength(trainTypes)) {
-            return interlineInfoList;
+    String formatInterlineInfoCompact(List<InterlineInfo> interlineInfoList) {
+        if (interlineInfoList == null || interlineInfoList.isEmpty()) {
+            return "没有找到符合条件的中转路线";
         }
         
-        log.debug("按照列车类型过滤中转路线: {}", trainTypes);
-        String[] types = trainTypes.split(",");
-        
-        return interlineInfoList.stream()
-                .filter(interline -> {
-                    boolean matchFirst = false;
-                    boolean matchSecond = false;
-                    
-                    for (String type : types) {
-                        if (matchTrainType(interline.getFirstTrain(), type.trim(), interline.getDwFlags())) {
-                            matchFirst = true;
-                        }
-                        
-                        if (matchTrainType(interline.getSecondTrain(), type.trim(), interline.getDwFlags())) {
-                            matchSecond = true;
-                        }
-                    }
-                    
-                    // 两程车都匹配返回true
-                    boolean match = matchFirst && matchSecond;
-                    if (match) {
-                        log.debug("中转路线 {} -> {} 匹配车型过滤条件", interline.getFirstTrain(), interline.getSecondTrain());
-                    }
-                    return match;
-                })
-                .collect(Collectors.toList());
+        CompactWriter writer = CompactWriter.begin()
+                .header("出发站", "中转站", "到达站", "一程", "二程", "出发", "到达", "总历时", "等待", "同站", "最低票价");
+        for (InterlineInfo info : interlineInfoList) {
+            Double fare = lowestFare(info);
+            writer.cell(info.getFromStation())
+                    .cell(info.getMiddleStation())
+                    .cell(info.getToStation())
+                    .cell(info.getFirstTrain())
+                    .cell(info.getSecondTrain())
+                    .cell(info.getStartTime())
+                    .cell(info.getArriveTime())
+                    .cell(info.getTotalTime())
+                    .cell(info.getWaitTime())
+                    .cell(info.getSameStation())
+                    .cell(fare != null ? fare.toString() : null)
+                    .endRow();
+        }
+        return writer.finish();
     }
     
     /**
-     * 判断车次是否匹配指定的列车类型
+     * 方案的最低票价：各程有余票席别中最便宜的票价之和
      *
-     * @param trainCode  车次代码
-     * @param trainType  列车类型
-     * @param dwFlags    服务标识列表
-     * @return 是否匹配
+     * @param info 中转路线信息
+     * @return 最低票价，任一程没有可用票价时返回null
      */
-    private boolean matchTrainType(String trainCode, String trainType, List<String> dwFlags) {
-        if (!StringUtils.hasLength(trainType)) {
-            return true;
+    private static Double lowestFare(InterlineInfo info) {
+        if (info.getTicketsInfo() == null || info.getTicketsInfo().isEmpty()) {
+            return null;
         }
-        
-        // 按列车编号前缀匹配
-        if ("G".equalsIgnoreCase(trainType) && (trainCode.startsWith("G") || trainCode.startsWith("C"))) {
-            log.trace("车次 {} 匹配高铁/城际类型", trainCode);
-            return true;
-        } else if ("D".equalsIgnoreCase(trainType) && trainCode.startsWith("D")) {
-            log.trace("车次 {} 匹配动车类型", trainCode);
-            return true;
-        } else if ("Z".equalsIgnoreCase(trainType) && trainCode.startsWith("Z")) {
-            log.trace("车次 {} 匹配直达特快类型", trainCode);
-            return true;
-        } else if ("T".equalsIgnoreCase(trainType) && trainCode.startsWith("T")) {
-            log.trace("车次 {} 匹配特快类型", trainCode);
-            return true;
-        } else if ("K".equalsIgnoreCase(trainType) && trainCode.startsWith("K")) {
-            log.trace("车次 {} a匹配快速类型", trainCode);
-            return true;
-        } else if ("O".equalsIgnoreCase(trainType) && 
-                !(trainCode.startsWith("G") || trainCode.startsWith("D") || 
-                  trainCode.startsWith("C") || trainCode.startsWith("Z") || 
-                  trainCode.startsWith("T") || trainCode.startsWith("K"))) {
-            log.trace("车次 {} 匹配其他类型", trainCode);
-            return true;
+        double total = 0;
+        for (TicketInfo ticket : info.getTicketsInfo()) {
+            Double lowest = null;
+            for (Price price : ticket.getPrices()) {
+                if (price.getPrice() != null && TicketParser.seatCount(price.getNum()) > 0
+                        && (lowest == null || price.getPrice() < lowest)) {
+                    lowest = price.getPrice();
+                }
+            }
+            if (lowest == null) {
+                return null;
+            }
+            total += lowest;
         }
-        
-        // 按服务标识匹配
-        if ("F".equalsIgnoreCase(trainType) && dwFlags != null && 
-                dwFlags.stream().anyMatch(flag -> flag.contains("复兴号"))) {
-            log.trace("车次 {} 匹配复兴号类型", trainCode);
-            return true;
-        } else if ("S".equalsIgnoreCase(trainType) && dwFlags != null && 
-                dwFlags.stream().anyMatch(flag -> flag.contains("智能动车组"))) {
-            log.trace("车次 {} 匹配智能动车组类型", trainCode);
-            return true;
+        return Math.round(total * 10) / 10.0;
+    }
+    
+    /**
+     * 根据列车类型过滤中转路线信息
+     *
+     * @param interlineInfoList 中转路线信息列表
+     * @param trainTypes        列车类型，用逗号分隔
+     * @return 过滤后的中转路线信息列表
+     */
+    private List<InterlineInfo> filterInterlineInfoByTrainTypes(List<InterlineInfo> interlineInfoList, String trainTypes) {
+        int filterMask = TrainTypeFilter.compile(trainTypes);
+        if (filterMask == 0) {
+            return interlineInfoList;
         }
         
-        return false;
+        log.debug("按照列车类型过滤中转路线: {}", trainTypes);
+        
+        // 两程车都匹配才保留
+        return interlineInfoList.stream()
+                .filter(interline -> TrainTypeFilter.matches(interline.getFirstTrainMask(), filterMask)
+                        && TrainTypeFilter.matches(interline.getSecondTrainMask(), filterMask))
+                .collect(Collectors.toList());
     }
-} 
\ No newline at end of file
+}
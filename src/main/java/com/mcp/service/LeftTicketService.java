@@ -0,0 +1,339 @@
+package com.mcp.service;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.serializer.SimplePropertyPreFilter;
+import com.mcp.constants.RailwayConstants;
+import com.mcp.jfr.TicketDecodeEvent;
+import com.mcp.model.LeftTicketResult;
+import com.mcp.model.TicketData;
+import com.mcp.model.TicketDelta;
+import com.mcp.model.TicketInfo;
+import com.mcp.utils.CacheSnapshot;
+import com.mcp.utils.HttpUtils;
+import com.mcp.utils.RequestCoalescer;
+import com.mcp.utils.SeatHistoryStore;
+import com.mcp.utils.TicketParser;
+import com.mcp.utils.ToolMetrics;
+import com.mcp.utils.TtlCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 余票查询服务类
+ * 直接请求12306 leftTicket接口，结果在各工具之间共享缓存，并合并相同查询的并发请求。
+ * 重新获取同一查询时按原始车次行的哈希比对上一次结果，只解析内容变化的行，并记录各车次的余票变化。
+ * 每次获取的结果写入余票历史
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LeftTicketService {
+    /**
+     * 余票结果缓存时间（毫秒）
+     */
+    private static final long TICKET_TTL_MILLIS = 60_000;
+
+    /**
+     * 写入快照时跳过可由车次数据重新生成的车票信息，以及只对相邻两次获取有意义的车次变化
+     */
+    private static final SimplePropertyPreFilter SNAPSHOT_FILTER = new SimplePropertyPreFilter();
+
+    static {
+        SNAPSHOT_FILTER.getExcludes().add("tickets");
+        SNAPSHOT_FILTER.getExcludes().add("deltas");
+    }
+
+    private final SeatHistoryStore seatHistoryStore;
+
+    /**
+     * 余票结果缓存，以"日期|出发站|到达站"为键
+     */
+    private final TtlCache<String, LeftTicketResult> ticketCache = new TtlCache<>(TICKET_TTL_MILLIS, 2000);
+
+    /**
+     * 合并相同查询的并发请求
+     */
+    private final RequestCoalescer<String, LeftTicketResult> coalescer = new RequestCoalescer<>();
+
+    /**
+     * 合并相同查询的后台刷新
+     * 与交互式查询分开合并：交互式查询不会等待以后台优先级排队的加载，也不会因后台加载失败而拿不到过期缓存
+     */
+    private final RequestCoalescer<String, LeftTicketResult> refreshCoalescer = new RequestCoalescer<>();
+
+    /**
+     * 参与停机快照的缓存：仍在有效期内的余票结果
+     * 快照中只保存原始车次数据，恢复时重新生成展示用的车票信息
+     *
+     * @return 快照分区
+     */
+    public CacheSnapshot.Section<LeftTicketResult> snapshotSection() {
+        return new CacheSnapshot.Section<>("leftTicket", ticketCache,
+                result -> JSON.toJSONString(result, SNAPSHOT_FILTER), LeftTicketService::restoreResult);
+    }
+
+    /**
+     * 查询两站之间的余票
+     *
+     * @param date        日期，格式为 yyyy-MM-dd
+     * @param fromStation 出发站代码
+     * @param toStation   到达站代码
+     * @return 查询结果，请求失败时返回null
+     */
+    public LeftTicketResult query(String date, String fromStation, String toStation) {
+        String key = cacheKey(date, fromStation, toStation);
+        LeftTicketResult cached = ticketCache.get(key);
+        if (cached != null) {
+            log.debug("命中余票缓存: {}", key);
+            return cached;
+        }
+
+        return coalescer.execute(key, () -> {
+            LeftTicketResult result = fetch(date, fromStation, toStation);
+            if (result != null) {
+                ticketCache.put(key, result);
+                return result;
+            }
+
+            // 上游失败或熔断时降级返回过期的缓存结果
+            LeftTicketResult stale = ticketCache.getStale(key);
+            if (stale != null) {
+                log.warn("余票查询失败，返回 {} 秒前的缓存结果: {}", (System.currentTimeMillis() - stale.getFetchedAt()) / 1000, key);
+                ToolMetrics.staleServed("leftTicket");
+            }
+            return stale;
+        });
+    }
+
+    /**
+     * 只查缓存，不访问上游
+     *
+     * @param date        日期
+     * @param fromStation 出发站代码
+     * @param toStation   到达站代码
+     * @return 未过期的缓存结果，没有时返回null
+     */
+    public LeftTicketResult peek(String date, String fromStation, String toStation) {
+        return ticketCache.get(cacheKey(date, fromStation, toStation));
+    }
+
+    /**
+     * 缓存结果距离过期的剩余时间
+     *
+     * @param date        日期
+     * @param fromStation 出发站代码
+     * @param toStation   到达站代码
+     * @return 剩余毫秒数，未缓存时返回0
+     */
+    public long expiresInMillis(String date, String fromStation, String toStation) {
+        return ticketCache.expiresInMillis(cacheKey(date, fromStation, toStation));
+    }
+
+    /**
+     * 不论缓存是否过期都重新从12306获取并写入缓存，用于后台预取和余票订阅轮询
+     * 只与同一查询的其他后台刷新合并
+     *
+     * @param date        日期
+     * @param fromStation 出发站代码
+     * @param toStation   到达站代码
+     * @return 是否获取成功
+     */
+    public boolean refresh(String date, String fromStation, String toStation) {
+        String key = cacheKey(date, fromStation, toStation);
+        LeftTicketResult result = refreshCoalescer.execute(key, () -> {
+            LeftTicketResult fetched = fetch(date, fromStation, toStation);
+            if (fetched != null) {
+                ticketCache.put(key, fetched);
+            }
+            return fetched;
+        });
+        return result != null;
+    }
+
+    /**
+     * 从12306获取余票数据
+     */
+    private LeftTicketResult fetch(String date, String fromStation, String toStation) {
+        String url = RailwayConstants.API_BASE + "/otn/leftTicket/query";
+
+        // 构建查询参数
+        Map<String, Object> params = new HashMap<>();
+        params.put("leftTicketDTO.train_date", date);
+        params.put("leftTicketDTO.from_station", fromStation);
+        params.put("leftTicketDTO.to_station", toStation);
+        params.put("purpose_codes", "ADULT");
+
+        // 构建请求头
+        Map<String, String> headers = new HashMap<>();
+        headers.put("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/86.0.4240.111 Safari/537.36");
+        Map<String, String> cookies = HttpUtils.getCachedCookie(RailwayConstants.WEB_URL);
+        if (!cookies.isEmpty()) {
+            headers.put("Cookie", HttpUtils.formatCookies(cookies));
+        }
+
+        log.info("发送余票查询请求: {} 从 {} 到 {}", date, fromStation, toStation);
+        String response = HttpUtils.get(url, params, headers);
+        if (response == null) {
+            log.warn("余票查询API返回为空: {} 从 {} 到 {}", date, fromStation, toStation);
+            return null;
+        }
+
+        try {
+            JSONObject jsonResponse = HttpUtils.parseJsonResponse(response, JSONObject.class, "leftTicket");
+            if (jsonResponse == null || jsonResponse.getIntValue("httpstatus") != 200) {
+                log.warn("余票查询API请求失败: {}", jsonResponse != null ? jsonResponse.getString("messages") : response);
+                return null;
+            }
+
+            JSONObject data = jsonResponse.getJSONObject("data");
+            LeftTicketResult result = parse(date, fromStation, toStation, data,
+                    ticketCache.getStale(cacheKey(date, fromStation, toStation)));
+            seatHistoryStore.record(result);
+            return result;
+        } catch (Exception e) {
+            log.error("解析余票查询响应异常: {}", e.getMessage(), e);
+            ToolMetrics.parseFailure("leftTicket");
+            return null;
+        }
+    }
+
+    /**
+     * 解析接口返回的data字段
+     * 与上一次结果中哈希相同的车次行直接复用已解析的车次数据和车票信息
+     *
+     * @param previous 同一查询上一次的结果（可能已过期），没有时为null
+     */
+    private LeftTicketResult parse(String date, String fromStation, String toStation, JSONObject data,
+                                   LeftTicketResult previous) {
+        TicketDecodeEvent event = new TicketDecodeEvent();
+        event.begin();
+        Map<String, String> stationNames = new HashMap<>();
+        JSONObject map = data != null ? data.getJSONObject("map") : null;
+        if (map != null) {
+            map.forEach((code, name) -> stationNames.put(code, String.valueOf(name)));
+        }
+
+        JSONArray resultArray = data != null ? data.getJSONArray("result") : null;
+        Map<Long, Integer> reusable = reusableRows(previous, stationNames);
+        List<TicketData> rows = new ArrayList<>();
+        List<TicketInfo> tickets = new ArrayList<>();
+        List<Long> hashes = new ArrayList<>();
+        int skipped = 0;
+        int reused = 0;
+        if (resultArray != null) {
+            for (int i = 0; i < resultArray.size(); i++) {
+                String raw = resultArray.getString(i);
+                long hash = TicketParser.rowHash(raw);
+                Integer index = reusable.get(hash);
+                if (index != null) {
+                    rows.add(previous.getRows().get(index));
+                    tickets.add(previous.getTickets().get(index));
+                    hashes.add(hash);
+                    reused++;
+                    continue;
+                }
+                TicketData row = TicketParser.parseRow(raw);
+                if (row == null) {
+                    skipped++;
+                    continue;
+                }
+                rows.add(row);
+                tickets.add(TicketParser.toTicketInfo(row, stationNames));
+                hashes.add(hash);
+            }
+        }
+        List<TicketDelta> deltas = previous != null && previous.getTickets() != null
+                ? diff(previous.getTickets(), tickets) : null;
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.source = "leftTicket";
+            event.query = cacheKey(date, fromStation, toStation);
+            event.rowCount = rows.size();
+            event.skippedRows = skipped;
+            event.reusedRows = reused;
+            event.commit();
+        }
+
+        log.debug("余票查询解析完成: {} 从 {} 到 {}，共 {} 个车次，复用 {} 个，变化 {} 个", date, fromStation, toStation,
+                rows.size(), reused, deltas != null ? deltas.size() : rows.size());
+        return new LeftTicketResult(date, fromStation, toStation,
+                Collections.unmodifiableList(rows), Collections.unmodifiableList(tickets),
+                stationNames, System.currentTimeMillis(), Collections.unmodifiableList(hashes),
+                deltas != null ? Collections.unmodifiableList(deltas) : null,
+                previous != null ? previous.getFetchedAt() : 0);
+    }
+
+    /**
+     * 上一次结果中可复用的车次行：哈希到下标的映射
+     * 车站名称映射变化时车票信息中的站名可能不同，此时不复用
+     */
+    private static Map<Long, Integer> reusableRows(LeftTicketResult previous, Map<String, String> stationNames) {
+        if (previous == null || previous.getRowHashes() == null || previous.getTickets() == null
+                || previous.getRowHashes().size() != previous.getRows().size()
+                || !stationNames.equals(previous.getStationNames())) {
+            return Map.of();
+        }
+        List<Long> hashes = previous.getRowHashes();
+        Map<Long, Integer> index = new HashMap<>(hashes.size() * 2);
+        for (int i = 0; i < hashes.size(); i++) {
+            index.putIfAbsent(hashes.get(i), i);
+        }
+        return index;
+    }
+
+    /**
+     * 比较两次结果的车次：新增、消失或席别余票变化
+     * 复用的车次行与上一次是同一对象，无需比较
+     */
+    private static List<TicketDelta> diff(List<TicketInfo> before, List<TicketInfo> after) {
+        Map<String, TicketInfo> previousByTrain = new LinkedHashMap<>();
+        for (TicketInfo ticket : before) {
+            previousByTrain.put(ticket.getStartTrainCode(), ticket);
+        }
+        List<TicketDelta> deltas = new ArrayList<>();
+        for (TicketInfo ticket : after) {
+            TicketInfo previous = previousByTrain.remove(ticket.getStartTrainCode());
+            if (previous == null) {
+                deltas.add(new TicketDelta(ticket.getStartTrainCode(), null, ticket));
+            } else if (previous != ticket && !TicketParser.sameSeats(previous, ticket)) {
+                deltas.add(new TicketDelta(ticket.getStartTrainCode(), previous, ticket));
+            }
+        }
+        previousByTrain.forEach((trainCode, ticket) -> deltas.add(new TicketDelta(trainCode, ticket, null)));
+        return deltas;
+    }
+
+    /**
+     * 从快照恢复余票结果，重新生成车票信息（车型掩码不参与序列化）
+     */
+    private static LeftTicketResult restoreResult(String raw) {
+        LeftTicketResult result = JSON.parseObject(raw, LeftTicketResult.class);
+        if (result == null || result.getRows() == null) {
+            return null;
+        }
+        Map<String, String> stationNames = result.getStationNames() != null ? result.getStationNames() : new HashMap<>();
+        List<TicketInfo> tickets = new ArrayList<>(result.getRows().size());
+        for (TicketData row : result.getRows()) {
+            tickets.add(TicketParser.toTicketInfo(row, stationNames));
+        }
+        result.setRows(Collections.unmodifiableList(result.getRows()));
+        result.setTickets(Collections.unmodifiableList(tickets));
+        result.setStationNames(stationNames);
+        return result;
+    }
+
+    private static String cacheKey(String date, String fromStation, String toStation) {
+        return date + "|" + fromStation + "|" + toStation;
+    }
+}
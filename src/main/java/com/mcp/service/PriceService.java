@@ -0,0 +1,247 @@
+package com.mcp.service;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.TypeReference;
+import com.mcp.constants.RailwayConstants;
+import com.mcp.model.Price;
+import com.mcp.model.TicketInfo;
+import com.mcp.utils.Deadline;
+import com.mcp.utils.HttpUtils;
+import com.mcp.utils.PersistentStore;
+import com.mcp.utils.RequestCoalescer;
+import com.mcp.utils.TieredCache;
+import com.mcp.utils.TtlCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 票价服务类
+ * 通过12306票价接口查询车次区间各席别的票价，按"列车编号|出发站序号|到达站序号|座位类型"持久化缓存。
+ * 同一列车编号、区间和席别的票价很少变化，缓存时间较长，重复查询基本不再请求12306
+ */
+@Slf4j
+@Service
+public class PriceService {
+    /**
+     * 票价缓存时间（毫秒）
+     */
+    private static final long PRICE_TTL_MILLIS = 7 * 24 * 60 * 60_000L;
+
+    /**
+     * 单次补全最多并行查询的票价数，其余车次本次不显示票价，由调用方提示
+     */
+    static final int MAX_FETCH_PER_CALL = 30;
+
+    private final ExecutorService upstreamExecutor;
+
+    /**
+     * 票价缓存，值为座位类型代码到票价（元）的映射，持久化保存
+     */
+    private final TieredCache<Map<String, Double>> priceCache;
+
+    /**
+     * 合并相同区间票价的并发请求
+     */
+    private final RequestCoalescer<String, Map<String, Double>> priceCoalescer = new RequestCoalescer<>();
+
+    public PriceService(PersistentStore persistentStore, ExecutorService upstreamExecutor) {
+        this.upstreamExecutor = upstreamExecutor;
+        this.priceCache = new TieredCache<>("price", new TtlCache<>(PRICE_TTL_MILLIS, 5000),
+                persistentStore, JSON::toJSONString, raw -> JSON.parseObject(raw, new TypeReference<Map<String, Double>>() {}));
+    }
+
+    /**
+     * 补全票价的结果
+     *
+     * @param tickets  与传入顺序相同的车票，补全了票价的是副本
+     * @param unpriced 超出单次查询上限、查询失败或超出截止时间而没有票价的车次数
+     */
+    public record Priced(List<TicketInfo> tickets, int unpriced) {
+    }
+
+    /**
+     * 为车票补全票价
+     * 先读缓存，未缓存的区间并行查询，超出截止时间或查询失败的车次没有票价。
+     * 传入的车票可能是余票缓存中共享的对象，不做修改，补全票价的车次返回副本
+     *
+     * @param date    乘车日期，格式为yyyy-MM-dd
+     * @param tickets 车票信息
+     * @return 补全票价后的车票
+     */
+    public Priced fillPrices(String date, List<TicketInfo> tickets) {
+        if (tickets == null || tickets.isEmpty()) {
+            return new Priced(tickets, 0);
+        }
+        Map<String, Map<String, Double>> fares = new HashMap<>();
+        Map<String, CompletableFuture<Map<String, Double>>> futures = new LinkedHashMap<>();
+        for (TicketInfo ticket : tickets) {
+            String key = priceKey(ticket);
+            if (key == null || fares.containsKey(key) || futures.containsKey(key)) {
+                continue;
+            }
+            Map<String, Double> cached = priceCache.get(key);
+            if (cached != null) {
+                fares.put(key, cached);
+            } else if (futures.size() < MAX_FETCH_PER_CALL) {
+                futures.put(key, CompletableFuture.supplyAsync(Deadline.propagate(
+                        () -> fares(date, ticket, key)), upstreamExecutor));
+            }
+        }
+        int hits = fares.size();
+        futures.forEach((key, future) -> {
+            Map<String, Double> fetched = Deadline.await(future);
+            if (fetched != null) {
+                fares.put(key, fetched);
+            }
+        });
+
+        List<TicketInfo> priced = new ArrayList<>(tickets.size());
+        int unpriced = 0;
+        for (TicketInfo ticket : tickets) {
+            Map<String, Double> fare = fares.get(priceKey(ticket));
+            if (fare == null || ticket.getPrices() == null) {
+                priced.add(ticket);
+                unpriced++;
+            } else {
+                priced.add(withFares(ticket, fare));
+            }
+        }
+        log.debug("补全票价: {} 个车次，缓存命中 {} 个区间，查询 {} 个区间，{} 个车次没有票价", tickets.size(),
+                hits, futures.size(), unpriced);
+        return new Priced(priced, unpriced);
+    }
+
+    /**
+     * 复制车票并写入票价，不修改原对象
+     */
+    private static TicketInfo withFares(TicketInfo ticket, Map<String, Double> fare) {
+        List<Price> prices = new ArrayList<>(ticket.getPrices().size());
+        for (Price price : ticket.getPrices()) {
+            Double value = fare.get(price.getSeatTypeCode());
+            prices.add(new Price(price.getSeatName(), price.getShortName(), price.getSeatTypeCode(), price.getNum(),
+                    value != null ? value : price.getPrice(), price.getDiscount()));
+        }
+        TicketInfo copy = new TicketInfo();
+        copy.setTrainNo(ticket.getTrainNo());
+        copy.setStartTrainCode(ticket.getStartTrainCode());
+        copy.setStartTime(ticket.getStartTime());
+        copy.setArriveTime(ticket.getArriveTime());
+        copy.setLishi(ticket.getLishi());
+        copy.setFromStation(ticket.getFromStation());
+        copy.setToStation(ticket.getToStation());
+        copy.setFromStationTelecode(ticket.getFromStationTelecode());
+        copy.setToStationTelecode(ticket.getToStationTelecode());
+        copy.setFromStationNo(ticket.getFromStationNo());
+        copy.setToStationNo(ticket.getToStationNo());
+        copy.setSeatTypes(ticket.getSeatTypes());
+        copy.setPrices(prices);
+        copy.setDwFlag(ticket.getDwFlag());
+        copy.setTrainMask(ticket.getTrainMask());
+        return copy;
+    }
+
+    /**
+     * 票价缓存键，缺少区间信息时返回null
+     */
+    private static String priceKey(TicketInfo ticket) {
+        if (!StringUtils.hasLength(ticket.getTrainNo()) || !StringUtils.hasLength(ticket.getFromStationNo())
+                || !StringUtils.hasLength(ticket.getToStationNo()) || !StringUtils.hasLength(ticket.getSeatTypes())) {
+            return null;
+        }
+        return ticket.getTrainNo() + "|" + ticket.getFromStationNo() + "|" + ticket.getToStationNo()
+                + "|" + ticket.getSeatTypes();
+    }
+
+    /**
+     * 查询一个区间的票价，相同区间的并发请求只访问一次12306
+     */
+    private Map<String, Double> fares(String date, TicketInfo ticket, String key) {
+        return priceCoalescer.execute(key, () -> {
+            Map<String, Double> fetched = fetchFares(date, ticket);
+            if (fetched != null && !fetched.isEmpty()) {
+                priceCache.put(key, fetched);
+            }
+            return fetched;
+        });
+    }
+
+    /**
+     * 从12306获取区间票价
+     *
+     * @return 座位类型代码到票价的映射，请求失败时返回null
+     */
+    private Map<String, Double> fetchFares(String date, TicketInfo ticket) {
+        try {
+            String url = RailwayConstants.API_BASE + "/otn/leftTicket/queryTicketPrice";
+
+            Map<String, Object> params = new HashMap<>();
+            params.put("train_no", ticket.getTrainNo());
+            params.put("from_station_no", ticket.getFromStationNo());
+            params.put("to_station_no", ticket.getToStationNo());
+            params.put("seat_types", ticket.getSeatTypes());
+            params.put("train_date", date);
+
+            Map<String, String> headers = new HashMap<>();
+            headers.put("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/86.0.4240.111 Safari/537.36");
+            Map<String, String> cookies = HttpUtils.getCachedCookie(RailwayConstants.WEB_URL);
+            if (!cookies.isEmpty()) {
+                headers.put("Cookie", HttpUtils.formatCookies(cookies));
+            }
+
+            log.debug("查询票价: 列车编号={}, 区间={}-{}, 座位类型={}", ticket.getTrainNo(),
+                    ticket.getFromStationNo(), ticket.getToStationNo(), ticket.getSeatTypes());
+            String response = HttpUtils.get(url, params, headers);
+            if (response == null) {
+                return null;
+            }
+            JSONObject jsonResponse = HttpUtils.parseJsonResponse(response, JSONObject.class, "queryTicketPrice");
+            if (jsonResponse == null) {
+                return null;
+            }
+            if (jsonResponse.getIntValue("httpstatus") != 200) {
+                log.warn("票价查询失败: {}", jsonResponse.getString("messages"));
+                return null;
+            }
+            JSONObject data = jsonResponse.getJSONObject("data");
+            return data != null ? parseFares(data) : Map.of();
+        } catch (Exception e) {
+            log.error("查询票价异常: {}", e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * 解析票价接口的data字段
+     * 数字座位类型代码带"A"前缀（如A9、A1），字母代码原样（如M、O），无座为WZ，票价形如"¥553.0"
+     *
+     * @param data 票价数据
+     * @return 座位类型代码到票价的映射
+     */
+    static Map<String, Double> parseFares(JSONObject data) {
+        Map<String, Double> fares = new HashMap<>();
+        for (Map.Entry<String, Object> entry : data.entrySet()) {
+            if (!(entry.getValue() instanceof String value) || !value.startsWith("¥")) {
+                continue;
+            }
+            String key = entry.getKey();
+            String seatTypeCode = "WZ".equals(key) ? "W"
+                    : key.length() == 2 && key.charAt(0) == 'A' ? key.substring(1) : key;
+            try {
+                fares.put(seatTypeCode, Double.parseDouble(value.substring(1)));
+            } catch (NumberFormatException e) {
+                log.debug("无法解析的票价: {}={}", key, value);
+            }
+        }
+        return fares;
+    }
+}
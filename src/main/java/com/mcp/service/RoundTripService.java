@@ -0,0 +1,281 @@
+package com.mcp.service;
+
+import com.mcp.model.LeftTicketResult;
+import com.mcp.model.TicketInfo;
+import com.mcp.utils.DateUtils;
+import com.mcp.utils.Deadline;
+import com.mcp.utils.TicketParser;
+import com.mcp.utils.ToolMetrics;
+import com.mcp.utils.TrainTypeFilter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 往返行程服务类
+ * 并行查询去程和返程日期窗口内的所有车次，按最短停留时间配对并排序
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RoundTripService {
+    /**
+     * 工具名称，用于指标标签
+     */
+    private static final String TOOL_NAME = "planRoundTrip";
+
+    /**
+     * 单个日期窗口允许的最大天数
+     */
+    private static final int MAX_WINDOW_DAYS = 7;
+
+    /**
+     * 默认返回的方案数
+     */
+    private static final int DEFAULT_LIMIT = 10;
+
+    /**
+     * 最多返回的方案数
+     */
+    private static final int MAX_LIMIT = 30;
+
+    private final LeftTicketService leftTicketService;
+
+    private final ExecutorService upstreamExecutor;
+
+    /**
+     * 规划往返行程
+     *
+     * @param fromStation        出发站代码
+     * @param toStation          目的站代码
+     * @param outboundStartDate  去程最早日期
+     * @param outboundEndDate    去程最晚日期
+     * @param returnStartDate    返程最早日期
+     * @param returnEndDate      返程最晚日期
+     * @param minStayHours       目的地最少停留小时数
+     * @param trainTypes         列车类型过滤，如G,D,K等
+     * @param limit              返回方案数
+     * @return 排序后的往返方案列表
+     */
+    @Tool(description = "规划往返行程：并行查询去程和返程日期范围内的直达车次，按目的地最少停留时间配对，返回总历时最短的往返方案")
+    public String planRoundTrip(
+            @ToolParam(description = "出发站代码") String fromStation,
+            @ToolParam(description = "目的站代码") String toStation,
+            @ToolParam(description = "去程最早日期，格式为yyyy-MM-dd") String outboundStartDate,
+            @ToolParam(description = "去程最晚日期，格式为yyyy-MM-dd，可为空表示只查最早日期", required = false) String outboundEndDate,
+            @ToolParam(description = "返程最早日期，格式为yyyy-MM-dd") String returnStartDate,
+            @ToolParam(description = "返程最晚日期，格式为yyyy-MM-dd，可为空表示只查最早日期", required = false) String returnEndDate,
+            @ToolParam(description = "目的地最少停留小时数，可为空，默认0", required = false) Integer minStayHours,
+            @ToolParam(description = "列车类型过滤，如G,D,K等，多种类型用逗号分隔，可为空", required = false) String trainTypes,
+            @ToolParam(description = "返回方案数，可为空，默认10", required = false) Integer limit) {
+
+        log.debug("开始规划往返行程: {} <-> {}, 去程 {}~{}, 返程 {}~{}, 最少停留 {} 小时",
+                fromStation, toStation, outboundStartDate, outboundEndDate, returnStartDate, returnEndDate, minStayHours);
+
+        // 参数验证
+        if (!StringUtils.hasLength(fromStation) || !StringUtils.hasLength(toStation)) {
+            log.warn("站点代码无效: 出发站={}, 目的站={}", fromStation, toStation);
+            return "请提供有效的出发站和目的站代码";
+        }
+
+        List<String> outboundDates = expandWindow(outboundStartDate, outboundEndDate);
+        List<String> returnDates = expandWindow(returnStartDate, returnEndDate);
+        if (outboundDates == null || returnDates == null) {
+            log.warn("无效的日期窗口: 去程 {}~{}, 返程 {}~{}", outboundStartDate, outboundEndDate, returnStartDate, returnEndDate);
+            return "请提供有效的去程和返程日期（今天或未来日期，每个窗口不超过" + MAX_WINDOW_DAYS + "天）";
+        }
+
+        int minStayMinutes = minStayHours != null && minStayHours > 0 ? minStayHours * 60 : 0;
+        int resultLimit = limit != null && limit > 0 ? Math.min(limit, MAX_LIMIT) : DEFAULT_LIMIT;
+        int filterMask = TrainTypeFilter.compile(trainTypes);
+
+        try {
+            // 并行发出所有去程和返程查询
+            Map<String, CompletableFuture<LeftTicketResult>> outboundFutures = submitAll(outboundDates, fromStation, toStation);
+            Map<String, CompletableFuture<LeftTicketResult>> returnFutures = submitAll(returnDates, toStation, fromStation);
+
+            List<Leg> outboundLegs = ToolMetrics.phase(TOOL_NAME, ToolMetrics.PHASE_FETCH,
+                    () -> collectLegs(outboundFutures, filterMask));
+            List<Leg> returnLegs = ToolMetrics.phase(TOOL_NAME, ToolMetrics.PHASE_FETCH,
+                    () -> collectLegs(returnFutures, filterMask));
+            log.info("往返查询完成: 去程 {} 个有票车次, 返程 {} 个有票车次", outboundLegs.size(), returnLegs.size());
+
+            if (outboundLegs.isEmpty()) {
+                ToolMetrics.emptyResult(TOOL_NAME);
+                return "去程日期范围内没有找到有余票的直达车次" + Deadline.partialNote();
+            }
+            if (returnLegs.isEmpty()) {
+                ToolMetrics.emptyResult(TOOL_NAME);
+                return "返程日期范围内没有找到有余票的直达车次" + Deadline.partialNote();
+            }
+
+            List<Pair> pairs = ToolMetrics.phase(TOOL_NAME, ToolMetrics.PHASE_FILTER,
+                    () -> pairLegs(outboundLegs, returnLegs, minStayMinutes, resultLimit));
+            if (pairs.isEmpty()) {
+                ToolMetrics.emptyResult(TOOL_NAME);
+                return "没有满足最少停留 " + (minStayMinutes / 60) + " 小时的往返组合";
+            }
+
+            String result = ToolMetrics.format(TOOL_NAME, pairs.size(), () -> formatPairs(pairs)) + Deadline.partialNote();
+            log.info("往返规划完成，返回 {} 个方案", pairs.size());
+            return result;
+
+        } catch (Exception e) {
+            log.error("规划往返行程异常: {}", e.getMessage(), e);
+            return "规划往返行程出错：" + e.getMessage();
+        }
+    }
+
+    /**
+     * 展开日期窗口，任一日期无效时返回null
+     */
+    private List<String> expandWindow(String startDate, String endDate) {
+        if (!DateUtils.isValidFutureDate(startDate)) {
+            return null;
+        }
+        LocalDate start = LocalDate.parse(startDate);
+        LocalDate end = start;
+        if (StringUtils.hasLength(endDate)) {
+            if (!DateUtils.isValidDate(endDate)) {
+                return null;
+            }
+            end = LocalDate.parse(endDate);
+        }
+        long days = ChronoUnit.DAYS.between(start, end) + 1;
+        if (days < 1 || days > MAX_WINDOW_DAYS) {
+            return null;
+        }
+
+        List<String> dates = new ArrayList<>();
+        for (LocalDate date = start; !date.isAfter(end); date = date.plusDays(1)) {
+            dates.add(date.toString());
+        }
+        return dates;
+    }
+
+    private Map<String, CompletableFuture<LeftTicketResult>> submitAll(List<String> dates, String from, String to) {
+        Map<String, CompletableFuture<LeftTicketResult>> futures = new LinkedHashMap<>();
+        for (String date : dates) {
+            futures.put(date, CompletableFuture.supplyAsync(
+                    Deadline.propagate(() -> leftTicketService.query(date, from, to)), upstreamExecutor));
+        }
+        return futures;
+    }
+
+    /**
+     * 汇总查询结果中符合车型且有余票的车次，并计算绝对出发和到达时间
+     * 截止时间到达时取消未完成的日期查询，只汇总已完成的日期
+     */
+    private List<Leg> collectLegs(Map<String, CompletableFuture<LeftTicketResult>> futures, int filterMask) {
+        List<Leg> legs = new ArrayList<>();
+        futures.forEach((date, future) -> {
+            LeftTicketResult result = Deadline.await(future);
+            if (result == null) {
+                log.warn("日期 {} 的余票查询失败，跳过", date);
+                return;
+            }
+            long dayBase = LocalDate.parse(date).toEpochDay() * 24 * 60;
+            for (TicketInfo ticket : result.getTickets()) {
+                int start = DateUtils.toMinutes(ticket.getStartTime());
+                int duration = DateUtils.toMinutes(ticket.getLishi());
+                if (!TrainTypeFilter.matches(ticket.getTrainMask(), filterMask)
+                        || start < 0 || duration < 0 || !TicketParser.hasAvailableSeat(ticket)) {
+                    continue;
+                }
+                legs.add(new Leg(date, ticket, dayBase + start, dayBase + start + duration, duration));
+            }
+        });
+        return legs;
+    }
+
+    /**
+     * 配对去程和返程，按总历时升序保留前limit个方案
+     */
+    private List<Pair> pairLegs(List<Leg> outboundLegs, List<Leg> returnLegs, int minStayMinutes, int limit) {
+        Comparator<Pair> ranking = Comparator.comparingInt(Pair::totalMinutes)
+                .thenComparingLong(pair -> pair.outbound().departAt());
+        // 大顶堆，堆顶为当前保留方案中最差的一个
+        PriorityQueue<Pair> top = new PriorityQueue<>(ranking.reversed());
+
+        for (Leg outbound : outboundLegs) {
+            for (Leg back : returnLegs) {
+                if (back.departAt() - outbound.arriveAt() < minStayMinutes) {
+                    continue;
+                }
+                Pair pair = new Pair(outbound, back, outbound.duration() + back.duration(),
+                        back.departAt() - outbound.arriveAt());
+                if (top.size() < limit) {
+                    top.add(pair);
+                } else if (ranking.compare(pair, top.peek()) < 0) {
+                    top.poll();
+                    top.add(pair);
+                }
+            }
+        }
+
+        List<Pair> pairs = new ArrayList<>(top);
+        pairs.sort(ranking);
+        return pairs;
+    }
+
+    /**
+     * 格式化往返方案，每个方案一行
+     */
+    private String formatPairs(List<Pair> pairs) {
+        StringBuilder result = new StringBuilder();
+        result.append("往返方案（按总历时排序）：\n");
+        for (int i = 0; i < pairs.size(); i++) {
+            Pair pair = pairs.get(i);
+            result.append(i + 1).append(". 去 ");
+            appendLeg(result, pair.outbound());
+            result.append(" | 返 ");
+            appendLeg(result, pair.back());
+            long stay = pair.stayMinutes();
+            result.append(" | 停留").append(stay / (24 * 60)).append("天").append(stay % (24 * 60) / 60).append("小时")
+                    .append(" | 总历时").append(pair.totalMinutes() / 60).append("小时").append(pair.totalMinutes() % 60).append("分")
+                    .append('\n');
+        }
+        return result.toString();
+    }
+
+    private void appendLeg(StringBuilder result, Leg leg) {
+        TicketInfo ticket = leg.ticket();
+        result.append(leg.date(), 5, 10).append(' ')
+                .append(ticket.getStartTrainCode()).append(' ')
+                .append(ticket.getFromStation()).append(ticket.getStartTime())
+                .append("->")
+                .append(ticket.getToStation()).append(ticket.getArriveTime());
+    }
+
+    /**
+     * 单程车次
+     *
+     * @param date     乘车日期
+     * @param ticket   车票信息
+     * @param departAt 出发时间（自纪元起的分钟数）
+     * @param arriveAt 到达时间（自纪元起的分钟数）
+     * @param duration 历时（分钟）
+     */
+    private record Leg(String date, TicketInfo ticket, long departAt, long arriveAt, int duration) {
+    }
+
+    /**
+     * 往返组合
+     */
+    private record Pair(Leg outbound, Leg back, int totalMinutes, long stayMinutes) {
+    }
+}
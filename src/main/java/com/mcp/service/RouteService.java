@@ -4,10 +4,22 @@ import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.mcp.constants.RailwayConstants;
+import com.mcp.model.LeftTicketResult;
 import com.mcp.model.RouteStationData;
 import com.mcp.model.RouteStationInfo;
+import com.mcp.model.TicketData;
+import com.mcp.utils.CacheSnapshot;
+import com.mcp.utils.CompactWriter;
 import com.mcp.utils.DateUtils;
+import com.mcp.utils.Deadline;
 import com.mcp.utils.HttpUtils;
+import com.mcp.utils.NegativeCache;
+import com.mcp.utils.PersistentStore;
+import com.mcp.utils.RequestCoalescer;
+import com.mcp.utils.StationTrainIndex;
+import com.mcp.utils.TieredCache;
+import com.mcp.utils.ToolMetrics;
+import com.mcp.utils.TtlCache;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
@@ -15,9 +27,16 @@ import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
 
 /**
  * 路线服务类
@@ -26,6 +45,92 @@ import java.util.Map;
 @Slf4j
 @Service
 public class RouteService {
+    /**
+     * 工具名称，用于指标标签
+     */
+    private static final String TOOL_NAME = "getTrainRoute";
+    
+    /**
+     * 批量查询的工具名称，用于指标标签
+     */
+    private static final String BATCH_TOOL_NAME = "getTrainRoutes";
+    
+    /**
+     * 批量查询最多的车次数，限制并行查询数量
+     */
+    private static final int MAX_BATCH_TRAINS = 20;
+    
+    /**
+     * 车站车次倒排索引最多索引的车次数
+     */
+    private static final int MAX_INDEXED_TRAINS = 20000;
+    
+    /**
+     * 列车编号缓存时间（毫秒）
+     */
+    private static final long TRAIN_NO_TTL_MILLIS = 6 * 60 * 60_000;
+    
+    /**
+     * 时刻表缓存时间（毫秒）
+     */
+    private static final long TIMETABLE_TTL_MILLIS = 60 * 60_000;
+    
+    /**
+     * 否定结果的保留时间（毫秒）
+     */
+    private static final long NEGATIVE_TTL_MILLIS = 2 * 60_000;
+    
+    private final LeftTicketService leftTicketService;
+    
+    private final StationService stationService;
+    
+    private final ExecutorService upstreamExecutor;
+    
+    /**
+     * 列车编号缓存，以"日期|车次"为键，持久化保存
+     */
+    private final TieredCache<String> trainNoCache;
+    
+    /**
+     * 时刻表缓存，以"列车编号|日期"为键，持久化保存
+     */
+    private final TieredCache<List<RouteStationData>> timetableCache;
+    
+    /**
+     * 合并相同时刻表的并发请求
+     */
+    private final RequestCoalescer<String, List<RouteStationData>> timetableCoalescer = new RequestCoalescer<>();
+    
+    /**
+     * 余票结果中找不到的车次（"日期|车次|出发站|到达站"）和没有经停站的列车（"列车编号|日期"），容量独立于正常缓存
+     */
+    private final NegativeCache negativeResults = new NegativeCache("route", NEGATIVE_TTL_MILLIS, 1000);
+    
+    /**
+     * 车站到车次的倒排索引，由经过本服务的每份时刻表建立
+     */
+    private final StationTrainIndex stationTrainIndex = new StationTrainIndex(MAX_INDEXED_TRAINS);
+    
+    public RouteService(LeftTicketService leftTicketService, StationService stationService,
+                        PersistentStore persistentStore, ExecutorService upstreamExecutor) {
+        this.leftTicketService = leftTicketService;
+        this.stationService = stationService;
+        this.upstreamExecutor = upstreamExecutor;
+        this.trainNoCache = new TieredCache<>("trainNo", new TtlCache<>(TRAIN_NO_TTL_MILLIS, 5000),
+                persistentStore, Function.identity(), Function.identity());
+        this.timetableCache = new TieredCache<>("timetable", new TtlCache<>(TIMETABLE_TTL_MILLIS, 2000),
+                persistentStore, JSON::toJSONString, raw -> JSON.parseArray(raw, RouteStationData.class));
+        ToolMetrics.stationIndex(stationTrainIndex::trainCount, stationTrainIndex::stationCount);
+    }
+    
+    /**
+     * 参与停机快照的缓存：列车编号和时刻表
+     *
+     * @return 快照分区
+     */
+    public List<CacheSnapshot.Section<?>> snapshotSections() {
+        return List.of(trainNoCache.snapshotSection(), timetableCache.snapshotSection());
+    }
     
     /**
      * 查询列车路线信息
@@ -34,6 +139,7 @@ public class RouteService {
      * @param trainCode   车次代码，如G1、D1等
      * @param fromStation 出发站代码
      * @param toStation   到达站代码
+     * @param outputFormat 输出模式，json或compact
      * @return 列车路线信息的JSON字符串
      */
     @Tool(description = "查询列车的完整路线信息，包括所有停靠站")
@@ -41,7 +147,8 @@ public class RouteService {
             @ToolParam(description = "查询日期，格式为yyyy-MM-dd") String date,
             @ToolParam(description = "列车编号，如G1, K1080等") String trainCode,
             @ToolParam(description = "出发站代码") String fromStation,
-            @ToolParam(description = "到达站代码") String toStation) {
+            @ToolParam(description = "到达站代码") String toStation,
+            @ToolParam(description = "输出模式：json（默认）或compact（表头一次、制表符分隔，节省上下文）", required = false) String outputFormat) {
         
         log.debug("开始查询列车路线: 日期={}, 车次={}, 出发站={}, 到达站={}", date, trainCode, fromStation, toStation);
         
@@ -65,81 +172,44 @@ public class RouteService {
             log.info("查询列车 {} 的路线信息: {} 从 {} 到 {}", trainCode, date, fromStation, toStation);
             
             // 首先获取列车编号
-            String trainNo = getTrainNo(date, trainCode, fromStation, toStation);
+            String trainNo = resolveTrainNo(date, trainCode, fromStation, toStation);
             if (trainNo == null) {
+                if (Deadline.expired()) {
+                    return "查询列车 " + trainCode + " 超时，请稍后重试";
+                }
                 log.warn("未找到列车编号: {}", trainCode);
                 return "未找到列车 " + trainCode + " 的信息";
             }
             
             log.debug("获取到列车内部编号: {}", trainNo);
             
-            // 查询12306 API获取列车路线信息
-            String url = RailwayConstants.API_BASE + "/otn/czxx/queryByTrainNo";
-            
-            // 构建查询参数
-            Map<String, Object> params = new HashMap<>();
-            params.put("train_no", trainNo);
-            params.put("from_station_telecode", fromStation);
-            params.put("to_station_telecode", toStation);
-            params.put("depart_date", date);
-            
-            log.debug("构建路线查询参数: {}", params);
-            
-            // 构建请求头
-            Map<String, String> headers = new HashMap<>();
-            headers.put("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/86.0.4240.111 Safari/537.36");
-            
-            // 获取Cookie
-            Map<String, String> cookies = HttpUtils.getCookie(RailwayConstants.WEB_URL);
-            if (!cookies.isEmpty()) {
-                String cookieString = HttpUtils.formatCookies(cookies);
-                headers.put("Cookie", cookieString);
-                log.debug("使用Cookie: {}", cookieString);
-            } else {
-                log.debug("未获取到Cookie");
-            }
-            
-            // 发送请求
-            log.info("发送路线查询API请求: {}", url);
-            String response = HttpUtils.get(url, params, headers);
-            if (response == null) {
-                log.error("API返回为空");
-                return "查询列车路线失败，请稍后重试";
+            // 查询列车经停站
+            List<RouteStationData> routeStations = ToolMetrics.phase(TOOL_NAME, ToolMetrics.PHASE_FETCH,
+                    () -> getRouteStations(date, trainNo, fromStation, toStation));
+            if (routeStations == null) {
+                return Deadline.expired() ? "查询列车路线超时，请稍后重试" : "查询列车路线失败，请稍后重试";
             }
-            
-            // 解析响应数据
-            log.debug("解析路线API响应");
-            JSONObject jsonResponse = JSON.parseObject(response);
-            if (jsonResponse.getIntValue("httpstatus") != 200) {
-                String errorMsg = jsonResponse.getString("messages");
-                log.error("API请求失败: {}", errorMsg);
-                return "请求失败：" + errorMsg;
-            }
-            
-            JSONObject data = jsonResponse.getJSONObject("data");
-            if (data == null || !data.containsKey("data")) {
-                log.warn("API响应中无路线数据");
-                return "没有找到列车 " + trainCode + " 的路线信息";
-            }
-            
-            JSONArray stationsArray = data.getJSONArray("data");
-            if (stationsArray == null || stationsArray.isEmpty()) {
+            if (routeStations.isEmpty()) {
                 log.info("列车 {} 的路线数据为空", trainCode);
+                ToolMetrics.emptyResult(TOOL_NAME);
                 return "没有找到列车 " + trainCode + " 的路线信息";
             }
             
-            log.info("获取到列车 {} 的 {} 个站点信息", trainCode, stationsArray.size());
+            log.info("获取到列车 {} 的 {} 个站点信息", trainCode, routeStations.size());
             
-            // 解析路线数据
-            List<RouteStationData> routeStations = parseRouteStationsData(stationsArray);
-            log.debug("解析路线数据完成，共 {} 个站点", routeStations.size());
+            if (CompactWriter.isCompact(outputFormat)) {
+                return ToolMetrics.format(TOOL_NAME, routeStations.size(),
+                        () -> formatRouteStationsCompact(routeStations));
+            }
             
             // 格式化路线信息
-            List<RouteStationInfo> routeStationInfos = parseRouteStationsInfo(routeStations);
+            List<RouteStationInfo> routeStationInfos = ToolMetrics.phase(TOOL_NAME, ToolMetrics.PHASE_PARSE,
+                    () -> parseRouteStationsInfo(routeStations));
             log.debug("格式化路线信息完成，共 {} 个站点信息", routeStationInfos.size());
             
             // 返回结果
-            String result = formatRouteStationsInfo(routeStationInfos);
+            String result = ToolMetrics.format(TOOL_NAME, routeStationInfos.size(),
+                    () -> formatRouteStationsInfo(routeStationInfos));
             log.info("查询完成，返回列车 {} 的 {} 个站点信息", trainCode, routeStationInfos.size());
             return result;
             
@@ -149,86 +219,328 @@ public class RouteService {
         }
     }
     
+    /**
+     * 批量查询多个车次的路线信息
+     *
+     * @param date         日期，格式为 yyyy-MM-dd
+     * @param trainCodes   车次代码，逗号分隔
+     * @param fromStation  出发站代码
+     * @param toStation    到达站代码
+     * @param outputFormat 输出模式，json或compact
+     * @return 各车次路线信息
+     */
+    @Tool(description = "批量查询同一日期、同一出发站和到达站之间多个车次的完整路线信息，只查询一次余票获取列车编号，各车次经停站并行查询，适合比较候选车次")
+    public String getTrainRoutes(
+            @ToolParam(description = "查询日期，格式为yyyy-MM-dd") String date,
+            @ToolParam(description = "列车编号，如G1,G3,D5，逗号分隔，最多" + MAX_BATCH_TRAINS + "个") String trainCodes,
+            @ToolParam(description = "出发站代码") String fromStation,
+            @ToolParam(description = "到达站代码") String toStation,
+            @ToolParam(description = "输出模式：json（默认）或compact（表头一次、制表符分隔，节省上下文）", required = false) String outputFormat) {
+        
+        log.debug("开始批量查询列车路线: 日期={}, 车次={}, 出发站={}, 到达站={}", date, trainCodes, fromStation, toStation);
+        
+        // 参数验证
+        if (!DateUtils.isValidFutureDate(date)) {
+            log.warn("无效的查询日期: {}", date);
+            return "请提供有效的查询日期（今天或未来日期）";
+        }
+        
+        Set<String> codes = new LinkedHashSet<>();
+        if (StringUtils.hasLength(trainCodes)) {
+            for (String code : trainCodes.split("[,，\\s]+")) {
+                if (!code.isEmpty()) {
+                    codes.add(code.toUpperCase());
+                }
+            }
+        }
+        if (codes.isEmpty()) {
+            log.warn("车次编号为空");
+            return "请提供有效的列车编号";
+        }
+        if (codes.size() > MAX_BATCH_TRAINS) {
+            return "一次最多查询 " + MAX_BATCH_TRAINS + " 个车次，当前 " + codes.size() + " 个";
+        }
+        
+        if (!StringUtils.hasLength(fromStation) || !StringUtils.hasLength(toStation)) {
+            log.warn("站点代码无效: 出发站={}, 到达站={}", fromStation, toStation);
+            return "请提供有效的出发站和到达站代码";
+        }
+        
+        try {
+            log.info("批量查询 {} 个车次的路线信息: {} 从 {} 到 {}", codes.size(), date, fromStation, toStation);
+            
+            // 所有车次的列车编号来自同一次余票查询
+            Map<String, String> trainNos = ToolMetrics.phase(BATCH_TOOL_NAME, ToolMetrics.PHASE_FETCH,
+                    () -> resolveTrainNos(date, codes, fromStation, toStation));
+            if (trainNos == null) {
+                return Deadline.expired() ? "查询列车编号超时，请稍后重试" : "查询列车编号失败，请稍后重试";
+            }
+            
+            // 各车次经停站并行查询
+            Map<String, CompletableFuture<List<RouteStationData>>> futures = new LinkedHashMap<>();
+            trainNos.forEach((code, trainNo) -> futures.put(code, CompletableFuture.supplyAsync(Deadline.propagate(
+                    () -> getRouteStations(date, trainNo, fromStation, toStation)), upstreamExecutor)));
+            
+            Map<String, List<RouteStationData>> routes = new LinkedHashMap<>();
+            List<String> notFound = new ArrayList<>();
+            List<String> failed = new ArrayList<>();
+            ToolMetrics.phase(BATCH_TOOL_NAME, ToolMetrics.PHASE_FETCH, () -> {
+                for (String code : codes) {
+                    CompletableFuture<List<RouteStationData>> future = futures.get(code);
+                    List<RouteStationData> stations = future != null ? Deadline.await(future) : null;
+                    if (future == null || stations != null && stations.isEmpty()) {
+                        notFound.add(code);
+                    } else if (stations == null) {
+                        failed.add(code);
+                    } else {
+                        routes.put(code, stations);
+                    }
+                }
+                return null;
+            });
+            log.info("批量查询完成: {} 个车次有路线信息，{} 个未找到，{} 个查询失败", routes.size(), notFound.size(), failed.size());
+            
+            if (routes.isEmpty()) {
+                ToolMetrics.emptyResult(BATCH_TOOL_NAME);
+            }
+            return ToolMetrics.format(BATCH_TOOL_NAME, routes.size(),
+                    () -> (CompactWriter.isCompact(outputFormat)
+                            ? formatRoutesCompact(routes, notFound, failed)
+                            : formatRoutes(routes, notFound, failed)) + Deadline.partialNote());
+            
+        } catch (Exception e) {
+            log.error("批量查询列车路线信息异常: {}", e.getMessage(), e);
+            return "批量查询列车路线出错：" + e.getMessage();
+        }
+    }
+    
     /**
      * 获取列车编号
+     * 结果按日期和车次缓存，车票数据来自共享的余票查询缓存
      *
      * @param date        日期
      * @param trainCode   车次代码
      * @param fromStation 出发站代码
      * @param toStation   到达站代码
-     * @return 列车编号
+     * @return 列车编号，未找到时返回null
+     */
+    public String resolveTrainNo(String date, String trainCode, String fromStation, String toStation) {
+        String code = trainCode.toUpperCase();
+        Map<String, String> trainNos = resolveTrainNos(date, List.of(code), fromStation, toStation);
+        return trainNos != null ? trainNos.get(code) : null;
+    }
+    
+    /**
+     * 批量获取列车编号
+     * 先查列车编号缓存，未缓存的车次从同一次余票查询中查找，结果中所有车次的编号都写入缓存
+     *
+     * @param date        日期
+     * @param trainCodes  车次代码（大写）
+     * @param fromStation 出发站代码
+     * @param toStation   到达站代码
+     * @return 车次代码到列车编号的映射，不含未找到的车次；余票查询失败时返回null
+     */
+    public Map<String, String> resolveTrainNos(String date, Collection<String> trainCodes, String fromStation, String toStation) {
+        Map<String, String> trainNos = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String code : trainCodes) {
+            String key = date + "|" + code;
+            String cached = trainNoCache.get(key);
+            if (cached != null) {
+                log.debug("命中列车编号缓存: {} -> {}", key, cached);
+                trainNos.put(code, cached);
+            } else if (negativeResults.get(key + "|" + fromStation + "|" + toStation) != null) {
+                log.debug("命中否定结果缓存，车次不在该线路上: {}", key);
+            } else {
+                missing.add(code);
+            }
+        }
+        if (missing.isEmpty()) {
+            return trainNos;
+        }
+        
+        log.debug("开始获取列车内部编号: {}", missing);
+        LeftTicketResult result = leftTicketService.query(date, fromStation, toStation);
+        if (result == null) {
+            log.warn("获取列车编号的余票查询失败");
+            return null;
+        }
+        
+        // 结果中所有车次的编号都写入缓存，后续查询其他车次不必再查余票
+        Map<String, String> found = new HashMap<>();
+        for (TicketData row : result.getRows()) {
+            String code = row.getStationTrainCode().toUpperCase();
+            found.put(code, row.getTrainNo());
+            trainNoCache.put(date + "|" + code, row.getTrainNo());
+        }
+        for (String code : missing) {
+            String trainNo = found.get(code);
+            if (trainNo != null) {
+                log.info("找到列车 {} 的内部编号: {}", code, trainNo);
+                trainNos.put(code, trainNo);
+            } else {
+                log.warn("未找到匹配的列车: {}", code);
+                negativeResults.put(date + "|" + code + "|" + fromStation + "|" + toStation, code);
+            }
+        }
+        return trainNos;
+    }
+    
+    /**
+     * 查询列车的经停站列表
+     * 结果按列车编号和日期缓存
+     *
+     * @param date        日期
+     * @param trainNo     列车内部编号
+     * @param fromStation 出发站代码
+     * @param toStation   到达站代码
+     * @return 经停站列表，请求失败时返回null
      */
-    private String getTrainNo(String date, String trainCode, String fromStation, String toStation) {
-        log.debug("开始获取列车内部编号: {}", trainCode);
+    public List<RouteStationData> getRouteStations(String date, String trainNo, String fromStation, String toStation) {
+        String key = trainNo + "|" + date;
+        List<RouteStationData> cached = timetableCache.get(key);
+        if (cached != null) {
+            log.debug("命中时刻表缓存: {}", key);
+            indexTimetable(trainNo, cached);
+            return cached;
+        }
+        if (negativeResults.get(key) != null) {
+            log.debug("命中否定结果缓存，列车没有经停站数据: {}", key);
+            return List.of();
+        }
+        
+        return timetableCoalescer.execute(key, () -> {
+            List<RouteStationData> stations = fetchRouteStations(date, trainNo, fromStation, toStation);
+            if (stations != null && !stations.isEmpty()) {
+                timetableCache.put(key, stations);
+                indexTimetable(trainNo, stations);
+            } else if (stations != null) {
+                negativeResults.put(key, trainNo);
+            }
+            if (stations == null) {
+                // 上游失败或熔断时降级返回过期的时刻表
+                List<RouteStationData> stale = timetableCache.getStale(key);
+                if (stale != null) {
+                    log.warn("经停站查询失败，返回过期的时刻表缓存: {}", key);
+                    ToolMetrics.staleServed("queryByTrainNo");
+                    indexTimetable(trainNo, stale);
+                    return stale;
+                }
+            }
+            return stations;
+        });
+    }
+    
+    /**
+     * 查询本地倒排索引中先经停出发站、后经停到达站的车次，不访问12306
+     *
+     * @param fromStation 出发站代码
+     * @param toStation   到达站代码
+     * @return 符合条件的车次
+     */
+    public List<StationTrainIndex.Match> indexedTrainsBetween(String fromStation, String toStation) {
+        return stationTrainIndex.between(fromStation, toStation);
+    }
+    
+    /**
+     * 已建立倒排索引的车次数
+     *
+     * @return 车次数
+     */
+    public int indexedTrainCount() {
+        return stationTrainIndex.trainCount();
+    }
+    
+    /**
+     * 把时刻表加入车站车次倒排索引，已索引的列车直接跳过
+     */
+    private void indexTimetable(String trainNo, List<RouteStationData> stations) {
+        if (stationTrainIndex.contains(trainNo)) {
+            return;
+        }
+        List<String> codes = new ArrayList<>(stations.size());
+        List<Integer> stops = new ArrayList<>(stations.size());
+        String trainCode = null;
+        for (int i = 0; i < stations.size(); i++) {
+            RouteStationData station = stations.get(i);
+            codes.add(stationService.findStationCode(station.getStationName()));
+            stops.add(station.getStationNo() != null ? station.getStationNo() : i + 1);
+            if (trainCode == null) {
+                trainCode = station.getStationTrainCode();
+            }
+        }
+        if (stationTrainIndex.add(trainNo, trainCode, codes, stops)) {
+            log.debug("列车 {} 加入车站车次倒排索引，共 {} 个经停站", trainNo, stations.size());
+        }
+    }
+    
+    /**
+     * 从12306获取列车经停站
+     */
+    private List<RouteStationData> fetchRouteStations(String date, String trainNo, String fromStation, String toStation) {
         try {
-            // 请求车票查询接口获取列车编号
-            String url = RailwayConstants.API_BASE + "/otn/leftTicket/query";
+            // 查询12306 API获取列车路线信息
+            String url = RailwayConstants.API_BASE + "/otn/czxx/queryByTrainNo";
             
             // 构建查询参数
             Map<String, Object> params = new HashMap<>();
-            params.put("leftTicketDTO.train_date", date);
-            params.put("leftTicketDTO.from_station", fromStation);
-            params.put("leftTicketDTO.to_station", toStation);
-            params.put("purpose_codes", "ADULT");
+            params.put("train_no", trainNo);
+            params.put("from_station_telecode", fromStation);
+            params.put("to_station_telecode", toStation);
+            params.put("depart_date", date);
+            
+            log.debug("构建路线查询参数: {}", params);
             
             // 构建请求头
             Map<String, String> headers = new HashMap<>();
             headers.put("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/86.0.4240.111 Safari/537.36");
             
             // 获取Cookie
-            Map<String, String> cookies = HttpUtils.getCookie(RailwayConstants.WEB_URL);
+            Map<String, String> cookies = HttpUtils.getCachedCookie(RailwayConstants.WEB_URL);
             if (!cookies.isEmpty()) {
-                headers.put("Cookie", HttpUtils.formatCookies(cookies));
+                String cookieString = HttpUtils.formatCookies(cookies);
+                headers.put("Cookie", cookieString);
+                log.debug("使用Cookie: {}", cookieString);
+            } else {
+                log.debug("未获取到Cookie");
             }
             
-            log.debug("发送车票查询请求获取列车编号");
             // 发送请求
+            log.info("发送路线查询API请求: {}", url);
             String response = HttpUtils.get(url, params, headers);
             if (response == null) {
-                log.warn("获取列车编号的API返回为空");
+                log.error("API返回为空");
                 return null;
             }
             
             // 解析响应数据
-            JSONObject jsonResponse = JSON.parseObject(response);
-            if (jsonResponse.getIntValue("httpstatus") != 200) {
-                log.warn("获取列车编号的API请求失败: {}", jsonResponse.getString("messages"));
+            log.debug("解析路线API响应");
+            JSONObject jsonResponse = HttpUtils.parseJsonResponse(response, JSONObject.class, "queryByTrainNo");
+            if (jsonResponse == null) {
                 return null;
             }
-            
-            JSONObject data = jsonResponse.getJSONObject("data");
-            if (data == null || !data.containsKey("result")) {
-                log.warn("获取列车编号的API响应中无车票数据");
+            if (jsonResponse.getIntValue("httpstatus") != 200) {
+                log.error("API请求失败: {}", jsonResponse.getString("messages"));
                 return null;
             }
             
-            JSONArray resultArray = data.getJSONArray("result");
-            if (resultArray == null || resultArray.isEmpty()) {
-                log.warn("获取列车编号的API查询结果为空");
-                return null;
+            JSONObject data = jsonResponse.getJSONObject("data");
+            if (data == null || !data.containsKey("data")) {
+                log.warn("API响应中无路线数据");
+                return new ArrayList<>();
             }
             
-            // 遍历结果，查找匹配的列车
-            for (int i = 0; i < resultArray.size(); i++) {
-                String ticketString = resultArray.getString(i);
-                String[] ticketParts = ticketString.split("\\|");
-                
-                if (ticketParts.length < 3) {
-                    continue;
-                }
-                
-                // 匹配列车编号
-                if (trainCode.equalsIgnoreCase(ticketParts[3])) {
-                    log.info("找到列车 {} 的内部编号: {}", trainCode, ticketParts[2]);
-                    return ticketParts[2];  // 返回列车编号
-                }
+            JSONArray stationsArray = data.getJSONArray("data");
+            if (stationsArray == null || stationsArray.isEmpty()) {
+                return new ArrayList<>();
             }
             
-            log.warn("未找到匹配的列车: {}", trainCode);
-            return null;
-            
+            // 解析路线数据
+            List<RouteStationData> routeStations = parseRouteStationsData(stationsArray);
+            log.debug("解析路线数据完成，共 {} 个站点", routeStations.size());
+            return routeStations;
         } catch (Exception e) {
-            log.error("获取列车编号异常: {}", e.getMessage(), e);
+            log.error("查询列车经停站异常: {}", e.getMessage(), e);
             return null;
         }
     }
@@ -253,6 +565,7 @@ public class RouteService {
             stationData.setStopoverTime(stationObject.getString("stopover_time"));
             stationData.setStationNo(stationObject.getIntValue("station_no"));
             stationData.setIsEnabled(stationObject.getBooleanValue("isEnabled"));
+            stationData.setStationTrainCode(stationObject.getString("station_train_code"));
             
             routeStations.add(stationData);
             log.trace("解析站点: {}. {}, 到达时间: {}, 发车时间: {}", 
@@ -302,4 +615,77 @@ public class RouteService {
         // 转为JSON字符串
         return JSON.toJSONString(routeStationInfoList);
     }
-} 
\ No newline at end of file
+    
+    /**
+     * 以紧凑表格格式输出路线站点信息
+     *
+     * @param routeStations 路线站点数据列表
+     * @return 表头一次、制表符分隔的站点信息
+     */
+    private String formatRouteStationsCompact(List<RouteStationData> routeStations) {
+        CompactWriter writer = CompactWriter.begin().header("站序", "站名", "到达", "发车", "停留");
+        for (RouteStationData station : routeStations) {
+            writer.cell(station.getStationNo())
+                    .cell(station.getStationName())
+                    .cell(station.getArriveTime())
+                    .cell(station.getStartTime())
+                    .cell(station.getStopoverTime())
+                    .endRow();
+        }
+        return writer.finish();
+    }
+    
+    /**
+     * 格式化批量查询结果
+     *
+     * @param routes   各车次经停站
+     * @param notFound 未找到的车次
+     * @param failed   查询失败的车次
+     * @return JSON字符串，routes以车次为键
+     */
+    private String formatRoutes(Map<String, List<RouteStationData>> routes, List<String> notFound, List<String> failed) {
+        JSONObject routesObject = new JSONObject(true);
+        routes.forEach((code, stations) -> routesObject.put(code, parseRouteStationsInfo(stations)));
+        
+        JSONObject result = new JSONObject(true);
+        result.put("routes", routesObject);
+        if (!notFound.isEmpty()) {
+            result.put("not_found", notFound);
+        }
+        if (!failed.isEmpty()) {
+            result.put("failed", failed);
+        }
+        return JSON.toJSONString(result);
+    }
+    
+    /**
+     * 以紧凑表格格式输出批量查询结果，所有车次共用一个表头
+     *
+     * @param routes   各车次经停站
+     * @param notFound 未找到的车次
+     * @param failed   查询失败的车次
+     * @return 表头一次、制表符分隔的站点信息
+     */
+    private String formatRoutesCompact(Map<String, List<RouteStationData>> routes, List<String> notFound, List<String> failed) {
+        CompactWriter writer = CompactWriter.begin();
+        if (!notFound.isEmpty()) {
+            writer.comment("未找到：" + String.join(",", notFound));
+        }
+        if (!failed.isEmpty()) {
+            writer.comment("查询失败：" + String.join(",", failed));
+        }
+        writer.header("车次", "站序", "站名", "到达", "发车", "停留");
+        routes.forEach((code, stations) -> {
+            for (RouteStationData station : stations) {
+                writer.cell(code)
+                        .cell(station.getStationNo())
+                        .cell(station.getStationName())
+                        .cell(station.getArriveTime())
+                        .cell(station.getStartTime())
+                        .cell(station.getStopoverTime())
+                        .endRow();
+            }
+        });
+        return writer.finish();
+    }
+}
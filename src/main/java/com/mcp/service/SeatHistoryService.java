@@ -0,0 +1,200 @@
+package com.mcp.service;
+
+import com.mcp.utils.DateUtils;
+import com.mcp.utils.SeatHistoryStore;
+import com.mcp.utils.TicketParser;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 余票历史服务类
+ * 从余票历史时序存储中取出一条线路某个乘车日期的样本，按时间段汇总有票车次数和余票合计（售罄曲线），
+ * 并列出各车次席别的售罄和回流时间。只读本地数据，不访问12306
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SeatHistoryService {
+    /**
+     * 最多输出的时间段数，超过时自动加大时间段
+     */
+    private static final int MAX_BUCKETS = 48;
+
+    private final SeatHistoryStore seatHistoryStore;
+
+    /**
+     * 查询线路的余票历史
+     *
+     * @param date          乘车日期，格式为yyyy-MM-dd
+     * @param fromStation   出发站代码
+     * @param toStation     到达站代码
+     * @param seatClasses   参与统计的席别
+     * @param trainCode     只看某个车次
+     * @param bucketMinutes 时间段长度（分钟）
+     * @param hours         只看最近多少小时
+     * @return 售罄曲线和售罄、回流时间
+     */
+    @Tool(description = "查询线路的余票历史：按时间段汇总有票车次数和余票合计（售罄曲线），并列出各车次席别的售罄和回流时间；数据来自本服务记录的余票查询结果，不访问12306")
+    public String getSeatHistory(
+            @ToolParam(description = "乘车日期，格式为yyyy-MM-dd") String date,
+            @ToolParam(description = "出发站代码") String fromStation,
+            @ToolParam(description = "到达站代码") String toStation,
+            @ToolParam(description = "参与统计的席别，如二等座,一等座或ze,zy，逗号分隔，可为空表示全部席别", required = false) String seatClasses,
+            @ToolParam(description = "只看某个车次，如G1，可为空", required = false) String trainCode,
+            @ToolParam(description = "时间段长度（分钟），默认60", required = false) Integer bucketMinutes,
+            @ToolParam(description = "只看最近多少小时的记录，可为空表示全部", required = false) Integer hours) {
+
+        if (!DateUtils.isValidDate(date)) {
+            return "请提供有效的乘车日期，格式为yyyy-MM-dd";
+        }
+        if (!StringUtils.hasLength(fromStation) || !StringUtils.hasLength(toStation)) {
+            return "请提供有效的出发站和到达站代码";
+        }
+        if (!seatHistoryStore.isEnabled()) {
+            return "余票历史记录未启用";
+        }
+        Set<Integer> seats = new HashSet<>();
+        if (StringUtils.hasLength(seatClasses)) {
+            for (String seatClass : seatClasses.split(",")) {
+                int index = TicketParser.seatIndex(seatClass.trim());
+                if (index < 0) {
+                    return "无法识别的席别：" + seatClass.trim();
+                }
+                seats.add(index);
+            }
+        }
+
+        long since = hours != null && hours > 0 ? System.currentTimeMillis() - hours * 3_600_000L : 0;
+        SeatHistoryStore.QueryResult result = seatHistoryStore.query(fromStation, toStation, date, since);
+        log.info("查询余票历史: {} 从 {} 到 {}，{} 个样本，扫描 {}/{} 个分区", date, fromStation, toStation,
+                result.samples().size(), result.partitionsScanned(), result.partitionsTotal());
+
+        List<SeatHistoryStore.Sample> samples = new ArrayList<>();
+        for (SeatHistoryStore.Sample sample : result.samples()) {
+            if ((seats.isEmpty() || seats.contains(sample.seatClass()))
+                    && (!StringUtils.hasLength(trainCode) || trainCode.equalsIgnoreCase(sample.trainCode()))) {
+                samples.add(sample);
+            }
+        }
+        if (result.samples().isEmpty()) {
+            return "暂无 " + fromStation + " → " + toStation + " " + date
+                    + " 的余票历史（getTickets、余票监控等从12306获取过余票的线路会自动记录，中转方案不记录）";
+        }
+        if (samples.isEmpty()) {
+            return fromStation + " → " + toStation + " " + date + " 有 " + result.samples().size()
+                    + " 个余票历史样本，但没有符合席别和车次条件的样本";
+        }
+        return format(date, fromStation, toStation, samples, result, bucketMinutes);
+    }
+
+    private String format(String date, String fromStation, String toStation, List<SeatHistoryStore.Sample> samples,
+                          SeatHistoryStore.QueryResult result, Integer bucketMinutes) {
+        long first = samples.get(0).timestamp();
+        long last = samples.get(samples.size() - 1).timestamp();
+        long bucketMillis = Math.max(5, bucketMinutes != null ? bucketMinutes : 60) * 60_000L;
+        while ((last - first) / bucketMillis + 1 > MAX_BUCKETS) {
+            bucketMillis *= 2;
+        }
+        long bucketStart = first - first % bucketMillis;
+
+        // 各车次各席别的最新余票，按时间段结束时的状态汇总
+        Map<String, Map<Integer, Integer>> latest = new TreeMap<>();
+        Map<String, List<String>> events = new TreeMap<>();
+        StringBuilder curve = new StringBuilder();
+        curve.append("时间\t有票车次\t余票合计\n");
+        int index = 0;
+        for (long end = bucketStart + bucketMillis; index < samples.size(); end += bucketMillis) {
+            boolean sampled = false;
+            while (index < samples.size() && samples.get(index).timestamp() < end) {
+                SeatHistoryStore.Sample sample = samples.get(index++);
+                Integer previous = latest.computeIfAbsent(sample.trainCode(), k -> new TreeMap<>())
+                        .put(sample.seatClass(), sample.count());
+                recordTransition(events, sample, previous);
+                sampled = true;
+            }
+            if (sampled) {
+                appendBucket(curve, end - bucketMillis, latest);
+            }
+        }
+
+        StringBuilder text = new StringBuilder();
+        text.append(fromStation).append(" → ").append(toStation).append(' ').append(date)
+                .append(" 余票历史（").append(samples.size()).append(" 个样本，扫描 ")
+                .append(result.partitionsScanned()).append('/').append(result.partitionsTotal())
+                .append(" 个分区，时间段 ").append(bucketMillis / 60_000).append(" 分钟）：\n\n");
+        text.append(curve);
+        if (!events.isEmpty()) {
+            text.append("\n售罄与回流：\n");
+            events.forEach((key, list) -> text.append(key).append("：").append(String.join("；", list)).append('\n'));
+        }
+        return text.toString();
+    }
+
+    /**
+     * 输出一个时间段结束时的汇总：有余票的车次数/出现过的车次数，数字余票合计和显示"有"的车次数
+     */
+    private static void appendBucket(StringBuilder curve, long start, Map<String, Map<Integer, Integer>> latest) {
+        int available = 0;
+        int plenty = 0;
+        long total = 0;
+        for (Map<Integer, Integer> seats : latest.values()) {
+            boolean hasSeat = false;
+            boolean hasPlenty = false;
+            for (int count : seats.values()) {
+                if (count == SeatHistoryStore.PLENTY) {
+                    hasPlenty = true;
+                } else if (count > 0) {
+                    total += count;
+                    hasSeat = true;
+                }
+            }
+            if (hasSeat || hasPlenty) {
+                available++;
+            }
+            if (hasPlenty) {
+                plenty++;
+            }
+        }
+        curve.append(formatTime(start)).append('\t').append(available).append('/').append(latest.size())
+                .append('\t').append(total);
+        if (plenty > 0) {
+            curve.append("（另有 ").append(plenty).append(" 个车次显示\"有\"）");
+        }
+        curve.append('\n');
+    }
+
+    /**
+     * 记录席别从有票到售罄、从售罄到回流的时间
+     */
+    private static void recordTransition(Map<String, List<String>> events, SeatHistoryStore.Sample sample,
+                                         Integer previous) {
+        if (previous == null) {
+            return;
+        }
+        boolean before = previous != 0;
+        boolean after = sample.count() != 0;
+        if (before == after) {
+            return;
+        }
+        String key = sample.trainCode() + " " + TicketParser.seatName(sample.seatClass());
+        events.computeIfAbsent(key, k -> new ArrayList<>())
+                .add((after ? "回流 " : "售罄 ") + formatTime(sample.timestamp()));
+    }
+
+    private static String formatTime(long millis) {
+        return new SimpleDateFormat("MM-dd HH:mm").format(new Date(millis));
+    }
+}
@@ -0,0 +1,322 @@
+package com.mcp.service;
+
+import com.mcp.model.LeftTicketResult;
+import com.mcp.model.Price;
+import com.mcp.model.RouteStationData;
+import com.mcp.model.TicketInfo;
+import com.mcp.utils.DateUtils;
+import com.mcp.utils.Deadline;
+import com.mcp.utils.TicketParser;
+import com.mcp.utils.ToolMetrics;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 分段购票服务类
+ * 直达车次无票时，沿列车经停站拆分区间查询余票，计算乘车段数最少的购票方案
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SplitTicketService {
+    /**
+     * 工具名称，用于指标标签
+     */
+    private static final String TOOL_NAME = "getSplitTickets";
+
+    /**
+     * 出发站到到达站之间允许的最大区间数，限制并行查询数量
+     */
+    private static final int MAX_SPLIT_SPAN = 12;
+
+    /**
+     * 最后一段允许越过到达站的最大站数（买长乘短）
+     */
+    private static final int MAX_EXTENSION = 2;
+
+    private final RouteService routeService;
+
+    private final StationService stationService;
+
+    private final LeftTicketService leftTicketService;
+
+    private final ExecutorService upstreamExecutor;
+
+    /**
+     * 查询分段购票方案
+     *
+     * @param date        日期，格式为 yyyy-MM-dd
+     * @param trainCode   车次代码，如G1、D1等
+     * @param fromStation 出发站代码
+     * @param toStation   到达站代码
+     * @return 分段购票方案
+     */
+    @Tool(description = "直达车次无票时，沿该车次经停站拆分区间查询余票，返回乘车段数最少的分段购票方案（含买长乘短）")
+    public String getSplitTickets(
+            @ToolParam(description = "查询日期，格式为yyyy-MM-dd") String date,
+            @ToolParam(description = "列车编号，如G1, K1080等") String trainCode,
+            @ToolParam(description = "出发站代码") String fromStation,
+            @ToolParam(description = "到达站代码") String toStation) {
+
+        log.debug("开始查询分段购票方案: 日期={}, 车次={}, 出发站={}, 到达站={}", date, trainCode, fromStation, toStation);
+
+        // 参数验证
+        if (!DateUtils.isValidFutureDate(date)) {
+            log.warn("无效的查询日期: {}", date);
+            return "请提供有效的查询日期（今天或未来日期）";
+        }
+
+        if (!StringUtils.hasLength(trainCode)) {
+            log.warn("车次编号为空");
+            return "请提供有效的列车编号";
+        }
+
+        if (!StringUtils.hasLength(fromStation) || !StringUtils.hasLength(toStation)) {
+            log.warn("站点代码无效: 出发站={}, 到达站={}", fromStation, toStation);
+            return "请提供有效的出发站和到达站代码";
+        }
+
+        try {
+            String trainNo = routeService.resolveTrainNo(date, trainCode, fromStation, toStation);
+            if (trainNo == null) {
+                log.warn("未找到列车编号: {}", trainCode);
+                return "未找到列车 " + trainCode + " 的信息";
+            }
+
+            List<RouteStationData> stops = routeService.getRouteStations(date, trainNo, fromStation, toStation);
+            if (stops == null || stops.isEmpty()) {
+                return "没有找到列车 " + trainCode + " 的经停站信息";
+            }
+
+            // 经停站名称转换为车站代码
+            String[] codes = new String[stops.size()];
+            for (int i = 0; i < stops.size(); i++) {
+                codes[i] = stationService.findStationCode(stops.get(i).getStationName());
+            }
+
+            int fromIdx = indexOf(codes, fromStation, 0);
+            int toIdx = fromIdx < 0 ? -1 : indexOf(codes, toStation, fromIdx + 1);
+            if (fromIdx < 0 || toIdx < 0) {
+                log.warn("列车 {} 的经停站中未找到出发站 {} 或到达站 {}", trainCode, fromStation, toStation);
+                return "列车 " + trainCode + " 不按 " + fromStation + " -> " + toStation + " 方向经停，无法拆分";
+            }
+            if (toIdx - fromIdx > MAX_SPLIT_SPAN) {
+                return "出发站与到达站之间经停站过多（" + (toIdx - fromIdx) + " 个区间），请缩小查询区间";
+            }
+
+            int lastIdx = Math.min(stops.size() - 1, toIdx + MAX_EXTENSION);
+            int[] dayOffsets = dayOffsets(stops);
+
+            // 并行查询所有候选区间，相同区间的请求由余票缓存合并
+            Map<Long, CompletableFuture<TicketInfo>> futures = new LinkedHashMap<>();
+            for (int i = fromIdx; i < toIdx; i++) {
+                if (codes[i] == null) {
+                    continue;
+                }
+                String queryDate = LocalDate.parse(date).plusDays(dayOffsets[i] - dayOffsets[fromIdx]).toString();
+                for (int j = i + 1; j <= lastIdx; j++) {
+                    if (codes[j] == null) {
+                        continue;
+                    }
+                    String segmentFrom = codes[i];
+                    String segmentTo = codes[j];
+                    futures.put(segmentKey(i, j), CompletableFuture.supplyAsync(Deadline.propagate(
+                            () -> findTrain(queryDate, segmentFrom, segmentTo, trainNo)), upstreamExecutor));
+                }
+            }
+            log.info("列车 {} 分段查询 {} 个候选区间", trainCode, futures.size());
+
+            Map<Long, TicketInfo> available = ToolMetrics.phase(TOOL_NAME, ToolMetrics.PHASE_FETCH,
+                    () -> collectAvailable(futures));
+            log.debug("列车 {} 有余票的区间 {} 个", trainCode, available.size());
+
+            List<TicketInfo> plan = ToolMetrics.phase(TOOL_NAME, ToolMetrics.PHASE_FILTER,
+                    () -> findMinimumSegments(available, fromIdx, toIdx, lastIdx));
+            if (plan == null) {
+                log.info("列车 {} 未找到可行的分段方案", trainCode);
+                ToolMetrics.emptyResult(TOOL_NAME);
+                return "列车 " + trainCode + " 在 " + fromStation + " -> " + toStation + " 之间没有可行的分段购票方案" + Deadline.partialNote();
+            }
+
+            String result = ToolMetrics.format(TOOL_NAME, plan.size(),
+                    () -> formatPlan(trainCode, plan, toStation, stops.get(toIdx).getStationName()) + Deadline.partialNote());
+            log.info("查询完成，列车 {} 分段方案共 {} 段", trainCode, plan.size());
+            return result;
+
+        } catch (Exception e) {
+            log.error("查询分段购票方案异常: {}", e.getMessage(), e);
+            return "查询分段购票方案出错：" + e.getMessage();
+        }
+    }
+
+    /**
+     * 等待所有区间查询完成，保留有余票的区间；截止时间到达时取消未完成的区间查询，只用已完成的区间规划
+     */
+    private Map<Long, TicketInfo> collectAvailable(Map<Long, CompletableFuture<TicketInfo>> futures) {
+        Map<Long, TicketInfo> available = new LinkedHashMap<>();
+        futures.forEach((key, future) -> {
+            TicketInfo ticket = Deadline.await(future);
+            if (ticket != null && TicketParser.hasAvailableSeat(ticket)) {
+                available.put(key, ticket);
+            }
+        });
+        return available;
+    }
+
+    /**
+     * 在指定区间的余票结果中查找目标列车
+     */
+    private TicketInfo findTrain(String date, String fromCode, String toCode, String trainNo) {
+        LeftTicketResult result = leftTicketService.query(date, fromCode, toCode);
+        if (result == null) {
+            return null;
+        }
+        for (TicketInfo ticket : result.getTickets()) {
+            if (trainNo.equals(ticket.getTrainNo())
+                    && fromCode.equals(ticket.getFromStationTelecode())
+                    && toCode.equals(ticket.getToStationTelecode())) {
+                return ticket;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 动态规划求乘车段数最少的方案
+     * best[k]表示从出发站到达第k站所需的最少段数，越过到达站的区间视为到达终点
+     *
+     * @return 按乘车顺序排列的区间车票，无可行方案时返回null
+     */
+    private List<TicketInfo> findMinimumSegments(Map<Long, TicketInfo> available, int fromIdx, int toIdx, int lastIdx) {
+        int size = toIdx - fromIdx + 1;
+        int[] best = new int[size];
+        long[] prev = new long[size];
+        Arrays.fill(best, Integer.MAX_VALUE);
+        best[0] = 0;
+
+        for (int i = fromIdx; i < toIdx; i++) {
+            if (best[i - fromIdx] == Integer.MAX_VALUE) {
+                continue;
+            }
+            for (int j = i + 1; j <= lastIdx; j++) {
+                long key = segmentKey(i, j);
+                if (!available.containsKey(key)) {
+                    continue;
+                }
+                int reach = Math.min(j, toIdx) - fromIdx;
+                // 段数相同时保留先找到的方案，即不越站的区间优先
+                if (best[i - fromIdx] + 1 < best[reach]) {
+                    best[reach] = best[i - fromIdx] + 1;
+                    prev[reach] = key;
+                }
+            }
+        }
+
+        if (best[size - 1] == Integer.MAX_VALUE) {
+            return null;
+        }
+
+        List<TicketInfo> plan = new ArrayList<>();
+        int position = size - 1;
+        while (position > 0) {
+            long key = prev[position];
+            plan.add(available.get(key));
+            position = (int) (key >> 32) - fromIdx;
+        }
+        Collections.reverse(plan);
+        return plan;
+    }
+
+    /**
+     * 根据各站发车时间推算相对于始发站的跨天数
+     */
+    private int[] dayOffsets(List<RouteStationData> stops) {
+        int[] offsets = new int[stops.size()];
+        String previous = null;
+        int day = 0;
+        for (int i = 0; i < stops.size(); i++) {
+            String time = stops.get(i).getStartTime();
+            if (previous != null && StringUtils.hasLength(time) && time.compareTo(previous) < 0) {
+                day++;
+            }
+            if (StringUtils.hasLength(time)) {
+                previous = time;
+            }
+            offsets[i] = day;
+        }
+        return offsets;
+    }
+
+    /**
+     * 格式化分段购票方案
+     */
+    private String formatPlan(String trainCode, List<TicketInfo> plan, String destinationCode, String destinationName) {
+        StringBuilder result = new StringBuilder();
+        if (plan.size() == 1 && destinationCode.equals(plan.get(0).getToStationTelecode())) {
+            result.append("列车 ").append(trainCode).append(" 直达仍有余票，无需分段购买：\n\n");
+        } else {
+            result.append("列车 ").append(trainCode).append(" 分段购票方案（共 ").append(plan.size()).append(" 段）：\n\n");
+        }
+
+        for (int i = 0; i < plan.size(); i++) {
+            TicketInfo ticket = plan.get(i);
+            result.append("第").append(i + 1).append("段：")
+                    .append(ticket.getFromStation()).append(" -> ").append(ticket.getToStation())
+                    .append("  ").append(ticket.getStartTime()).append(" -> ").append(ticket.getArriveTime())
+                    .append('\n');
+            result.append("  座位：");
+            boolean first = true;
+            for (Price price : ticket.getPrices()) {
+                if (TicketParser.seatCount(price.getNum()) == 0) {
+                    continue;
+                }
+                if (!first) {
+                    result.append("、");
+                }
+                result.append(price.getSeatName()).append(' ').append(price.getNum());
+                if (!"有".equals(price.getNum())) {
+                    result.append("张");
+                }
+                first = false;
+            }
+            result.append('\n');
+        }
+
+        TicketInfo last = plan.get(plan.size() - 1);
+        if (!destinationCode.equals(last.getToStationTelecode())) {
+            result.append("\n提示：最后一段车票到 ").append(last.getToStation())
+                    .append("，乘车至 ").append(destinationName).append(" 提前下车（买长乘短）\n");
+        }
+        if (plan.size() > 1) {
+            result.append("提示：各段之间需在站内更换座位，请留意各段席别\n");
+        }
+        return result.toString();
+    }
+
+    private static int indexOf(String[] codes, String code, int start) {
+        for (int i = start; i < codes.length; i++) {
+            if (code.equals(codes[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static long segmentKey(int from, int to) {
+        return ((long) from << 32) | to;
+    }
+}
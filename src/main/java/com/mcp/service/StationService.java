@@ -3,12 +3,16 @@ package com.mcp.service;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.mcp.constants.RailwayConstants;
+import com.mcp.jfr.StationParseEvent;
 import com.mcp.model.StationData;
 import com.mcp.utils.HttpUtils;
+import com.mcp.utils.PersistentStore;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.context.annotation.DependsOn;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
@@ -26,7 +30,20 @@ import java.util.stream.Collectors;
  */
 @Slf4j
 @Service
+@DependsOn("upstreamConfig")
 public class StationService {
+    /**
+     * 车站数据在持久化存储中的键
+     */
+    private static final String STORE_KEY = "stations:station_name.js";
+    
+    /**
+     * 持久化的车站数据多久后重新从12306获取（毫秒）
+     */
+    private static final long STORE_TTL_MILLIS = 24 * 60 * 60_000L;
+    
+    private final PersistentStore persistentStore;
+    
     /**
      * 存储所有车站数据，以车站代码为键
      */
@@ -42,6 +59,15 @@ public class StationService {
      */
     private Map<String, Map<String, String>> nameStationsMap = new HashMap<>();
     
+    public StationService() {
+        this(PersistentStore.disabled());
+    }
+    
+    @Autowired
+    public StationService(PersistentStore persistentStore) {
+        this.persistentStore = persistentStore;
+    }
+    
     /**
      * 初始化方法，启动时加载所有车站数据
      */
@@ -52,10 +78,18 @@ public class StationService {
     
     /**
      * 加载车站数据
+     * 持久化存储中有未过期的车站数据时直接使用，否则从12306获取并保存；获取失败时使用过期的持久化数据
      */
     private void loadStations() {
         log.info("开始加载车站数据...");
         try {
+            PersistentStore.Record stored = persistentStore.get(STORE_KEY);
+            if (stored != null && !stored.isExpired(System.currentTimeMillis())) {
+                parseStations(stored.value());
+                log.info("从持久化存储加载车站数据完成，共 {} 个车站", stationMap.size());
+                return;
+            }
+            
             // 获取12306官网的车站数据
             String url = RailwayConstants.API_BASE + "/otn/resources/js/framework/station_name.js";
             Map<String, String> headers = new HashMap<>();
@@ -66,6 +100,12 @@ public class StationService {
                 // 解析车站数据
                 parseStations(response);
                 log.info("车站数据加载完成，共 {} 个车站", stationMap.size());
+                if (!stationMap.isEmpty()) {
+                    persistentStore.put(STORE_KEY, response, System.currentTimeMillis() + STORE_TTL_MILLIS);
+                }
+            } else if (stored != null) {
+                parseStations(stored.value());
+                log.warn("获取车站数据失败，使用过期的持久化车站数据，共 {} 个车站", stationMap.size());
             } else {
                 log.error("获取车站数据失败");
             }
@@ -79,11 +119,15 @@ public class StationService {
      *
      * @param rawData 原始数据
      */
-    private void parseStations(String rawData) {
+    void parseStations(String rawData) {
         if (!StringUtils.hasLength(rawData)) {
             return;
         }
         
+        StationParseEvent event = new StationParseEvent();
+        event.begin();
+        int parsed = 0;
+        
         // 提取车站数据字符串
         Pattern pattern = Pattern.compile("var station_names ='([^']+)'");
         Matcher matcher = pattern.matcher(rawData);
@@ -125,9 +169,31 @@ public class StationService {
                     stationMap.put("station_name", parts[1]);
                     cityStations.add(stationMap);
                     cityStationsMap.put(parts[7], cityStations);
+                    parsed++;
                 }
             }
         }
+        
+        event.end();
+        if (event.shouldCommit()) {
+            event.charsParsed = rawData.length();
+            event.stationCount = parsed;
+            event.commit();
+        }
+    }
+    
+    /**
+     * 根据车站名称精确查找车站代码（供其他服务调用，不作为工具暴露）
+     *
+     * @param stationName 车站名称
+     * @return 车站代码，未找到时返回null
+     */
+    public String findStationCode(String stationName) {
+        if (!StringUtils.hasLength(stationName)) {
+            return null;
+        }
+        Map<String, String> station = nameStationsMap.get(stationName.trim());
+        return station != null ? station.get("station_code") : null;
     }
     
     /**
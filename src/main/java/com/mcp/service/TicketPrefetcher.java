@@ -0,0 +1,162 @@
+package com.mcp.service;
+
+import com.mcp.utils.DateUtils;
+import com.mcp.utils.HeavyHitters;
+import com.mcp.utils.ToolMetrics;
+import com.mcp.utils.UpstreamScheduler;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 余票预取服务类
+ * 统计工具调用中出现的"日期|出发站|到达站"，对其中的高频查询在余票缓存过期前以后台优先级重新获取，
+ * 热门线路的查询始终命中缓存。预取请求经过上游限流，排在交互式请求之后。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TicketPrefetcher {
+
+    private final LeftTicketService leftTicketService;
+
+    /**
+     * 是否启用预取
+     */
+    @Value("${mcp.prefetch.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 统计的高频查询个数
+     */
+    @Value("${mcp.prefetch.top-k:100}")
+    private int topK;
+
+    /**
+     * 估计次数达到多少才预取
+     */
+    @Value("${mcp.prefetch.min-hits:3}")
+    private long minHits;
+
+    /**
+     * 缓存剩余时间低于该值时预取（秒）
+     */
+    @Value("${mcp.prefetch.lead-seconds:15}")
+    private long leadSeconds;
+
+    /**
+     * 检查间隔（秒）
+     */
+    @Value("${mcp.prefetch.interval-seconds:5}")
+    private long intervalSeconds;
+
+    /**
+     * 每轮最多预取的查询数
+     */
+    @Value("${mcp.prefetch.max-per-cycle:20}")
+    private int maxPerCycle;
+
+    /**
+     * 计数减半的间隔（分钟）
+     */
+    @Value("${mcp.prefetch.decay-minutes:10}")
+    private long decayMinutes;
+
+    private HeavyHitters heavyHitters;
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        heavyHitters = new HeavyHitters(topK);
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ticket-prefetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::prefetch, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        scheduler.scheduleAtFixedRate(heavyHitters::decay, decayMinutes, decayMinutes, TimeUnit.MINUTES);
+        log.info("余票预取已启用: top-{}, 至少 {} 次, 过期前 {} 秒预取", topK, minHits, leadSeconds);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 记录一次工具调用的查询参数，供高频统计使用
+     * 查询本身由调用方经余票查询服务完成，预取只负责在缓存过期前刷新
+     *
+     * @param date        日期
+     * @param fromStation 出发站代码
+     * @param toStation   到达站代码
+     */
+    public void record(String date, String fromStation, String toStation) {
+        if (!fromStation.contains("|") && !toStation.contains("|")) {
+            heavyHitters.record(date + "|" + fromStation + "|" + toStation);
+        }
+    }
+
+    /**
+     * 当前的高频查询，供运维查看
+     *
+     * @return 按估计次数从高到低排序的查询及其缓存剩余时间
+     */
+    public List<Map<String, Object>> hotQueries() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : heavyHitters.topK()) {
+            String[] parts = entry.getKey().split("\\|");
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("query", entry.getKey());
+            item.put("hits", entry.getValue());
+            item.put("cache_ttl_seconds", leftTicketService.expiresInMillis(parts[0], parts[1], parts[2]) / 1000);
+            result.add(item);
+        }
+        return result;
+    }
+
+    /**
+     * 对缓存即将过期或尚未缓存的高频查询以后台优先级重新获取
+     */
+    private void prefetch() {
+        try {
+            int fetched = 0;
+            for (Map.Entry<String, Long> entry : heavyHitters.topK()) {
+                if (entry.getValue() < minHits || fetched >= maxPerCycle) {
+                    break;
+                }
+                String[] parts = entry.getKey().split("\\|");
+                if (!DateUtils.isValidFutureDate(parts[0])
+                        || leftTicketService.expiresInMillis(parts[0], parts[1], parts[2]) > leadSeconds * 1000) {
+                    continue;
+                }
+                boolean success = UpstreamScheduler.withPriority(UpstreamScheduler.Priority.BACKGROUND,
+                        () -> leftTicketService.refresh(parts[0], parts[1], parts[2]));
+                ToolMetrics.prefetch(success ? "success" : "failure");
+                fetched++;
+            }
+            if (fetched > 0) {
+                log.debug("本轮预取 {} 个高频查询", fetched);
+            }
+        } catch (Exception e) {
+            log.error("余票预取异常: {}", e.getMessage(), e);
+        }
+    }
+}
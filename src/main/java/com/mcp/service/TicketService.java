@@ -1,26 +1,71 @@
 package com.mcp.service;
 
-import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.JSONArray;
-import com.alibaba.fastjson.JSONObject;
+import com.mcp.model.LeftTicketResult;
+import com.mcp.model.Price;
+import com.mcp.model.TicketDelta;
+import com.mcp.model.TicketInfo;
+import com.mcp.utils.CompactWriter;
 import com.mcp.utils.DateUtils;
-import com.mcp.utils.HttpUtils;
+import com.mcp.utils.Deadline;
+import com.mcp.utils.NegativeCache;
+import com.mcp.utils.TicketParser;
+import com.mcp.utils.TicketQuery;
+import com.mcp.utils.ToolMetrics;
+import com.mcp.utils.TrainTypeFilter;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
-import java.util.HashMap;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * 车票服务类
- * 提供列车票务查询功能
+ * 提供列车票务查询功能，余票统一经余票查询服务获取，与其他工具共享缓存和上游限流
  */
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class TicketService {
+    /**
+     * 工具名称，用于指标标签
+     */
+    private static final String TOOL_NAME = "getTickets";
+    
+    /**
+     * 否定结果的保留时间（毫秒）
+     */
+    private static final long NEGATIVE_TTL_MILLIS = 2 * 60_000;
+    
+    /**
+     * 余票变化输出模式名称
+     */
+    public static final String FORMAT_CHANGES = "changes";
+    
+    /**
+     * 查询时刻的格式，按北京时间显示，与12306的时刻一致
+     */
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss")
+            .withZone(ZoneId.of("Asia/Shanghai"));
+    
+    private final TicketPrefetcher ticketPrefetcher;
+    
+    private final LeftTicketService leftTicketService;
+    
+    private final PriceService priceService;
+    
+    /**
+     * 查不到车票的查询，以"日期|出发站|到达站|车型"为键，容量独立于余票缓存
+     */
+    private final NegativeCache negativeResults = new NegativeCache("tickets", NEGATIVE_TTL_MILLIS, 1000);
     
     /**
      * 查询车票信息
@@ -29,14 +74,36 @@ public class TicketService {
      * @param fromStation   出发站代码
      * @param toStation     到达站代码
      * @param trainTypes    列车类型过滤，如G,D,K等，多种类型用逗号分隔
+     * @param departFrom    最早出发时间，格式为 HH:mm
+     * @param departTo      最晚出发时间，格式为 HH:mm
+     * @param arriveFrom    最早到达时间，格式为 HH:mm 或 HH:mm+N
+     * @param arriveTo      最晚到达时间，格式为 HH:mm 或 HH:mm+N
+     * @param minSeats      最少余票数量
+     * @param seatClasses   参与余票判断的席别，逗号分隔
+     * @param sortBy        排序键，逗号分隔
+     * @param page          页码，从1开始
+     * @param pageSize      每页条数
+     * @param outputFormat  输出模式，text、compact或changes
+     * @param fares         是否查询票价
      * @return 车票信息的JSON字符串
      */
-    @Tool(description = "查询两站之间的车票信息，支持按车型过滤")
+    @Tool(description = "查询两站之间的车票信息，支持按车型、出发/到达时间窗口、最少余票过滤，以及排序和分页，可选查询票价")
     public String getTickets(
             @ToolParam(description = "查询日期，格式为yyyy-MM-dd") String date,
             @ToolParam(description = "出发站代码") String fromStation,
             @ToolParam(description = "到达站代码") String toStation,
-            @ToolParam(description = "列车类型过滤，如G,D,K等，多种类型用逗号分隔，可为空") String trainTypes) {
+            @ToolParam(description = "列车类型过滤，如G,D,K等，多种类型用逗号分隔，可为空") String trainTypes,
+            @ToolParam(description = "最早出发时间，格式为HH:mm（00:00-23:59），可为空", required = false) String departFrom,
+            @ToolParam(description = "最晚出发时间，格式为HH:mm，可为空；早于最早出发时间时表示跨越午夜", required = false) String departTo,
+            @ToolParam(description = "最早到达时间，格式为HH:mm，次日及以后到达写作HH:mm+N（如08:00+1），可为空", required = false) String arriveFrom,
+            @ToolParam(description = "最晚到达时间，格式为HH:mm或HH:mm+N；早于最早到达时间时表示次日，可为空", required = false) String arriveTo,
+            @ToolParam(description = "最少余票数量，\"有\"视为充足，可为空", required = false) Integer minSeats,
+            @ToolParam(description = "参与余票判断的席别，如二等座,一等座或ze,zy，逗号分隔，可为空表示任一席别", required = false) String seatClasses,
+            @ToolParam(description = "排序键：departure、arrival、duration、seats，逗号分隔，前缀-表示降序，可为空", required = false) String sortBy,
+            @ToolParam(description = "页码，从1开始，可为空", required = false) Integer page,
+            @ToolParam(description = "每页条数，可为空表示返回全部", required = false) Integer pageSize,
+            @ToolParam(description = "输出模式：text（默认，逐条带标签）、compact（表头一次、制表符分隔，节省上下文）或changes（只返回与上一次获取相比新增、消失和余票变化的车次）", required = false) String outputFormat,
+            @ToolParam(description = "是否查询票价，默认不查询；只为本页车次查询，未缓存的票价需要额外请求12306，建议同时设置每页条数", required = false) Boolean fares) {
         
         log.debug("开始查询车票信息: 日期={}, 出发站={}, 到达站={}, 车型过滤={}", date, fromStation, toStation, trainTypes);
         
@@ -52,67 +119,51 @@ public class TicketService {
         }
         
         try {
-            log.info("通过前端服务查询车票信息: {} 从 {} 到 {}", date, fromStation, toStation);
-            
-            // 构建前端服务URL
-            String frontendUrl = "http://localhost:3001/api/tickets";
+            TicketQuery query = new TicketQuery()
+                    .departBetween(departFrom, departTo)
+                    .arriveBetween(arriveFrom, arriveTo)
+                    .minSeats(minSeats, seatClasses)
+                    .sortBy(sortBy)
+                    .page(page, pageSize);
             
-            // 构建查询参数
-            Map<String, Object> params = new HashMap<>();
-            params.put("date", date);
-            params.put("fromStation", fromStation);
-            params.put("toStation", toStation);
-            if (StringUtils.hasLength(trainTypes)) {
-                // 将逗号分隔的车型转换为字符串（如"G,D" -> "GD"）
-                String trainFilterFlags = trainTypes.replaceAll(",", "").replaceAll(" ", "");
-                params.put("trainFilterFlags", trainFilterFlags);
+            if (FORMAT_CHANGES.equalsIgnoreCase(outputFormat)) {
+                return changesSinceLastFetch(date, fromStation, toStation, trainTypes);
             }
             
-            // 设置请求头
-            Map<String, String> headers = new HashMap<>();
-            headers.put("Content-Type", "application/json");
-            headers.put("Accept", "application/json");
-            
-            // 发送请求到前端服务
-            log.info("发送请求到前端服务: {}", frontendUrl);
-            String response = HttpUtils.get(frontendUrl, params, headers);
-            
-            if (response == null) {
-                log.error("前端服务返回为空");
-                return "查询车票信息失败，前端服务无响应";
-            }
-            
-            // 解析前端服务响应
-            log.debug("解析前端服务响应");
-            JSONObject jsonResponse = JSON.parseObject(response);
-            if (jsonResponse == null) {
-                log.error("前端服务响应解析失败: {}", response);
-                return "查询车票信息失败，前端服务响应格式错误";
+            // 短时间内查不到车票的查询直接返回上次的提示，重试不再请求12306
+            String negativeKey = date + "|" + fromStation + "|" + toStation + "|"
+                    + (trainTypes != null ? trainTypes.replaceAll("[, ]", "").toUpperCase() : "");
+            String negative = negativeResults.get(negativeKey);
+            if (negative != null) {
+                log.info("命中否定结果缓存: {}", negativeKey);
+                ToolMetrics.emptyResult(TOOL_NAME);
+                return negative;
             }
             
-            // 检查是否有错误
-            if (jsonResponse.containsKey("error")) {
-                String errorMsg = jsonResponse.getString("error");
-                String message = jsonResponse.getString("message");
-                log.error("前端服务返回错误: {} - {}", errorMsg, message);
-                return "查询失败：" + (message != null ? message : errorMsg);
+            // 高频查询由后台预取在余票缓存过期前刷新，命中缓存时不请求12306
+            ticketPrefetcher.record(date, fromStation, toStation);
+            LeftTicketResult result = ToolMetrics.phase(TOOL_NAME, ToolMetrics.PHASE_FETCH,
+                    () -> leftTicketService.query(date, fromStation, toStation));
+            if (result == null) {
+                return Deadline.expired() ? "查询车票信息超时，请稍后重试" : "查询车票信息失败，请稍后重试";
             }
             
-            // 获取车票数据
-            JSONArray ticketsArray = jsonResponse.getJSONArray("tickets");
-            if (ticketsArray == null || ticketsArray.isEmpty()) {
-                String message = jsonResponse.getString("message");
+            List<TicketInfo> tickets = ToolMetrics.phase(TOOL_NAME, ToolMetrics.PHASE_PARSE,
+                    () -> filterTrainTypes(result, trainTypes));
+            if (tickets.isEmpty()) {
                 log.info("查询结果为空: {} 从 {} 到 {}", date, fromStation, toStation);
-                return message != null ? message : "没有找到符合条件的车票信息";
+                ToolMetrics.emptyResult(TOOL_NAME);
+                String empty = "没有找到符合条件的车票信息";
+                negativeResults.put(negativeKey, empty);
+                return empty;
             }
             
-            log.info("查询到 {} 条车票信息", ticketsArray.size());
-            
-            // 格式化车票信息为用户友好的格式
-            String result = formatTicketsFromJson(ticketsArray);
-            log.info("查询完成，返回 {} 条车票信息", ticketsArray.size());
-            return result;
+            log.info("查询到 {} 条车票信息", tickets.size());
+            return queryAndFormat(tickets, query, outputFormat, fares, date, fromStation, toStation);
             
+        } catch (IllegalArgumentException e) {
+            log.warn("车票查询参数无效: {}", e.getMessage());
+            return e.getMessage();
         } catch (Exception e) {
             log.error("查询车票信息异常: {}", e.getMessage(), e);
             return "查询车票信息出错：" + e.getMessage();
@@ -120,56 +171,270 @@ public class TicketService {
     }
     
     /**
-     * 格式化从前端服务返回的车票JSON数据
+     * 在格式化之前完成过滤、排序和分页
+     */
+    private String queryAndFormat(List<TicketInfo> tickets, TicketQuery query, String outputFormat, Boolean fares,
+                                  String date, String fromStation, String toStation) {
+        TicketQuery.Result filtered = ToolMetrics.phase(TOOL_NAME, ToolMetrics.PHASE_FILTER,
+                () -> query.apply(tickets));
+        if (filtered.total() == 0) {
+            log.info("过滤后无符合条件的车票: {} 从 {} 到 {}", date, fromStation, toStation);
+            ToolMetrics.emptyResult(TOOL_NAME);
+            return "没有找到符合条件的车票信息";
+        }
+        
+        // 调用方需要时只为本页的车次补全票价，票价写在副本上，缓存中共享的车票不变
+        TicketQuery.Result queryResult = filtered;
+        int unpriced = 0;
+        if (Boolean.TRUE.equals(fares)) {
+            PriceService.Priced priced = ToolMetrics.phase(TOOL_NAME, ToolMetrics.PHASE_FETCH,
+                    () -> priceService.fillPrices(date, filtered.tickets()));
+            queryResult = new TicketQuery.Result(filtered.total(), filtered.page(), filtered.pageCount(),
+                    priced.tickets());
+            unpriced = priced.unpriced();
+        }
+        
+        // 格式化车票信息为用户友好的格式
+        TicketQuery.Result page = queryResult;
+        boolean compact = CompactWriter.isCompact(outputFormat);
+        String result = ToolMetrics.format(TOOL_NAME, page.tickets().size(),
+                () -> compact ? formatTicketsCompact(page) : formatTickets(page, tickets.size()));
+        if (unpriced > 0) {
+            String note = unpriced + " 个车次未查询到票价（单次最多查询 " + PriceService.MAX_FETCH_PER_CALL
+                    + " 个区间，可减少每页条数后重试）";
+            result += compact ? "# " + note + "\n" : "注：" + note + "\n";
+        }
+        log.info("查询完成，返回 {} 条车票信息（过滤后共 {} 条）", page.tickets().size(), page.total());
+        return result;
+    }
+    
+    /**
+     * 与同一查询上一次获取相比的车次变化
+     * 余票结果在缓存有效期内共享，缓存命中时返回的是最近两次获取之间的变化
+     */
+    private String changesSinceLastFetch(String date, String fromStation, String toStation, String trainTypes) {
+        LeftTicketResult result = ToolMetrics.phase(TOOL_NAME, ToolMetrics.PHASE_FETCH,
+                () -> leftTicketService.query(date, fromStation, toStation));
+        if (result == null) {
+            return Deadline.expired() ? "查询车票信息超时，请稍后重试" : "查询车票信息失败，请稍后重试";
+        }
+        List<TicketDelta> deltas = result.getDeltas();
+        if (deltas == null) {
+            return "这是该查询的首次结果（" + formatTime(result.getFetchedAt()) + "，共 "
+                    + result.getTickets().size() + " 个车次），暂无可比较的变化，请稍后再查";
+        }
+        
+        int filterMask = TrainTypeFilter.compile(trainTypes);
+        List<TicketDelta> matched = deltas.stream()
+                .filter(delta -> TrainTypeFilter.matches(
+                        (delta.getAfter() != null ? delta.getAfter() : delta.getBefore()).getTrainMask(), filterMask))
+                .toList();
+        String header = date + " " + fromStation + " → " + toStation + "，本次 " + formatTime(result.getFetchedAt())
+                + "，与 " + formatTime(result.getPreviousFetchedAt()) + " 的结果相比";
+        if (matched.isEmpty()) {
+            return header + "，余票没有变化";
+        }
+        
+        return ToolMetrics.format(TOOL_NAME, matched.size(), () -> {
+            StringBuilder text = new StringBuilder(header).append("，").append(matched.size()).append(" 个车次有变化：\n");
+            for (TicketDelta delta : matched) {
+                text.append('\n').append(delta.getTrainCode()).append(' ');
+                if (delta.getBefore() == null) {
+                    TicketInfo after = delta.getAfter();
+                    text.append("新增车次（").append(after.getStartTime()).append(" → ").append(after.getArriveTime())
+                            .append("）：").append(seatSummary(after));
+                } else if (delta.getAfter() == null) {
+                    text.append("已不在查询结果中");
+                } else {
+                    text.append(seatChanges(delta.getBefore(), delta.getAfter()));
+                }
+            }
+            return text.toString();
+        });
+    }
+    
+    /**
+     * 各席别余票，如"二等座 有；一等座 5"
+     */
+    private static String seatSummary(TicketInfo ticket) {
+        if (ticket.getPrices() == null || ticket.getPrices().isEmpty()) {
+            return "无余票";
+        }
+        List<String> seats = new ArrayList<>();
+        for (Price price : ticket.getPrices()) {
+            seats.add(price.getSeatName() + " " + price.getNum());
+        }
+        return String.join("；", seats);
+    }
+    
+    /**
+     * 余票有变化的席别，如"二等座 12 → 5；一等座 无 → 2"
+     */
+    private static String seatChanges(TicketInfo before, TicketInfo after) {
+        Map<String, String[]> seats = new LinkedHashMap<>();
+        if (before.getPrices() != null) {
+            for (Price price : before.getPrices()) {
+                seats.put(price.getSeatName(), new String[]{price.getNum(), "无"});
+            }
+        }
+        if (after.getPrices() != null) {
+            for (Price price : after.getPrices()) {
+                seats.computeIfAbsent(price.getSeatName(), name -> new String[]{"无", null})[1] = price.getNum();
+            }
+        }
+        List<String> changes = new ArrayList<>();
+        seats.forEach((seatName, nums) -> {
+            if (TicketParser.seatCount(nums[0]) != TicketParser.seatCount(nums[1])) {
+                changes.add(seatName + " " + nums[0] + " → " + nums[1]);
+            }
+        });
+        return changes.isEmpty() ? "余票显示变化" : String.join("；", changes);
+    }
+    
+    private static String formatTime(long millis) {
+        return TIME_FORMAT.format(Instant.ofEpochMilli(millis));
+    }
+    
+    /**
+     * 从余票结果中取出符合车型的车票
+     */
+    private static List<TicketInfo> filterTrainTypes(LeftTicketResult result, String trainTypes) {
+        int filterMask = TrainTypeFilter.compile(trainTypes);
+        return result.getTickets().stream()
+                .filter(ticket -> TrainTypeFilter.matches(ticket.getTrainMask(), filterMask))
+                .toList();
+    }
+    
+    /**
+     * 格式化车票查询结果
      *
-     * @param ticketsArray 车票JSON数组
+     * @param queryResult 流水线处理后的查询结果
+     * @param fetched     按车型过滤后的车票总数
      * @return 格式化后的车票信息字符串
      */
-    private String formatTicketsFromJson(JSONArray ticketsArray) {
-        if (ticketsArray == null || ticketsArray.isEmpty()) {
+    String formatTickets(TicketQuery.Result queryResult, int fetched) {
+        List<TicketInfo> tickets = queryResult.tickets();
+        if (tickets.isEmpty()) {
             return "没有找到符合条件的车票信息";
         }
         
-        StringBuilder result = new StringBuilder();
-        result.append("车次信息查询结果：\n\n");
+        StringBuilder result = new StringBuilder(tickets.size() * 256);
+        result.append("车次信息查询结果");
+        if (queryResult.total() != fetched || queryResult.pageCount() > 1) {
+            result.append("（共 ").append(queryResult.total()).append(" 条，第 ")
+                    .append(queryResult.page()).append('/').append(queryResult.pageCount()).append(" 页）");
+        }
+        result.append("：\n\n");
         
-        for (int i = 0; i < ticketsArray.size(); i++) {
-            JSONObject ticket = ticketsArray.getJSONObject(i);
-            
-            result.append(String.format("车次：%s\n", ticket.getString("startTrainCode")));
-            result.append(String.format("出发站：%s -> 到达站：%s\n", 
-                ticket.getString("fromStation"), ticket.getString("toStation")));
-            result.append(String.format("出发时间：%s -> 到达时间：%s\n", 
-                ticket.getString("startTime"), ticket.getString("arriveTime")));
-            result.append(String.format("历时：%s\n", ticket.getString("lishi")));
+        for (TicketInfo ticket : tickets) {
+            result.append("车次：").append(ticket.getStartTrainCode()).append('\n');
+            result.append("出发站：").append(ticket.getFromStation())
+                    .append(" -> 到达站：").append(ticket.getToStation()).append('\n');
+            result.append("出发时间：").append(ticket.getStartTime())
+                    .append(" -> 到达时间：").append(ticket.getArriveTime()).append('\n');
+            result.append("历时：").append(ticket.getLishi()).append('\n');
             
             // 座位信息
-            JSONArray prices = ticket.getJSONArray("prices");
+            List<Price> prices = ticket.getPrices();
             if (prices != null && !prices.isEmpty()) {
                 result.append("座位信息：\n");
-                for (int j = 0; j < prices.size(); j++) {
-                    JSONObject price = prices.getJSONObject(j);
-                    String seatName = price.getString("seatName");
-                    String num = price.getString("num");
-                    String numDisplay = num.matches("\\d+") ? num + "张" : num;
-                    result.append(String.format("  - %s：%s剩余\n", seatName, numDisplay));
+                for (Price price : prices) {
+                    String num = price.getNum();
+                    result.append("  - ").append(price.getSeatName()).append('：').append(num);
+                    if (isDigits(num)) {
+                        result.append('张');
+                    }
+                    result.append("剩余");
+                    appendFare(result, price);
+                    result.append('\n');
                 }
             }
             
             // 服务标识
-            JSONArray dwFlags = ticket.getJSONArray("dwFlag");
+            List<String> dwFlags = ticket.getDwFlag();
             if (dwFlags != null && !dwFlags.isEmpty()) {
                 result.append("服务标识：");
                 for (int j = 0; j < dwFlags.size(); j++) {
                     if (j > 0) result.append("、");
-                    result.append(dwFlags.getString(j));
+                    result.append(dwFlags.get(j));
                 }
-                result.append("\n");
+                result.append('\n');
             }
             
-            result.append("\n");
+            result.append('\n');
         }
         
         return result.toString();
     }
-}
\ No newline at end of file
+    
+    /**
+     * 以紧凑表格格式输出车票查询结果
+     *
+     * @param queryResult 流水线处理后的查询结果
+     * @return 表头一次、制表符分隔的车票信息
+     */
+    String formatTicketsCompact(TicketQuery.Result queryResult) {
+        CompactWriter writer = CompactWriter.begin();
+        writer.comment("共" + queryResult.total() + "条 第" + queryResult.page() + "/" + queryResult.pageCount() + "页");
+        writer.header("车次", "出发站", "到达站", "发时", "到时", "历时", "余票", "标识");
+        
+        for (TicketInfo ticket : queryResult.tickets()) {
+            writer.cell(ticket.getStartTrainCode())
+                    .cell(ticket.getFromStation())
+                    .cell(ticket.getToStation())
+                    .cell(ticket.getStartTime())
+                    .cell(ticket.getArriveTime())
+                    .cell(ticket.getLishi());
+            
+            // 余票：席别+数量（有票价时附票价），逗号分隔，如"二等座有¥553.0,一等座5"
+            StringBuilder seats = writer.rawCell();
+            List<Price> prices = ticket.getPrices();
+            if (prices != null) {
+                for (int j = 0; j < prices.size(); j++) {
+                    if (j > 0) seats.append(',');
+                    seats.append(prices.get(j).getSeatName()).append(prices.get(j).getNum());
+                    if (prices.get(j).getPrice() != null) {
+                        seats.append('¥').append(prices.get(j).getPrice());
+                    }
+                }
+            }
+            
+            StringBuilder flags = writer.rawCell();
+            List<String> dwFlags = ticket.getDwFlag();
+            if (dwFlags != null) {
+                for (int j = 0; j < dwFlags.size(); j++) {
+                    if (j > 0) flags.append(',');
+                    flags.append(dwFlags.get(j));
+                }
+            }
+            writer.endRow();
+        }
+        
+        return writer.finish();
+    }
+    
+    /**
+     * 追加票价和折扣，如"，票价 ¥553.0（9.5折）"
+     */
+    private static void appendFare(StringBuilder result, Price price) {
+        if (price.getPrice() != null) {
+            result.append("，票价 ¥").append(price.getPrice());
+        }
+        if (price.getDiscount() != null) {
+            result.append('（').append(price.getDiscount()).append("折）");
+        }
+    }
+    
+    private static boolean isDigits(String num) {
+        if (num == null || num.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < num.length(); i++) {
+            char c = num.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,694 @@
+package com.mcp.service;
+
+import com.mcp.model.LeftTicketResult;
+import com.mcp.model.Price;
+import com.mcp.model.TicketData;
+import com.mcp.model.TicketInfo;
+import com.mcp.utils.DateUtils;
+import com.mcp.utils.TicketParser;
+import com.mcp.utils.ToolMetrics;
+import com.mcp.utils.TrainTypeFilter;
+import com.mcp.utils.UpstreamScheduler;
+import io.modelcontextprotocol.server.McpAsyncServerExchange;
+import io.modelcontextprotocol.server.McpSyncServerExchange;
+import io.modelcontextprotocol.spec.McpSchema;
+import io.modelcontextprotocol.spec.McpServerSession;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.mcp.McpToolUtils;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.lang.reflect.Field;
+import java.security.SecureRandom;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 余票订阅服务类
+ * 智能体登记"某日某线路出现余票时通知我"，服务按"日期|出发站|到达站"去重轮询：同一查询无论有多少订阅，
+ * 每个轮询间隔最多请求一次。余票数量变化时通过MCP会话的日志通知推送给订阅方，同时保留最近的变化供查询。
+ * 轮询间隔随起售时间（TicketData.saleTime）临近而缩短，起售后的一段时间内保持最短间隔。
+ * 订阅编号随机生成，订阅按MCP会话编号绑定，只能由创建它的会话查看和取消；会话断开时移除该会话的全部订阅。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TicketWatchService {
+    /**
+     * 推送通知使用的日志名称
+     */
+    private static final String LOGGER_NAME = "ticket-watch";
+
+    /**
+     * 每个订阅保留的最近变化条数
+     */
+    private static final int MAX_EVENTS = 20;
+
+    /**
+     * 起售后保持最短轮询间隔的时长（毫秒）
+     */
+    private static final long SALE_RUSH_MILLIS = 10 * 60_000;
+
+    /**
+     * 一天的毫秒数
+     */
+    private static final long DAY_MILLIS = 24 * 60 * 60_000;
+
+    /**
+     * 同步交换对象持有的异步交换对象，读取会话编号用，见 sessionOf
+     */
+    private static final Field SYNC_EXCHANGE_FIELD = accessibleField(McpSyncServerExchange.class, "exchange");
+
+    /**
+     * 异步交换对象持有的MCP会话
+     */
+    private static final Field ASYNC_SESSION_FIELD = accessibleField(McpAsyncServerExchange.class, "session");
+
+    private final LeftTicketService leftTicketService;
+
+    /**
+     * 常规轮询间隔（秒）
+     */
+    @Value("${mcp.watch.interval-seconds:60}")
+    private long intervalSeconds;
+
+    /**
+     * 临近起售时的最短轮询间隔（秒）
+     */
+    @Value("${mcp.watch.min-interval-seconds:5}")
+    private long minIntervalSeconds;
+
+    /**
+     * 订阅总数上限
+     */
+    @Value("${mcp.watch.max-subscriptions:500}")
+    private int maxSubscriptions;
+
+    /**
+     * 订阅的最长保留时间（小时），乘车日期过后也会移除
+     */
+    @Value("${mcp.watch.ttl-hours:24}")
+    private long ttlHours;
+
+    /**
+     * 并行轮询的线程数
+     */
+    @Value("${mcp.watch.poll-threads:4}")
+    private int pollThreads;
+
+    /**
+     * 订阅，以订阅编号为键
+     */
+    private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+
+    /**
+     * 去重后的轮询查询，以"日期|出发站|到达站"为键
+     */
+    private final Map<String, WatchGroup> groups = new ConcurrentHashMap<>();
+
+    /**
+     * 已登记和正在登记的订阅数，先占用名额再登记，保证不超过上限
+     */
+    private final AtomicInteger subscriptionCount = new AtomicInteger();
+
+    private final SecureRandom random = new SecureRandom();
+
+    private ScheduledExecutorService scheduler;
+
+    private ExecutorService pollers;
+
+    @PostConstruct
+    public void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ticket-watch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger threadIndex = new AtomicInteger();
+        pollers = Executors.newFixedThreadPool(Math.max(1, pollThreads), runnable -> {
+            Thread thread = new Thread(runnable, "ticket-watch-poll-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::tick, 1, 1, TimeUnit.SECONDS);
+        ToolMetrics.watches(subscriptions::size, groups::size);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (pollers != null) {
+            pollers.shutdownNow();
+        }
+    }
+
+    /**
+     * 登记余票订阅
+     *
+     * @param date        日期，格式为yyyy-MM-dd
+     * @param fromStation 出发站代码
+     * @param toStation   到达站代码
+     * @param trainTypes  列车类型过滤
+     * @param seatClasses 关注的席别
+     * @param toolContext 工具上下文，含当前MCP会话
+     * @return 订阅编号和当前余票概况
+     */
+    @Tool(description = "订阅两站之间的余票变化：按车型和席别登记后，余票数量变化时通过MCP通知推送，不必反复调用getTickets轮询")
+    public String watchTickets(
+            @ToolParam(description = "查询日期，格式为yyyy-MM-dd") String date,
+            @ToolParam(description = "出发站代码") String fromStation,
+            @ToolParam(description = "到达站代码") String toStation,
+            @ToolParam(description = "列车类型过滤，如G,D,K等，多种类型用逗号分隔，可为空", required = false) String trainTypes,
+            @ToolParam(description = "关注的席别，如二等座,一等座或ze,zy，逗号分隔，可为空表示全部席别", required = false) String seatClasses,
+            ToolContext toolContext) {
+
+        if (!DateUtils.isValidFutureDate(date)) {
+            return "请提供有效的查询日期（今天或未来日期）";
+        }
+        if (!StringUtils.hasLength(fromStation) || !StringUtils.hasLength(toStation)) {
+            return "请提供有效的出发站和到达站代码";
+        }
+        McpSyncServerExchange exchange = exchangeOf(toolContext);
+        String session = sessionOf(exchange);
+        if (session == null) {
+            return "余票订阅需要在MCP会话中创建，当前调用无法接收通知，请改用getTickets查询";
+        }
+        if (subscriptionCount.incrementAndGet() > maxSubscriptions) {
+            subscriptionCount.decrementAndGet();
+            log.warn("余票订阅数已达上限: {}", maxSubscriptions);
+            return "余票订阅数已达上限，请先取消不再需要的订阅";
+        }
+
+        String id = newId();
+        String key = date + "|" + fromStation + "|" + toStation;
+        long expiresAt = Math.min(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(ttlHours),
+                LocalDate.parse(date).plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        Subscription subscription = new Subscription(id, key, TrainTypeFilter.compile(trainTypes),
+                parseSeatClasses(seatClasses), exchange, session, expiresAt);
+
+        subscriptions.put(id, subscription);
+        // 与取消订阅时移除空查询的操作互斥，避免订阅加入即将被移除的查询
+        WatchGroup group = groups.compute(key, (k, existing) -> {
+            WatchGroup target = existing != null ? existing : newGroup(date, fromStation, toStation);
+            target.subscribers.add(id);
+            return target;
+        });
+        log.info("登记余票订阅 {}: {}，当前该查询共 {} 个订阅", id, key, group.subscribers.size());
+
+        StringBuilder result = new StringBuilder();
+        result.append("已创建余票订阅 ").append(id).append("：").append(date).append(' ')
+                .append(fromStation).append(" → ").append(toStation).append('\n');
+        result.append("余票数量变化时将通过MCP通知推送，也可调用 getTicketWatchEvents 查看最近的变化").append('\n');
+        Map<String, Map<String, Price>> seats = group.seats;
+        if (seats != null) {
+            result.append("当前有余票的车次：").append(availableSummary(subscription, group, seats));
+        }
+        return result.toString();
+    }
+
+    /**
+     * 查看订阅最近的余票变化
+     *
+     * @param subscriptionId 订阅编号
+     * @param toolContext    工具上下文，含当前MCP会话
+     * @return 最近的变化，查看后清空
+     */
+    @Tool(description = "查看余票订阅最近的余票变化，查看后清空；只能查看本会话创建的订阅，不访问12306")
+    public String getTicketWatchEvents(
+            @ToolParam(description = "订阅编号，由watchTickets返回") String subscriptionId,
+            ToolContext toolContext) {
+        Subscription subscription = owned(subscriptionId, toolContext);
+        if (subscription == null) {
+            return "订阅 " + subscriptionId + " 不存在或已过期";
+        }
+        List<String> events = subscription.drainEvents();
+        if (events.isEmpty()) {
+            WatchGroup group = groups.get(subscription.key);
+            long next = group != null ? Math.max(0, group.nextPollAt - System.currentTimeMillis()) / 1000 : 0;
+            return "订阅 " + subscriptionId + " 暂无余票变化，下次检查约在 " + next + " 秒后";
+        }
+        return String.join("\n\n", events);
+    }
+
+    /**
+     * 取消余票订阅
+     *
+     * @param subscriptionId 订阅编号
+     * @param toolContext    工具上下文，含当前MCP会话
+     * @return 取消结果
+     */
+    @Tool(description = "取消余票订阅，只能取消本会话创建的订阅")
+    public String cancelTicketWatch(
+            @ToolParam(description = "订阅编号，由watchTickets返回") String subscriptionId,
+            ToolContext toolContext) {
+        Subscription subscription = owned(subscriptionId, toolContext);
+        if (subscription == null) {
+            return "订阅 " + subscriptionId + " 不存在或已过期";
+        }
+        remove(subscription);
+        return "已取消订阅 " + subscriptionId;
+    }
+
+    /**
+     * MCP会话断开，移除该会话的全部订阅，不再为它轮询
+     *
+     * @param sessionId MCP会话编号
+     */
+    public void sessionClosed(String sessionId) {
+        int removed = 0;
+        for (Subscription subscription : subscriptions.values()) {
+            if (subscription.session.equals(sessionId) && remove(subscription)) {
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            log.info("MCP会话 {} 已断开，移除 {} 个余票订阅", sessionId, removed);
+        }
+    }
+
+    /**
+     * 移除过期订阅，把到期的查询交给轮询线程
+     */
+    private void tick() {
+        try {
+            long now = System.currentTimeMillis();
+            for (Subscription subscription : subscriptions.values()) {
+                if (now >= subscription.expiresAt) {
+                    log.info("余票订阅 {} 已过期", subscription.id);
+                    remove(subscription);
+                }
+            }
+            for (WatchGroup group : groups.values()) {
+                if (now >= group.nextPollAt && group.polling.compareAndSet(false, true)) {
+                    pollers.execute(() -> poll(group));
+                }
+            }
+        } catch (Exception e) {
+            log.error("余票订阅调度异常: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 轮询一个查询，比较余票变化并通知该查询的所有订阅
+     */
+    private void poll(WatchGroup group) {
+        long intervalMillis = TimeUnit.SECONDS.toMillis(intervalSeconds);
+        try {
+            LeftTicketResult result = UpstreamScheduler.withPriority(UpstreamScheduler.Priority.BACKGROUND, () ->
+                    leftTicketService.refresh(group.date, group.fromStation, group.toStation)
+                            ? leftTicketService.peek(group.date, group.fromStation, group.toStation)
+                            : null);
+            if (result == null) {
+                ToolMetrics.watchPoll("failure");
+                log.debug("余票订阅轮询失败: {}|{}|{}", group.date, group.fromStation, group.toStation);
+                return;
+            }
+            ToolMetrics.watchPoll("success");
+
+            Map<String, Map<String, Price>> previous = group.seats;
+            Map<String, Map<String, Price>> current = seatsOf(result);
+            group.seats = current;
+            group.rememberTrainMasks(result);
+            if (previous != null) {
+                for (String id : group.subscribers) {
+                    Subscription subscription = subscriptions.get(id);
+                    if (subscription != null) {
+                        notifyChanges(subscription, group, previous, current);
+                    }
+                }
+            }
+            intervalMillis = adaptiveInterval(group, result);
+        } catch (Exception e) {
+            log.error("余票订阅轮询异常: {}", e.getMessage(), e);
+        } finally {
+            group.nextPollAt = System.currentTimeMillis() + intervalMillis;
+            group.polling.set(false);
+        }
+    }
+
+    /**
+     * 根据起售时间计算下次轮询间隔：距起售越近间隔越短（剩余时间的十分之一），起售后一段时间内保持最短间隔
+     */
+    private long adaptiveInterval(WatchGroup group, LeftTicketResult result) {
+        long baseMillis = TimeUnit.SECONDS.toMillis(intervalSeconds);
+        long minMillis = TimeUnit.SECONDS.toMillis(minIntervalSeconds);
+        long now = System.currentTimeMillis();
+
+        long nextSale = nextSaleAt(result, now);
+        if (nextSale > 0 && (group.saleAt == 0 || nextSale < group.saleAt || now - group.saleAt > SALE_RUSH_MILLIS)) {
+            group.saleAt = nextSale;
+        }
+        if (group.saleAt == 0) {
+            return baseMillis;
+        }
+        long untilSale = group.saleAt - now;
+        if (untilSale < -SALE_RUSH_MILLIS) {
+            group.saleAt = 0;
+            return baseMillis;
+        }
+        if (untilSale <= 0) {
+            return minMillis;
+        }
+        return Math.max(minMillis, Math.min(baseMillis, untilSale / 10));
+    }
+
+    /**
+     * 尚未起售的车次中最近的起售时刻，saleTime为"HHmm"格式的时刻，已过则取次日
+     *
+     * @return 起售时刻（毫秒时间戳），没有未起售的车次时返回0
+     */
+    private static long nextSaleAt(LeftTicketResult result, long now) {
+        LocalDateTime today = LocalDate.now().atStartOfDay();
+        long nearest = 0;
+        for (TicketData row : result.getRows()) {
+            String saleTime = row.getSaleTime();
+            if ("Y".equals(row.getCanWebBuy()) || saleTime == null || !saleTime.matches("\\d{4}")) {
+                continue;
+            }
+            int hour = Integer.parseInt(saleTime.substring(0, 2));
+            int minute = Integer.parseInt(saleTime.substring(2));
+            if (hour > 23 || minute > 59) {
+                continue;
+            }
+            long saleAt = today.with(LocalTime.of(hour, minute))
+                    .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            if (saleAt < now - SALE_RUSH_MILLIS) {
+                saleAt += DAY_MILLIS;
+            }
+            if (nearest == 0 || saleAt < nearest) {
+                nearest = saleAt;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * 比较订阅关注的车次和席别，有变化时推送通知并保存
+     */
+    private void notifyChanges(Subscription subscription, WatchGroup group,
+                               Map<String, Map<String, Price>> previous, Map<String, Map<String, Price>> current) {
+        List<String> changes = new ArrayList<>();
+        Set<String> trainCodes = new HashSet<>(previous.keySet());
+        trainCodes.addAll(current.keySet());
+        for (String trainCode : trainCodes) {
+            if (!TrainTypeFilter.matches(group.trainMask(trainCode), subscription.filterMask)) {
+                continue;
+            }
+            Map<String, Price> before = previous.getOrDefault(trainCode, Map.of());
+            Map<String, Price> after = current.getOrDefault(trainCode, Map.of());
+            Set<String> seatCodes = new HashSet<>(before.keySet());
+            seatCodes.addAll(after.keySet());
+            for (String seatCode : seatCodes) {
+                Price seatBefore = before.get(seatCode);
+                Price seatAfter = after.get(seatCode);
+                Price seat = seatAfter != null ? seatAfter : seatBefore;
+                if (!subscription.watches(seat)) {
+                    continue;
+                }
+                String numBefore = seatBefore != null ? seatBefore.getNum() : "无";
+                String numAfter = seatAfter != null ? seatAfter.getNum() : "无";
+                if (TicketParser.seatCount(numBefore) != TicketParser.seatCount(numAfter)) {
+                    changes.add(trainCode + " " + seat.getSeatName() + "：" + numBefore + " → " + numAfter
+                            + (TicketParser.seatCount(numBefore) == 0 ? "（有票了）" : ""));
+                }
+            }
+        }
+        if (changes.isEmpty()) {
+            return;
+        }
+        changes.sort(null);
+        String message = "余票订阅 " + subscription.id + "：" + group.date + " " + group.fromStation + " → "
+                + group.toStation + " 余票变化\n" + String.join("\n", changes);
+        subscription.addEvent(message);
+        push(subscription, message);
+    }
+
+    /**
+     * 通过订阅方的MCP会话推送通知，推送失败后不再推送，变化仍可通过getTicketWatchEvents查看
+     */
+    private void push(Subscription subscription, String message) {
+        McpSyncServerExchange exchange = subscription.exchange;
+        if (subscription.pushFailed) {
+            ToolMetrics.watchNotification("queued");
+            return;
+        }
+        try {
+            exchange.loggingNotification(new McpSchema.LoggingMessageNotification(
+                    McpSchema.LoggingLevel.INFO, LOGGER_NAME, message));
+            ToolMetrics.watchNotification("pushed");
+        } catch (Exception e) {
+            subscription.pushFailed = true;
+            ToolMetrics.watchNotification("queued");
+            log.warn("余票订阅 {} 推送通知失败，后续只保留待查询: {}", subscription.id, e.getMessage());
+        }
+    }
+
+    /**
+     * 查找当前会话创建的订阅，其他会话的订阅和不在MCP会话中的调用视为不存在
+     */
+    private Subscription owned(String subscriptionId, ToolContext toolContext) {
+        Subscription subscription = subscriptionId != null ? subscriptions.get(subscriptionId) : null;
+        if (subscription == null || !subscription.session.equals(sessionOf(exchangeOf(toolContext)))) {
+            return null;
+        }
+        return subscription;
+    }
+
+    /**
+     * 随机的订阅编号，不能由其他订阅的编号推测
+     */
+    private String newId() {
+        byte[] bytes = new byte[12];
+        random.nextBytes(bytes);
+        return "w" + HexFormat.of().formatHex(bytes);
+    }
+
+    private boolean remove(Subscription subscription) {
+        if (!subscriptions.remove(subscription.id, subscription)) {
+            return false;
+        }
+        subscriptionCount.decrementAndGet();
+        groups.computeIfPresent(subscription.key, (key, group) -> {
+            group.subscribers.remove(subscription.id);
+            return group.subscribers.isEmpty() ? null : group;
+        });
+        return true;
+    }
+
+    /**
+     * 新建轮询查询，余票缓存中已有结果时作为比较基准，否则在下一轮立即轮询
+     */
+    private WatchGroup newGroup(String date, String fromStation, String toStation) {
+        WatchGroup group = new WatchGroup(date, fromStation, toStation);
+        LeftTicketResult cached = leftTicketService.peek(date, fromStation, toStation);
+        if (cached != null) {
+            group.seats = seatsOf(cached);
+            group.rememberTrainMasks(cached);
+            group.nextPollAt = System.currentTimeMillis() + adaptiveInterval(group, cached);
+        }
+        return group;
+    }
+
+    /**
+     * 订阅关注的车次中当前有余票的车次
+     */
+    private static String availableSummary(Subscription subscription, WatchGroup group,
+                                           Map<String, Map<String, Price>> seats) {
+        List<String> available = new ArrayList<>();
+        seats.forEach((trainCode, prices) -> {
+            if (!TrainTypeFilter.matches(group.trainMask(trainCode), subscription.filterMask)) {
+                return;
+            }
+            for (Price price : prices.values()) {
+                if (subscription.watches(price) && TicketParser.seatCount(price.getNum()) > 0) {
+                    available.add(trainCode);
+                    return;
+                }
+            }
+        });
+        available.sort(null);
+        return available.isEmpty() ? "无" : String.join("、", available);
+    }
+
+    /**
+     * 各车次的席别余票，以车次和席别简称为键；余票为"无"的席别不在其中
+     */
+    private static Map<String, Map<String, Price>> seatsOf(LeftTicketResult result) {
+        Map<String, Map<String, Price>> seats = new HashMap<>();
+        for (TicketInfo ticket : result.getTickets()) {
+            Map<String, Price> prices = new HashMap<>();
+            if (ticket.getPrices() != null) {
+                for (Price price : ticket.getPrices()) {
+                    prices.put(price.getShortName(), price);
+                }
+            }
+            seats.put(ticket.getStartTrainCode(), prices);
+        }
+        return seats;
+    }
+
+    private static Set<String> parseSeatClasses(String seatClasses) {
+        Set<String> result = new HashSet<>();
+        if (StringUtils.hasLength(seatClasses)) {
+            for (String seatClass : seatClasses.split(",")) {
+                if (StringUtils.hasText(seatClass)) {
+                    result.add(seatClass.trim());
+                }
+            }
+        }
+        return result;
+    }
+
+    private static McpSyncServerExchange exchangeOf(ToolContext toolContext) {
+        if (toolContext == null) {
+            return null;
+        }
+        return McpToolUtils.getMcpExchange(toolContext).orElse(null);
+    }
+
+    /**
+     * MCP会话编号，与SSE连接endpoint事件中的sessionId相同，会话断开时据此移除订阅
+     * 每次工具调用都会新建交换对象，不能用它区分会话；当前版本的交换对象没有公开会话，从它持有的McpServerSession读取
+     *
+     * @return 会话编号，不在MCP会话中调用或读取失败时为null
+     */
+    private static String sessionOf(McpSyncServerExchange exchange) {
+        if (exchange == null || SYNC_EXCHANGE_FIELD == null || ASYNC_SESSION_FIELD == null) {
+            return null;
+        }
+        try {
+            Object session = ASYNC_SESSION_FIELD.get(SYNC_EXCHANGE_FIELD.get(exchange));
+            return session instanceof McpServerSession ? ((McpServerSession) session).getId() : null;
+        } catch (IllegalAccessException e) {
+            log.warn("读取MCP会话编号失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static Field accessibleField(Class<?> type, String name) {
+        try {
+            Field field = type.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("MCP SDK中没有 {}.{}，无法区分会话，余票订阅不可用: {}", type.getSimpleName(), name, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 去重后的轮询查询
+     */
+    private static final class WatchGroup {
+        private final String date;
+        private final String fromStation;
+        private final String toStation;
+        private final Set<String> subscribers = ConcurrentHashMap.newKeySet();
+        private final AtomicBoolean polling = new AtomicBoolean();
+        private volatile long nextPollAt;
+        /**
+         * 最近的起售时刻（毫秒时间戳），0表示没有临近的起售
+         */
+        private volatile long saleAt;
+        /**
+         * 上一次轮询的余票，首次轮询前为null
+         */
+        private volatile Map<String, Map<String, Price>> seats;
+        /**
+         * 出现过的车次的车型掩码，车次从结果中消失后仍可按车型过滤
+         */
+        private final Map<String, Integer> trainMasks = new ConcurrentHashMap<>();
+
+        private WatchGroup(String date, String fromStation, String toStation) {
+            this.date = date;
+            this.fromStation = fromStation;
+            this.toStation = toStation;
+        }
+
+        private void rememberTrainMasks(LeftTicketResult result) {
+            for (TicketInfo ticket : result.getTickets()) {
+                trainMasks.put(ticket.getStartTrainCode(), ticket.getTrainMask());
+            }
+        }
+
+        private int trainMask(String trainCode) {
+            Integer mask = trainMasks.get(trainCode);
+            return mask != null ? mask : TrainTypeFilter.trainMask(trainCode, 0);
+        }
+    }
+
+    /**
+     * 余票订阅
+     */
+    private static final class Subscription {
+        private final String id;
+        private final String key;
+        private final int filterMask;
+        private final Set<String> seatClasses;
+        private final McpSyncServerExchange exchange;
+        /**
+         * 创建订阅的MCP会话编号，见 sessionOf
+         */
+        private final String session;
+        private final long expiresAt;
+        private final Deque<String> events = new ArrayDeque<>();
+        private volatile boolean pushFailed;
+
+        private Subscription(String id, String key, int filterMask, Set<String> seatClasses,
+                             McpSyncServerExchange exchange, String session, long expiresAt) {
+            this.id = id;
+            this.key = key;
+            this.filterMask = filterMask;
+            this.seatClasses = seatClasses;
+            this.exchange = exchange;
+            this.session = session;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean watches(Price price) {
+            return seatClasses.isEmpty()
+                    || seatClasses.contains(price.getSeatName())
+                    || seatClasses.contains(price.getShortName());
+        }
+
+        private synchronized void addEvent(String event) {
+            if (events.size() >= MAX_EVENTS) {
+                events.pollFirst();
+            }
+            events.addLast(event);
+        }
+
+        private synchronized List<String> drainEvents() {
+            List<String> drained = new ArrayList<>(events);
+            events.clear();
+            return drained;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.mcp.service;
+
+import com.mcp.utils.CompactWriter;
+import com.mcp.utils.StationTrainIndex;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 车站车次索引服务类
+ * 基于路线服务查询过的时刻表建立的车站到车次倒排索引，回答"哪些车次先后经停两个车站"，不访问12306
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TrainIndexService {
+
+    private final RouteService routeService;
+
+    /**
+     * 查询本地索引中先后经停两个车站的车次
+     *
+     * @param fromStation 出发站代码
+     * @param toStation   到达站代码
+     * @return 车次列表
+     */
+    @Tool(description = "从本地车站车次索引中查询先经停出发站、后经停到达站的车次，不访问12306；索引只包含查询过时刻表的列车，结果可能不全，需要完整结果和余票时使用getTickets")
+    public String getIndexedTrains(
+            @ToolParam(description = "出发站代码") String fromStation,
+            @ToolParam(description = "到达站代码") String toStation) {
+
+        if (!StringUtils.hasLength(fromStation) || !StringUtils.hasLength(toStation)) {
+            return "请提供有效的出发站和到达站代码";
+        }
+        if (fromStation.equals(toStation)) {
+            return "出发站和到达站不能相同";
+        }
+
+        List<StationTrainIndex.Match> matches = new ArrayList<>(routeService.indexedTrainsBetween(fromStation, toStation));
+        int indexed = routeService.indexedTrainCount();
+        log.info("查询车站车次索引: {} -> {}，{} 个车次（索引共 {} 个车次）", fromStation, toStation, matches.size(), indexed);
+        if (matches.isEmpty()) {
+            return "本地索引中没有先经停 " + fromStation + "、后经停 " + toStation + " 的车次（索引共 " + indexed
+                    + " 个车次，只包含查询过时刻表的列车），可使用getTickets查询";
+        }
+
+        matches.sort(Comparator.comparing(StationTrainIndex.Match::trainCode,
+                Comparator.nullsLast(Comparator.naturalOrder())));
+        CompactWriter writer = CompactWriter.begin();
+        writer.comment(fromStation + "->" + toStation + " 共" + matches.size() + "个车次 索引" + indexed + "个车次 不含未查询过时刻表的列车");
+        writer.header("车次", "列车编号", "出发站序", "到达站序", "区间站数");
+        for (StationTrainIndex.Match match : matches) {
+            writer.cell(match.trainCode())
+                    .cell(match.trainNo())
+                    .cell(match.fromStop())
+                    .cell(match.toStop())
+                    .cell(match.toStop() - match.fromStop())
+                    .endRow();
+        }
+        return writer.finish();
+    }
+}
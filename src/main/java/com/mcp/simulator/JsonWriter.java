@@ -0,0 +1,130 @@
+package com.mcp.simulator;
+
+/**
+ * 简单的JSON写入器
+ * 模拟器只依赖JDK，以便单独打包运行，因此不使用fastjson
+ */
+class JsonWriter {
+
+    private final StringBuilder out;
+
+    /**
+     * 当前层级是否还没有元素
+     */
+    private boolean first = true;
+
+    JsonWriter(int capacity) {
+        this.out = new StringBuilder(capacity);
+    }
+
+    JsonWriter beginObject() {
+        separator();
+        out.append('{');
+        first = true;
+        return this;
+    }
+
+    JsonWriter endObject() {
+        out.append('}');
+        first = false;
+        return this;
+    }
+
+    JsonWriter beginArray() {
+        separator();
+        out.append('[');
+        first = true;
+        return this;
+    }
+
+    JsonWriter endArray() {
+        out.append(']');
+        first = false;
+        return this;
+    }
+
+    JsonWriter name(String name) {
+        separator();
+        string(name);
+        out.append(':');
+        first = true;
+        return this;
+    }
+
+    JsonWriter value(String value) {
+        separator();
+        if (value == null) {
+            out.append("null");
+        } else {
+            string(value);
+        }
+        return this;
+    }
+
+    JsonWriter value(long value) {
+        separator();
+        out.append(value);
+        return this;
+    }
+
+    JsonWriter value(boolean value) {
+        separator();
+        out.append(value);
+        return this;
+    }
+
+    JsonWriter field(String name, String value) {
+        return name(name).value(value);
+    }
+
+    JsonWriter field(String name, long value) {
+        return name(name).value(value);
+    }
+
+    JsonWriter field(String name, boolean value) {
+        return name(name).value(value);
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+
+    private void separator() {
+        if (!first) {
+            out.append(',');
+        }
+        first = false;
+    }
+
+    private void string(String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+}
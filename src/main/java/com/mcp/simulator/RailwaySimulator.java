@@ -0,0 +1,656 @@
+package com.mcp.simulator;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 12306接口模拟器
+ * 提供station_name.js、余票查询、经停站查询、中转查询和下发Cookie的首页，响应由种子数据生成，
+ * 延迟、错误率和限流行为可配置，用于离线压测和延迟测试。
+ * 既可以在进程内通过 {@link #start(SimulatorConfig)} 启动，也可以单独打包运行：
+ * java -jar 12306-mcp-java-simulator.jar --port=9306 --latency-base=50 --error-rate=0.02
+ */
+public class RailwaySimulator {
+    /**
+     * 服务端覆盖12306 API地址的系统属性
+     */
+    public static final String API_BASE_PROPERTY = "mcp.12306.api-base";
+
+    /**
+     * 服务端覆盖12306网站地址的系统属性
+     */
+    public static final String WEB_URL_PROPERTY = "mcp.12306.web-url";
+
+    /**
+     * 限流和被拦截时重定向的错误页，与12306一致
+     */
+    private static final String ERROR_PAGE = "/mormhweb/logFiles/error.html";
+
+    /**
+     * 中转查询最多返回的方案数
+     */
+    private static final int MAX_INTERLINE = 60;
+
+    /**
+     * 席别：余票字段下标、中转接口字段名、座位类型代码、适用的车次类别、每分钟票价（元），顺序与TicketParser一致
+     */
+    private static final String[][] SEAT_COLUMNS = {
+        {"32", "swz_num", "9", "G", "2.40"},
+        {"31", "zy_num", "M", "GD", "1.00"},
+        {"30", "ze_num", "O", "GD", "0.60"},
+        {"21", "gr_num", "6", "ZK", "1.20"},
+        {"23", "rw_num", "4", "DZTK", "0.80"},
+        {"33", "srrb_num", "F", "D", "0.90"},
+        {"28", "yw_num", "3", "ZTK", "0.50"},
+        {"24", "rz_num", "2", "", "0.35"},
+        {"29", "yz_num", "1", "ZTK", "0.25"},
+        {"26", "wz_num", "W", "GDZTK", "0.25"}
+    };
+
+    private final SimulatorConfig config;
+
+    private final SeedNetwork network;
+
+    private final String stationNamesJs;
+
+    private final HttpServer server;
+
+    private final ExecutorService executor;
+
+    private final Map<String, LongAdder> stats = new ConcurrentHashMap<>();
+
+    private final AtomicLong throttleSecond = new AtomicLong();
+
+    private final AtomicInteger throttleCount = new AtomicInteger();
+
+    private final AtomicLong sessionCounter = new AtomicLong();
+
+    private RailwaySimulator(SimulatorConfig config) throws IOException {
+        this.config = config;
+        this.network = new SeedNetwork(config.getSeed(), config.getStations(), config.getLines());
+        this.stationNamesJs = buildStationNames();
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(config.getThreads(), r -> {
+            Thread thread = new Thread(r, "simulator-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(config.getPort()), 256);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(executor);
+    }
+
+    /**
+     * 启动模拟器
+     *
+     * @param config 配置
+     * @return 已启动的模拟器
+     * @throws IOException 端口绑定失败
+     */
+    public static RailwaySimulator start(SimulatorConfig config) throws IOException {
+        RailwaySimulator simulator = new RailwaySimulator(config);
+        simulator.server.start();
+        return simulator;
+    }
+
+    /**
+     * 停止模拟器
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * 模拟器的基础地址，可作为 mcp.12306.api-base 使用
+     *
+     * @return 基础地址，如 http://localhost:9306
+     */
+    public String baseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    /**
+     * 将服务端的12306地址指向本模拟器，需要在服务端的RailwayConstants加载之前调用
+     */
+    public void exportSystemProperties() {
+        System.setProperty(API_BASE_PROPERTY, baseUrl());
+        System.setProperty(WEB_URL_PROPERTY, baseUrl() + "/index/");
+    }
+
+    /**
+     * 生成的车次总数
+     *
+     * @return 车次总数
+     */
+    public int trainCount() {
+        return network.trainCount();
+    }
+
+    /**
+     * 独立运行入口
+     *
+     * @param args 形如 --port=9306 的参数
+     * @throws Exception 启动失败
+     */
+    public static void main(String[] args) throws Exception {
+        SimulatorConfig config = SimulatorConfig.fromArgs(args);
+        RailwaySimulator simulator = start(config);
+        Runtime.getRuntime().addShutdownHook(new Thread(simulator::stop));
+        System.out.println("12306模拟器已启动: " + simulator.baseUrl() + " (" + config + ", 车次 " + simulator.trainCount() + ")");
+        System.out.println("服务端启动参数: -D" + API_BASE_PROPERTY + "=" + simulator.baseUrl()
+                + " -D" + WEB_URL_PROPERTY + "=" + simulator.baseUrl() + "/index/");
+        Thread.currentThread().join();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            count(path);
+            Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+
+            switch (path) {
+                case "/":
+                case "/index/":
+                case "/otn/leftTicket/init":
+                    sendCookies(exchange);
+                    return;
+                case "/otn/resources/js/framework/station_name.js":
+                    delay();
+                    send(exchange, 200, "application/javascript;charset=UTF-8", stationNamesJs);
+                    return;
+                case ERROR_PAGE:
+                    send(exchange, 200, "text/html;charset=UTF-8", "<html><body>网络可能存在问题，请您重试一下！</body></html>");
+                    return;
+                case "/sim/stats":
+                    send(exchange, 200, "application/json;charset=UTF-8", statsJson());
+                    return;
+                default:
+                    break;
+            }
+
+            if (!path.startsWith("/otn/")) {
+                send(exchange, 404, "text/plain;charset=UTF-8", "Not Found");
+                return;
+            }
+            if (throttled()) {
+                count("throttled");
+                redirect(exchange, ERROR_PAGE);
+                return;
+            }
+            if (config.isRequireCookie() && !hasSession(exchange)) {
+                count("rejected");
+                redirect(exchange, ERROR_PAGE);
+                return;
+            }
+
+            delay();
+            if (ThreadLocalRandom.current().nextDouble() < config.getErrorRate()) {
+                count("errors");
+                if (ThreadLocalRandom.current().nextBoolean()) {
+                    send(exchange, 502, "text/html;charset=UTF-8", "");
+                } else {
+                    send(exchange, 200, "text/html;charset=UTF-8", "<html><body>系统繁忙，请稍后重试</body></html>");
+                }
+                return;
+            }
+
+            switch (path) {
+                case "/otn/leftTicket/query":
+                    send(exchange, 200, "application/json;charset=UTF-8", leftTicket(params.get("leftTicketDTO.train_date"),
+                            params.get("leftTicketDTO.from_station"), params.get("leftTicketDTO.to_station")));
+                    return;
+                case "/otn/czxx/queryByTrainNo":
+                    send(exchange, 200, "application/json;charset=UTF-8", queryByTrainNo(params.get("train_no"),
+                            params.get("from_station_telecode"), params.get("to_station_telecode")));
+                    return;
+                case "/otn/leftTicket/queryTicketPrice":
+                    send(exchange, 200, "application/json;charset=UTF-8", ticketPrice(params.get("train_no"),
+                            params.get("from_station_no"), params.get("to_station_no"), params.get("seat_types")));
+                    return;
+                case "/otn/lcxx/query":
+                    send(exchange, 200, "application/json;charset=UTF-8", interline(params.get("depart_date"),
+                            params.get("from_station"), params.get("to_station")));
+                    return;
+                default:
+                    send(exchange, 404, "text/plain;charset=UTF-8", "Not Found");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.close();
+        } catch (Exception e) {
+            count("failures");
+            send(exchange, 500, "text/plain;charset=UTF-8", String.valueOf(e.getMessage()));
+        }
+    }
+
+    /**
+     * 余票查询，返回所有先经停出发站、后经停到达站的车次
+     */
+    private String leftTicket(String date, String from, String to) {
+        List<String> rows = new ArrayList<>();
+        Map<String, String> stationNames = new LinkedHashMap<>();
+        long bucket = System.currentTimeMillis() / (Math.max(1, config.getSeatRefreshMinutes()) * 60_000L);
+
+        for (SeedNetwork.Stop stop : network.stopsAt(from)) {
+            SeedNetwork.Train train = stop.train();
+            int toIndex = train.indexOf(to);
+            if (toIndex <= stop.index()) {
+                continue;
+            }
+            rows.add(ticketRow(train, stop.index(), toIndex, date, bucket));
+            List<SeedNetwork.Station> path = train.line().path();
+            for (int i : new int[] {0, path.size() - 1, stop.index(), toIndex}) {
+                stationNames.put(path.get(i).code(), path.get(i).name());
+            }
+        }
+        rows.sort(Comparator.comparing(row -> row.split("\\|", 10)[8]));
+
+        JsonWriter json = new JsonWriter(rows.size() * 600 + 256);
+        json.beginObject().field("httpstatus", 200).name("data").beginObject();
+        json.name("result").beginArray();
+        for (String row : rows) {
+            json.value(row);
+        }
+        json.endArray().field("flag", "1").field("level", "10").field("sametlevel", "10");
+        json.name("map").beginObject();
+        stationNames.forEach(json::field);
+        json.endObject().endObject().field("messages", "").field("status", true).endObject();
+        return json.toString();
+    }
+
+    /**
+     * 生成余票查询结果中的一行，字段下标与TicketParser一致
+     */
+    private String ticketRow(SeedNetwork.Train train, int fromIndex, int toIndex, String date, long bucket) {
+        List<SeedNetwork.Station> path = train.line().path();
+        String[] fields = new String[57];
+        Arrays.fill(fields, "");
+        fields[0] = secret(train.trainNo(), date, fromIndex, toIndex);
+        fields[1] = "预订";
+        fields[2] = train.trainNo();
+        fields[3] = train.code();
+        fields[4] = path.get(0).code();
+        fields[5] = path.get(path.size() - 1).code();
+        fields[6] = path.get(fromIndex).code();
+        fields[7] = path.get(toIndex).code();
+        fields[8] = train.startTime(fromIndex);
+        fields[9] = train.arriveTime(toIndex);
+        fields[10] = SeedNetwork.duration(train.minutesBetween(fromIndex, toIndex));
+        fields[12] = secret(train.trainNo(), "yp", fromIndex).substring(0, 40);
+        fields[13] = date != null ? date.replace("-", "") : "";
+        fields[14] = "3";
+        fields[15] = "P2";
+        fields[16] = String.format("%02d", fromIndex + 1);
+        fields[17] = String.format("%02d", toIndex + 1);
+        fields[18] = "1";
+        fields[19] = "0";
+
+        String trainClass = String.valueOf(train.line().trainClass());
+        boolean canBuy = false;
+        StringBuilder seatTypes = new StringBuilder();
+        for (String[] column : SEAT_COLUMNS) {
+            if (!column[3].contains(trainClass)) {
+                continue;
+            }
+            String seat = seat(network.hash(train.trainNo(), date, fromIndex, toIndex, column[0], bucket));
+            fields[Integer.parseInt(column[0])] = seat;
+            canBuy |= !"无".equals(seat) && !"候补".equals(seat);
+            seatTypes.append(column[2]);
+        }
+        fields[11] = canBuy ? "Y" : "N";
+        fields[34] = seatTypes + "0";
+        fields[35] = seatTypes.toString();
+        fields[36] = "0";
+        fields[37] = "1";
+        fields[39] = secret(train.trainNo(), "ypnew", toIndex).substring(0, 60);
+        fields[46] = train.dwFlag();
+        fields[48] = "1";
+        fields[49] = "CHN";
+        return String.join("|", fields);
+    }
+
+    /**
+     * 经停站查询
+     */
+    private String queryByTrainNo(String trainNo, String from, String to) {
+        SeedNetwork.Train train = trainNo != null ? network.train(trainNo) : null;
+        JsonWriter json = new JsonWriter(4096);
+        json.beginObject().field("httpstatus", 200).name("data").beginObject().name("data").beginArray();
+        if (train != null) {
+            List<SeedNetwork.Station> path = train.line().path();
+            int fromIndex = Math.max(0, train.indexOf(from));
+            int toIndex = train.indexOf(to) < 0 ? path.size() - 1 : train.indexOf(to);
+            for (int i = 0; i < path.size(); i++) {
+                boolean first = i == 0;
+                boolean last = i == path.size() - 1;
+                json.beginObject();
+                if (first) {
+                    json.field("start_station_name", path.get(0).name())
+                            .field("end_station_name", path.get(path.size() - 1).name())
+                            .field("station_train_code", train.code())
+                            .field("train_class_name", trainClassName(train.line().trainClass()))
+                            .field("service_type", "2");
+                }
+                json.field("arrive_time", first ? "----" : train.arriveTime(i))
+                        .field("station_name", path.get(i).name())
+                        .field("isChina", "1")
+                        .field("start_time", last ? train.arriveTime(i) : train.startTime(i))
+                        .field("stopover_time", first || last ? "----"
+                                : (train.line().depart()[i] - train.line().arrive()[i]) + "分钟")
+                        .field("station_no", String.format("%02d", i + 1))
+                        .field("country_code", "")
+                        .field("country_name", "")
+                        .field("isEnabled", i >= fromIndex && i <= toIndex)
+                        .endObject();
+            }
+        }
+        json.endArray().endObject().name("messages").beginArray().endArray().field("status", true).endObject();
+        return json.toString();
+    }
+
+    /**
+     * 票价查询，票价由区间运行分钟数乘以席别费率得到，同一区间每次相同
+     */
+    private String ticketPrice(String trainNo, String fromNo, String toNo, String seatTypes) {
+        SeedNetwork.Train train = trainNo != null ? network.train(trainNo) : null;
+        JsonWriter json = new JsonWriter(512);
+        json.beginObject().field("httpstatus", 200).name("data").beginObject();
+        int fromIndex = stationIndex(fromNo);
+        int toIndex = stationIndex(toNo);
+        if (train != null && seatTypes != null && fromIndex >= 0 && toIndex > fromIndex
+                && toIndex < train.line().path().size()) {
+            int minutes = train.minutesBetween(fromIndex, toIndex);
+            String trainClass = String.valueOf(train.line().trainClass());
+            for (String[] column : SEAT_COLUMNS) {
+                if (seatTypes.contains(column[2])) {
+                    // 动车组无座与二等座同价，普速列车无座与硬座同价
+                    double rate = "W".equals(column[2]) && "GD".contains(trainClass) ? 0.60 : Double.parseDouble(column[4]);
+                    String key = "W".equals(column[2]) ? "WZ" : Character.isDigit(column[2].charAt(0)) ? "A" + column[2] : column[2];
+                    json.field(key, String.format("¥%.1f", Math.max(1, minutes) * rate));
+                }
+            }
+            json.field("train_no", trainNo);
+        }
+        json.endObject().field("messages", "").field("status", true).endObject();
+        return json.toString();
+    }
+
+    /**
+     * 站序（从01开始）转换为经停站下标，无法解析时返回-1
+     */
+    private static int stationIndex(String stationNo) {
+        try {
+            return stationNo != null ? Integer.parseInt(stationNo) - 1 : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 中转查询，在第一程的后续经停站中寻找可换乘到达目的站的第二程
+     */
+    private String interline(String date, String from, String to) {
+        long bucket = System.currentTimeMillis() / (Math.max(1, config.getSeatRefreshMinutes()) * 60_000L);
+        List<Transfer> transfers = new ArrayList<>();
+        for (SeedNetwork.Stop first : network.stopsAt(from)) {
+            SeedNetwork.Train firstTrain = first.train();
+            List<SeedNetwork.Station> path = firstTrain.line().path();
+            for (int m = first.index() + 1; m < path.size(); m++) {
+                String middle = path.get(m).code();
+                if (middle.equals(to)) {
+                    break;
+                }
+                int arriveMiddle = firstTrain.departMinute() + firstTrain.line().arrive()[m];
+                for (SeedNetwork.Stop second : network.stopsAt(middle)) {
+                    SeedNetwork.Train secondTrain = second.train();
+                    int toIndex = secondTrain.indexOf(to);
+                    if (secondTrain == firstTrain || toIndex <= second.index()) {
+                        continue;
+                    }
+                    int departMiddle = secondTrain.departMinute() + secondTrain.line().depart()[second.index()];
+                    int wait = Math.floorMod(departMiddle - arriveMiddle, 24 * 60);
+                    if (wait < 20 || wait > 6 * 60) {
+                        continue;
+                    }
+                    int total = firstTrain.minutesBetween(first.index(), m) + wait
+                            + secondTrain.minutesBetween(second.index(), toIndex);
+                    transfers.add(new Transfer(first, m, second, toIndex, wait, total));
+                }
+            }
+        }
+        transfers.sort(Comparator.comparingInt(Transfer::total));
+
+        JsonWriter json = new JsonWriter(Math.min(transfers.size(), MAX_INTERLINE) * 1500 + 256);
+        json.beginObject().field("httpstatus", 200).name("data").beginObject().name("interlist").beginArray();
+        for (Transfer transfer : transfers.subList(0, Math.min(transfers.size(), MAX_INTERLINE))) {
+            SeedNetwork.Train firstTrain = transfer.first().train();
+            SeedNetwork.Train secondTrain = transfer.second().train();
+            json.beginObject()
+                    .field("from_station", network.station(from).name())
+                    .field("to_station", network.station(to).name())
+                    .field("middle_station", firstTrain.line().path().get(transfer.middle()).name())
+                    .field("first_train", firstTrain.code())
+                    .field("second_train", secondTrain.code())
+                    .field("start_time", firstTrain.startTime(transfer.first().index()))
+                    .field("arrive_time", secondTrain.arriveTime(transfer.toIndex()))
+                    .field("total_time", SeedNetwork.duration(transfer.total()))
+                    .field("wait_time", transfer.waitMinutes() + "分钟")
+                    .field("same_station", true)
+                    .field("same_train", false)
+                    .field("train_date", date);
+            json.name("fullList").beginArray();
+            segment(json, firstTrain, transfer.first().index(), transfer.middle(), date, bucket);
+            segment(json, secondTrain, transfer.second().index(), transfer.toIndex(), date, bucket);
+            json.endArray().endObject();
+        }
+        json.endArray().field("timeSpan", 120).field("result_index", 0).field("can_query", "Y").endObject()
+                .field("messages", "").field("status", true).endObject();
+        return json.toString();
+    }
+
+    private void segment(JsonWriter json, SeedNetwork.Train train, int fromIndex, int toIndex, String date, long bucket) {
+        List<SeedNetwork.Station> path = train.line().path();
+        String trainClass = String.valueOf(train.line().trainClass());
+        json.beginObject()
+                .field("train_no", train.trainNo())
+                .field("station_train_code", train.code())
+                .field("start_time", train.startTime(fromIndex))
+                .field("arrive_time", train.arriveTime(toIndex))
+                .field("lishi", SeedNetwork.duration(train.minutesBetween(fromIndex, toIndex)))
+                .field("from_station_name", path.get(fromIndex).name())
+                .field("to_station_name", path.get(toIndex).name())
+                .field("from_station_telecode", path.get(fromIndex).code())
+                .field("to_station_telecode", path.get(toIndex).code())
+                .field("from_station_no", String.format("%02d", fromIndex + 1))
+                .field("to_station_no", String.format("%02d", toIndex + 1))
+                .field("dw_flag", train.dwFlag());
+        StringBuilder seatTypes = new StringBuilder();
+        for (String[] column : SEAT_COLUMNS) {
+            if (column[3].contains(trainClass)) {
+                seatTypes.append(column[2]);
+            }
+        }
+        json.field("seat_types", seatTypes.toString());
+        for (String[] column : SEAT_COLUMNS) {
+            json.field(column[1], column[3].contains(trainClass)
+                    ? seat(network.hash(train.trainNo(), date, fromIndex, toIndex, column[0], bucket))
+                    : "--");
+        }
+        json.endObject();
+    }
+
+    /**
+     * 由哈希值得到余票显示值
+     */
+    private static String seat(long hash) {
+        int roll = (int) Math.floorMod(hash, 100L);
+        if (roll < 30) {
+            return "有";
+        }
+        if (roll < 55) {
+            return "无";
+        }
+        if (roll < 62) {
+            return "候补";
+        }
+        return String.valueOf(1 + Math.floorMod(hash >>> 8, 20L));
+    }
+
+    private String secret(Object... parts) {
+        StringBuilder secret = new StringBuilder(220);
+        long h = network.hash(parts);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789%";
+        while (secret.length() < 200) {
+            h = h * 6364136223846793005L + 1442695040888963407L;
+            secret.append(alphabet.charAt((int) Math.floorMod(h >>> 33, (long) alphabet.length())));
+        }
+        return secret.toString();
+    }
+
+    private static String trainClassName(char trainClass) {
+        switch (trainClass) {
+            case 'G':
+                return "高速";
+            case 'D':
+                return "动车";
+            case 'Z':
+                return "直达";
+            case 'T':
+                return "特快";
+            default:
+                return "快速";
+        }
+    }
+
+    private String buildStationNames() {
+        StringBuilder js = new StringBuilder(network.stations().size() * 50);
+        js.append("var station_names ='");
+        int index = 0;
+        for (SeedNetwork.Station station : network.stations()) {
+            js.append('@').append(station.abbr()).append('|').append(station.name()).append('|')
+                    .append(station.code()).append('|').append(station.pinyin()).append('|')
+                    .append(station.shortPinyin()).append('|').append(index++).append('|')
+                    .append(String.format("%04d", index % 400)).append('|').append(station.city()).append("|||");
+        }
+        return js.append("';").toString();
+    }
+
+    private void sendCookies(HttpExchange exchange) throws IOException {
+        long session = sessionCounter.incrementAndGet();
+        exchange.getResponseHeaders().add("Set-Cookie", "JSESSIONID=" + Long.toHexString(network.hash("session", session)).toUpperCase() + "; Path=/otn");
+        exchange.getResponseHeaders().add("Set-Cookie", "BIGipServerotn=" + (1000000000L + session % 100000) + ".64545.0000; path=/");
+        exchange.getResponseHeaders().add("Set-Cookie", "route=" + Long.toHexString(network.hash("route", session)) + "; Path=/");
+        send(exchange, 200, "text/html;charset=UTF-8", "<html><head><title>中国铁路12306</title></head><body>simulator</body></html>");
+    }
+
+    private static boolean hasSession(HttpExchange exchange) {
+        List<String> cookies = exchange.getRequestHeaders().get("Cookie");
+        if (cookies == null) {
+            return false;
+        }
+        for (String cookie : cookies) {
+            if (cookie.contains("JSESSIONID=")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按秒计数的限流窗口
+     */
+    private boolean throttled() {
+        if (config.getThrottleQps() <= 0) {
+            return false;
+        }
+        long second = System.currentTimeMillis() / 1000;
+        long current = throttleSecond.get();
+        if (current != second && throttleSecond.compareAndSet(current, second)) {
+            throttleCount.set(0);
+        }
+        return throttleCount.incrementAndGet() > config.getThrottleQps();
+    }
+
+    private void delay() throws InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long millis = config.getLatencyBase() + (config.getLatencyJitter() > 0 ? random.nextLong(config.getLatencyJitter() + 1) : 0);
+        if (random.nextDouble() < config.getLatencyTailRate()) {
+            millis *= 10;
+        }
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+
+    private void count(String key) {
+        stats.computeIfAbsent(key, k -> new LongAdder()).increment();
+    }
+
+    private String statsJson() {
+        JsonWriter json = new JsonWriter(512);
+        json.beginObject();
+        new TreeMap<>(stats).forEach((key, value) -> json.field(key, value.sum()));
+        return json.endObject().toString();
+    }
+
+    private static void redirect(HttpExchange exchange, String location) throws IOException {
+        exchange.getResponseHeaders().add("Location", location);
+        exchange.sendResponseHeaders(302, -1);
+        exchange.close();
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+        exchange.close();
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    /**
+     * 中转方案
+     */
+    private record Transfer(SeedNetwork.Stop first, int middle, SeedNetwork.Stop second, int toIndex, int waitMinutes, int total) {
+    }
+}
@@ -0,0 +1,333 @@
+package com.mcp.simulator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * 模拟器种子数据
+ * 由随机种子确定地生成车站、线路和车次，相同种子在任何机器上生成相同的数据
+ */
+class SeedNetwork {
+    /**
+     * 主要枢纽站：拼音简码、名称、电报码、全拼、简拼、城市
+     */
+    private static final String[][] HUBS = {
+        {"bjn", "北京南", "VNP", "beijingnan", "bjn", "北京"},
+        {"bjx", "北京西", "BXP", "beijingxi", "bjx", "北京"},
+        {"bji", "北京", "BJP", "beijing", "bj", "北京"},
+        {"bjf", "北京丰台", "FTP", "beijingfengtai", "bjft", "北京"},
+        {"hqo", "上海虹桥", "AOH", "shanghaihongqiao", "shhq", "上海"},
+        {"sha", "上海", "SHH", "shanghai", "sh", "上海"},
+        {"tjn", "天津南", "TIP", "tianjinnan", "tjn", "天津"},
+        {"tji", "天津", "TJP", "tianjin", "tj", "天津"},
+        {"jnx", "济南西", "JGK", "jinanxi", "jnx", "济南"},
+        {"xzd", "徐州东", "UUH", "xuzhoudong", "xzd", "徐州"},
+        {"bbn", "蚌埠南", "BMH", "bengbunan", "bbn", "蚌埠"},
+        {"njn", "南京南", "NKH", "nanjingnan", "njn", "南京"},
+        {"szh", "苏州", "SZH", "suzhou", "sz", "苏州"},
+        {"hzd", "杭州东", "HGH", "hangzhoudong", "hzd", "杭州"},
+        {"nbo", "宁波", "NGH", "ningbo", "nb", "宁波"},
+        {"hfn", "合肥南", "ENH", "hefeinan", "hfn", "合肥"},
+        {"zzd", "郑州东", "ZAF", "zhengzhoudong", "zzd", "郑州"},
+        {"whn", "武汉", "WHN", "wuhan", "wh", "武汉"},
+        {"csn", "长沙南", "CWQ", "changshanan", "csn", "长沙"},
+        {"gzn", "广州南", "IZQ", "guangzhounan", "gzn", "广州"},
+        {"szb", "深圳北", "IOQ", "shenzhenbei", "szb", "深圳"},
+        {"xab", "西安北", "EAY", "xianbei", "xab", "西安"},
+        {"cdd", "成都东", "ICW", "chengdudong", "cdd", "成都"},
+        {"cqb", "重庆北", "CUW", "chongqingbei", "cqb", "重庆"},
+        {"sjz", "石家庄", "SJP", "shijiazhuang", "sjz", "石家庄"},
+        {"tyn", "太原南", "TNV", "taiyuannan", "tyn", "太原"},
+        {"sya", "沈阳北", "SBT", "shenyangbei", "syb", "沈阳"},
+        {"hrx", "哈尔滨西", "VAB", "haerbinxi", "hebx", "哈尔滨"},
+        {"ccx", "长春西", "CRT", "changchunxi", "ccx", "长春"},
+        {"dlb", "大连北", "DFT", "dalianbei", "dlb", "大连"},
+        {"qdb", "青岛北", "QHK", "qingdaobei", "qdb", "青岛"},
+        {"fzh", "福州", "FZS", "fuzhou", "fz", "福州"},
+        {"xmn", "厦门北", "XKS", "xiamenbei", "xmb", "厦门"},
+        {"ncx", "南昌西", "NXG", "nanchangxi", "ncx", "南昌"},
+        {"gyb", "贵阳北", "KQW", "guiyangbei", "gyb", "贵阳"},
+        {"kmn", "昆明南", "KOM", "kunmingnan", "kmn", "昆明"},
+        {"nnd", "南宁东", "NFZ", "nanningdong", "nnd", "南宁"},
+        {"lzx", "兰州西", "LAJ", "lanzhouxi", "lzx", "兰州"},
+        {"wln", "乌鲁木齐", "WAR", "wulumuqi", "wlmq", "乌鲁木齐"},
+        {"hhd", "呼和浩特东", "NDC", "huhehaotedong", "hhhtd", "呼和浩特"}
+    };
+
+    /**
+     * 干线：按顺序经停的枢纽站电报码，保证常用线路上有车次
+     */
+    private static final String[][] TRUNKS = {
+        {"VNP", "TIP", "JGK", "UUH", "BMH", "NKH", "SZH", "AOH"},
+        {"VNP", "TIP", "JGK", "UUH", "BMH", "NKH", "HGH", "NGH"},
+        {"BXP", "SJP", "ZAF", "WHN", "CWQ", "IZQ", "IOQ"},
+        {"AOH", "NKH", "ENH", "WHN", "CUW", "ICW"},
+        {"BXP", "SJP", "TNV", "EAY", "ICW"},
+        {"AOH", "HGH", "NXG", "CWQ", "KQW", "KOM"},
+        {"VNP", "TIP", "SBT", "CRT", "VAB"},
+        {"HGH", "FZS", "XKS", "IOQ"},
+        {"ZAF", "EAY", "LAJ", "WAR"},
+        {"VNP", "JGK", "QHK"}
+    };
+
+    /**
+     * 生成普通车站名称使用的字
+     */
+    private static final String NAME_CHARS = "安宝北昌城川丹德东都丰福阜港高广桂海汉和河衡红湖华怀淮黄吉济江金锦晋京荆九康兰乐丽连辽林临柳龙隆鲁洛马梅民明南宁平齐青清庆泉饶荣瑞山商韶绍沈盛石寿舒顺松宿台泰唐天通万威潍文五武西溪仙湘祥新兴徐许烟延阳宜义永玉原岳云枣湛漳长肇镇郑中舟珠资遵";
+
+    private final List<Station> stations = new ArrayList<>();
+
+    private final Map<String, Station> stationsByCode = new HashMap<>();
+
+    private final Map<String, Train> trainsByNo = new LinkedHashMap<>();
+
+    private final Map<String, List<Stop>> stopsByStation = new HashMap<>();
+
+    private final long seed;
+
+    SeedNetwork(long seed, int stationCount, int lineCount) {
+        this.seed = seed;
+        Random random = new Random(seed);
+        generateStations(random, Math.max(stationCount, HUBS.length));
+        generateLines(random, lineCount);
+    }
+
+    List<Station> stations() {
+        return stations;
+    }
+
+    Station station(String code) {
+        return stationsByCode.get(code);
+    }
+
+    Train train(String trainNo) {
+        return trainsByNo.get(trainNo);
+    }
+
+    int trainCount() {
+        return trainsByNo.size();
+    }
+
+    /**
+     * 经停指定车站的所有车次
+     */
+    List<Stop> stopsAt(String code) {
+        return stopsByStation.getOrDefault(code, Collections.emptyList());
+    }
+
+    /**
+     * 确定性的哈希值，用于生成余票、密文等随查询变化但可复现的字段
+     */
+    long hash(Object... parts) {
+        long h = seed * 0x9E3779B97F4A7C15L;
+        for (Object part : parts) {
+            h ^= part == null ? 0 : part.hashCode();
+            h *= 0xBF58476D1CE4E5B9L;
+            h ^= h >>> 31;
+        }
+        return h;
+    }
+
+    private void generateStations(Random random, int stationCount) {
+        Set<String> codes = new HashSet<>();
+        Set<String> names = new HashSet<>();
+        for (String[] hub : HUBS) {
+            addStation(new Station(hub[0], hub[1], hub[2], hub[3], hub[4], hub[5], true), codes, names);
+        }
+
+        while (stations.size() < stationCount) {
+            int length = random.nextInt(3) == 0 ? 3 : 2;
+            StringBuilder name = new StringBuilder();
+            StringBuilder pinyin = new StringBuilder();
+            for (int i = 0; i < length; i++) {
+                name.append(NAME_CHARS.charAt(random.nextInt(NAME_CHARS.length())));
+                for (int j = 0; j < 2 + random.nextInt(4); j++) {
+                    pinyin.append((char) ('a' + random.nextInt(26)));
+                }
+            }
+            StringBuilder code = new StringBuilder();
+            for (int i = 0; i < 3; i++) {
+                code.append((char) ('A' + random.nextInt(26)));
+            }
+            if (codes.contains(code.toString()) || names.contains(name.toString())) {
+                continue;
+            }
+            String full = pinyin.toString();
+            addStation(new Station(full.substring(0, 3), name.toString(), code.toString(), full,
+                    full.substring(0, Math.min(length + 1, full.length())), name.substring(0, 2), false), codes, names);
+        }
+    }
+
+    private void addStation(Station station, Set<String> codes, Set<String> names) {
+        stations.add(station);
+        stationsByCode.put(station.code(), station);
+        codes.add(station.code());
+        names.add(station.name());
+    }
+
+    private void generateLines(Random random, int lineCount) {
+        Set<String> trainCodes = new HashSet<>();
+        int serial = 0;
+        for (int lineId = 0; lineId < lineCount; lineId++) {
+            // 干线前两轮为双向高铁，第三轮为动车或普速车
+            char trainClass = lineId < TRUNKS.length * 2 ? 'G'
+                    : "GGGGDDDZTK".charAt(random.nextInt(10));
+            boolean highSpeed = trainClass == 'G' || trainClass == 'D';
+
+            List<Station> path = new ArrayList<>();
+            Set<String> used = new HashSet<>();
+            if (lineId < TRUNKS.length * 3) {
+                // 前若干条线路沿干线开行，枢纽站之间穿插普通车站，双向各有车次
+                String[] trunk = TRUNKS[lineId % TRUNKS.length];
+                boolean reverse = lineId / TRUNKS.length == 1;
+                for (int i = 0; i < trunk.length; i++) {
+                    if (i > 0 && random.nextBoolean()) {
+                        Station filler = stations.get(HUBS.length + random.nextInt(stations.size() - HUBS.length));
+                        if (used.add(filler.code())) {
+                            path.add(filler);
+                        }
+                    }
+                    Station hub = stationsByCode.get(trunk[i]);
+                    if (used.add(hub.code())) {
+                        path.add(hub);
+                    }
+                }
+                if (reverse) {
+                    Collections.reverse(path);
+                }
+            } else {
+                // 其余线路两端为枢纽站，中间混合枢纽站和普通车站
+                int stopCount = 6 + random.nextInt(highSpeed ? 10 : 16);
+                for (int i = 0; i < stopCount; i++) {
+                    boolean hub = i == 0 || i == stopCount - 1 || random.nextInt(3) == 0;
+                    Station station = hub
+                            ? stations.get(random.nextInt(HUBS.length))
+                            : stations.get(HUBS.length + random.nextInt(stations.size() - HUBS.length));
+                    if (used.add(station.code())) {
+                        path.add(station);
+                    }
+                }
+            }
+            if (path.size() < 3) {
+                continue;
+            }
+
+            int[] arrive = new int[path.size()];
+            int[] depart = new int[path.size()];
+            for (int i = 1; i < path.size(); i++) {
+                int run = highSpeed ? 20 + random.nextInt(45) : 40 + random.nextInt(90);
+                arrive[i] = depart[i - 1] + run;
+                depart[i] = i == path.size() - 1 ? arrive[i] : arrive[i] + 2 + random.nextInt(highSpeed ? 4 : 12);
+            }
+            Line line = new Line(lineId, trainClass, path, arrive, depart);
+
+            int trainsOnLine = 4 + random.nextInt(9);
+            for (int t = 0; t < trainsOnLine; t++) {
+                String code;
+                do {
+                    code = trainClass + String.valueOf(1 + random.nextInt(highSpeed ? 9999 : 2999));
+                } while (!trainCodes.add(code));
+                String trainNo = trainNo(serial++, code);
+                int departMinute = 6 * 60 + random.nextInt(16 * 60);
+                String dwFlag = dwFlag(random, trainClass);
+                Train train = new Train(trainNo, code, line, departMinute, dwFlag);
+                trainsByNo.put(trainNo, train);
+                for (int i = 0; i < path.size(); i++) {
+                    stopsByStation.computeIfAbsent(path.get(i).code(), k -> new ArrayList<>()).add(new Stop(train, i));
+                }
+            }
+        }
+    }
+
+    /**
+     * 生成12位列车内部编号，如 240000G10104
+     */
+    private static String trainNo(int serial, String code) {
+        StringBuilder trainNo = new StringBuilder(12);
+        trainNo.append(String.format("%02d%04d", 10 + serial % 80, serial % 10000)).append(code);
+        while (trainNo.length() < 12) {
+            trainNo.append('0');
+        }
+        return trainNo.substring(0, 12);
+    }
+
+    /**
+     * 生成服务标识字段，各位含义与TrainTypeFilter.decodeFlags一致
+     */
+    private static String dwFlag(Random random, char trainClass) {
+        boolean highSpeed = trainClass == 'G' || trainClass == 'D';
+        String[] fields = {
+            highSpeed && random.nextInt(4) == 0 ? "5" : "0",
+            highSpeed && random.nextBoolean() ? "1" : "0",
+            highSpeed && random.nextInt(3) == 0 ? (trainClass == 'D' && random.nextBoolean() ? "R" : "Q") : "0",
+            "S",
+            "z",
+            trainClass == 'D' && random.nextInt(6) == 0 ? "D" : "0",
+            !highSpeed && random.nextBoolean() ? "x" : "z",
+            random.nextInt(5) == 0 ? "y" : "z"
+        };
+        return String.join("#", fields);
+    }
+
+    /**
+     * 车站
+     */
+    record Station(String abbr, String name, String code, String pinyin, String shortPinyin, String city, boolean hub) {
+    }
+
+    /**
+     * 线路，arrive/depart为各站相对始发站发车的到达和出发分钟数
+     */
+    record Line(int id, char trainClass, List<Station> path, int[] arrive, int[] depart) {
+    }
+
+    /**
+     * 车次，departMinute为始发站发车时刻（当天分钟数）
+     */
+    record Train(String trainNo, String code, Line line, int departMinute, String dwFlag) {
+
+        String startTime(int index) {
+            return clock(departMinute + line.depart()[index]);
+        }
+
+        String arriveTime(int index) {
+            return clock(departMinute + line.arrive()[index]);
+        }
+
+        int minutesBetween(int from, int to) {
+            return line.arrive()[to] - line.depart()[from];
+        }
+
+        int indexOf(String code) {
+            List<Station> path = line.path();
+            for (int i = 0; i < path.size(); i++) {
+                if (path.get(i).code().equals(code)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * 车次在某站的经停
+     */
+    record Stop(Train train, int index) {
+    }
+
+    static String clock(int minutes) {
+        int m = Math.floorMod(minutes, 24 * 60);
+        return String.format("%02d:%02d", m / 60, m % 60);
+    }
+
+    static String duration(int minutes) {
+        return String.format("%02d:%02d", minutes / 60, minutes % 60);
+    }
+}
@@ -0,0 +1,234 @@
+package com.mcp.simulator;
+
+import java.util.Properties;
+
+/**
+ * 12306模拟器配置
+ * 所有配置项都可以通过 sim. 前缀的系统属性或 --key=value 命令行参数覆盖
+ */
+public class SimulatorConfig {
+    /**
+     * 监听端口，0表示随机端口
+     */
+    private int port = 9306;
+
+    /**
+     * 种子数据的随机种子，相同种子生成相同的车站和车次
+     */
+    private long seed = 12306L;
+
+    /**
+     * 车站总数（含主要枢纽站）
+     */
+    private int stations = 3000;
+
+    /**
+     * 线路数，每条线路上开行若干车次
+     */
+    private int lines = 80;
+
+    /**
+     * 基础响应延迟（毫秒）
+     */
+    private long latencyBase = 30;
+
+    /**
+     * 延迟抖动上限（毫秒），实际延迟在基础延迟上均匀增加0到该值
+     */
+    private long latencyJitter = 20;
+
+    /**
+     * 长尾请求比例，命中时延迟放大10倍
+     */
+    private double latencyTailRate = 0.01;
+
+    /**
+     * 错误响应比例，命中时返回502或HTML错误页
+     */
+    private double errorRate = 0.0;
+
+    /**
+     * 每秒允许的查询请求数，超出时按12306的方式重定向到错误页，0表示不限流
+     */
+    private int throttleQps = 0;
+
+    /**
+     * 查询接口是否要求携带首页下发的Cookie
+     */
+    private boolean requireCookie = true;
+
+    /**
+     * 余票数量的刷新周期（分钟），同一周期内相同查询返回相同余票
+     */
+    private int seatRefreshMinutes = 5;
+
+    /**
+     * 处理请求的线程数
+     */
+    private int threads = 32;
+
+    /**
+     * 从系统属性读取配置
+     *
+     * @return 配置
+     */
+    public static SimulatorConfig fromSystemProperties() {
+        return from(System.getProperties());
+    }
+
+    /**
+     * 从属性集合读取配置，键为 sim.port、sim.latency-base 等
+     *
+     * @param properties 属性集合
+     * @return 配置
+     */
+    public static SimulatorConfig from(Properties properties) {
+        SimulatorConfig config = new SimulatorConfig();
+        config.port = Integer.parseInt(properties.getProperty("sim.port", String.valueOf(config.port)));
+        config.seed = Long.parseLong(properties.getProperty("sim.seed", String.valueOf(config.seed)));
+        config.stations = Integer.parseInt(properties.getProperty("sim.stations", String.valueOf(config.stations)));
+        config.lines = Integer.parseInt(properties.getProperty("sim.lines", String.valueOf(config.lines)));
+        config.latencyBase = Long.parseLong(properties.getProperty("sim.latency-base", String.valueOf(config.latencyBase)));
+        config.latencyJitter = Long.parseLong(properties.getProperty("sim.latency-jitter", String.valueOf(config.latencyJitter)));
+        config.latencyTailRate = Double.parseDouble(properties.getProperty("sim.latency-tail-rate", String.valueOf(config.latencyTailRate)));
+        config.errorRate = Double.parseDouble(properties.getProperty("sim.error-rate", String.valueOf(config.errorRate)));
+        config.throttleQps = Integer.parseInt(properties.getProperty("sim.throttle-qps", String.valueOf(config.throttleQps)));
+        config.requireCookie = Boolean.parseBoolean(properties.getProperty("sim.require-cookie", String.valueOf(config.requireCookie)));
+        config.seatRefreshMinutes = Integer.parseInt(properties.getProperty("sim.seat-refresh-minutes", String.valueOf(config.seatRefreshMinutes)));
+        config.threads = Integer.parseInt(properties.getProperty("sim.threads", String.valueOf(config.threads)));
+        return config;
+    }
+
+    /**
+     * 从命令行参数读取配置，参数形如 --port=9306，未指定的项使用系统属性或默认值
+     *
+     * @param args 命令行参数
+     * @return 配置
+     */
+    public static SimulatorConfig fromArgs(String[] args) {
+        Properties properties = new Properties();
+        properties.putAll(System.getProperties());
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.indexOf('=') > 2) {
+                int eq = arg.indexOf('=');
+                properties.setProperty("sim." + arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+        return from(properties);
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public SimulatorConfig setPort(int port) {
+        this.port = port;
+        return this;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public SimulatorConfig setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public int getStations() {
+        return stations;
+    }
+
+    public SimulatorConfig setStations(int stations) {
+        this.stations = stations;
+        return this;
+    }
+
+    public int getLines() {
+        return lines;
+    }
+
+    public SimulatorConfig setLines(int lines) {
+        this.lines = lines;
+        return this;
+    }
+
+    public long getLatencyBase() {
+        return latencyBase;
+    }
+
+    public SimulatorConfig setLatencyBase(long latencyBase) {
+        this.latencyBase = latencyBase;
+        return this;
+    }
+
+    public long getLatencyJitter() {
+        return latencyJitter;
+    }
+
+    public SimulatorConfig setLatencyJitter(long latencyJitter) {
+        this.latencyJitter = latencyJitter;
+        return this;
+    }
+
+    public double getLatencyTailRate() {
+        return latencyTailRate;
+    }
+
+    public SimulatorConfig setLatencyTailRate(double latencyTailRate) {
+        this.latencyTailRate = latencyTailRate;
+        return this;
+    }
+
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    public SimulatorConfig setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    public int getThrottleQps() {
+        return throttleQps;
+    }
+
+    public SimulatorConfig setThrottleQps(int throttleQps) {
+        this.throttleQps = throttleQps;
+        return this;
+    }
+
+    public boolean isRequireCookie() {
+        return requireCookie;
+    }
+
+    public SimulatorConfig setRequireCookie(boolean requireCookie) {
+        this.requireCookie = requireCookie;
+        return this;
+    }
+
+    public int getSeatRefreshMinutes() {
+        return seatRefreshMinutes;
+    }
+
+    public SimulatorConfig setSeatRefreshMinutes(int seatRefreshMinutes) {
+        this.seatRefreshMinutes = seatRefreshMinutes;
+        return this;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public SimulatorConfig setThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "port=" + port + ", seed=" + seed + ", stations=" + stations + ", lines=" + lines
+                + ", latency=" + latencyBase + "+" + latencyJitter + "ms, tailRate=" + latencyTailRate
+                + ", errorRate=" + errorRate + ", throttleQps=" + throttleQps + ", requireCookie=" + requireCookie;
+    }
+}
@@ -0,0 +1,140 @@
+package com.mcp.utils;
+
+/**
+ * 自适应并发限制器
+ * 参考Gradient2算法：用长期平均耗时与短期耗时的比值作为梯度，短期耗时升高（上游变慢、请求排队）时收缩并发上限，
+ * 恢复后按 sqrt(limit) 的余量逐步放开。超过上限的请求不排队，直接拒绝，由调用方快速返回"繁忙"结果。
+ * 获取和释放只在一个对象锁内做少量算术运算
+ */
+public class AdaptiveConcurrencyLimiter {
+    /**
+     * 短期耗时允许超出长期平均耗时的倍数，在此范围内不收缩
+     */
+    private static final double TOLERANCE = 1.5;
+
+    /**
+     * 长期平均耗时的平滑窗口（样本数）
+     */
+    private static final int LONG_WINDOW = 600;
+
+    /**
+     * 短期耗时的平滑窗口（样本数）
+     */
+    private static final int SHORT_WINDOW = 10;
+
+    /**
+     * 新上限与旧上限的混合比例
+     */
+    private static final double SMOOTHING = 0.2;
+
+    /**
+     * 调用失败时上限的收缩比例
+     */
+    private static final double DROP_BACKOFF = 0.9;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private double limit;
+
+    private int inFlight;
+
+    /**
+     * 长期平均耗时（纳秒），0表示还没有样本
+     */
+    private double longRtt;
+
+    /**
+     * 短期平均耗时（纳秒）
+     */
+    private double shortRtt;
+
+    private long samples;
+
+    /**
+     * @param initialLimit 初始并发上限
+     * @param minLimit     并发上限的下限
+     * @param maxLimit     并发上限的上限
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.min(Math.max(initialLimit, this.minLimit), this.maxLimit);
+    }
+
+    /**
+     * 尝试占用一个并发名额，不等待
+     *
+     * @return 占用成功返回true，已达上限返回false
+     */
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * 释放名额并用本次耗时更新上限
+     *
+     * @param rttNanos 本次调用耗时（纳秒）
+     */
+    public synchronized void onSuccess(long rttNanos) {
+        inFlight--;
+        samples++;
+        if (longRtt == 0) {
+            longRtt = rttNanos;
+            shortRtt = rttNanos;
+            return;
+        }
+
+        longRtt += (rttNanos - longRtt) / Math.min(samples, LONG_WINDOW);
+        shortRtt += (rttNanos - shortRtt) / SHORT_WINDOW;
+
+        // 长期平均明显高于短期耗时说明刚从一次变慢中恢复，让长期平均更快回落，避免上限迟迟不收缩
+        if (longRtt / shortRtt > 2) {
+            longRtt *= 0.95;
+        }
+
+        // 没有用满名额时耗时不能反映排队情况，不放大上限
+        if (inFlight < limit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / shortRtt));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        limit = clamp(limit * (1 - SMOOTHING) + newLimit * SMOOTHING);
+    }
+
+    /**
+     * 释放名额，调用失败时收缩上限
+     */
+    public synchronized void onDropped() {
+        inFlight--;
+        limit = clamp(limit * DROP_BACKOFF);
+    }
+
+    /**
+     * 当前并发上限
+     *
+     * @return 上限
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * 当前占用的名额数
+     *
+     * @return 占用数
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    private double clamp(double value) {
+        return Math.max(minLimit, Math.min(maxLimit, value));
+    }
+}
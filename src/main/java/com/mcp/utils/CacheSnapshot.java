@@ -0,0 +1,224 @@
+package com.mcp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 缓存快照工具类
+ * 停机时把内存缓存中未过期的条目写入压缩的快照文件，启动时读取快照、丢弃已过期的条目，并行反序列化后放回内存缓存。
+ * 恢复在后台进行，期间的请求可能已写入更新的结果，恢复只填补缺失的键，不覆盖内存缓存中未过期的条目。
+ * 快照先写入临时文件再原子替换，停机过程中被强制终止也不会留下半个快照。
+ * <p>
+ * 文件格式：文件头 | (1 | 缓存名称 | 键 | 过期时间 | 值长度 | 值)* | 0，整体GZIP压缩
+ */
+@Slf4j
+public class CacheSnapshot {
+    /**
+     * 文件头
+     */
+    private static final byte[] MAGIC = "MCPSNAP1".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * 参与快照的一个缓存
+     *
+     * @param <V> 值类型
+     */
+    public static final class Section<V> {
+        private final String name;
+
+        private final TtlCache<String, V> cache;
+
+        private final Function<V, String> encoder;
+
+        private final Function<String, V> decoder;
+
+        /**
+         * 创建快照分区
+         *
+         * @param name    缓存名称，快照中以此区分条目所属的缓存
+         * @param cache   内存缓存
+         * @param encoder 值序列化
+         * @param decoder 值反序列化
+         */
+        public Section(String name, TtlCache<String, V> cache, Function<V, String> encoder, Function<String, V> decoder) {
+            this.name = name;
+            this.cache = cache;
+            this.encoder = encoder;
+            this.decoder = decoder;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * 放回一个条目
+         *
+         * @return 放回返回true；值为空或缓存中已有未过期的条目返回false
+         */
+        private boolean restore(String key, String raw, long ttlMillis) {
+            V value = decoder.apply(raw);
+            return value != null && cache.putIfAbsent(key, value, ttlMillis);
+        }
+    }
+
+    /**
+     * 恢复结果
+     *
+     * @param restored   放回缓存的条目数
+     * @param expired    已过期被丢弃的条目数
+     * @param failed     无法解析的条目数
+     * @param superseded 缓存中已有更新的结果而未放回的条目数
+     */
+    public record RestoreResult(int restored, int expired, int failed, int superseded) {
+    }
+
+    /**
+     * 读取到的快照条目，尚未反序列化
+     */
+    private record RawEntry(Section<?> section, String key, long expiresAt, byte[] value) {
+    }
+
+    /**
+     * 把各缓存中未过期的条目写入快照文件
+     *
+     * @param file     快照文件
+     * @param sections 参与快照的缓存
+     * @return 写入的条目数
+     * @throws IOException 写入失败时抛出
+     */
+    public static int write(Path file, List<Section<?>> sections) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        AtomicInteger count = new AtomicInteger();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(temp))))) {
+            out.write(MAGIC);
+            for (Section<?> section : sections) {
+                writeSection(out, section, count);
+            }
+            out.writeBoolean(false);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count.get();
+    }
+
+    private static <V> void writeSection(DataOutputStream out, Section<V> section, AtomicInteger count) throws IOException {
+        List<IOException> errors = new ArrayList<>(1);
+        section.cache.forEachLive((key, value, expiresAt) -> {
+            if (!errors.isEmpty()) {
+                return;
+            }
+            try {
+                byte[] bytes = section.encoder.apply(value).getBytes(StandardCharsets.UTF_8);
+                out.writeBoolean(true);
+                out.writeUTF(section.name);
+                out.writeUTF(key);
+                out.writeLong(expiresAt);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+                count.incrementAndGet();
+            } catch (IOException e) {
+                errors.add(e);
+            }
+        });
+        if (!errors.isEmpty()) {
+            throw errors.get(0);
+        }
+    }
+
+    /**
+     * 读取快照文件，丢弃已过期的条目，其余条目并行反序列化后放回对应的缓存
+     *
+     * @param file        快照文件
+     * @param sections    参与快照的缓存
+     * @param parallelism 并行反序列化的线程数
+     * @return 恢复结果，快照文件不存在时各项均为0
+     * @throws IOException 文件损坏或读取失败时抛出
+     */
+    public static RestoreResult restore(Path file, List<Section<?>> sections, int parallelism) throws IOException {
+        if (!Files.exists(file)) {
+            return new RestoreResult(0, 0, 0, 0);
+        }
+        Map<String, Section<?>> byName = new HashMap<>();
+        sections.forEach(section -> byName.put(section.name, section));
+
+        long now = System.currentTimeMillis();
+        List<RawEntry> entries = new ArrayList<>();
+        int expired = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file))))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("不是缓存快照文件: " + file);
+            }
+            while (in.readBoolean()) {
+                String name = in.readUTF();
+                String key = in.readUTF();
+                long expiresAt = in.readLong();
+                byte[] value = new byte[in.readInt()];
+                in.readFully(value);
+                Section<?> section = byName.get(name);
+                if (section == null || expiresAt <= now) {
+                    expired++;
+                    continue;
+                }
+                entries.add(new RawEntry(section, key, expiresAt, value));
+            }
+        }
+
+        AtomicInteger restored = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger superseded = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        try {
+            pool.submit(() -> entries.parallelStream().forEach(entry -> {
+                long ttlMillis = entry.expiresAt() - System.currentTimeMillis();
+                if (ttlMillis <= 0) {
+                    return;
+                }
+                try {
+                    if (entry.section().restore(entry.key(), new String(entry.value(), StandardCharsets.UTF_8), ttlMillis)) {
+                        restored.incrementAndGet();
+                    } else {
+                        superseded.incrementAndGet();
+                    }
+                } catch (RuntimeException e) {
+                    failed.incrementAndGet();
+                    log.debug("快照条目 {}:{} 无法解析: {}", entry.section().name, entry.key(), e.getMessage());
+                }
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IOException("恢复缓存快照失败", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return new RestoreResult(restored.get(), expired, failed.get(), superseded.get());
+    }
+}
@@ -0,0 +1,228 @@
+package com.mcp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 上游端点熔断器
+ * 每个端点分类一个实例，统计最近若干次请求的失败率：失败率过高时打开熔断，冷却期内直接拒绝请求，
+ * 调用方返回失败或改用缓存；冷却期结束后放行一个探测请求，成功则关闭熔断，失败则加倍冷却时间重新打开。
+ */
+@Slf4j
+public class CircuitBreaker {
+    /**
+     * 熔断状态
+     */
+    public enum State {
+        /**
+         * 正常放行
+         */
+        CLOSED,
+        /**
+         * 熔断中，拒绝请求
+         */
+        OPEN,
+        /**
+         * 冷却结束，只放行一个探测请求
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * 统计失败率的最近请求数
+     */
+    private static final int WINDOW = 20;
+
+    /**
+     * 窗口内至少有多少次请求才判断失败率
+     */
+    private static final int MIN_CALLS = 10;
+
+    /**
+     * 打开熔断的失败率阈值
+     */
+    private static final double FAILURE_RATE_THRESHOLD = 0.5;
+
+    /**
+     * 初始冷却时间（毫秒）
+     */
+    private static final long BASE_OPEN_MILLIS = 5_000;
+
+    /**
+     * 最长冷却时间（毫秒）
+     */
+    private static final long MAX_OPEN_MILLIS = 60_000;
+
+    /**
+     * 是否启用熔断
+     */
+    private static volatile boolean enabled = true;
+
+    private static final Map<String, CircuitBreaker> BREAKERS = new ConcurrentHashMap<>();
+
+    private final String endpoint;
+
+    /**
+     * 最近请求的结果环，true表示失败
+     */
+    private final boolean[] outcomes = new boolean[WINDOW];
+
+    private int position;
+
+    private int calls;
+
+    private int failures;
+
+    private State state = State.CLOSED;
+
+    private long openUntil;
+
+    private long openMillis = BASE_OPEN_MILLIS;
+
+    private boolean probeInFlight;
+
+    private CircuitBreaker(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * 应用熔断配置，在 application.yml 的 mcp.upstream.circuit-breaker 下配置，启动时由 UpstreamConfig 应用
+     *
+     * @param breakerEnabled 是否启用熔断
+     */
+    public static void configure(boolean breakerEnabled) {
+        enabled = breakerEnabled;
+        log.info("上游熔断{}", breakerEnabled ? "已启用" : "未启用");
+    }
+
+    /**
+     * 获取端点分类对应的熔断器
+     *
+     * @param endpoint 端点分类
+     * @return 熔断器，关闭熔断功能时返回null
+     */
+    public static CircuitBreaker forEndpoint(String endpoint) {
+        if (!enabled) {
+            return null;
+        }
+        return BREAKERS.computeIfAbsent(endpoint, key -> {
+            CircuitBreaker breaker = new CircuitBreaker(key);
+            ToolMetrics.circuitState(key, () -> breaker.getState().ordinal());
+            return breaker;
+        });
+    }
+
+    /**
+     * 判断端点当前是否处于熔断状态（不占用探测名额）
+     *
+     * @param endpoint 端点分类
+     * @return 熔断打开且仍在冷却期内时返回true
+     */
+    public static boolean isOpen(String endpoint) {
+        CircuitBreaker breaker = enabled ? BREAKERS.get(endpoint) : null;
+        return breaker != null && breaker.getState() == State.OPEN;
+    }
+
+    /**
+     * 判断是否放行本次请求，半开状态下只放行一个探测请求
+     *
+     * @return 放行返回true
+     */
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() < openUntil) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probeInFlight = true;
+                log.info("上游 {} 熔断冷却结束，放行探测请求", endpoint);
+                return true;
+            default:
+                if (probeInFlight) {
+                    return false;
+                }
+                probeInFlight = true;
+                return true;
+        }
+    }
+
+    /**
+     * 记录一次成功响应
+     */
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            log.info("上游 {} 探测成功，关闭熔断", endpoint);
+            reset();
+            return;
+        }
+        record(false);
+    }
+
+    /**
+     * 记录一次失败响应
+     */
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            openMillis = Math.min(openMillis * 2, MAX_OPEN_MILLIS);
+            open("探测失败");
+            return;
+        }
+        if (state == State.OPEN) {
+            return;
+        }
+        record(true);
+        if (calls >= MIN_CALLS && failures >= calls * FAILURE_RATE_THRESHOLD) {
+            open("最近 " + calls + " 次请求失败 " + failures + " 次");
+        }
+    }
+
+    /**
+     * 放行后请求没有真正发出（如排队超时），归还探测名额
+     */
+    public synchronized void onIgnored() {
+        probeInFlight = false;
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && System.currentTimeMillis() >= openUntil) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    private void record(boolean failure) {
+        if (calls == WINDOW) {
+            if (outcomes[position]) {
+                failures--;
+            }
+        } else {
+            calls++;
+        }
+        outcomes[position] = failure;
+        if (failure) {
+            failures++;
+        }
+        position = (position + 1) % WINDOW;
+    }
+
+    private void open(String reason) {
+        state = State.OPEN;
+        probeInFlight = false;
+        openUntil = System.currentTimeMillis() + openMillis;
+        log.warn("上游 {} 打开熔断 {} 毫秒: {}", endpoint, openMillis, reason);
+    }
+
+    private void reset() {
+        state = State.CLOSED;
+        probeInFlight = false;
+        openMillis = BASE_OPEN_MILLIS;
+        position = 0;
+        calls = 0;
+        failures = 0;
+    }
+}
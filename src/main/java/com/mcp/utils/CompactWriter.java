@@ -0,0 +1,164 @@
+package com.mcp.utils;
+
+/**
+ * 紧凑表格输出工具类
+ * 表头只输出一次，字段以制表符分隔、行以换行分隔（类似TSV），直接写入线程复用的缓冲区，不使用String.format
+ */
+public class CompactWriter {
+    /**
+     * 紧凑输出模式名称
+     */
+    public static final String FORMAT_COMPACT = "compact";
+
+    /**
+     * 复用缓冲区保留的最大容量，超出后重新分配，避免个别大结果长期占用内存
+     */
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    /**
+     * 线程复用的缓冲区
+     */
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(4096));
+
+    private final StringBuilder buffer;
+
+    /**
+     * 当前行是否还没有字段
+     */
+    private boolean rowStart = true;
+
+    private CompactWriter(StringBuilder buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * 判断是否选择了紧凑输出模式
+     *
+     * @param outputFormat 输出模式参数
+     * @return 为compact或tsv时返回true
+     */
+    public static boolean isCompact(String outputFormat) {
+        return FORMAT_COMPACT.equalsIgnoreCase(outputFormat) || "tsv".equalsIgnoreCase(outputFormat);
+    }
+
+    /**
+     * 开始一次输出，清空当前线程的复用缓冲区
+     *
+     * @return 写入器
+     */
+    public static CompactWriter begin() {
+        StringBuilder buffer = BUFFER.get();
+        if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+            buffer = new StringBuilder(4096);
+            BUFFER.set(buffer);
+        }
+        buffer.setLength(0);
+        return new CompactWriter(buffer);
+    }
+
+    /**
+     * 写入表头行
+     *
+     * @param columns 列名
+     * @return 写入器
+     */
+    public CompactWriter header(String... columns) {
+        for (String column : columns) {
+            cell(column);
+        }
+        return endRow();
+    }
+
+    /**
+     * 写入注释行（以#开头），用于总数、分页等元信息
+     *
+     * @param comment 注释内容
+     * @return 写入器
+     */
+    public CompactWriter comment(String comment) {
+        buffer.append("# ").append(comment).append('\n');
+        return this;
+    }
+
+    /**
+     * 写入字符串字段，制表符和换行替换为空格
+     *
+     * @param value 字段值，null写为空
+     * @return 写入器
+     */
+    public CompactWriter cell(String value) {
+        separator();
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                buffer.append(c == '\t' || c == '\n' || c == '\r' ? ' ' : c);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 写入整数字段
+     *
+     * @param value 字段值，null写为空
+     * @return 写入器
+     */
+    public CompactWriter cell(Integer value) {
+        separator();
+        if (value != null) {
+            buffer.append(value.intValue());
+        }
+        return this;
+    }
+
+    /**
+     * 写入布尔字段，true写为1，false写为0
+     *
+     * @param value 字段值，null写为空
+     * @return 写入器
+     */
+    public CompactWriter cell(Boolean value) {
+        separator();
+        if (value != null) {
+            buffer.append(value ? '1' : '0');
+        }
+        return this;
+    }
+
+    /**
+     * 开始一个字段，返回底层缓冲区用于直接追加复合内容（内容中不应包含制表符和换行）
+     *
+     * @return 缓冲区
+     */
+    public StringBuilder rawCell() {
+        separator();
+        return buffer;
+    }
+
+    /**
+     * 结束当前行
+     *
+     * @return 写入器
+     */
+    public CompactWriter endRow() {
+        buffer.append('\n');
+        rowStart = true;
+        return this;
+    }
+
+    /**
+     * 结束输出
+     *
+     * @return 输出内容
+     */
+    public String finish() {
+        return buffer.toString();
+    }
+
+    private void separator() {
+        if (!rowStart) {
+            buffer.append('\t');
+        }
+        rowStart = false;
+    }
+}
@@ -105,4 +105,43 @@ public class DateUtils {
             return dateStr;
         }
     }
-} 
\ No newline at end of file
+    
+    /**
+     * 将 HH:mm 格式的时间或历时转换为分钟数
+     * 历时的小时数可以超过23，如"25:30"
+     *
+     * @param time 时间字符串，如"08:30"或历时"04:29"
+     * @return 分钟数，格式无效时返回-1
+     */
+    public static int toMinutes(String time) {
+        if (time == null || time.length() != 5 || time.charAt(2) != ':') {
+            return -1;
+        }
+        
+        int hours = digit(time.charAt(0)) * 10 + digit(time.charAt(1));
+        int minutes = digit(time.charAt(3)) * 10 + digit(time.charAt(4));
+        if (hours < 0 || minutes < 0 || minutes >= 60) {
+            return -1;
+        }
+        return hours * 60 + minutes;
+    }
+    
+    /**
+     * 将一天中的时刻转换为分钟数，只接受 00:00 到 23:59，小时可以只写一位（如"9:00"）
+     *
+     * @param time 时刻字符串
+     * @return 分钟数，格式无效或超出范围时返回-1
+     */
+    public static int toClockMinutes(String time) {
+        if (time == null) {
+            return -1;
+        }
+        String value = time.trim();
+        int minutes = toMinutes(value.length() == 4 ? "0" + value : value);
+        return minutes < 24 * 60 ? minutes : -1;
+    }
+    
+    private static int digit(char c) {
+        return c >= '0' && c <= '9' ? c - '0' : -1000;
+    }
+}
@@ -0,0 +1,180 @@
+package com.mcp.utils;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 工具调用的截止时间
+ * 每次工具调用创建一个截止时间并绑定到当前线程，HttpUtils、上游调度器、请求合并和并行分发都按剩余时间收紧各自的等待，
+ * 链式调用的总耗时不会超过预算。预算用尽时尚未完成的子查询被取消，调用方据此返回标注为部分结果的答案。
+ */
+public final class Deadline {
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    /**
+     * 截止时刻（System.nanoTime）
+     */
+    private final long expiresAt;
+
+    private final long budgetMillis;
+
+    /**
+     * 因预算用尽未完成的子查询数
+     */
+    private final AtomicInteger incomplete = new AtomicInteger();
+
+    private Deadline(long budgetMillis) {
+        this.budgetMillis = budgetMillis;
+        this.expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+    }
+
+    /**
+     * 创建从现在起指定预算的截止时间
+     *
+     * @param budgetMillis 时间预算（毫秒）
+     * @return 截止时间
+     */
+    public static Deadline after(long budgetMillis) {
+        return new Deadline(budgetMillis);
+    }
+
+    /**
+     * 当前线程绑定的截止时间
+     *
+     * @return 截止时间，未绑定时返回null
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 在截止时间内执行逻辑，期间当前线程发出的上游请求都受该截止时间约束
+     *
+     * @param deadline 截止时间
+     * @param supplier 执行逻辑
+     * @param <T>      返回值类型
+     * @return 执行逻辑的返回值
+     */
+    public static <T> T within(Deadline deadline, Supplier<T> supplier) {
+        Deadline previous = CURRENT.get();
+        CURRENT.set(deadline);
+        try {
+            return supplier.get();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    /**
+     * 把当前线程的截止时间传递给提交到线程池的任务
+     * 任务开始执行时预算已用尽则不再执行，直接返回null并计为未完成
+     *
+     * @param task 任务
+     * @param <T>  返回值类型
+     * @return 包装后的任务
+     */
+    public static <T> Supplier<T> propagate(Supplier<T> task) {
+        Deadline deadline = CURRENT.get();
+        if (deadline == null) {
+            return task;
+        }
+        return () -> {
+            if (deadline.isExpired()) {
+                deadline.incomplete.incrementAndGet();
+                return null;
+            }
+            T result = within(deadline, task);
+            if (result == null && deadline.isExpired()) {
+                deadline.incomplete.incrementAndGet();
+            }
+            return result;
+        };
+    }
+
+    /**
+     * 在当前截止时间内等待并行子查询的结果，预算用尽时取消该子查询
+     *
+     * @param future 子查询
+     * @param <T>    返回值类型
+     * @return 子查询结果，失败、被取消或超出预算时返回null
+     */
+    public static <T> T await(CompletableFuture<T> future) {
+        Deadline deadline = CURRENT.get();
+        if (deadline == null) {
+            return future.exceptionally(e -> null).join();
+        }
+        try {
+            return future.get(Math.max(0, deadline.remainingNanos()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | CancellationException e) {
+            future.cancel(true);
+            deadline.incomplete.incrementAndGet();
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 当前截止时间内可以等待的最长时间
+     *
+     * @param limitNanos 调用方自身的等待上限（纳秒）
+     * @return 上限与剩余时间中较小的一个，未绑定截止时间时返回上限
+     */
+    public static long clampNanos(long limitNanos) {
+        Deadline deadline = CURRENT.get();
+        return deadline == null ? limitNanos : Math.max(0, Math.min(limitNanos, deadline.remainingNanos()));
+    }
+
+    /**
+     * 当前线程的截止时间是否已过
+     *
+     * @return 已绑定截止时间且已过时返回true
+     */
+    public static boolean expired() {
+        Deadline deadline = CURRENT.get();
+        return deadline != null && deadline.isExpired();
+    }
+
+    /**
+     * 部分结果的提示
+     *
+     * @return 当前截止时间内有未完成的子查询时返回提示文字，否则返回空字符串
+     */
+    public static String partialNote() {
+        Deadline deadline = CURRENT.get();
+        if (deadline == null || deadline.incomplete.get() == 0) {
+            return "";
+        }
+        String budget = deadline.budgetMillis % 1000 == 0
+                ? deadline.budgetMillis / 1000 + " 秒" : deadline.budgetMillis + " 毫秒";
+        return "\n（部分结果：查询时间预算 " + budget + "已用尽，" + deadline.incomplete.get() + " 个子查询未完成）";
+    }
+
+    public long remainingNanos() {
+        return expiresAt - System.nanoTime();
+    }
+
+    public boolean isExpired() {
+        return remainingNanos() <= 0;
+    }
+
+    public int getIncomplete() {
+        return incomplete.get();
+    }
+
+    public long getBudgetMillis() {
+        return budgetMillis;
+    }
+}
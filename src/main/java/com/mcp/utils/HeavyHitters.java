@@ -0,0 +1,164 @@
+package com.mcp.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.zip.CRC32;
+
+/**
+ * 高频键统计工具类
+ * 用Count-Min Sketch估计每个键的出现次数，内存占用与键的数量无关；另外用小顶堆维护估计次数最高的K个键。
+ * 采用保守更新（只增加等于当前最小值的计数器），降低哈希冲突带来的高估。
+ * 定期衰减（所有计数减半），让统计结果跟随最近的流量变化。
+ */
+public class HeavyHitters {
+    /**
+     * 哈希函数个数
+     */
+    private static final int DEPTH = 4;
+
+    /**
+     * 每行计数器个数，必须是2的幂
+     */
+    private static final int WIDTH = 4096;
+
+    private final long[][] counters = new long[DEPTH][WIDTH];
+
+    private final int capacity;
+
+    /**
+     * 当前的高频键及其估计次数
+     */
+    private final Map<String, Long> top = new HashMap<>();
+
+    /**
+     * 按估计次数排序的小顶堆，堆中可能有次数已过时的条目，取堆顶时与top比对后丢弃
+     */
+    private final PriorityQueue<Map.Entry<String, Long>> heap =
+            new PriorityQueue<>(Map.Entry.comparingByValue());
+
+    /**
+     * 创建高频键统计
+     *
+     * @param capacity 保留的高频键个数
+     */
+    public HeavyHitters(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * 记录一次键的出现
+     *
+     * @param key 键
+     * @return 该键当前的估计次数
+     */
+    public synchronized long record(String key) {
+        int[] slots = slots(key);
+        long estimate = Long.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            estimate = Math.min(estimate, counters[i][slots[i]]);
+        }
+        estimate++;
+        for (int i = 0; i < DEPTH; i++) {
+            counters[i][slots[i]] = Math.max(counters[i][slots[i]], estimate);
+        }
+
+        if (top.containsKey(key) || top.size() < capacity) {
+            offer(key, estimate);
+        } else {
+            Map.Entry<String, Long> min = peekMin();
+            if (min != null && estimate > min.getValue()) {
+                heap.poll();
+                top.remove(min.getKey());
+                offer(key, estimate);
+            }
+        }
+        return estimate;
+    }
+
+    /**
+     * 估计键的出现次数
+     *
+     * @param key 键
+     * @return 估计次数，只会高估不会低估
+     */
+    public synchronized long estimate(String key) {
+        int[] slots = slots(key);
+        long estimate = Long.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            estimate = Math.min(estimate, counters[i][slots[i]]);
+        }
+        return estimate;
+    }
+
+    /**
+     * 当前的高频键，按估计次数从高到低排序
+     *
+     * @return 高频键列表
+     */
+    public synchronized List<Map.Entry<String, Long>> topK() {
+        List<Map.Entry<String, Long>> result = new ArrayList<>(top.size());
+        top.forEach((key, count) -> result.add(Map.entry(key, count)));
+        result.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()));
+        return result;
+    }
+
+    /**
+     * 所有计数减半，次数降为0的高频键移出
+     */
+    public synchronized void decay() {
+        for (long[] row : counters) {
+            for (int i = 0; i < WIDTH; i++) {
+                row[i] >>= 1;
+            }
+        }
+        heap.clear();
+        top.replaceAll((key, count) -> count >> 1);
+        top.values().removeIf(count -> count == 0);
+        top.forEach((key, count) -> heap.add(Map.entry(key, count)));
+    }
+
+    private void offer(String key, long estimate) {
+        top.put(key, estimate);
+        heap.add(Map.entry(key, estimate));
+        if (heap.size() > capacity * 4) {
+            // 高频键反复命中会在堆中留下大量过时条目，超过一定数量时按top重建
+            heap.clear();
+            top.forEach((k, count) -> heap.add(Map.entry(k, count)));
+        }
+    }
+
+    /**
+     * 取次数最低的有效条目，顺带丢弃过时的堆条目
+     */
+    private Map.Entry<String, Long> peekMin() {
+        while (!heap.isEmpty()) {
+            Map.Entry<String, Long> head = heap.peek();
+            if (head.getValue().equals(top.get(head.getKey()))) {
+                return head;
+            }
+            heap.poll();
+        }
+        return null;
+    }
+
+    /**
+     * 双重哈希生成各行的位置：h1 + i * h2
+     */
+    private static int[] slots(String key) {
+        int h1 = key.hashCode();
+        CRC32 crc = new CRC32();
+        crc.update(key.getBytes(StandardCharsets.UTF_8));
+        int h2 = (int) crc.getValue() | 1;
+        int[] slots = new int[DEPTH];
+        for (int i = 0; i < DEPTH; i++) {
+            int hash = h1 + i * h2;
+            slots[i] = (hash ^ (hash >>> 16)) & (WIDTH - 1);
+        }
+        return slots;
+    }
+}
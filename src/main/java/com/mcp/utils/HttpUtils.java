@@ -3,20 +3,63 @@ package com.mcp.utils;
 import cn.hutool.http.HttpRequest;
 import cn.hutool.http.HttpResponse;
 import com.alibaba.fastjson.JSON;
+import com.mcp.constants.RailwayConstants;
+import com.mcp.jfr.UpstreamFetchEvent;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.util.StringUtils;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * HTTP请求工具类
  */
 @Slf4j
 public class HttpUtils {
+    /**
+     * 12306限流错误页中的提示文字
+     */
+    private static final String THROTTLE_PAGE_TEXT = "网络可能存在问题";
+    
+    /**
+     * 上游请求超时（毫秒），避免慢请求无限期阻塞；在 application.yml 的 mcp.upstream.timeout-millis 下配置
+     */
+    private static volatile int timeoutMillis = 10000;
+    
+    /**
+     * 静态资源和首页的端点分类
+     */
+    private static final String ENDPOINT_STATIC = "static";
+    
+    /**
+     * Cookie缓存时间（毫秒）
+     */
+    private static final long COOKIE_TTL_MILLIS = 5 * 60_000;
+    
+    /**
+     * 12306 Cookie缓存，所有访问12306的服务共用，避免每次上游请求前都经static限流请求一次首页
+     */
+    private static final TtlCache<String, Map<String, String>> COOKIE_CACHE = new TtlCache<>(COOKIE_TTL_MILLIS, 4);
+    
+    /**
+     * 合并Cookie过期时并发的首页请求
+     */
+    private static final RequestCoalescer<String, Map<String, String>> COOKIE_COALESCER = new RequestCoalescer<>();
+    
+    /**
+     * 设置上游请求超时，启动时由 UpstreamConfig 应用
+     *
+     * @param millis 超时（毫秒）
+     */
+    public static void setTimeoutMillis(int millis) {
+        timeoutMillis = Math.max(1, millis);
+    }
+    
     /**
      * 发送GET请求
+     * GET请求是幂等的，超过端点p95耗时未返回时会在预算内发出对冲请求
      *
      * @param url     请求URL
      * @param params  请求参数
@@ -24,6 +67,12 @@ public class HttpUtils {
      * @return 响应内容
      */
     public static String get(String url, Map<String, Object> params, Map<String, String> headers) {
+        return RequestHedger.execute(endpointOf(url),
+                () -> sendGet(url, params, headers, false),
+                () -> sendGet(url, params, headers, true));
+    }
+    
+    private static String sendGet(String url, Map<String, Object> params, Map<String, String> headers, boolean hedge) {
         try {
             HttpRequest request = HttpRequest.get(url);
             
@@ -38,8 +87,7 @@ public class HttpUtils {
             }
             
             // 发送请求并获取响应
-            HttpResponse response = request.execute();
-            return response.body();
+            return execute(request, url, params, hedge);
         } catch (Exception e) {
             log.error("发送GET请求失败: {}", e.getMessage(), e);
             return null;
@@ -69,14 +117,178 @@ public class HttpUtils {
             }
             
             // 发送请求并获取响应
-            HttpResponse response = request.execute();
-            return response.body();
+            return execute(request, url, params, false);
         } catch (Exception e) {
             log.error("发送POST请求失败: {}", e.getMessage(), e);
             return null;
         }
     }
     
+    /**
+     * 执行请求并记录上游状态码、接收字节数和耗时
+     * 工具调用的截止时间已过或端点熔断时快速失败；发送前从上游调度器取限流令牌，对冲请求只在令牌立即可用时发送，
+     * 请求超时不超过截止时间的剩余时间。
+     * 回放模式下从录制文件返回响应，录制模式下把响应追加到录制文件
+     *
+     * @param request 请求
+     * @param url     请求URL
+     * @param params  请求参数，用于生成录制和回放的请求键
+     * @param hedge   是否为对冲请求
+     * @return 响应内容
+     */
+    private static String execute(HttpRequest request, String url, Map<String, Object> params, boolean hedge) {
+        String endpoint = endpointOf(url);
+        if (Deadline.expired()) {
+            if (!hedge) {
+                log.warn("工具调用的截止时间已过，放弃上游请求: {}", url);
+            }
+            return null;
+        }
+        boolean replaying = UpstreamTape.isReplaying();
+        CircuitBreaker breaker = replaying ? null : CircuitBreaker.forEndpoint(endpoint);
+        if (breaker != null && !breaker.allowRequest()) {
+            if (!hedge) {
+                log.warn("上游 {} 熔断中，快速失败: {}", endpoint, url);
+                ToolMetrics.shortCircuited(endpoint);
+            }
+            return null;
+        }
+        String method = request.getMethod().name();
+        UpstreamFetchEvent event = new UpstreamFetchEvent();
+        long start = 0;
+        int status = 0;
+        long bytes = 0;
+        String body = null;
+        // 熔断器放行之后的每条出口都要记录结果或归还探测名额，否则半开状态的熔断器会一直拒绝该端点的请求
+        boolean sent = false;
+        try {
+            if (!replaying) {
+                boolean acquired = hedge ? UpstreamScheduler.tryAcquire(endpoint) : UpstreamScheduler.acquire(endpoint);
+                if (!acquired) {
+                    if (!hedge) {
+                        log.warn("上游请求排队超时，放弃请求: {}", url);
+                    }
+                    return null;
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    // 对冲中已被另一方取代的请求，取到令牌后不再发送
+                    return null;
+                }
+                request.timeout(clampTimeout(timeoutMillis));
+            }
+            
+            sent = true;
+            event.begin();
+            start = System.nanoTime();
+            if (replaying) {
+                UpstreamTape.Entry entry = UpstreamTape.replay(method, url, params);
+                if (entry == null) {
+                    return null;
+                }
+                status = entry.status();
+                body = entry.body();
+                bytes = body != null ? body.length() : 0;
+                return body;
+            }
+            
+            HttpResponse response = request.execute();
+            status = response.getStatus();
+            byte[] bodyBytes = response.bodyBytes();
+            bytes = bodyBytes != null ? bodyBytes.length : 0;
+            body = response.body();
+            return body;
+        } finally {
+            if (!sent) {
+                // 排队超时或对冲中被取代，请求没有真正发出
+                if (breaker != null) {
+                    breaker.onIgnored();
+                }
+            } else {
+                long nanos = System.nanoTime() - start;
+                if (!replaying) {
+                    boolean failed = isThrottled(status, body);
+                    if (breaker != null) {
+                        if (failed) {
+                            breaker.onFailure();
+                        } else {
+                            breaker.onSuccess();
+                        }
+                    }
+                    UpstreamScheduler.onResponse(endpoint, failed);
+                    if (!failed) {
+                        RequestHedger.recordLatency(endpoint, nanos);
+                    }
+                }
+                if (UpstreamTape.isRecording()) {
+                    UpstreamTape.record(method, url, params, status, body, nanos);
+                }
+                ToolMetrics.recordUpstream(endpoint, status, nanos);
+                event.end();
+                if (event.shouldCommit()) {
+                    event.endpoint = endpoint;
+                    event.method = method;
+                    event.url = url;
+                    event.status = status;
+                    event.bytesReceived = bytes;
+                    event.commit();
+                }
+            }
+        }
+    }
+    
+    /**
+     * 请求超时不超过当前工具调用截止时间的剩余时间
+     *
+     * @param timeoutMillis 超时上限（毫秒）
+     * @return 实际使用的超时（毫秒），至少为1
+     */
+    private static int clampTimeout(int timeoutMillis) {
+        long clamped = TimeUnit.NANOSECONDS.toMillis(Deadline.clampNanos(TimeUnit.MILLISECONDS.toNanos(timeoutMillis)));
+        return (int) Math.max(1, clamped);
+    }
+    
+    /**
+     * 判断响应是否为错误或限流：请求异常、429、5xx，或12306限流时常见的重定向和错误页
+     *
+     * @param status HTTP状态码，请求异常时为0
+     * @param body   响应内容
+     * @return 是错误或限流响应时返回true
+     */
+    static boolean isThrottled(int status, String body) {
+        if (status == 0 || status == 429 || status >= 500 || (status >= 300 && status < 400)) {
+            return true;
+        }
+        return body != null && body.contains(THROTTLE_PAGE_TEXT);
+    }
+    
+    /**
+     * 根据URL判断上游端点分类，用于指标标签
+     *
+     * @param url 请求URL
+     * @return 端点分类：price、leftTicket、queryByTrainNo、lcxx、static 或 other
+     */
+    public static String endpointOf(String url) {
+        if (url == null) {
+            return "other";
+        }
+        if (url.contains("/otn/leftTicket/queryTicketPrice")) {
+            return "price";
+        }
+        if (url.contains("/otn/leftTicket/")) {
+            return "leftTicket";
+        }
+        if (url.contains("/otn/czxx/queryByTrainNo")) {
+            return "queryByTrainNo";
+        }
+        if (url.contains("/otn/lcxx/")) {
+            return "lcxx";
+        }
+        if (url.contains("/otn/resources/") || url.endsWith(".js")) {
+            return ENDPOINT_STATIC;
+        }
+        return "other";
+    }
+    
     /**
      * 解析Cookie字符串为Map
      *
@@ -144,6 +356,19 @@ public class HttpUtils {
      * @return 解析后的对象
      */
     public static <T> T parseJsonResponse(String response, Class<T> classType) {
+        return parseJsonResponse(response, classType, "other");
+    }
+    
+    /**
+     * 解析响应的JSON为泛型对象，解析失败时按数据来源计数
+     *
+     * @param response  响应字符串
+     * @param classType 目标类型
+     * @param source    数据来源，用于指标标签
+     * @param <T>       泛型类型
+     * @return 解析后的对象
+     */
+    public static <T> T parseJsonResponse(String response, Class<T> classType, String source) {
         if (!StringUtils.hasLength(response)) {
             return null;
         }
@@ -152,24 +377,69 @@ public class HttpUtils {
             return JSON.parseObject(response, classType);
         } catch (Exception e) {
             log.error("解析JSON响应失败: {}", e.getMessage(), e);
+            ToolMetrics.parseFailure(source);
             return null;
         }
     }
     
     /**
-     * 获取初始Cookie
+     * 获取缓存的12306 Cookie，缓存过期时重新获取，并发的获取只请求一次首页
+     *
+     * @param url 请求URL
+     * @return Cookie键值对，获取失败时为空
+     */
+    public static Map<String, String> getCachedCookie(String url) {
+        Map<String, String> cookies = COOKIE_CACHE.get(url);
+        if (cookies != null) {
+            return cookies;
+        }
+        cookies = COOKIE_COALESCER.execute(url, () -> {
+            Map<String, String> fetched = getCookie(url);
+            if (fetched.isEmpty()) {
+                return fetched;
+            }
+            Map<String, String> shared = Map.copyOf(fetched);
+            COOKIE_CACHE.put(url, shared);
+            return shared;
+        });
+        return cookies != null ? cookies : new HashMap<>();
+    }
+    
+    /**
+     * 获取初始Cookie，每次调用都请求一次首页，访问12306接口前应使用 {@link #getCachedCookie(String)}
      *
      * @param url 请求URL
      * @return Cookie键值对
      */
     public static Map<String, String> getCookie(String url) {
+        if (UpstreamTape.isReplaying()) {
+            // 回放模式不访问网络，返回固定Cookie
+            Map<String, String> cookies = new HashMap<>();
+            cookies.put("JSESSIONID", "REPLAY");
+            return cookies;
+        }
+        
+        if (Deadline.expired()) {
+            log.warn("工具调用的截止时间已过，不再获取Cookie");
+            return new HashMap<>();
+        }
+        
         try {
             log.info("开始获取Cookie，URL: {}", url);
             
             // 使用API基础URL而不是WEB_URL
-            String apiUrl = "https://kyfw.12306.cn";
+            String apiUrl = RailwayConstants.API_BASE;
             log.info("使用API URL获取Cookie: {}", apiUrl);
             
+            // 首页请求与静态资源共用限流
+            if (!UpstreamScheduler.acquire(ENDPOINT_STATIC)) {
+                log.warn("获取Cookie排队超时");
+                return new HashMap<>();
+            }
+            if (Deadline.expired()) {
+                log.warn("工具调用的截止时间已过，放弃获取Cookie");
+                return new HashMap<>();
+            }
             HttpRequest request = HttpRequest.get(apiUrl);
             
             // 设置更完整的请求头，模拟真实浏览器
@@ -179,10 +449,11 @@ public class HttpUtils {
             request.header("Accept-Encoding", "gzip, deflate, br");
             request.header("Connection", "keep-alive");
             request.header("Upgrade-Insecure-Requests", "1");
-            request.timeout(15000); // 增加超时时间到15秒
+            request.timeout(clampTimeout(15000)); // 增加超时时间到15秒，不超过截止时间的剩余时间
             
             HttpResponse response = request.execute();
             log.info("HTTP响应状态码: {}", response.getStatus());
+            UpstreamScheduler.onResponse(ENDPOINT_STATIC, isThrottled(response.getStatus(), null));
             
             if (response.getStatus() != 200) {
                 log.error("HTTP请求失败，状态码: {}", response.getStatus());
@@ -223,11 +494,23 @@ public class HttpUtils {
      */
     private static Map<String, String> getCookieFromWebUrl(String url) {
         try {
+            if (Deadline.expired()) {
+                log.warn("工具调用的截止时间已过，不再从WEB URL获取Cookie");
+                return new HashMap<>();
+            }
             log.info("尝试从WEB URL获取Cookie: {}", url);
+            if (!UpstreamScheduler.acquire(ENDPOINT_STATIC)) {
+                log.warn("从WEB URL获取Cookie排队超时");
+                return new HashMap<>();
+            }
+            if (Deadline.expired()) {
+                log.warn("工具调用的截止时间已过，放弃从WEB URL获取Cookie");
+                return new HashMap<>();
+            }
             HttpRequest request = HttpRequest.get(url);
             
             request.header("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36");
-            request.timeout(10000);
+            request.timeout(clampTimeout(10000));
             
             HttpResponse response = request.execute();
             log.info("WEB URL HTTP响应状态码: {}", response.getStatus());
@@ -0,0 +1,63 @@
+package com.mcp.utils;
+
+/**
+ * 否定结果缓存
+ * 记录"查不到"的结果（无效站点代码、无车次的日期和线路、找不到的车次），智能体重试时直接返回上次的提示，不再请求上游。
+ * 过期时间短，容量独立于正常结果的缓存，否定条目再多也不会挤掉正常条目。
+ */
+public class NegativeCache {
+    /**
+     * 缓存名称，作为指标标签
+     */
+    private final String name;
+
+    /**
+     * 否定结果及其提示信息
+     */
+    private final TtlCache<String, String> entries;
+
+    /**
+     * 创建否定结果缓存
+     *
+     * @param name      缓存名称
+     * @param ttlMillis 过期时间（毫秒）
+     * @param maxSize   最大条目数
+     */
+    public NegativeCache(String name, long ttlMillis, int maxSize) {
+        this.name = name;
+        this.entries = new TtlCache<>(ttlMillis, maxSize);
+    }
+
+    /**
+     * 获取未过期的否定结果
+     *
+     * @param key 键
+     * @return 上次返回的提示信息，未记录或已过期时返回null
+     */
+    public String get(String key) {
+        String message = entries.get(key);
+        if (message != null) {
+            ToolMetrics.negativeHit(name);
+        }
+        return message;
+    }
+
+    /**
+     * 记录一个否定结果
+     *
+     * @param key     键
+     * @param message 返回给调用方的提示信息
+     */
+    public void put(String key, String message) {
+        entries.put(key, message);
+    }
+
+    /**
+     * 移除否定结果，查到正常结果时调用
+     *
+     * @param key 键
+     */
+    public void remove(String key) {
+        entries.remove(key);
+    }
+}
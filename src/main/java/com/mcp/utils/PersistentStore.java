@@ -0,0 +1,451 @@
+package com.mcp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 本地持久化键值存储
+ * 日志结构：所有写入按顺序追加到内存映射的段文件，内存中只保留键到记录位置的索引，读取时直接从映射内存拷贝。
+ * 启动时按顺序扫描段文件重建索引，校验失败的记录（进程崩溃时写了一半）视为段尾，之后的内容清零。
+ * 覆盖和删除只追加新记录，失效记录占比过半时把仍有效的记录重写到新段并删除旧段。
+ * <p>
+ * 记录格式：crc(4) | 键长度(4) | 值长度(4，-1表示删除) | 过期时间(8) | 键 | 值
+ */
+@Slf4j
+public class PersistentStore implements Closeable {
+    /**
+     * 记录头长度
+     */
+    private static final int HEADER_BYTES = 20;
+
+    /**
+     * 删除标记
+     */
+    private static final int TOMBSTONE = -1;
+
+    /**
+     * 过期后仍保留多久（毫秒），供上游不可用时降级返回旧数据，超过后在压缩时清理
+     */
+    private static final long STALE_RETENTION_MILLIS = 24 * 60 * 60_000L;
+
+    /**
+     * 失效记录占比超过该值时压缩
+     */
+    private static final double COMPACT_GARBAGE_RATIO = 0.5;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d{6})\\.log");
+
+    private final Path directory;
+
+    private final int segmentBytes;
+
+    private final boolean enabled;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+
+    private final List<Segment> segments = new ArrayList<>();
+
+    private Segment active;
+
+    /**
+     * 所有段中已写入的字节数
+     */
+    private long totalBytes;
+
+    /**
+     * 仍有效的记录字节数
+     */
+    private long liveBytes;
+
+    private PersistentStore(Path directory, int segmentBytes, boolean enabled) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.enabled = enabled;
+    }
+
+    /**
+     * 打开数据目录下的存储，目录不存在时创建
+     *
+     * @param directory    数据目录
+     * @param segmentBytes 单个段文件的大小
+     * @return 存储实例
+     * @throws IOException 目录无法创建或段文件无法映射时抛出
+     */
+    public static PersistentStore open(Path directory, int segmentBytes) throws IOException {
+        PersistentStore store = new PersistentStore(directory, segmentBytes, true);
+        store.load();
+        return store;
+    }
+
+    /**
+     * 不做任何持久化的存储，关闭持久化或数据目录不可用时使用
+     *
+     * @return 存储实例
+     */
+    public static PersistentStore disabled() {
+        return new PersistentStore(null, 0, false);
+    }
+
+    /**
+     * 读取记录，不论是否过期
+     *
+     * @param key 键
+     * @return 记录，不存在时返回null
+     */
+    public Record get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            Location location = index.get(key);
+            if (location == null) {
+                return null;
+            }
+            byte[] value = new byte[location.valueLength];
+            location.segment.buffer.get(location.offset + HEADER_BYTES + location.keyLength, value);
+            return new Record(new String(value, StandardCharsets.UTF_8), location.expiresAt);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 写入记录
+     *
+     * @param key       键
+     * @param value     值
+     * @param expiresAt 过期时间（毫秒时间戳）
+     */
+    public void put(String key, String value, long expiresAt) {
+        if (!enabled || key == null || value == null) {
+            return;
+        }
+        append(key, value.getBytes(StandardCharsets.UTF_8), expiresAt);
+    }
+
+    /**
+     * 删除记录
+     *
+     * @param key 键
+     */
+    public void remove(String key) {
+        if (!enabled || !index.containsKey(key)) {
+            return;
+        }
+        append(key, null, 0);
+    }
+
+    /**
+     * 当前有效的记录数
+     *
+     * @return 记录数
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * 段文件已写入的总字节数
+     *
+     * @return 字节数
+     */
+    public long diskBytes() {
+        lock.readLock().lock();
+        try {
+            return totalBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 把所有段的映射内存刷到磁盘
+     */
+    @Override
+    public void close() {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments) {
+                segment.buffer.force();
+            }
+            log.info("持久化存储已关闭: {} 条记录, {} 字节", index.size(), totalBytes);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void append(String key, byte[] value, long expiresAt) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int length = HEADER_BYTES + keyBytes.length + (value != null ? value.length : 0);
+        if (length > segmentBytes) {
+            log.warn("记录超过段文件大小，不持久化: {} ({} 字节)", key, length);
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (active.position + length > segmentBytes) {
+                if (shouldCompact()) {
+                    compact();
+                }
+                if (active.position + length > segmentBytes) {
+                    active = createSegment(active.id + 1);
+                }
+            }
+            int offset = write(active, keyBytes, value, expiresAt);
+            Location previous = value != null
+                    ? index.put(key, new Location(active, offset, keyBytes.length, value.length, expiresAt))
+                    : index.remove(key);
+            if (previous != null) {
+                liveBytes -= previous.length();
+            }
+            if (value != null) {
+                liveBytes += length;
+            }
+        } catch (IOException e) {
+            log.error("持久化存储写入失败: {}", e.getMessage(), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int write(Segment segment, byte[] keyBytes, byte[] value, long expiresAt) {
+        int offset = segment.position;
+        int valueLength = value != null ? value.length : TOMBSTONE;
+        MappedByteBuffer buffer = segment.buffer;
+        buffer.putInt(offset + 4, keyBytes.length);
+        buffer.putInt(offset + 8, valueLength);
+        buffer.putLong(offset + 12, expiresAt);
+        buffer.put(offset + HEADER_BYTES, keyBytes);
+        if (value != null) {
+            buffer.put(offset + HEADER_BYTES + keyBytes.length, value);
+        }
+        // 最后写校验和，写了一半的记录在重启时校验失败
+        buffer.putInt(offset, checksum(buffer, offset, keyBytes.length, Math.max(valueLength, 0)));
+        int length = HEADER_BYTES + keyBytes.length + Math.max(valueLength, 0);
+        segment.position += length;
+        totalBytes += length;
+        return offset;
+    }
+
+    private boolean shouldCompact() {
+        return segments.size() > 1 && liveBytes < totalBytes * COMPACT_GARBAGE_RATIO;
+    }
+
+    /**
+     * 把有效记录重写到新段，删除旧段；过期超过保留时间的记录一并清理
+     */
+    private void compact() throws IOException {
+        long start = System.nanoTime();
+        long now = System.currentTimeMillis();
+        long before = totalBytes;
+        List<Segment> old = new ArrayList<>(segments);
+        segments.clear();
+        totalBytes = 0;
+        liveBytes = 0;
+        active = createSegment(old.get(old.size() - 1).id + 1);
+
+        for (Map.Entry<String, Location> entry : index.entrySet()) {
+            Location location = entry.getValue();
+            if (location.expiresAt + STALE_RETENTION_MILLIS < now) {
+                index.remove(entry.getKey());
+                continue;
+            }
+            int length = location.length();
+            if (active.position + length > segmentBytes) {
+                active = createSegment(active.id + 1);
+            }
+            byte[] keyBytes = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            byte[] value = new byte[location.valueLength];
+            location.segment.buffer.get(location.offset + HEADER_BYTES + location.keyLength, value);
+            int offset = write(active, keyBytes, value, location.expiresAt);
+            entry.setValue(new Location(active, offset, location.keyLength, location.valueLength, location.expiresAt));
+            liveBytes += length;
+        }
+
+        for (Segment segment : old) {
+            segment.close();
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                // Windows下仍被映射的文件无法删除，留到进程退出时删除
+                log.warn("旧段文件删除失败，进程退出时再删除: {}", segment.path.getFileName());
+                segment.path.toFile().deleteOnExit();
+            }
+        }
+        log.info("持久化存储压缩完成: {} -> {} 字节, {} 条记录, 耗时 {} 毫秒",
+                before, totalBytes, index.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * 按段编号顺序扫描已有段文件重建索引
+     */
+    private void load() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> paths;
+        try (Stream<Path> files = Files.list(directory)) {
+            paths = files.filter(path -> SEGMENT_NAME.matcher(path.getFileName().toString()).matches())
+                    .sorted()
+                    .toList();
+        }
+
+        long start = System.nanoTime();
+        for (Path path : paths) {
+            Matcher matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+            matcher.matches();
+            Segment segment = mapSegment(Integer.parseInt(matcher.group(1)), path);
+            scan(segment);
+        }
+        if (segments.isEmpty()) {
+            active = createSegment(1);
+        } else {
+            active = segments.get(segments.size() - 1);
+        }
+        ToolMetrics.persistentStore(this::size, this::diskBytes);
+        log.info("持久化存储已打开: {}, {} 个段文件, {} 条记录, 耗时 {} 毫秒", directory.toAbsolutePath(),
+                segments.size(), index.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void scan(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer;
+        int offset = 0;
+        boolean torn = false;
+        while (offset + HEADER_BYTES <= segmentBytes) {
+            int keyLength = buffer.getInt(offset + 4);
+            int valueLength = buffer.getInt(offset + 8);
+            int payload = keyLength + Math.max(valueLength, 0);
+            if (keyLength <= 0 || valueLength < TOMBSTONE || payload > segmentBytes - offset - HEADER_BYTES) {
+                // 全零的记录头是正常的段尾
+                torn = keyLength != 0 || valueLength != 0 || buffer.getInt(offset) != 0;
+                break;
+            }
+            if (buffer.getInt(offset) != checksum(buffer, offset, keyLength, Math.max(valueLength, 0))) {
+                torn = true;
+                break;
+            }
+            byte[] keyBytes = new byte[keyLength];
+            buffer.get(offset + HEADER_BYTES, keyBytes);
+            String key = new String(keyBytes, StandardCharsets.UTF_8);
+            long expiresAt = buffer.getLong(offset + 12);
+            Location previous = valueLength == TOMBSTONE
+                    ? index.remove(key)
+                    : index.put(key, new Location(segment, offset, keyLength, valueLength, expiresAt));
+            if (previous != null) {
+                liveBytes -= previous.length();
+            }
+            int length = HEADER_BYTES + payload;
+            if (valueLength != TOMBSTONE) {
+                liveBytes += length;
+            }
+            offset += length;
+        }
+        if (torn) {
+            // 损坏处之后可能残留崩溃前写入的完整记录，清零后再追加，新记录恰好写到它们之前时不会被重新读出
+            log.warn("段文件 {} 在偏移 {} 处校验失败，忽略并清除之后的内容", segment.path.getFileName(), offset);
+            clear(buffer, offset, segmentBytes);
+        }
+        segment.position = offset;
+        totalBytes += offset;
+    }
+
+    private static void clear(MappedByteBuffer buffer, int from, int to) {
+        byte[] zeros = new byte[Math.min(64 * 1024, to - from)];
+        for (int offset = from; offset < to; offset += zeros.length) {
+            buffer.put(offset, zeros, 0, Math.min(zeros.length, to - offset));
+        }
+    }
+
+    private Segment createSegment(int id) throws IOException {
+        return mapSegment(id, directory.resolve(String.format("segment-%06d.log", id)));
+    }
+
+    private Segment mapSegment(int id, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            Segment segment = new Segment(id, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes));
+            segments.add(segment);
+            return segment;
+        }
+    }
+
+    private static int checksum(MappedByteBuffer buffer, int offset, int keyLength, int valueLength) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset + 4, HEADER_BYTES - 4 + keyLength + valueLength));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * 读取到的记录
+     *
+     * @param value     值
+     * @param expiresAt 过期时间（毫秒时间戳）
+     */
+    public record Record(String value, long expiresAt) {
+        public boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+
+    /**
+     * 记录在段文件中的位置
+     */
+    private record Location(Segment segment, int offset, int keyLength, int valueLength, long expiresAt) {
+        int length() {
+            return HEADER_BYTES + keyLength + valueLength;
+        }
+    }
+
+    /**
+     * 内存映射的段文件
+     */
+    private static final class Segment {
+        private final int id;
+
+        private final Path path;
+
+        private final MappedByteBuffer buffer;
+
+        /**
+         * 下一条记录的写入位置
+         */
+        private int position;
+
+        private Segment(int id, Path path, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.buffer = buffer;
+        }
+
+        private void close() {
+            buffer.force();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.mcp.utils;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 请求合并工具
+ * 相同键的并发请求只执行一次加载，其余调用方等待同一结果；调用方绑定了截止时间时最多等到截止时间
+ *
+ * @param <K> 键类型
+ * @param <V> 值类型
+ */
+public class RequestCoalescer<K, V> {
+    /**
+     * 正在执行中的请求
+     */
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * 执行请求，若相同键的请求正在执行则等待其结果
+     *
+     * @param key    请求键
+     * @param loader 加载函数，在首个调用方的线程中执行
+     * @return 加载结果，等待他人的加载超出截止时间时返回null
+     */
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            Deadline deadline = Deadline.current();
+            try {
+                if (deadline == null) {
+                    return existing.join();
+                }
+                return existing.get(Math.max(0, deadline.remainingNanos()), TimeUnit.NANOSECONDS);
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : e;
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : new CompletionException(e.getCause());
+            } catch (TimeoutException e) {
+                return null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+
+        try {
+            V value = loader.get();
+            created.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+
+    /**
+     * 当前正在执行的请求数
+     *
+     * @return 请求数
+     */
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+}
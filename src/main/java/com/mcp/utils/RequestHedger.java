@@ -0,0 +1,273 @@
+package com.mcp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * 对冲请求工具类
+ * 幂等的GET请求超过该端点最近的p95耗时仍未返回时，再发出一个相同的请求，取先成功返回的结果。
+ * 对冲请求沿用调用线程的优先级和截止时间，截止时间到达时不再等待任何一个请求。
+ * 对冲只在预算内进行（最多约为请求数的10%），并且需要熔断器关闭、限流令牌立即可用，不会让上游负载翻倍；
+ * 没有限流令牌桶的端点不对冲。
+ * 请求在有界线程池中执行，线程池已满时在调用线程执行且不对冲；一方先返回后取消另一方，
+ * 仍在排队等待令牌的请求不再发送，已发出的HTTP请求无法中断，其结果被丢弃。
+ * <p>
+ * 在 application.yml 的 mcp.upstream 下配置（hedge、hedge-threads），启动时由 UpstreamConfig 应用
+ */
+@Slf4j
+public class RequestHedger {
+    /**
+     * 执行可对冲请求的默认最大线程数
+     */
+    private static final int DEFAULT_MAX_THREADS = 32;
+
+    /**
+     * 是否启用对冲
+     */
+    private static volatile boolean enabled = true;
+
+    /**
+     * 每个端点保留的最近耗时样本数
+     */
+    private static final int SAMPLES = 200;
+
+    /**
+     * 至少有多少个样本才开始对冲
+     */
+    private static final int MIN_SAMPLES = 20;
+
+    /**
+     * 每多少个新样本重新计算一次p95
+     */
+    private static final int RECOMPUTE_EVERY = 20;
+
+    /**
+     * 对冲延迟的下限（毫秒），避免在耗时极短的端点上频繁对冲
+     */
+    private static final long MIN_DELAY_MILLIS = 50;
+
+    /**
+     * 每个请求积累的对冲预算
+     */
+    private static final double BUDGET_PER_REQUEST = 0.1;
+
+    /**
+     * 对冲预算上限，限制突发对冲的数量
+     */
+    private static final double MAX_BUDGET = 10;
+
+    private static final Map<String, Tracker> TRACKERS = new ConcurrentHashMap<>();
+
+    /**
+     * 不排队：线程都在使用时拒绝提交，由调用线程直接执行
+     */
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(0, DEFAULT_MAX_THREADS,
+            60, TimeUnit.SECONDS, new SynchronousQueue<>(), new ThreadFactory() {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "upstream-hedge-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * 应用对冲配置
+     *
+     * @param hedgeEnabled 是否启用对冲
+     * @param maxThreads   执行可对冲请求的最大线程数
+     */
+    public static void configure(boolean hedgeEnabled, int maxThreads) {
+        enabled = hedgeEnabled;
+        EXECUTOR.setMaximumPoolSize(Math.max(1, maxThreads));
+        log.info("上游对冲请求{}，最多 {} 个线程", hedgeEnabled ? "已启用" : "未启用", EXECUTOR.getMaximumPoolSize());
+    }
+
+    /**
+     * 记录一次上游请求的耗时
+     *
+     * @param endpoint 端点分类
+     * @param nanos    耗时（纳秒）
+     */
+    public static void recordLatency(String endpoint, long nanos) {
+        if (enabled) {
+            TRACKERS.computeIfAbsent(endpoint, key -> new Tracker()).record(nanos);
+        }
+    }
+
+    /**
+     * 执行可对冲的请求
+     *
+     * @param endpoint 端点分类
+     * @param primary  首个请求
+     * @param hedge    对冲请求，未取到限流令牌等原因无法发出时应返回null
+     * @return 先成功返回的响应，都失败时返回null
+     */
+    public static String execute(String endpoint, Supplier<String> primary, Supplier<String> hedge) {
+        Tracker tracker = enabled && UpstreamScheduler.isLimited(endpoint) ? TRACKERS.get(endpoint) : null;
+        long delayNanos = tracker != null ? tracker.hedgeDelayNanos() : -1;
+        if (delayNanos < 0) {
+            return primary.get();
+        }
+
+        CompletableFuture<String> first;
+        try {
+            first = submit(primary);
+        } catch (RejectedExecutionException e) {
+            ToolMetrics.hedge(endpoint, "rejected");
+            return primary.get();
+        }
+        try {
+            return first.get(Deadline.clampNanos(delayNanos), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            if (Deadline.expired()) {
+                first.cancel(true);
+                return null;
+            }
+            // 超过p95仍未返回，在预算内发出对冲请求
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            first.cancel(true);
+            return null;
+        } catch (Exception e) {
+            return null;
+        }
+
+        if (!tracker.tryConsumeBudget() || CircuitBreaker.isOpen(endpoint)) {
+            return awaitWithinDeadline(first);
+        }
+        CompletableFuture<String> second;
+        try {
+            second = submit(hedge);
+        } catch (RejectedExecutionException e) {
+            ToolMetrics.hedge(endpoint, "rejected");
+            return awaitWithinDeadline(first);
+        }
+        ToolMetrics.hedge(endpoint, "sent");
+        log.debug("上游 {} 请求超过 {} 毫秒未返回，发出对冲请求", endpoint, TimeUnit.NANOSECONDS.toMillis(delayNanos));
+
+        CompletableFuture<String> winner = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(2);
+        BiConsumer<String, Throwable> onDone = (value, error) -> {
+            if (value != null) {
+                winner.complete(value);
+            } else if (pending.decrementAndGet() == 0) {
+                winner.complete(null);
+            }
+        };
+        first.whenComplete(onDone);
+        second.whenComplete((value, error) -> {
+            if (value != null && !first.isDone()) {
+                ToolMetrics.hedge(endpoint, "won");
+            }
+            onDone.accept(value, error);
+        });
+        try {
+            return awaitWithinDeadline(winner);
+        } finally {
+            // 已完成的一方取消无效果，未完成的一方不再需要
+            first.cancel(true);
+            second.cancel(true);
+        }
+    }
+
+    /**
+     * 在有界线程池中执行请求，沿用调用线程的请求优先级和截止时间
+     * 返回的结果被取消时中断执行线程，仍在排队等待令牌的请求不再发送
+     *
+     * @throws RejectedExecutionException 线程都在使用时
+     */
+    private static CompletableFuture<String> submit(Supplier<String> task) {
+        UpstreamScheduler.Priority priority = UpstreamScheduler.currentPriority();
+        Supplier<String> inherited = Deadline.propagate(() -> UpstreamScheduler.withPriority(priority, task));
+        CompletableFuture<String> result = new CompletableFuture<>();
+        Future<?> running = EXECUTOR.submit(() -> {
+            try {
+                result.complete(inherited.get());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                running.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 等待请求结果，最多等到调用线程的截止时间；超时时取消请求
+     */
+    private static String awaitWithinDeadline(CompletableFuture<String> future) {
+        try {
+            return future.get(Deadline.clampNanos(Long.MAX_VALUE), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            return null;
+        } catch (Exception e) {
+            future.cancel(true);
+            return null;
+        }
+    }
+
+    /**
+     * 单个端点的耗时样本和对冲预算
+     */
+    private static class Tracker {
+        private final long[] samples = new long[SAMPLES];
+
+        private int count;
+
+        private int position;
+
+        private int sinceRecompute;
+
+        private volatile long p95Nanos = -1;
+
+        private double budget = MAX_BUDGET / 2;
+
+        synchronized void record(long nanos) {
+            samples[position] = nanos;
+            position = (position + 1) % SAMPLES;
+            count = Math.min(count + 1, SAMPLES);
+            budget = Math.min(MAX_BUDGET, budget + BUDGET_PER_REQUEST);
+            if (count >= MIN_SAMPLES && ++sinceRecompute >= RECOMPUTE_EVERY) {
+                sinceRecompute = 0;
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                p95Nanos = sorted[(int) Math.ceil(count * 0.95) - 1];
+            }
+        }
+
+        long hedgeDelayNanos() {
+            long p95 = p95Nanos;
+            return p95 < 0 ? -1 : Math.max(p95, TimeUnit.MILLISECONDS.toNanos(MIN_DELAY_MILLIS));
+        }
+
+        synchronized boolean tryConsumeBudget() {
+            if (budget < 1) {
+                return false;
+            }
+            budget -= 1;
+            return true;
+        }
+    }
+}
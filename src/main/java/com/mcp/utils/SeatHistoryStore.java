@@ -0,0 +1,584 @@
+package com.mcp.utils;
+
+import com.mcp.model.LeftTicketResult;
+import com.mcp.model.TicketData;
+import com.mcp.model.TicketDelta;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 余票历史时序存储
+ * 只追加的列式存储：每个样本为（采样时间, 乘车日期, 线路, 车次, 席别, 余票），按采样时间分区，
+ * 每个分区是一个内存映射文件，各列连续存放，数据不占用堆内存。线路和车次编码为整数，字典单独追加到文本文件。
+ * 每个分区在内存中保留出现过的线路集合和乘车日期范围，查询时跳过时间、线路或日期不相关的分区，
+ * 分区内只扫描线路列，命中后再读其余列。
+ * <p>
+ * 分区文件格式：魔数(4) | 容量(4) | 行数(4) | 保留(4) | 分区起始时间(8) | 保留(8) | 各列（采样时间8字节、乘车日期4字节、
+ * 线路4字节、车次4字节、席别1字节、余票4字节，每列长度为容量×字节数）。
+ * 每行先写各列，最后更新头部行数，写了一半的行在重启后不可见。
+ */
+@Slf4j
+public class SeatHistoryStore implements Closeable {
+    /**
+     * 余票显示"有"时记录的值
+     */
+    public static final int PLENTY = -1;
+
+    private static final int MAGIC = 0x53484953;
+
+    private static final int HEADER_BYTES = 32;
+
+    /**
+     * 每行各列字节数之和
+     */
+    private static final int ROW_BYTES = 8 + 4 + 4 + 4 + 1 + 4;
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("history-(\\d{12})-(\\d{3})\\.col");
+
+    /**
+     * 单个分区文件最多的行数，保证列偏移不超过int范围
+     */
+    private static final int MAX_ROWS_PER_FILE = (Integer.MAX_VALUE - HEADER_BYTES) / ROW_BYTES;
+
+    private static final DateTimeFormatter PARTITION_TIME = DateTimeFormatter.ofPattern("yyyyMMddHHmm");
+
+    private static final String DICTIONARY_FILE = "dictionary.txt";
+
+    private final Path directory;
+
+    private final int rowsPerFile;
+
+    private final long partitionMillis;
+
+    private final long retentionMillis;
+
+    private final long fullSampleMillis;
+
+    private final boolean enabled;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 线路字典，值为"出发站|到达站"
+     */
+    private final Dictionary routes = new Dictionary('R');
+
+    /**
+     * 车次字典
+     */
+    private final Dictionary trains = new Dictionary('T');
+
+    /**
+     * 按起始时间和序号排序的分区
+     */
+    private final List<Partition> partitions = new ArrayList<>();
+
+    /**
+     * 各查询上一次全量采样的时间，两次全量采样之间只记录变化的车次
+     */
+    private final Map<String, Long> lastFullSample = new ConcurrentHashMap<>();
+
+    private BufferedWriter dictionaryWriter;
+
+    private SeatHistoryStore(Path directory, int rowsPerFile, long partitionMillis, long retentionMillis,
+                             long fullSampleMillis, boolean enabled) {
+        this.directory = directory;
+        this.rowsPerFile = rowsPerFile;
+        this.partitionMillis = partitionMillis;
+        this.retentionMillis = retentionMillis;
+        this.fullSampleMillis = fullSampleMillis;
+        this.enabled = enabled;
+    }
+
+    /**
+     * 打开数据目录下的历史存储，目录不存在时创建
+     *
+     * @param directory        数据目录
+     * @param rowsPerFile      单个分区文件的行数上限
+     * @param partitionMillis  分区时长（毫秒）
+     * @param retentionMillis  保留时长（毫秒），更早的分区在滚动时删除
+     * @param fullSampleMillis 同一查询两次全量采样的最小间隔（毫秒）
+     * @return 存储实例
+     * @throws IOException 目录无法创建或文件无法映射时抛出
+     */
+    public static SeatHistoryStore open(Path directory, int rowsPerFile, long partitionMillis, long retentionMillis,
+                                        long fullSampleMillis) throws IOException {
+        SeatHistoryStore store = new SeatHistoryStore(directory, Math.min(rowsPerFile, MAX_ROWS_PER_FILE),
+                partitionMillis, retentionMillis, fullSampleMillis, true);
+        store.load();
+        return store;
+    }
+
+    /**
+     * 不记录任何样本的存储，关闭历史记录或数据目录不可用时使用
+     *
+     * @return 存储实例
+     */
+    public static SeatHistoryStore disabled() {
+        return new SeatHistoryStore(null, 0, 1, 0, 0, false);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 记录一次余票查询结果
+     * 距该查询上一次全量采样超过间隔时记录全部车次，否则只记录与上一次获取相比有变化的车次
+     *
+     * @param result 余票查询结果
+     */
+    public void record(LeftTicketResult result) {
+        if (!enabled || result == null || result.getRows() == null) {
+            return;
+        }
+        long now = result.getFetchedAt();
+        String query = result.getDate() + "|" + result.getFromStation() + "|" + result.getToStation();
+        Long last = lastFullSample.get(query);
+        boolean full = result.getDeltas() == null || last == null || now - last >= fullSampleMillis;
+        Set<String> changed = null;
+        if (!full) {
+            changed = new HashSet<>();
+            for (TicketDelta delta : result.getDeltas()) {
+                if (delta.getAfter() != null) {
+                    changed.add(delta.getTrainCode());
+                }
+            }
+            if (changed.isEmpty()) {
+                return;
+            }
+        } else {
+            lastFullSample.put(query, now);
+        }
+
+        int date = (int) LocalDate.parse(result.getDate()).toEpochDay();
+        lock.writeLock().lock();
+        try {
+            int route = routes.idOf(result.getFromStation() + "|" + result.getToStation(), dictionaryWriter);
+            int written = 0;
+            for (TicketData row : result.getRows()) {
+                if (changed != null && !changed.contains(row.getStationTrainCode())) {
+                    continue;
+                }
+                int train = trains.idOf(row.getStationTrainCode(), dictionaryWriter);
+                String[] nums = TicketParser.seatNums(row);
+                for (int seat = 0; seat < nums.length; seat++) {
+                    // 空值表示该车次没有此席别
+                    if (nums[seat] == null || nums[seat].isEmpty()) {
+                        continue;
+                    }
+                    appendRow(now, date, route, train, seat, countOf(nums[seat]));
+                    written++;
+                }
+            }
+            log.trace("记录余票历史: {}，{} 个样本", query, written);
+        } catch (IOException e) {
+            log.error("余票历史写入失败: {}", e.getMessage(), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 查询一条线路某个乘车日期的全部样本，按采样时间排序
+     *
+     * @param fromStation 出发站代码
+     * @param toStation   到达站代码
+     * @param date        乘车日期，格式为yyyy-MM-dd
+     * @param sinceMillis 采样时间下限（毫秒时间戳），0表示不限
+     * @return 查询结果
+     */
+    public QueryResult query(String fromStation, String toStation, String date, long sinceMillis) {
+        if (!enabled) {
+            return new QueryResult(List.of(), 0, 0);
+        }
+        int day = (int) LocalDate.parse(date).toEpochDay();
+        lock.readLock().lock();
+        try {
+            Integer route = routes.find(fromStation + "|" + toStation);
+            if (route == null) {
+                return new QueryResult(List.of(), 0, partitions.size());
+            }
+            List<Sample> samples = new ArrayList<>();
+            int scanned = 0;
+            for (Partition partition : partitions) {
+                // 按分区时间、线路集合和乘车日期范围剪枝
+                if (partition.start + partitionMillis <= sinceMillis || !partition.routes.get(route)
+                        || day < partition.minDate || day > partition.maxDate) {
+                    continue;
+                }
+                scanned++;
+                partition.scan(route, day, sinceMillis, trains, samples);
+            }
+            return new QueryResult(samples, scanned, partitions.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 所有分区的样本数
+     *
+     * @return 样本数
+     */
+    public long sampleCount() {
+        lock.readLock().lock();
+        try {
+            long count = 0;
+            for (Partition partition : partitions) {
+                count += partition.rowCount;
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 分区数
+     *
+     * @return 分区数
+     */
+    public int partitionCount() {
+        lock.readLock().lock();
+        try {
+            return partitions.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 把所有分区的映射内存刷到磁盘并关闭字典文件
+     */
+    @Override
+    public void close() {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (Partition partition : partitions) {
+                partition.buffer.force();
+            }
+            dictionaryWriter.close();
+            log.info("余票历史存储已关闭: {} 个分区", partitions.size());
+        } catch (IOException e) {
+            log.warn("关闭余票历史字典文件失败: {}", e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void appendRow(long timestamp, int date, int route, int train, int seat, int count) throws IOException {
+        Partition partition = partitions.isEmpty() ? null : partitions.get(partitions.size() - 1);
+        long start = timestamp - Math.floorMod(timestamp, partitionMillis);
+        if (partition == null || partition.start != start || partition.rowCount >= partition.capacity) {
+            int sequence = partition != null && partition.start == start ? partition.sequence + 1 : 0;
+            partition = createPartition(start, sequence);
+            dropExpired(timestamp);
+        }
+        partition.append(timestamp, date, route, train, seat, count);
+    }
+
+    /**
+     * 删除超过保留时长的分区
+     */
+    private void dropExpired(long now) {
+        while (partitions.size() > 1 && partitions.get(0).start + partitionMillis < now - retentionMillis) {
+            Partition expired = partitions.remove(0);
+            try {
+                Files.deleteIfExists(expired.path);
+            } catch (IOException e) {
+                // Windows下仍被映射的文件无法删除，留到进程退出时删除
+                log.warn("过期的余票历史分区删除失败，进程退出时再删除: {}", expired.path.getFileName());
+                expired.path.toFile().deleteOnExit();
+            }
+            log.info("删除过期的余票历史分区: {}", expired.path.getFileName());
+        }
+        lastFullSample.entrySet().removeIf(entry -> entry.getValue() < now - fullSampleMillis);
+    }
+
+    /**
+     * 加载字典和已有分区，重建各分区的线路集合和日期范围
+     */
+    private void load() throws IOException {
+        Files.createDirectories(directory);
+        long start = System.nanoTime();
+        Path dictionary = directory.resolve(DICTIONARY_FILE);
+        if (Files.exists(dictionary)) {
+            for (String line : readDictionary(dictionary)) {
+                String[] parts = line.split("\t", 3);
+                if (parts.length < 3) {
+                    log.warn("余票历史字典文件中格式不正确的行，已跳过: {}", line);
+                    continue;
+                }
+                Dictionary target = "R".equals(parts[0]) ? routes : trains;
+                target.restore(Integer.parseInt(parts[1]), parts[2]);
+            }
+        }
+        dictionaryWriter = Files.newBufferedWriter(dictionary, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+        List<Path> paths;
+        try (Stream<Path> files = Files.list(directory)) {
+            paths = files.filter(path -> PARTITION_NAME.matcher(path.getFileName().toString()).matches())
+                    .sorted()
+                    .toList();
+        }
+        for (Path path : paths) {
+            Matcher matcher = PARTITION_NAME.matcher(path.getFileName().toString());
+            matcher.matches();
+            Partition partition = mapPartition(path, Integer.parseInt(matcher.group(2)), 0, false);
+            if (partition == null) {
+                log.warn("余票历史分区文件格式不正确，已跳过: {}", path.getFileName());
+                continue;
+            }
+            partition.rebuildDirectory();
+        }
+        ToolMetrics.seatHistory(this::sampleCount, this::partitionCount);
+        log.info("余票历史存储已打开: {}, {} 个分区, {} 个样本, 耗时 {} 毫秒", directory.toAbsolutePath(),
+                partitions.size(), sampleCount(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * 读取字典文件的完整行
+     * 崩溃时写了一半的最后一行没有换行符，截掉后之后追加的条目从新行开始，不会与它拼成一行
+     */
+    private static List<String> readDictionary(Path dictionary) throws IOException {
+        byte[] bytes = Files.readAllBytes(dictionary);
+        int end = bytes.length;
+        while (end > 0 && bytes[end - 1] != '\n') {
+            end--;
+        }
+        if (end < bytes.length) {
+            log.warn("余票历史字典文件最后一行不完整，截掉 {} 字节", bytes.length - end);
+            try (FileChannel channel = FileChannel.open(dictionary, StandardOpenOption.WRITE)) {
+                channel.truncate(end);
+            }
+        }
+        return new String(bytes, 0, end, StandardCharsets.UTF_8).lines().toList();
+    }
+
+    private Partition createPartition(long start, int sequence) throws IOException {
+        String name = String.format("history-%s-%03d.col",
+                PARTITION_TIME.format(Instant.ofEpochMilli(start).atZone(ZoneId.systemDefault())), sequence);
+        return mapPartition(directory.resolve(name), sequence, start, true);
+    }
+
+    private Partition mapPartition(Path path, int sequence, long start, boolean create) throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            int capacity = rowsPerFile;
+            if (!create) {
+                // 已有分区按文件头中的容量映射，修改配置不影响旧分区
+                if (channel.size() < HEADER_BYTES) {
+                    return null;
+                }
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+                if (header.getInt(0) != MAGIC) {
+                    return null;
+                }
+                capacity = header.getInt(4);
+                start = header.getLong(16);
+                if (capacity <= 0 || channel.size() < HEADER_BYTES + (long) capacity * ROW_BYTES) {
+                    return null;
+                }
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_BYTES + (long) capacity * ROW_BYTES);
+            if (create) {
+                buffer.putInt(4, capacity);
+                buffer.putInt(8, 0);
+                buffer.putLong(16, start);
+                buffer.putInt(0, MAGIC);
+            }
+            Partition partition = new Partition(path, sequence, start, capacity, buffer);
+            partition.rowCount = buffer.getInt(8);
+            partitions.add(partition);
+            return partition;
+        }
+    }
+
+    /**
+     * 余票显示值转换为记录值："有"记为PLENTY，数字记为数量，"无""候补"等记为0
+     */
+    private static int countOf(String num) {
+        if ("有".equals(num)) {
+            return PLENTY;
+        }
+        return TicketParser.seatCount(num);
+    }
+
+    /**
+     * 查询结果
+     *
+     * @param samples            按采样时间排序的样本
+     * @param partitionsScanned  实际扫描的分区数
+     * @param partitionsTotal    分区总数
+     */
+    public record QueryResult(List<Sample> samples, int partitionsScanned, int partitionsTotal) {
+    }
+
+    /**
+     * 一个余票样本
+     *
+     * @param timestamp 采样时间（毫秒时间戳）
+     * @param trainCode 车次代码
+     * @param seatClass 席别下标，见 TicketParser.seatName
+     * @param count     余票数量，PLENTY表示"有"
+     */
+    public record Sample(long timestamp, String trainCode, int seatClass, int count) {
+    }
+
+    /**
+     * 一个时间分区文件
+     */
+    private static final class Partition {
+        private final Path path;
+        private final int sequence;
+        private final long start;
+        private final int capacity;
+        private final MappedByteBuffer buffer;
+        private final int dateColumn;
+        private final int routeColumn;
+        private final int trainColumn;
+        private final int seatColumn;
+        private final int countColumn;
+        /**
+         * 分区中出现过的线路
+         */
+        private final BitSet routes = new BitSet();
+        private int minDate = Integer.MAX_VALUE;
+        private int maxDate = Integer.MIN_VALUE;
+        private int rowCount;
+
+        private Partition(Path path, int sequence, long start, int capacity, MappedByteBuffer buffer) {
+            this.path = path;
+            this.sequence = sequence;
+            this.start = start;
+            this.capacity = capacity;
+            this.buffer = buffer;
+            this.dateColumn = HEADER_BYTES + capacity * 8;
+            this.routeColumn = dateColumn + capacity * 4;
+            this.trainColumn = routeColumn + capacity * 4;
+            this.seatColumn = trainColumn + capacity * 4;
+            this.countColumn = seatColumn + capacity;
+        }
+
+        private void append(long timestamp, int date, int route, int train, int seat, int count) {
+            int row = rowCount;
+            buffer.putLong(HEADER_BYTES + row * 8, timestamp);
+            buffer.putInt(dateColumn + row * 4, date);
+            buffer.putInt(routeColumn + row * 4, route);
+            buffer.putInt(trainColumn + row * 4, train);
+            buffer.put(seatColumn + row, (byte) seat);
+            buffer.putInt(countColumn + row * 4, count);
+            // 最后更新行数，写了一半的行不可见
+            rowCount = row + 1;
+            buffer.putInt(8, rowCount);
+            index(route, date);
+        }
+
+        private void rebuildDirectory() {
+            for (int row = 0; row < rowCount; row++) {
+                index(buffer.getInt(routeColumn + row * 4), buffer.getInt(dateColumn + row * 4));
+            }
+        }
+
+        private void index(int route, int date) {
+            routes.set(route);
+            minDate = Math.min(minDate, date);
+            maxDate = Math.max(maxDate, date);
+        }
+
+        /**
+         * 先扫描线路列，命中后再读其余列
+         */
+        private void scan(int route, int date, long sinceMillis, Dictionary trains, List<Sample> samples) {
+            for (int row = 0; row < rowCount; row++) {
+                if (buffer.getInt(routeColumn + row * 4) != route || buffer.getInt(dateColumn + row * 4) != date) {
+                    continue;
+                }
+                long timestamp = buffer.getLong(HEADER_BYTES + row * 8);
+                if (timestamp < sinceMillis) {
+                    continue;
+                }
+                samples.add(new Sample(timestamp, trains.valueOf(buffer.getInt(trainColumn + row * 4)),
+                        buffer.get(seatColumn + row), buffer.getInt(countColumn + row * 4)));
+            }
+        }
+    }
+
+    /**
+     * 字符串到整数编号的字典，新条目追加写入字典文件
+     */
+    private static final class Dictionary {
+        private final char type;
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        private Dictionary(char type) {
+            this.type = type;
+        }
+
+        private Integer find(String value) {
+            return ids.get(value);
+        }
+
+        private String valueOf(int id) {
+            return id >= 0 && id < values.size() ? values.get(id) : "?";
+        }
+
+        /**
+         * 获取编号，不存在时分配新编号并写入字典文件（调用方持有写锁）
+         */
+        private int idOf(String value, BufferedWriter writer) throws IOException {
+            Integer id = ids.get(value);
+            if (id != null) {
+                return id;
+            }
+            int next = values.size();
+            // 先落盘字典条目，再写引用它的样本
+            writer.write(type + "\t" + next + "\t" + value + "\n");
+            writer.flush();
+            values.add(value);
+            ids.put(value, next);
+            return next;
+        }
+
+        private void restore(int id, String value) {
+            while (values.size() <= id) {
+                values.add(null);
+            }
+            values.set(id, value);
+            ids.put(value, id);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.mcp.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 车站到车次的倒排索引
+ * 每个车站代码对应一个倒排表，元素为（车次序号 &lt;&lt; 16 | 站序），按车次序号、站序升序排列。
+ * 车次序号按加入顺序单调递增，新车次的倒排项总是追加在末尾，倒排表无需重新排序。
+ * 查询两站之间的车次时按车次序号合并两个倒排表，并检查出发站的站序小于到达站的站序。
+ * 写入时复制倒排表数组，查询不加锁
+ */
+public class StationTrainIndex {
+    /**
+     * 站序所占的位数
+     */
+    private static final int SEQ_BITS = 16;
+
+    private static final long SEQ_MASK = (1L << SEQ_BITS) - 1;
+
+    /**
+     * 最多索引的车次数，达到后不再加入新车次
+     */
+    private final int maxTrains;
+
+    /**
+     * 车站代码到倒排表
+     */
+    private final Map<String, long[]> postings = new ConcurrentHashMap<>();
+
+    /**
+     * 列车编号到车次序号
+     */
+    private final Map<String, Integer> trainIds = new ConcurrentHashMap<>();
+
+    /**
+     * 车次序号到列车编号和车次代码，下标为车次序号
+     */
+    private volatile String[][] trains = new String[64][];
+
+    private int trainCount;
+
+    /**
+     * 创建倒排索引
+     *
+     * @param maxTrains 最多索引的车次数
+     */
+    public StationTrainIndex(int maxTrains) {
+        this.maxTrains = maxTrains;
+    }
+
+    /**
+     * 两站之间的一个车次
+     *
+     * @param trainNo   列车编号
+     * @param trainCode 车次代码，时刻表中没有时为null
+     * @param fromStop  出发站站序
+     * @param toStop    到达站站序
+     */
+    public record Match(String trainNo, String trainCode, int fromStop, int toStop) {
+    }
+
+    /**
+     * 列车是否已加入索引
+     *
+     * @param trainNo 列车编号
+     * @return 已加入时返回true
+     */
+    public boolean contains(String trainNo) {
+        return trainIds.containsKey(trainNo);
+    }
+
+    /**
+     * 加入一个车次的经停站
+     *
+     * @param trainNo      列车编号
+     * @param trainCode    车次代码，可为null
+     * @param stationCodes 按站序排列的车站代码，无法识别的车站为null
+     * @param stops        与车站代码对应的站序
+     * @return 加入成功返回true；已存在或索引已满返回false
+     */
+    public synchronized boolean add(String trainNo, String trainCode, List<String> stationCodes, List<Integer> stops) {
+        if (trainNo == null || trainIds.containsKey(trainNo) || trainCount >= maxTrains) {
+            return false;
+        }
+        int id = trainCount++;
+        if (id == trains.length) {
+            String[][] grown = new String[trains.length * 2][];
+            System.arraycopy(trains, 0, grown, 0, trains.length);
+            trains = grown;
+        }
+        trains[id] = new String[]{trainNo, trainCode};
+
+        for (int i = 0; i < stationCodes.size(); i++) {
+            String code = stationCodes.get(i);
+            if (code == null) {
+                continue;
+            }
+            long posting = (long) id << SEQ_BITS | (stops.get(i) & SEQ_MASK);
+            postings.compute(code, (key, list) -> {
+                if (list == null) {
+                    return new long[]{posting};
+                }
+                long[] appended = new long[list.length + 1];
+                System.arraycopy(list, 0, appended, 0, list.length);
+                appended[list.length] = posting;
+                return appended;
+            });
+        }
+        // 倒排项写完后才登记列车编号，查询不会看到只写了一半的车次
+        trainIds.put(trainNo, id);
+        return true;
+    }
+
+    /**
+     * 查询先经停出发站、后经停到达站的车次
+     *
+     * @param fromStation 出发站代码
+     * @param toStation   到达站代码
+     * @return 符合条件的车次，按加入索引的先后排列
+     */
+    public List<Match> between(String fromStation, String toStation) {
+        long[] from = postings.get(fromStation);
+        long[] to = postings.get(toStation);
+        List<Match> matches = new ArrayList<>();
+        if (from == null || to == null) {
+            return matches;
+        }
+        String[][] names = trains;
+        int i = 0;
+        int j = 0;
+        while (i < from.length && j < to.length) {
+            long fromTrain = from[i] >>> SEQ_BITS;
+            long toTrain = to[j] >>> SEQ_BITS;
+            if (fromTrain < toTrain) {
+                i++;
+            } else if (fromTrain > toTrain) {
+                j++;
+            } else {
+                // 同一车次可能多次经停同一车站（环线、折返），取最早的出发站和最晚的到达站
+                int fromStop = (int) (from[i] & SEQ_MASK);
+                while (i + 1 < from.length && from[i + 1] >>> SEQ_BITS == fromTrain) {
+                    i++;
+                }
+                while (j + 1 < to.length && to[j + 1] >>> SEQ_BITS == toTrain) {
+                    j++;
+                }
+                int toStop = (int) (to[j] & SEQ_MASK);
+                if (fromStop < toStop && fromTrain < names.length && names[(int) fromTrain] != null) {
+                    String[] train = names[(int) fromTrain];
+                    matches.add(new Match(train[0], train[1], fromStop, toStop));
+                }
+                i++;
+                j++;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * 已索引的车次数
+     *
+     * @return 车次数
+     */
+    public int trainCount() {
+        return trainIds.size();
+    }
+
+    /**
+     * 已索引的车站数
+     *
+     * @return 车站数
+     */
+    public int stationCount() {
+        return postings.size();
+    }
+}
@@ -0,0 +1,349 @@
+package com.mcp.utils;
+
+import com.mcp.model.Price;
+import com.mcp.model.TicketData;
+import com.mcp.model.TicketInfo;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 余票查询结果解析工具类
+ * 解析12306 leftTicket接口返回的以"|"分隔的车次行
+ */
+public class TicketParser {
+    /**
+     * 车次行最少字段数
+     */
+    private static final int MIN_PARTS = 30;
+
+    /**
+     * 服务标识字段下标
+     */
+    private static final int DW_FLAG_INDEX = 46;
+
+    /**
+     * 展示的座位类型：名称、简称、座位类型代码，顺序与前端服务一致
+     */
+    private static final String[][] SEAT_COLUMNS = {
+        {"商务座", "swz", "9"},
+        {"一等座", "zy", "M"},
+        {"二等座", "ze", "O"},
+        {"高级软卧", "gr", "6"},
+        {"软卧", "rw", "4"},
+        {"动卧", "srrb", "F"},
+        {"硬卧", "yw", "3"},
+        {"软座", "rz", "2"},
+        {"硬座", "yz", "1"},
+        {"无座", "wz", "W"}
+    };
+
+    /**
+     * 解析单个车次行
+     *
+     * @param row 车次行字符串
+     * @return 车票数据，字段不足时返回null
+     */
+    public static TicketData parseRow(String row) {
+        if (!StringUtils.hasLength(row)) {
+            return null;
+        }
+
+        String[] parts = row.split("\\|", -1);
+        if (parts.length < MIN_PARTS) {
+            return null;
+        }
+
+        TicketData data = new TicketData();
+        data.setSecretStr(part(parts, 0));
+        data.setButtonTextInfo(part(parts, 1));
+        data.setTrainNo(part(parts, 2));
+        data.setStationTrainCode(part(parts, 3));
+        data.setStartStationTelecode(part(parts, 4));
+        data.setEndStationTelecode(part(parts, 5));
+        data.setFromStationTelecode(part(parts, 6));
+        data.setToStationTelecode(part(parts, 7));
+        data.setStartTime(part(parts, 8));
+        data.setArriveTime(part(parts, 9));
+        data.setLishi(part(parts, 10));
+        data.setCanWebBuy(part(parts, 11));
+        data.setYpInfo(part(parts, 12));
+        data.setStartTrainDate(part(parts, 13));
+        data.setTrainSeatFeature(part(parts, 14));
+        data.setLocationCode(part(parts, 15));
+        data.setFromStationNo(part(parts, 16));
+        data.setToStationNo(part(parts, 17));
+        data.setIsSupportCard(part(parts, 18));
+        data.setControlledTrainFlag(part(parts, 19));
+        data.setGgNum(part(parts, 20));
+        data.setGrNum(part(parts, 21));
+        data.setQtNum(part(parts, 22));
+        data.setRwNum(part(parts, 23));
+        data.setRzNum(part(parts, 24));
+        data.setTzNum(part(parts, 25));
+        data.setWzNum(part(parts, 26));
+        data.setYbNum(part(parts, 27));
+        data.setYwNum(part(parts, 28));
+        data.setYzNum(part(parts, 29));
+        data.setZeNum(part(parts, 30));
+        data.setZyNum(part(parts, 31));
+        data.setSwzNum(part(parts, 32));
+        data.setSrrbNum(part(parts, 33));
+        data.setYpEx(part(parts, 34));
+        data.setSeatTypes(part(parts, 35));
+        data.setExchangeTrainFlag(part(parts, 36));
+        data.setHoubuTrainFlag(part(parts, 37));
+        data.setHoubuSeatLimit(part(parts, 38));
+        data.setYpInfoNew(part(parts, 39));
+        data.setDwFlag(part(parts, DW_FLAG_INDEX));
+        data.setStopcheckTime(part(parts, 48));
+        data.setCountryFlag(part(parts, 49));
+        data.setLocalArriveTime(part(parts, 50));
+        data.setLocalStartTime(part(parts, 51));
+        data.setBedLevelInfo(part(parts, 53));
+        data.setSeatDiscountInfo(part(parts, 54));
+        data.setSaleTime(part(parts, 55));
+        return data;
+    }
+
+    /**
+     * 将车票数据转换为展示用的车票信息
+     *
+     * @param data         车票数据
+     * @param stationNames 车站代码与名称映射（接口返回的map字段）
+     * @return 车票信息
+     */
+    public static TicketInfo toTicketInfo(TicketData data, Map<String, String> stationNames) {
+        TicketInfo info = new TicketInfo();
+        info.setTrainNo(data.getTrainNo());
+        info.setStartTrainCode(data.getStationTrainCode());
+        info.setStartTime(data.getStartTime());
+        info.setArriveTime(data.getArriveTime());
+        info.setLishi(data.getLishi());
+        info.setFromStation(stationName(stationNames, data.getFromStationTelecode()));
+        info.setToStation(stationName(stationNames, data.getToStationTelecode()));
+        info.setFromStationTelecode(data.getFromStationTelecode());
+        info.setToStationTelecode(data.getToStationTelecode());
+        info.setFromStationNo(data.getFromStationNo());
+        info.setToStationNo(data.getToStationNo());
+        info.setSeatTypes(data.getSeatTypes());
+        info.setPrices(extractPrices(data));
+        // 服务标识每行只解码一次，名称列表和车型掩码共用同一结果
+        int flagMask = TrainTypeFilter.decodeFlags(data.getDwFlag());
+        info.setDwFlag(TrainTypeFilter.flagNames(flagMask));
+        info.setTrainMask(TrainTypeFilter.trainMask(data.getStationTrainCode(), flagMask));
+        return info;
+    }
+
+    /**
+     * 提取有余票信息的座位
+     *
+     * @param data 车票数据
+     * @return 座位信息列表
+     */
+    public static List<Price> extractPrices(TicketData data) {
+        String[] nums = seatNums(data);
+        Map<String, Double> discounts = seatDiscounts(data.getSeatDiscountInfo());
+
+        List<Price> prices = new ArrayList<>();
+        for (int i = 0; i < SEAT_COLUMNS.length; i++) {
+            String num = nums[i];
+            if (StringUtils.hasLength(num) && !"无".equals(num)) {
+                prices.add(new Price(SEAT_COLUMNS[i][0], SEAT_COLUMNS[i][1], SEAT_COLUMNS[i][2], num, null,
+                        discounts.get(SEAT_COLUMNS[i][2])));
+            }
+        }
+        return prices;
+    }
+
+    /**
+     * 解析座位折扣信息
+     * 每5个字符一组：座位类型代码加4位折扣，如"O0085"表示二等座八五折；不打折的席别不出现
+     *
+     * @param seatDiscountInfo 座位折扣信息字段
+     * @return 座位类型代码到折扣（折，如8.5）的映射
+     */
+    public static Map<String, Double> seatDiscounts(String seatDiscountInfo) {
+        if (!StringUtils.hasLength(seatDiscountInfo)) {
+            return Map.of();
+        }
+        Map<String, Double> discounts = new HashMap<>();
+        for (int i = 0; i + 5 <= seatDiscountInfo.length(); i += 5) {
+            try {
+                int value = Integer.parseInt(seatDiscountInfo.substring(i + 1, i + 5));
+                if (value > 0 && value < 100) {
+                    discounts.put(seatDiscountInfo.substring(i, i + 1), value / 10.0);
+                }
+            } catch (NumberFormatException e) {
+                // 格式不符的分组忽略
+            }
+        }
+        return discounts;
+    }
+
+    /**
+     * 各席别的余票显示值，顺序与席别下标一致；空字符串表示该车次没有此席别
+     *
+     * @param data 车票数据
+     * @return 余票显示值数组
+     */
+    public static String[] seatNums(TicketData data) {
+        return new String[]{
+            data.getSwzNum(), data.getZyNum(), data.getZeNum(), data.getGrNum(), data.getRwNum(),
+            data.getSrrbNum(), data.getYwNum(), data.getRzNum(), data.getYzNum(), data.getWzNum()
+        };
+    }
+
+    /**
+     * 席别个数
+     *
+     * @return 席别个数
+     */
+    public static int seatClassCount() {
+        return SEAT_COLUMNS.length;
+    }
+
+    /**
+     * 席别名称
+     *
+     * @param index 席别下标
+     * @return 席别名称，如"二等座"
+     */
+    public static String seatName(int index) {
+        return SEAT_COLUMNS[index][0];
+    }
+
+    /**
+     * 席别简称
+     *
+     * @param index 席别下标
+     * @return 席别简称，如"ze"
+     */
+    public static String seatShortName(int index) {
+        return SEAT_COLUMNS[index][1];
+    }
+
+    /**
+     * 席别的座位类型代码
+     *
+     * @param index 席别下标
+     * @return 座位类型代码，如"O"
+     */
+    public static String seatTypeCode(int index) {
+        return SEAT_COLUMNS[index][2];
+    }
+
+    /**
+     * 按名称或简称查找席别下标
+     *
+     * @param seatClass 席别名称或简称，如"二等座"或"ze"
+     * @return 席别下标，未识别时返回-1
+     */
+    public static int seatIndex(String seatClass) {
+        for (int i = 0; i < SEAT_COLUMNS.length; i++) {
+            if (SEAT_COLUMNS[i][0].equals(seatClass) || SEAT_COLUMNS[i][1].equalsIgnoreCase(seatClass)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 判断车票是否还有可购买的座位
+     *
+     * @param info 车票信息
+     * @return 任一席别显示"有"或余票数量大于0时返回true
+     */
+    public static boolean hasAvailableSeat(TicketInfo info) {
+        if (info.getPrices() == null) {
+            return false;
+        }
+        for (Price price : info.getPrices()) {
+            if (seatCount(price.getNum()) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 计算原始车次行的64位哈希（FNV-1a），用于判断两次获取之间车次行是否变化
+     *
+     * @param row 车次行字符串
+     * @return 哈希值
+     */
+    public static long rowHash(String row) {
+        long hash = 0xcbf29ce484222325L;
+        if (row == null) {
+            return hash;
+        }
+        for (int i = 0; i < row.length(); i++) {
+            hash ^= row.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * 判断两条车票信息的各席别余票是否相同
+     *
+     * @param a 车票信息
+     * @param b 车票信息
+     * @return 席别和余票显示值都相同时返回true
+     */
+    public static boolean sameSeats(TicketInfo a, TicketInfo b) {
+        List<Price> left = a.getPrices() != null ? a.getPrices() : List.of();
+        List<Price> right = b.getPrices() != null ? b.getPrices() : List.of();
+        if (left.size() != right.size()) {
+            return false;
+        }
+        // 两边都按固定的席别顺序生成，逐项比较即可
+        for (int i = 0; i < left.size(); i++) {
+            Price x = left.get(i);
+            Price y = right.get(i);
+            if (!x.getShortName().equals(y.getShortName()) || !String.valueOf(x.getNum()).equals(String.valueOf(y.getNum()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 将余票显示值转换为数量
+     *
+     * @param num 余票显示值，如"有"、"12"、"无"、"候补"
+     * @return "有"视为不限量返回Integer.MAX_VALUE，数字返回对应数量，其余返回0
+     */
+    public static int seatCount(String num) {
+        if (!StringUtils.hasLength(num)) {
+            return 0;
+        }
+        if ("有".equals(num)) {
+            return Integer.MAX_VALUE;
+        }
+
+        int count = 0;
+        for (int i = 0; i < num.length(); i++) {
+            char c = num.charAt(i);
+            if (c < '0' || c > '9') {
+                return 0;
+            }
+            count = count * 10 + (c - '0');
+        }
+        return count;
+    }
+
+    private static String part(String[] parts, int index) {
+        return index < parts.length ? parts[index] : null;
+    }
+
+    private static String stationName(Map<String, String> stationNames, String code) {
+        if (stationNames == null || code == null) {
+            return code;
+        }
+        return stationNames.getOrDefault(code, code);
+    }
+}
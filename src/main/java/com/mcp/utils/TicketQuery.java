@@ -0,0 +1,312 @@
+package com.mcp.utils;
+
+import com.mcp.model.Price;
+import com.mcp.model.TicketInfo;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 车票查询流水线
+ * 在格式化之前依次完成时间窗口过滤、余票数量过滤、排序和分页，排序键每行只计算一次。
+ * 到达时间按出发时间加历时计算，包含跨天的天数，次日到达的车次排在当日到达的车次之后。
+ * 无法解析的时间和排序键抛出 IllegalArgumentException，消息可直接返回给调用方
+ */
+public class TicketQuery {
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    /**
+     * 出发时间窗口（分钟），-1表示不限
+     */
+    private int departFrom = -1;
+    private int departTo = -1;
+
+    /**
+     * 到达时间窗口（从出发日零点起的分钟数，次日到达加1440），-1表示不限
+     */
+    private int arriveFrom = -1;
+    private int arriveTo = -1;
+
+    /**
+     * 最少余票数量，0表示不限
+     */
+    private int minSeats;
+
+    /**
+     * 参与余票判断的席别（名称或简称），为空表示任一席别
+     */
+    private Set<String> seatClasses = new HashSet<>();
+
+    /**
+     * 排序规则
+     */
+    private Comparator<Row> comparator;
+
+    /**
+     * 页码（从1开始）和每页条数，pageSize为0表示不分页
+     */
+    private int page = 1;
+    private int pageSize;
+
+    /**
+     * 设置出发时间窗口
+     *
+     * @param from 最早出发时间，格式为 HH:mm，可为空
+     * @param to   最晚出发时间，格式为 HH:mm，可为空
+     * @return 当前查询
+     */
+    public TicketQuery departBetween(String from, String to) {
+        this.departFrom = parseClock("最早出发时间", from);
+        this.departTo = parseClock("最晚出发时间", to);
+        return this;
+    }
+
+    /**
+     * 设置到达时间窗口
+     * 时间指出发当日，后缀"+N"表示出发后第N天，如"08:00+1"为次日8点；
+     * 最晚到达时间早于最早到达时间且都没有后缀时，最晚到达时间视为次日
+     *
+     * @param from 最早到达时间，格式为 HH:mm 或 HH:mm+N，可为空
+     * @param to   最晚到达时间，格式为 HH:mm 或 HH:mm+N，可为空
+     * @return 当前查询
+     */
+    public TicketQuery arriveBetween(String from, String to) {
+        this.arriveFrom = parseArrival("最早到达时间", from);
+        this.arriveTo = parseArrival("最晚到达时间", to);
+        if (arriveFrom >= 0 && arriveTo >= 0 && arriveTo < arriveFrom
+                && arriveFrom < MINUTES_PER_DAY && arriveTo < MINUTES_PER_DAY) {
+            arriveTo += MINUTES_PER_DAY;
+        }
+        return this;
+    }
+
+    /**
+     * 设置最少余票数量
+     *
+     * @param minSeats    最少余票数量，"有"视为满足任意数量
+     * @param seatClasses 席别名称或简称，逗号分隔，如"二等座,zy"，可为空
+     * @return 当前查询
+     */
+    public TicketQuery minSeats(Integer minSeats, String seatClasses) {
+        this.minSeats = minSeats != null && minSeats > 0 ? minSeats : 0;
+        if (StringUtils.hasLength(seatClasses)) {
+            for (String seatClass : seatClasses.split(",")) {
+                if (StringUtils.hasText(seatClass)) {
+                    this.seatClasses.add(seatClass.trim());
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 设置排序规则
+     *
+     * @param sortBy 排序键，逗号分隔，可选 departure、arrival、duration、seats，前缀"-"表示降序
+     * @return 当前查询
+     */
+    public TicketQuery sortBy(String sortBy) {
+        if (!StringUtils.hasLength(sortBy)) {
+            return this;
+        }
+
+        for (String rawKey : sortBy.split(",")) {
+            String key = rawKey.trim().toLowerCase();
+            boolean descending = key.startsWith("-");
+            if (descending) {
+                key = key.substring(1);
+            }
+
+            if (key.isEmpty()) {
+                continue;
+            }
+
+            Comparator<Row> next;
+            switch (key) {
+                case "departure":
+                    next = Comparator.comparingInt(Row::depart);
+                    break;
+                case "arrival":
+                    next = Comparator.comparingInt(Row::arrive);
+                    break;
+                case "duration":
+                    next = Comparator.comparingInt(Row::duration);
+                    break;
+                case "seats":
+                    next = Comparator.comparingInt(Row::seats);
+                    break;
+                default:
+                    throw new IllegalArgumentException("无法识别的排序键：" + rawKey.trim()
+                            + "，可选 departure、arrival、duration、seats，前缀-表示降序");
+            }
+            if (descending) {
+                next = next.reversed();
+            }
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        return this;
+    }
+
+    /**
+     * 设置分页
+     *
+     * @param page     页码，从1开始，可为空
+     * @param pageSize 每页条数，可为空表示不分页
+     * @return 当前查询
+     */
+    public TicketQuery page(Integer page, Integer pageSize) {
+        this.page = page != null && page > 0 ? page : 1;
+        this.pageSize = pageSize != null && pageSize > 0 ? pageSize : 0;
+        return this;
+    }
+
+    /**
+     * 执行流水线
+     *
+     * @param tickets 解析后的车票列表
+     * @return 过滤后的总数和当前页车票
+     */
+    public Result apply(List<TicketInfo> tickets) {
+        List<Row> rows = new ArrayList<>(tickets.size());
+        for (TicketInfo ticket : tickets) {
+            Row row = toRow(ticket);
+            if (accept(row)) {
+                rows.add(row);
+            }
+        }
+
+        if (comparator != null) {
+            rows.sort(comparator);
+        }
+
+        int total = rows.size();
+        int from = 0;
+        int to = total;
+        if (pageSize > 0) {
+            from = Math.min((page - 1) * pageSize, total);
+            to = Math.min(from + pageSize, total);
+        }
+
+        List<TicketInfo> pageTickets = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            pageTickets.add(rows.get(i).ticket());
+        }
+        int pageCount = pageSize > 0 ? (total + pageSize - 1) / pageSize : 1;
+        return new Result(total, page, pageCount, pageTickets);
+    }
+
+    private Row toRow(TicketInfo ticket) {
+        int depart = DateUtils.toMinutes(ticket.getStartTime());
+        int duration = DateUtils.toMinutes(ticket.getLishi());
+        // 到达时间带上跨天的天数，历时无效时只能使用到达时刻
+        int arrive = depart >= 0 && duration >= 0 ? depart + duration : DateUtils.toMinutes(ticket.getArriveTime());
+        return new Row(ticket, depart, arrive, duration, seats(ticket));
+    }
+
+    private boolean accept(Row row) {
+        if (!inWindow(row.depart(), departFrom, departTo) || !inRange(row.arrive(), arriveFrom, arriveTo)) {
+            return false;
+        }
+        return minSeats == 0 || row.seats() >= minSeats;
+    }
+
+    /**
+     * 指定席别中余票最多的数量
+     */
+    private int seats(TicketInfo ticket) {
+        int max = 0;
+        if (ticket.getPrices() == null) {
+            return max;
+        }
+        for (Price price : ticket.getPrices()) {
+            if (seatClasses.isEmpty()
+                    || seatClasses.contains(price.getSeatName())
+                    || seatClasses.contains(price.getShortName())) {
+                max = Math.max(max, TicketParser.seatCount(price.getNum()));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * 判断时间是否在窗口内，窗口起点晚于终点时视为跨越午夜
+     */
+    private static boolean inWindow(int time, int from, int to) {
+        if (from < 0 && to < 0) {
+            return true;
+        }
+        if (time < 0) {
+            return false;
+        }
+        if (from >= 0 && to >= 0 && from > to) {
+            return time >= from || time <= to;
+        }
+        return (from < 0 || time >= from) && (to < 0 || time <= to);
+    }
+
+    /**
+     * 判断到达时间是否在窗口内，到达时间和窗口都已包含跨天的天数
+     */
+    private static boolean inRange(int time, int from, int to) {
+        if (from < 0 && to < 0) {
+            return true;
+        }
+        return time >= 0 && (from < 0 || time >= from) && (to < 0 || time <= to);
+    }
+
+    /**
+     * 解析 HH:mm 格式的时刻，为空时返回-1
+     */
+    private static int parseClock(String name, String value) {
+        if (!StringUtils.hasText(value)) {
+            return -1;
+        }
+        int minutes = DateUtils.toClockMinutes(value);
+        if (minutes < 0) {
+            throw new IllegalArgumentException(name + "格式无效：" + value.trim() + "，应为00:00到23:59之间的HH:mm");
+        }
+        return minutes;
+    }
+
+    /**
+     * 解析 HH:mm 或 HH:mm+N 格式的到达时间，返回从出发日零点起的分钟数，为空时返回-1
+     */
+    private static int parseArrival(String name, String value) {
+        if (!StringUtils.hasText(value)) {
+            return -1;
+        }
+        String time = value.trim();
+        int days = 0;
+        int plus = time.indexOf('+');
+        if (plus >= 0) {
+            String suffix = time.substring(plus + 1).trim();
+            if (suffix.length() != 1 || suffix.charAt(0) < '0' || suffix.charAt(0) > '9') {
+                throw new IllegalArgumentException(name + "格式无效：" + time + "，跨天应写作HH:mm+N，如08:00+1");
+            }
+            days = suffix.charAt(0) - '0';
+            time = time.substring(0, plus);
+        }
+        return parseClock(name, time) + days * MINUTES_PER_DAY;
+    }
+
+    /**
+     * 预先计算排序键的车票行
+     */
+    private record Row(TicketInfo ticket, int depart, int arrive, int duration, int seats) {
+    }
+
+    /**
+     * 查询结果
+     *
+     * @param total     过滤后的总数
+     * @param page      当前页码
+     * @param pageCount 总页数
+     * @param tickets   当前页车票
+     */
+    public record Result(int total, int page, int pageCount, List<TicketInfo> tickets) {
+    }
+}
@@ -0,0 +1,143 @@
+package com.mcp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.function.Function;
+
+/**
+ * 两级缓存
+ * 第一级是内存中的TtlCache，第二级是本地持久化存储；写入时两级都写，内存未命中时从持久化存储读取并放回内存，
+ * 重启后的节点不必先访问12306就能返回已缓存过的数据
+ *
+ * @param <V> 值类型
+ */
+@Slf4j
+public class TieredCache<V> {
+    /**
+     * 缓存名称，作为持久化存储中的键前缀和指标标签
+     */
+    private final String name;
+
+    private final TtlCache<String, V> memory;
+
+    private final PersistentStore store;
+
+    private final Function<V, String> encoder;
+
+    private final Function<String, V> decoder;
+
+    /**
+     * 创建两级缓存
+     *
+     * @param name    缓存名称
+     * @param memory  内存缓存
+     * @param store   持久化存储
+     * @param encoder 值序列化
+     * @param decoder 值反序列化
+     */
+    public TieredCache(String name, TtlCache<String, V> memory, PersistentStore store,
+                       Function<V, String> encoder, Function<String, V> decoder) {
+        this.name = name;
+        this.memory = memory;
+        this.store = store;
+        this.encoder = encoder;
+        this.decoder = decoder;
+    }
+
+    /**
+     * 获取未过期的缓存值
+     *
+     * @param key 键
+     * @return 缓存值，两级都不存在或已过期时返回null
+     */
+    public V get(String key) {
+        V value = memory.get(key);
+        if (value != null) {
+            return value;
+        }
+        PersistentStore.Record record = store.get(storeKey(key));
+        long now = System.currentTimeMillis();
+        if (record == null || record.isExpired(now)) {
+            return null;
+        }
+        value = decode(key, record.value());
+        if (value != null) {
+            memory.put(key, value, record.expiresAt() - now);
+            ToolMetrics.storeHit(name);
+        }
+        return value;
+    }
+
+    /**
+     * 获取缓存值，不论是否过期，用于上游不可用时降级返回旧数据
+     *
+     * @param key 键
+     * @return 缓存值，两级都不存在时返回null
+     */
+    public V getStale(String key) {
+        V value = memory.getStale(key);
+        if (value != null) {
+            return value;
+        }
+        PersistentStore.Record record = store.get(storeKey(key));
+        return record != null ? decode(key, record.value()) : null;
+    }
+
+    /**
+     * 使用默认过期时间写入两级缓存
+     *
+     * @param key   键
+     * @param value 值
+     */
+    public void put(String key, V value) {
+        put(key, value, memory.getDefaultTtlMillis());
+    }
+
+    /**
+     * 使用指定过期时间写入两级缓存
+     *
+     * @param key       键
+     * @param value     值
+     * @param ttlMillis 过期时间（毫秒）
+     */
+    public void put(String key, V value, long ttlMillis) {
+        if (key == null || value == null) {
+            return;
+        }
+        memory.put(key, value, ttlMillis);
+        store.put(storeKey(key), encoder.apply(value), System.currentTimeMillis() + ttlMillis);
+    }
+
+    /**
+     * 从两级缓存中移除
+     *
+     * @param key 键
+     */
+    public void remove(String key) {
+        memory.remove(key);
+        store.remove(storeKey(key));
+    }
+
+    /**
+     * 内存一级的快照分区，恢复时只放回内存，持久化存储中本来就有这些条目
+     *
+     * @return 快照分区
+     */
+    public CacheSnapshot.Section<V> snapshotSection() {
+        return new CacheSnapshot.Section<>(name, memory, encoder, decoder);
+    }
+
+    private String storeKey(String key) {
+        return name + ":" + key;
+    }
+
+    private V decode(String key, String raw) {
+        try {
+            return decoder.apply(raw);
+        } catch (RuntimeException e) {
+            log.warn("持久化缓存 {} 的条目 {} 无法解析，已移除: {}", name, key, e.getMessage());
+            store.remove(storeKey(key));
+            return null;
+        }
+    }
+}
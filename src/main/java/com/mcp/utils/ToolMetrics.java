@@ -0,0 +1,536 @@
+package com.mcp.utils;
+
+import com.mcp.jfr.FormatEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 工具调用指标工具类
+ * 基于Micrometer全局注册表记录各工具的阶段耗时、上游响应状态、空结果和JSON解析失败次数
+ * 格式化阶段同时发出JFR事件
+ */
+public class ToolMetrics {
+    /**
+     * 工具调用总耗时
+     */
+    public static final String TOOL_DURATION = "mcp.tool.duration";
+
+    /**
+     * 工具内各阶段耗时
+     */
+    public static final String PHASE_DURATION = "mcp.tool.phase.duration";
+
+    /**
+     * 上游请求耗时
+     */
+    public static final String UPSTREAM_DURATION = "mcp.upstream.duration";
+
+    /**
+     * 上游响应状态码计数
+     */
+    public static final String UPSTREAM_RESPONSES = "mcp.upstream.responses";
+
+    /**
+     * 空结果计数
+     */
+    public static final String EMPTY_RESULTS = "mcp.tool.empty.results";
+
+    /**
+     * JSON解析失败计数
+     */
+    public static final String PARSE_FAILURES = "mcp.json.parse.failures";
+
+    /**
+     * 上游请求排队等待令牌的耗时
+     */
+    public static final String UPSTREAM_QUEUE_WAIT = "mcp.upstream.queue.wait";
+
+    /**
+     * 上游端点当前的限流速率
+     */
+    public static final String UPSTREAM_RATE = "mcp.upstream.rate";
+
+    /**
+     * 工具当前的自适应并发上限
+     */
+    public static final String CONCURRENCY_LIMIT = "mcp.tool.concurrency.limit";
+
+    /**
+     * 工具当前正在执行的调用数
+     */
+    public static final String IN_FLIGHT = "mcp.tool.inflight";
+
+    /**
+     * 超过并发上限被拒绝的调用次数
+     */
+    public static final String REJECTED = "mcp.tool.rejected";
+
+    /**
+     * 上游端点熔断状态：0关闭、1打开、2半开
+     */
+    public static final String CIRCUIT_STATE = "mcp.upstream.circuit.state";
+
+    /**
+     * 熔断期间被快速拒绝的上游请求数
+     */
+    public static final String SHORT_CIRCUITED = "mcp.upstream.short.circuited";
+
+    /**
+     * 对冲请求计数
+     */
+    public static final String HEDGES = "mcp.upstream.hedges";
+
+    /**
+     * 上游失败时返回过期缓存的次数
+     */
+    public static final String STALE_SERVED = "mcp.cache.stale.served";
+
+    /**
+     * 持久化存储的有效记录数
+     */
+    public static final String STORE_ENTRIES = "mcp.store.entries";
+
+    /**
+     * 持久化存储段文件已写入的字节数
+     */
+    public static final String STORE_BYTES = "mcp.store.bytes";
+
+    /**
+     * 内存缓存未命中、由持久化存储命中的次数
+     */
+    public static final String STORE_HITS = "mcp.store.hits";
+
+    /**
+     * 高频查询后台预取次数
+     */
+    public static final String PREFETCHES = "mcp.prefetch.requests";
+
+    /**
+     * 否定结果缓存命中次数
+     */
+    public static final String NEGATIVE_HITS = "mcp.cache.negative.hits";
+
+    /**
+     * 余票订阅数
+     */
+    public static final String WATCH_SUBSCRIPTIONS = "mcp.watch.subscriptions";
+
+    /**
+     * 余票订阅实际轮询的查询数
+     */
+    public static final String WATCH_KEYS = "mcp.watch.keys";
+
+    /**
+     * 余票订阅的轮询次数
+     */
+    public static final String WATCH_POLLS = "mcp.watch.polls";
+
+    /**
+     * 余票变化通知次数
+     */
+    public static final String WATCH_NOTIFICATIONS = "mcp.watch.notifications";
+
+    /**
+     * 余票历史样本数
+     */
+    public static final String HISTORY_SAMPLES = "mcp.history.samples";
+
+    /**
+     * 余票历史分区数
+     */
+    public static final String HISTORY_PARTITIONS = "mcp.history.partitions";
+
+    /**
+     * 车站车次倒排索引中的车次数
+     */
+    public static final String INDEX_TRAINS = "mcp.index.trains";
+
+    /**
+     * 车站车次倒排索引中的车站数
+     */
+    public static final String INDEX_STATIONS = "mcp.index.stations";
+
+    /**
+     * 上游拉取阶段
+     */
+    public static final String PHASE_FETCH = "fetch";
+
+    /**
+     * 解析阶段
+     */
+    public static final String PHASE_PARSE = "parse";
+
+    /**
+     * 过滤阶段
+     */
+    public static final String PHASE_FILTER = "filter";
+
+    /**
+     * 格式化阶段
+     */
+    public static final String PHASE_FORMAT = "format";
+
+    /**
+     * 记录工具内某个阶段的耗时
+     *
+     * @param tool     工具名称
+     * @param phase    阶段名称
+     * @param supplier 阶段逻辑
+     * @param <T>      返回值类型
+     * @return 阶段逻辑的返回值
+     */
+    public static <T> T phase(String tool, String phase, Supplier<T> supplier) {
+        Timer.Sample sample = Timer.start(registry());
+        try {
+            return supplier.get();
+        } finally {
+            sample.stop(Timer.builder(PHASE_DURATION)
+                    .description("工具内各阶段耗时")
+                    .tag("tool", tool)
+                    .tag("phase", phase)
+                    .publishPercentileHistogram()
+                    .register(registry()));
+        }
+    }
+
+    /**
+     * 记录格式化阶段的耗时，并发出带行数和输出字符数的JFR事件
+     *
+     * @param tool     工具名称
+     * @param rows     参与格式化的行数
+     * @param supplier 格式化逻辑
+     * @return 格式化结果
+     */
+    public static String format(String tool, int rows, Supplier<String> supplier) {
+        FormatEvent event = new FormatEvent();
+        event.begin();
+        String result = phase(tool, PHASE_FORMAT, supplier);
+        event.end();
+        if (event.shouldCommit()) {
+            event.tool = tool;
+            event.rowCount = rows;
+            event.outputChars = result != null ? result.length() : 0;
+            event.commit();
+        }
+        return result;
+    }
+
+    /**
+     * 记录工具调用总耗时
+     *
+     * @param tool    工具名称
+     * @param outcome 结果：success 或 error
+     * @param nanos   耗时（纳秒）
+     */
+    public static void recordTool(String tool, String outcome, long nanos) {
+        Timer.builder(TOOL_DURATION)
+                .description("工具调用总耗时")
+                .tag("tool", tool)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry())
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录一次上游请求
+     *
+     * @param endpoint 上游端点分类
+     * @param status   HTTP状态码，请求异常时为0
+     * @param nanos    耗时（纳秒）
+     */
+    public static void recordUpstream(String endpoint, int status, long nanos) {
+        Counter.builder(UPSTREAM_RESPONSES)
+                .description("上游响应状态码计数")
+                .tag("endpoint", endpoint)
+                .tag("status", status == 0 ? "error" : String.valueOf(status))
+                .register(registry())
+                .increment();
+        Timer.builder(UPSTREAM_DURATION)
+                .description("上游请求耗时")
+                .tag("endpoint", endpoint)
+                .publishPercentileHistogram()
+                .register(registry())
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录一次上游请求排队等待令牌的耗时
+     *
+     * @param endpoint 上游端点分类
+     * @param priority 请求优先级
+     * @param acquired 是否获取到令牌
+     * @param nanos    等待耗时（纳秒）
+     */
+    public static void recordQueueWait(String endpoint, String priority, boolean acquired, long nanos) {
+        Timer.builder(UPSTREAM_QUEUE_WAIT)
+                .description("上游请求排队等待令牌的耗时")
+                .tag("endpoint", endpoint)
+                .tag("priority", priority)
+                .tag("outcome", acquired ? "acquired" : "rejected")
+                .publishPercentileHistogram()
+                .register(registry())
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 注册上游端点限流速率的仪表
+     *
+     * @param endpoint 上游端点分类
+     * @param rate     当前速率（每秒请求数）
+     */
+    public static void upstreamRate(String endpoint, Supplier<Number> rate) {
+        Gauge.builder(UPSTREAM_RATE, rate)
+                .description("上游端点当前的限流速率")
+                .tag("endpoint", endpoint)
+                .baseUnit("requests/s")
+                .register(registry());
+    }
+
+    /**
+     * 注册工具并发上限和正在执行调用数的仪表
+     *
+     * @param tool     工具名称
+     * @param limit    当前并发上限
+     * @param inFlight 正在执行的调用数
+     */
+    public static void concurrencyLimit(String tool, Supplier<Number> limit, Supplier<Number> inFlight) {
+        Gauge.builder(CONCURRENCY_LIMIT, limit)
+                .description("工具当前的自适应并发上限")
+                .tag("tool", tool)
+                .register(registry());
+        Gauge.builder(IN_FLIGHT, inFlight)
+                .description("工具当前正在执行的调用数")
+                .tag("tool", tool)
+                .register(registry());
+    }
+
+    /**
+     * 记录一次因超过并发上限被拒绝的调用
+     *
+     * @param tool 工具名称
+     */
+    public static void toolRejected(String tool) {
+        Counter.builder(REJECTED)
+                .description("超过并发上限被拒绝的调用次数")
+                .tag("tool", tool)
+                .register(registry())
+                .increment();
+    }
+
+    /**
+     * 注册上游端点熔断状态的仪表
+     *
+     * @param endpoint 上游端点分类
+     * @param state    熔断状态序号
+     */
+    public static void circuitState(String endpoint, Supplier<Number> state) {
+        Gauge.builder(CIRCUIT_STATE, state)
+                .description("上游端点熔断状态：0关闭、1打开、2半开")
+                .tag("endpoint", endpoint)
+                .register(registry());
+    }
+
+    /**
+     * 记录一次因熔断被快速拒绝的上游请求
+     *
+     * @param endpoint 上游端点分类
+     */
+    public static void shortCircuited(String endpoint) {
+        Counter.builder(SHORT_CIRCUITED)
+                .description("熔断期间被快速拒绝的上游请求数")
+                .tag("endpoint", endpoint)
+                .register(registry())
+                .increment();
+    }
+
+    /**
+     * 记录一次对冲请求
+     *
+     * @param endpoint 上游端点分类
+     * @param outcome  sent 表示已发出，won 表示对冲请求先返回，rejected 表示线程池已满未对冲
+     */
+    public static void hedge(String endpoint, String outcome) {
+        Counter.builder(HEDGES)
+                .description("对冲请求计数")
+                .tag("endpoint", endpoint)
+                .tag("outcome", outcome)
+                .register(registry())
+                .increment();
+    }
+
+    /**
+     * 记录一次上游失败时改用过期缓存
+     *
+     * @param source 数据来源
+     */
+    public static void staleServed(String source) {
+        Counter.builder(STALE_SERVED)
+                .description("上游失败时返回过期缓存的次数")
+                .tag("source", source)
+                .register(registry())
+                .increment();
+    }
+
+    /**
+     * 注册持久化存储的记录数和字节数仪表
+     *
+     * @param entries 有效记录数
+     * @param bytes   已写入的字节数
+     */
+    public static void persistentStore(Supplier<Number> entries, Supplier<Number> bytes) {
+        Gauge.builder(STORE_ENTRIES, entries)
+                .description("持久化存储的有效记录数")
+                .register(registry());
+        Gauge.builder(STORE_BYTES, bytes)
+                .description("持久化存储段文件已写入的字节数")
+                .baseUnit("bytes")
+                .register(registry());
+    }
+
+    /**
+     * 记录一次由持久化存储命中的缓存读取
+     *
+     * @param cache 缓存名称
+     */
+    public static void storeHit(String cache) {
+        Counter.builder(STORE_HITS)
+                .description("内存缓存未命中、由持久化存储命中的次数")
+                .tag("cache", cache)
+                .register(registry())
+                .increment();
+    }
+
+    /**
+     * 记录一次高频查询的后台预取
+     *
+     * @param outcome success 或 failure
+     */
+    public static void prefetch(String outcome) {
+        Counter.builder(PREFETCHES)
+                .description("高频查询后台预取次数")
+                .tag("outcome", outcome)
+                .register(registry())
+                .increment();
+    }
+
+    /**
+     * 记录一次否定结果缓存命中
+     *
+     * @param cache 缓存名称
+     */
+    public static void negativeHit(String cache) {
+        Counter.builder(NEGATIVE_HITS)
+                .description("否定结果缓存命中次数")
+                .tag("cache", cache)
+                .register(registry())
+                .increment();
+    }
+
+    /**
+     * 注册余票订阅数和轮询查询数仪表
+     *
+     * @param subscriptions 订阅数
+     * @param keys          去重后的"日期|出发站|到达站"数
+     */
+    public static void watches(Supplier<Number> subscriptions, Supplier<Number> keys) {
+        Gauge.builder(WATCH_SUBSCRIPTIONS, subscriptions)
+                .description("余票订阅数")
+                .register(registry());
+        Gauge.builder(WATCH_KEYS, keys)
+                .description("余票订阅实际轮询的查询数")
+                .register(registry());
+    }
+
+    /**
+     * 记录一次余票订阅的轮询
+     *
+     * @param outcome success 或 failure
+     */
+    public static void watchPoll(String outcome) {
+        Counter.builder(WATCH_POLLS)
+                .description("余票订阅的轮询次数")
+                .tag("outcome", outcome)
+                .register(registry())
+                .increment();
+    }
+
+    /**
+     * 记录一次余票变化通知
+     *
+     * @param delivery pushed（已推送到MCP会话）或 queued（会话不可用，只保留待查询）
+     */
+    public static void watchNotification(String delivery) {
+        Counter.builder(WATCH_NOTIFICATIONS)
+                .description("余票变化通知次数")
+                .tag("delivery", delivery)
+                .register(registry())
+                .increment();
+    }
+
+    /**
+     * 注册余票历史样本数和分区数仪表
+     *
+     * @param samples    样本数
+     * @param partitions 分区数
+     */
+    public static void seatHistory(Supplier<Number> samples, Supplier<Number> partitions) {
+        Gauge.builder(HISTORY_SAMPLES, samples)
+                .description("余票历史样本数")
+                .register(registry());
+        Gauge.builder(HISTORY_PARTITIONS, partitions)
+                .description("余票历史分区数")
+                .register(registry());
+    }
+
+    /**
+     * 注册车站车次倒排索引的车次数和车站数仪表
+     *
+     * @param trains   车次数
+     * @param stations 车站数
+     */
+    public static void stationIndex(Supplier<Number> trains, Supplier<Number> stations) {
+        Gauge.builder(INDEX_TRAINS, trains)
+                .description("车站车次倒排索引中的车次数")
+                .register(registry());
+        Gauge.builder(INDEX_STATIONS, stations)
+                .description("车站车次倒排索引中的车站数")
+                .register(registry());
+    }
+
+    /**
+     * 记录一次空结果
+     *
+     * @param tool 工具名称
+     */
+    public static void emptyResult(String tool) {
+        Counter.builder(EMPTY_RESULTS)
+                .description("空结果计数")
+                .tag("tool", tool)
+                .register(registry())
+                .increment();
+    }
+
+    /**
+     * 记录一次JSON解析失败
+     *
+     * @param source 数据来源
+     */
+    public static void parseFailure(String source) {
+        Counter.builder(PARSE_FAILURES)
+                .description("JSON解析失败计数")
+                .tag("source", source)
+                .register(registry())
+                .increment();
+    }
+
+    private static MeterRegistry registry() {
+        return Metrics.globalRegistry;
+    }
+}
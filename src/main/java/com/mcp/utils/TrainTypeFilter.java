@@ -0,0 +1,290 @@
+package com.mcp.utils;
+
+import com.mcp.constants.RailwayConstants;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 车型过滤工具类
+ * 将车次类别和服务标识解码为位掩码，车型过滤条件编译为掩码后只需一次按位与即可完成匹配
+ */
+public class TrainTypeFilter {
+    /**
+     * 高铁/城际（G/C开头）
+     */
+    public static final int CLASS_G = 1;
+
+    /**
+     * 动车（D开头）
+     */
+    public static final int CLASS_D = 1 << 1;
+
+    /**
+     * 直达特快（Z开头）
+     */
+    public static final int CLASS_Z = 1 << 2;
+
+    /**
+     * 特快（T开头）
+     */
+    public static final int CLASS_T = 1 << 3;
+
+    /**
+     * 快速（K开头）
+     */
+    public static final int CLASS_K = 1 << 4;
+
+    /**
+     * 其他车次
+     */
+    public static final int CLASS_O = 1 << 5;
+
+    /**
+     * 服务标识起始位，第i位对应 RailwayConstants.DW_FLAGS[i]
+     */
+    private static final int FLAG_SHIFT = 8;
+
+    /**
+     * 智能动车组
+     */
+    public static final int FLAG_SMART = 1 << FLAG_SHIFT;
+
+    /**
+     * 复兴号
+     */
+    public static final int FLAG_FUXING = 1 << (FLAG_SHIFT + 1);
+
+    /**
+     * 静音车厢
+     */
+    public static final int FLAG_QUIET = 1 << (FLAG_SHIFT + 2);
+
+    /**
+     * 温馨动卧
+     */
+    public static final int FLAG_WARM_SLEEPER = 1 << (FLAG_SHIFT + 3);
+
+    /**
+     * 动感号
+     */
+    public static final int FLAG_DONGGAN = 1 << (FLAG_SHIFT + 4);
+
+    /**
+     * 支持选铺
+     */
+    public static final int FLAG_BERTH_SELECT = 1 << (FLAG_SHIFT + 5);
+
+    /**
+     * 老年优惠
+     */
+    public static final int FLAG_SENIOR = 1 << (FLAG_SHIFT + 6);
+
+    /**
+     * 车次首字母对应的类别位
+     */
+    private static final int[] CLASS_BY_PREFIX = new int[128];
+
+    /**
+     * 过滤字符对应的掩码位
+     */
+    private static final int[] FILTER_BY_CHAR = new int[128];
+
+    /**
+     * 服务标识名称对应的掩码位
+     */
+    private static final Map<String, Integer> FLAG_BY_NAME = new HashMap<>();
+
+    static {
+        CLASS_BY_PREFIX['G'] = CLASS_G;
+        CLASS_BY_PREFIX['C'] = CLASS_G;
+        CLASS_BY_PREFIX['D'] = CLASS_D;
+        CLASS_BY_PREFIX['Z'] = CLASS_Z;
+        CLASS_BY_PREFIX['T'] = CLASS_T;
+        CLASS_BY_PREFIX['K'] = CLASS_K;
+
+        FILTER_BY_CHAR['G'] = CLASS_G;
+        FILTER_BY_CHAR['D'] = CLASS_D;
+        FILTER_BY_CHAR['Z'] = CLASS_Z;
+        FILTER_BY_CHAR['T'] = CLASS_T;
+        FILTER_BY_CHAR['K'] = CLASS_K;
+        FILTER_BY_CHAR['O'] = CLASS_O;
+        FILTER_BY_CHAR['F'] = FLAG_FUXING;
+        FILTER_BY_CHAR['S'] = FLAG_SMART;
+
+        for (int i = 0; i < RailwayConstants.DW_FLAGS.length; i++) {
+            FLAG_BY_NAME.put(RailwayConstants.DW_FLAGS[i], 1 << (FLAG_SHIFT + i));
+        }
+    }
+
+    /**
+     * 只有无法识别的过滤字符时使用的掩码，车次掩码中从不设置该位，因此不匹配任何车次
+     */
+    public static final int MATCH_NONE = 1 << 30;
+
+    /**
+     * 编译车型过滤条件
+     * 逗号和空白为分隔符；无法识别的字符不匹配任何车次，与逐个字符匹配车型的语义一致，
+     * 因此只包含无法识别字符的条件（如"X"、"高铁"）编译为 MATCH_NONE，而不是不过滤
+     *
+     * @param trainTypes 车型过滤，如"G,D"或"GD"，不区分大小写
+     * @return 过滤掩码，为0表示不过滤
+     */
+    public static int compile(String trainTypes) {
+        if (!StringUtils.hasLength(trainTypes)) {
+            return 0;
+        }
+
+        int mask = 0;
+        boolean hasType = false;
+        for (int i = 0; i < trainTypes.length(); i++) {
+            char c = Character.toUpperCase(trainTypes.charAt(i));
+            if (c == ',' || Character.isWhitespace(c)) {
+                continue;
+            }
+            hasType = true;
+            if (c < 128) {
+                mask |= FILTER_BY_CHAR[c];
+            }
+        }
+        return hasType && mask == 0 ? MATCH_NONE : mask;
+    }
+
+    /**
+     * 判断车次掩码是否满足过滤条件
+     *
+     * @param trainMask  车次掩码
+     * @param filterMask 过滤掩码，为0表示不过滤
+     * @return 是否匹配
+     */
+    public static boolean matches(int trainMask, int filterMask) {
+        return filterMask == 0 || (trainMask & filterMask) != 0;
+    }
+
+    /**
+     * 计算车次掩码
+     *
+     * @param trainCode 车次代码
+     * @param flagMask  服务标识掩码
+     * @return 车次类别位与服务标识位的组合
+     */
+    public static int trainMask(String trainCode, int flagMask) {
+        return classOf(trainCode) | flagMask;
+    }
+
+    /**
+     * 根据车次首字母获取类别位
+     *
+     * @param trainCode 车次代码
+     * @return 类别位，未识别的前缀返回CLASS_O
+     */
+    public static int classOf(String trainCode) {
+        if (!StringUtils.hasLength(trainCode)) {
+            return CLASS_O;
+        }
+        char prefix = trainCode.charAt(0);
+        int bit = prefix < 128 ? CLASS_BY_PREFIX[prefix] : 0;
+        return bit != 0 ? bit : CLASS_O;
+    }
+
+    /**
+     * 解码12306返回的服务标识字符串
+     * 按字段位置解码：第1位为5表示智能动车组，第2位为1表示复兴号，第3位Q/R开头表示静音车厢/温馨动卧，
+     * 第6位为D表示动感号，第7、8位不为z分别表示支持选铺、老年优惠；直接包含标识名称的字段按名称识别
+     *
+     * @param dwFlagStr 服务标识字符串，以"#"分隔
+     * @return 服务标识掩码
+     */
+    public static int decodeFlags(String dwFlagStr) {
+        if (!StringUtils.hasLength(dwFlagStr)) {
+            return 0;
+        }
+
+        int mask = 0;
+        int field = 0;
+        int start = 0;
+        int length = dwFlagStr.length();
+        while (start <= length) {
+            int end = dwFlagStr.indexOf('#', start);
+            if (end < 0) {
+                end = length;
+            }
+            if (end > start) {
+                mask |= decodeField(dwFlagStr, field, start, end);
+            }
+            field++;
+            start = end + 1;
+        }
+        return mask;
+    }
+
+    /**
+     * 根据服务标识名称列表计算掩码
+     *
+     * @param flagNames 服务标识名称列表
+     * @return 服务标识掩码
+     */
+    public static int flagMask(List<String> flagNames) {
+        if (flagNames == null) {
+            return 0;
+        }
+        int mask = 0;
+        for (String name : flagNames) {
+            Integer bit = FLAG_BY_NAME.get(name);
+            if (bit != null) {
+                mask |= bit;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * 将掩码中的服务标识转换为名称列表
+     *
+     * @param mask 车次或服务标识掩码
+     * @return 服务标识名称列表，顺序与 RailwayConstants.DW_FLAGS 一致
+     */
+    public static List<String> flagNames(int mask) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < RailwayConstants.DW_FLAGS.length; i++) {
+            if ((mask & (1 << (FLAG_SHIFT + i))) != 0) {
+                names.add(RailwayConstants.DW_FLAGS[i]);
+            }
+        }
+        return names;
+    }
+
+    private static int decodeField(String str, int field, int start, int end) {
+        char first = str.charAt(start);
+        if (first >= 128) {
+            // 字段直接为标识名称
+            for (int i = 0; i < RailwayConstants.DW_FLAGS.length; i++) {
+                if (str.startsWith(RailwayConstants.DW_FLAGS[i], start)) {
+                    return 1 << (FLAG_SHIFT + i);
+                }
+            }
+            return 0;
+        }
+
+        boolean single = end - start == 1;
+        switch (field) {
+            case 0:
+                return single && first == '5' ? FLAG_SMART : 0;
+            case 1:
+                return single && first == '1' ? FLAG_FUXING : 0;
+            case 2:
+                return first == 'Q' ? FLAG_QUIET : first == 'R' ? FLAG_WARM_SLEEPER : 0;
+            case 5:
+                return single && first == 'D' ? FLAG_DONGGAN : 0;
+            case 6:
+                return single && first == 'z' ? 0 : FLAG_BERTH_SELECT;
+            case 7:
+                return single && first == 'z' ? 0 : FLAG_SENIOR;
+            default:
+                return 0;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.mcp.utils;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 带过期时间的内存缓存
+ * 基于ConcurrentHashMap实现，超出容量时优先淘汰最早过期的条目
+ *
+ * @param <K> 键类型
+ * @param <V> 值类型
+ */
+public class TtlCache<K, V> {
+    /**
+     * 默认过期时间（毫秒）
+     */
+    private final long defaultTtlMillis;
+
+    /**
+     * 最大条目数
+     */
+    private final int maxSize;
+
+    /**
+     * 缓存条目
+     */
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+
+    public TtlCache(long defaultTtlMillis, int maxSize) {
+        this.defaultTtlMillis = defaultTtlMillis;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 获取未过期的缓存值
+     *
+     * @param key 键
+     * @return 缓存值，不存在或已过期时返回null
+     */
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(System.currentTimeMillis())) {
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * 获取缓存值，不论是否过期
+     * 用于上游不可用时降级返回旧数据，过期条目只在容量超限时才会被清理
+     *
+     * @param key 键
+     * @return 缓存值，不存在时返回null
+     */
+    public V getStale(K key) {
+        Entry<V> entry = entries.get(key);
+        return entry != null ? entry.value : null;
+    }
+
+    /**
+     * 条目距离过期的剩余时间
+     *
+     * @param key 键
+     * @return 剩余毫秒数，不存在或已过期时返回0
+     */
+    public long expiresInMillis(K key) {
+        Entry<V> entry = entries.get(key);
+        return entry != null ? Math.max(0, entry.expiresAt - System.currentTimeMillis()) : 0;
+    }
+
+    /**
+     * 使用默认过期时间写入缓存
+     *
+     * @param key   键
+     * @param value 值
+     */
+    public void put(K key, V value) {
+        put(key, value, defaultTtlMillis);
+    }
+
+    /**
+     * 使用指定过期时间写入缓存
+     *
+     * @param key       键
+     * @param value     值
+     * @param ttlMillis 过期时间（毫秒）
+     */
+    public void put(K key, V value, long ttlMillis) {
+        if (key == null || value == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        entries.put(key, new Entry<>(value, now + ttlMillis));
+        if (entries.size() > maxSize) {
+            evict(now);
+        }
+    }
+
+    /**
+     * 键不存在或已过期时写入缓存，不覆盖未过期的条目
+     *
+     * @param key       键
+     * @param value     值
+     * @param ttlMillis 过期时间（毫秒）
+     * @return 写入返回true，已有未过期的条目返回false
+     */
+    public boolean putIfAbsent(K key, V value, long ttlMillis) {
+        if (key == null || value == null) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        Entry<V> entry = new Entry<>(value, now + ttlMillis);
+        Entry<V> current = entries.compute(key, (k, existing) ->
+                existing != null && !existing.isExpired(now) ? existing : entry);
+        if (current != entry) {
+            return false;
+        }
+        if (entries.size() > maxSize) {
+            evict(now);
+        }
+        return true;
+    }
+
+    /**
+     * 移除缓存条目
+     *
+     * @param key 键
+     */
+    public void remove(K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * 遍历所有未过期的条目
+     *
+     * @param consumer 条目处理逻辑
+     */
+    public void forEachLive(EntryConsumer<K, V> consumer) {
+        long now = System.currentTimeMillis();
+        entries.forEach((key, entry) -> {
+            if (!entry.isExpired(now)) {
+                consumer.accept(key, entry.value, entry.expiresAt);
+            }
+        });
+    }
+
+    /**
+     * 默认过期时间
+     *
+     * @return 过期时间（毫秒）
+     */
+    public long getDefaultTtlMillis() {
+        return defaultTtlMillis;
+    }
+
+    /**
+     * 当前条目数（包含尚未清理的过期条目）
+     *
+     * @return 条目数
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 淘汰过期条目，仍超出容量时按过期时间从早到晚淘汰十分之一
+     */
+    private void evict(long now) {
+        entries.entrySet().removeIf(e -> e.getValue().isExpired(now));
+        int overflow = entries.size() - maxSize;
+        if (overflow <= 0) {
+            return;
+        }
+        int toRemove = Math.max(overflow, maxSize / 10);
+        entries.entrySet().stream()
+                .sorted(Comparator.comparingLong(e -> e.getValue().expiresAt))
+                .limit(toRemove)
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(entries::remove);
+    }
+
+    /**
+     * 条目处理逻辑
+     *
+     * @param <K> 键类型
+     * @param <V> 值类型
+     */
+    @FunctionalInterface
+    public interface EntryConsumer<K, V> {
+        /**
+         * 处理一个条目
+         *
+         * @param key       键
+         * @param value     值
+         * @param expiresAt 过期时间（毫秒时间戳）
+         */
+        void accept(K key, V value, long expiresAt);
+    }
+
+    /**
+     * 缓存条目
+     */
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package com.mcp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 上游请求调度器
+ * 每个上游端点分类（leftTicket、queryByTrainNo、lcxx、static）一个令牌桶，所有经HttpUtils发出的12306请求先取令牌再发送。
+ * 等待令牌时按优先级排队：交互式工具调用优先于后台刷新和预取。
+ * 等待时间不超过当前工具调用剩余的截止时间。
+ * 速率按AIMD自适应：正常响应时缓慢加性增长到配置上限，出现错误、5xx、429或重定向到12306错误页时减半，并有冷却时间避免连续减半。
+ * <p>
+ * 在 application.yml 的 mcp.upstream 下配置（rate-limit、rate.&lt;端点&gt;、max-wait-millis），启动时由 UpstreamConfig 应用；
+ * 未经Spring启动时使用默认值
+ */
+@Slf4j
+public class UpstreamScheduler {
+    /**
+     * 请求优先级，序号越小越优先
+     */
+    public enum Priority {
+        /**
+         * 交互式工具调用
+         */
+        INTERACTIVE,
+        /**
+         * 后台刷新和预取
+         */
+        BACKGROUND
+    }
+
+    /**
+     * 各端点分类的默认速率上限（每秒请求数），未列出的端点不限流；访问12306的工具都经过这些端点
+     */
+    private static final Map<String, Double> DEFAULT_RATES = Map.of(
+            "leftTicket", 10.0,
+            "queryByTrainNo", 10.0,
+            "lcxx", 5.0,
+            "price", 5.0,
+            "static", 2.0);
+
+    /**
+     * 交互式请求等待令牌的默认最长时间（毫秒）
+     */
+    private static final long DEFAULT_MAX_WAIT_MILLIS = 10000;
+
+    /**
+     * 后台请求等待令牌的时间是交互式请求的倍数，后台请求不急，可以等更久
+     */
+    private static final int BACKGROUND_WAIT_FACTOR = 3;
+
+    /**
+     * 速率下限占上限的比例
+     */
+    private static final double MIN_RATE_RATIO = 0.1;
+
+    /**
+     * 令牌桶容量对应的秒数，允许短时突发
+     */
+    private static final double BURST_SECONDS = 1.0;
+
+    /**
+     * 两次减速之间的最短间隔，同一波错误只减速一次
+     */
+    private static final long DECREASE_COOLDOWN_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    private static final ThreadLocal<Priority> PRIORITY = ThreadLocal.withInitial(() -> Priority.INTERACTIVE);
+
+    /**
+     * 已注册速率指标的端点分类
+     */
+    private static final Set<String> GAUGES = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 各端点分类的令牌桶，重新配置时整体替换
+     */
+    private static volatile Map<String, TokenBucket> buckets = Map.of();
+
+    /**
+     * 交互式请求等待令牌的最长时间
+     */
+    private static volatile long interactiveMaxWaitNanos;
+
+    static {
+        configure(true, DEFAULT_RATES, DEFAULT_MAX_WAIT_MILLIS);
+    }
+
+    /**
+     * 应用限流配置，替换所有令牌桶，速率从新的上限重新开始
+     *
+     * @param enabled       是否启用限流
+     * @param rates         各端点分类的速率上限（每秒请求数），0表示不限流
+     * @param maxWaitMillis 交互式请求等待令牌的最长时间（毫秒），后台请求为其3倍
+     */
+    public static void configure(boolean enabled, Map<String, Double> rates, long maxWaitMillis) {
+        Map<String, TokenBucket> configured = new ConcurrentHashMap<>();
+        if (enabled) {
+            rates.forEach((endpoint, maxRate) -> {
+                if (maxRate > 0) {
+                    configured.put(endpoint, new TokenBucket(endpoint, maxRate));
+                    if (GAUGES.add(endpoint)) {
+                        ToolMetrics.upstreamRate(endpoint, () -> currentRate(endpoint));
+                    }
+                }
+            });
+        }
+        interactiveMaxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        buckets = configured;
+        if (enabled) {
+            log.info("上游限流已启用: {}", configured.keySet());
+        } else {
+            log.info("上游限流未启用");
+        }
+    }
+
+    /**
+     * 以指定优先级执行逻辑，期间当前线程发出的上游请求按该优先级排队
+     *
+     * @param priority 优先级
+     * @param supplier 执行逻辑
+     * @param <T>      返回值类型
+     * @return 执行逻辑的返回值
+     */
+    public static <T> T withPriority(Priority priority, Supplier<T> supplier) {
+        Priority previous = PRIORITY.get();
+        PRIORITY.set(priority);
+        try {
+            return supplier.get();
+        } finally {
+            PRIORITY.set(previous);
+        }
+    }
+
+    /**
+     * 当前线程的请求优先级
+     *
+     * @return 优先级
+     */
+    public static Priority currentPriority() {
+        return PRIORITY.get();
+    }
+
+    /**
+     * 为一次上游请求获取令牌，按当前线程的优先级排队，最多等到当前线程的截止时间
+     *
+     * @param endpoint 端点分类
+     * @return 获取成功返回true，排队超时或线程被中断返回false
+     */
+    public static boolean acquire(String endpoint) {
+        TokenBucket bucket = buckets.get(endpoint);
+        if (bucket == null) {
+            return true;
+        }
+
+        Priority priority = PRIORITY.get();
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            long maxWaitNanos = interactiveMaxWaitNanos;
+            acquired = bucket.acquire(priority, Deadline.clampNanos(
+                    priority == Priority.INTERACTIVE ? maxWaitNanos : maxWaitNanos * BACKGROUND_WAIT_FACTOR));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        ToolMetrics.recordQueueWait(endpoint, priority.name().toLowerCase(), acquired, System.nanoTime() - start);
+        return acquired;
+    }
+
+    /**
+     * 端点分类是否有限流令牌桶
+     *
+     * @param endpoint 端点分类
+     * @return 限流时返回true
+     */
+    public static boolean isLimited(String endpoint) {
+        return buckets.containsKey(endpoint);
+    }
+
+    /**
+     * 尝试立即获取令牌，不排队，用于对冲等可有可无的请求
+     * 不限流的端点没有令牌可取，返回false，可有可无的请求不应发往不受限流保护的端点
+     *
+     * @param endpoint 端点分类
+     * @return 获取成功返回true
+     */
+    public static boolean tryAcquire(String endpoint) {
+        TokenBucket bucket = buckets.get(endpoint);
+        if (bucket == null) {
+            return false;
+        }
+        try {
+            return bucket.acquire(PRIORITY.get(), 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 根据上游响应调整速率
+     *
+     * @param endpoint  端点分类
+     * @param throttled 是否为错误或限流响应
+     */
+    public static void onResponse(String endpoint, boolean throttled) {
+        TokenBucket bucket = buckets.get(endpoint);
+        if (bucket == null) {
+            return;
+        }
+        if (throttled) {
+            bucket.decrease();
+        } else {
+            bucket.increase();
+        }
+    }
+
+    /**
+     * 端点分类当前的速率
+     *
+     * @param endpoint 端点分类
+     * @return 每秒请求数，不限流时返回-1
+     */
+    public static double currentRate(String endpoint) {
+        TokenBucket bucket = buckets.get(endpoint);
+        return bucket != null ? bucket.currentRate() : -1;
+    }
+
+    /**
+     * 自适应速率的令牌桶，等待者按优先级获取令牌
+     */
+    private static class TokenBucket {
+        private final String endpoint;
+
+        private final double maxRate;
+
+        private final double minRate;
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final Condition changed = lock.newCondition();
+
+        /**
+         * 各优先级正在等待的请求数
+         */
+        private final int[] waiting = new int[Priority.values().length];
+
+        private double rate;
+
+        private double tokens;
+
+        private long lastRefill = System.nanoTime();
+
+        private long lastDecrease;
+
+        TokenBucket(String endpoint, double maxRate) {
+            this.endpoint = endpoint;
+            this.maxRate = maxRate;
+            this.minRate = Math.max(maxRate * MIN_RATE_RATIO, 0.2);
+            this.rate = maxRate;
+            this.tokens = capacity();
+            this.lastDecrease = lastRefill - DECREASE_COOLDOWN_NANOS;
+        }
+
+        boolean acquire(Priority priority, long maxWaitNanos) throws InterruptedException {
+            long deadline = System.nanoTime() + maxWaitNanos;
+            lock.lock();
+            try {
+                waiting[priority.ordinal()]++;
+                try {
+                    while (true) {
+                        long now = System.nanoTime();
+                        refill(now);
+                        boolean outranked = outranked(priority);
+                        if (tokens >= 1 && !outranked) {
+                            tokens -= 1;
+                            return true;
+                        }
+                        long remaining = deadline - now;
+                        if (remaining <= 0) {
+                            return false;
+                        }
+                        // 被高优先级请求挡住时等它们取完令牌后的通知，否则等到下一个令牌生成
+                        long untilToken = tokens >= 1 ? remaining : (long) ((1 - tokens) / rate * 1_000_000_000L);
+                        changed.awaitNanos(Math.min(remaining, Math.max(untilToken, TimeUnit.MILLISECONDS.toNanos(1))));
+                    }
+                } finally {
+                    waiting[priority.ordinal()]--;
+                    changed.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * 加性增长：每次正常响应增加 1/rate，满负荷时大约每秒增加1
+         */
+        void increase() {
+            lock.lock();
+            try {
+                if (rate < maxRate) {
+                    rate = Math.min(maxRate, rate + 1.0 / rate);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * 乘性减半，并清空已积累的令牌，让上游有喘息时间
+         */
+        void decrease() {
+            lock.lock();
+            try {
+                long now = System.nanoTime();
+                if (now - lastDecrease < DECREASE_COOLDOWN_NANOS) {
+                    return;
+                }
+                refill(now);
+                double previous = rate;
+                rate = Math.max(minRate, rate / 2);
+                tokens = Math.min(tokens, 0);
+                lastDecrease = now;
+                log.warn("上游 {} 返回错误或限流响应，速率从 {}/s 降至 {}/s", endpoint,
+                        String.format("%.1f", previous), String.format("%.1f", rate));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        double currentRate() {
+            lock.lock();
+            try {
+                return rate;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(capacity(), tokens + (now - lastRefill) / 1_000_000_000.0 * rate);
+            lastRefill = now;
+        }
+
+        private double capacity() {
+            return Math.max(1, rate * BURST_SECONDS);
+        }
+
+        private boolean outranked(Priority priority) {
+            for (int i = 0; i < priority.ordinal(); i++) {
+                if (waiting[i] > 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.mcp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 上游流量录制与回放工具类
+ * 录制模式下把HttpUtils发出的每个请求和响应追加到压缩的磁带文件；回放模式下按请求键返回录制的响应，不访问网络。
+ * 请求键由方法、URL路径和排序后的参数组成，yyyy-MM-dd格式的参数按相对录制当天的天数保存，录制的数据过期后仍可回放。
+ * <p>
+ * 通过系统属性开启：-Dmcp.upstream.mode=record|replay -Dmcp.upstream.tape=upstream.tape
+ */
+@Slf4j
+public class UpstreamTape {
+    /**
+     * 录制模式
+     */
+    public static final String MODE_RECORD = "record";
+
+    /**
+     * 回放模式
+     */
+    public static final String MODE_REPLAY = "replay";
+
+    /**
+     * 文件头
+     */
+    private static final byte[] MAGIC = "MCPTAPE1".getBytes(StandardCharsets.US_ASCII);
+
+    private static final Pattern DATE = Pattern.compile("\\d{4}-\\d{2}-\\d{2}");
+
+    private static final ZoneId ZONE = ZoneId.of("Asia/Shanghai");
+
+    private static final String MODE = System.getProperty("mcp.upstream.mode", "off");
+
+    private static final File TAPE = new File(System.getProperty("mcp.upstream.tape", "upstream.tape"));
+
+    /**
+     * 回放时是否按录制的耗时等待
+     */
+    private static final boolean REPLAY_LATENCY = Boolean.parseBoolean(System.getProperty("mcp.upstream.replay-latency", "false"));
+
+    /**
+     * 回放数据，同一请求键的多条记录按录制顺序轮流返回
+     */
+    private static final Map<String, List<Entry>> REPLAY = new ConcurrentHashMap<>();
+
+    private static final Map<String, AtomicInteger> CURSORS = new ConcurrentHashMap<>();
+
+    private static DataOutputStream writer;
+
+    static {
+        if (isReplaying()) {
+            load();
+        } else if (isRecording()) {
+            log.info("上游流量录制已开启，写入: {}", TAPE.getAbsolutePath());
+        }
+    }
+
+    /**
+     * 是否处于录制模式
+     *
+     * @return 录制模式返回true
+     */
+    public static boolean isRecording() {
+        return MODE_RECORD.equalsIgnoreCase(MODE);
+    }
+
+    /**
+     * 是否处于回放模式
+     *
+     * @return 回放模式返回true
+     */
+    public static boolean isReplaying() {
+        return MODE_REPLAY.equalsIgnoreCase(MODE);
+    }
+
+    /**
+     * 追加一条录制记录
+     *
+     * @param method  请求方法
+     * @param url     请求URL
+     * @param params  请求参数
+     * @param status  响应状态码
+     * @param body    响应内容
+     * @param nanos   请求耗时（纳秒）
+     */
+    public static synchronized void record(String method, String url, Map<String, Object> params,
+                                           int status, String body, long nanos) {
+        try {
+            if (writer == null) {
+                boolean fresh = !TAPE.exists() || TAPE.length() == 0;
+                writer = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(TAPE, true)));
+                if (fresh) {
+                    writer.write(MAGIC);
+                }
+            }
+            byte[] compressed = compress(body != null ? body.getBytes(StandardCharsets.UTF_8) : new byte[0]);
+            writer.writeLong(System.currentTimeMillis());
+            writer.writeLong(nanos);
+            writer.writeShort(status);
+            writer.writeUTF(key(method, url, params, today()));
+            writer.writeBoolean(body != null);
+            writer.writeInt(compressed.length);
+            writer.write(compressed);
+            writer.flush();
+        } catch (IOException e) {
+            log.error("写入上游录制文件失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 按请求键查找录制的响应
+     *
+     * @param method 请求方法
+     * @param url    请求URL
+     * @param params 请求参数
+     * @return 录制的响应，未录制时返回null
+     */
+    public static Entry replay(String method, String url, Map<String, Object> params) {
+        String key = key(method, url, params, today());
+        List<Entry> entries = REPLAY.get(key);
+        if (entries == null || entries.isEmpty()) {
+            log.warn("回放数据中没有该请求: {}", key);
+            return null;
+        }
+        int index = CURSORS.computeIfAbsent(key, k -> new AtomicInteger()).getAndIncrement();
+        Entry entry = entries.get(Math.floorMod(index, entries.size()));
+        if (REPLAY_LATENCY && entry.nanos() > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(entry.nanos());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * 生成请求键：方法、URL路径和按名称排序的参数，日期参数替换为相对基准日期的天数
+     *
+     * @param method 请求方法
+     * @param url    请求URL
+     * @param params 请求参数
+     * @param base   基准日期（录制或回放当天）
+     * @return 请求键
+     */
+    static String key(String method, String url, Map<String, Object> params, LocalDate base) {
+        StringBuilder key = new StringBuilder(128);
+        key.append(method).append(' ').append(stripQuery(url));
+        if (params != null && !params.isEmpty()) {
+            char separator = '?';
+            for (Map.Entry<String, Object> param : new TreeMap<>(params).entrySet()) {
+                key.append(separator).append(param.getKey()).append('=').append(relativeDate(param.getValue(), base));
+                separator = '&';
+            }
+        }
+        return key.toString();
+    }
+
+    private static String relativeDate(Object value, LocalDate base) {
+        String text = String.valueOf(value);
+        if (!DATE.matcher(text).matches()) {
+            return text;
+        }
+        try {
+            long days = ChronoUnit.DAYS.between(base, LocalDate.parse(text));
+            return "T" + (days >= 0 ? "+" : "") + days + "d";
+        } catch (DateTimeParseException e) {
+            return text;
+        }
+    }
+
+    private static String stripQuery(String url) {
+        int query = url.indexOf('?');
+        return query < 0 ? url : url.substring(0, query);
+    }
+
+    /**
+     * 加载回放数据
+     */
+    private static void load() {
+        if (!TAPE.exists()) {
+            log.error("回放文件不存在: {}", TAPE.getAbsolutePath());
+            return;
+        }
+        try (InputStream in = new FileInputStream(TAPE)) {
+            // 录制时的相对日期键在回放当天直接可用
+            REPLAY.putAll(readAll(in));
+        } catch (IOException e) {
+            log.error("回放文件读取失败: {}: {}", TAPE.getAbsolutePath(), e.getMessage());
+            return;
+        }
+        int count = REPLAY.values().stream().mapToInt(List::size).sum();
+        log.info("上游流量回放已开启，从 {} 加载 {} 条记录，{} 个请求键", TAPE.getAbsolutePath(), count, REPLAY.size());
+    }
+
+    /**
+     * 读取磁带文件中的全部记录，最后一条记录不完整时（如录制中途退出）忽略
+     *
+     * @param input 磁带文件内容，由调用方关闭
+     * @return 请求键到按录制顺序排列的响应，按请求键首次录制的顺序排列
+     * @throws IOException 不是磁带文件或读取失败时抛出
+     */
+    public static Map<String, List<Entry>> readAll(InputStream input) throws IOException {
+        Map<String, List<Entry>> records = new LinkedHashMap<>();
+        int count = 0;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("不是有效的回放文件");
+            }
+            Record record;
+            while ((record = readRecord(in)) != null) {
+                records.computeIfAbsent(record.key(), k -> new ArrayList<>()).add(record.entry());
+                count++;
+            }
+        } catch (EOFException | DataFormatException e) {
+            log.warn("磁带文件读取中断，已读取 {} 条记录: {}", count, e.getMessage());
+        }
+        return records;
+    }
+
+    private static Record readRecord(DataInputStream in) throws IOException, DataFormatException {
+        long recordedAt;
+        try {
+            recordedAt = in.readLong();
+        } catch (EOFException e) {
+            return null;
+        }
+        long nanos = in.readLong();
+        int status = in.readShort();
+        String key = in.readUTF();
+        boolean hasBody = in.readBoolean();
+        byte[] compressed = new byte[in.readInt()];
+        in.readFully(compressed);
+        String body = hasBody ? new String(decompress(compressed), StandardCharsets.UTF_8) : null;
+        return new Record(key, new Entry(status, body, nanos, recordedAt));
+    }
+
+    private static byte[] compress(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] decompress(byte[] data) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("压缩数据不完整");
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static LocalDate today() {
+        return LocalDate.now(ZONE);
+    }
+
+    /**
+     * 打印磁带文件中每个请求键的记录数，用法：java -cp app.jar com.mcp.utils.UpstreamTape upstream.tape
+     *
+     * @param args 磁带文件路径
+     * @throws Exception 读取失败
+     */
+    public static void main(String[] args) throws Exception {
+        File file = new File(args.length > 0 ? args[0] : TAPE.getPath());
+        Map<String, int[]> summary = new TreeMap<>();
+        long bytes = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            in.readFully(new byte[MAGIC.length]);
+            Record record;
+            while ((record = readRecord(in)) != null) {
+                int[] counts = summary.computeIfAbsent(record.key(), k -> new int[2]);
+                counts[0]++;
+                counts[1] = record.entry().status();
+                bytes += record.entry().body() != null ? record.entry().body().length() : 0;
+            }
+        }
+        summary.forEach((key, counts) -> System.out.println(counts[0] + "\t" + counts[1] + "\t" + key));
+        System.out.println("共 " + summary.size() + " 个请求键，响应内容 " + bytes + " 字符，文件 " + file.length() + " 字节");
+    }
+
+    /**
+     * 录制的响应
+     *
+     * @param status     响应状态码，请求异常时为0
+     * @param body       响应内容，请求异常时为null
+     * @param nanos      录制时的请求耗时（纳秒）
+     * @param recordedAt 录制时间（毫秒）
+     */
+    public record Entry(int status, String body, long nanos, long recordedAt) {
+    }
+
+    private record Record(String key, Entry entry) {
+    }
+}
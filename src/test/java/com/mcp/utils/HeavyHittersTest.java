@@ -0,0 +1,113 @@
+package com.mcp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * HeavyHitters 测试：计数、只高估不低估、找出高频键和衰减
+ */
+class HeavyHittersTest {
+
+    @Test
+    void countsFewKeysExactly() {
+        HeavyHitters hitters = new HeavyHitters(10);
+        for (int i = 0; i < 7; i++) {
+            hitters.record("2026-11-01|VNP|AOH");
+        }
+        for (int i = 0; i < 3; i++) {
+            hitters.record("2026-11-01|BJP|SHH");
+        }
+        assertEquals(7, hitters.estimate("2026-11-01|VNP|AOH"));
+        assertEquals(3, hitters.estimate("2026-11-01|BJP|SHH"));
+        assertEquals(0, hitters.estimate("2026-11-02|VNP|AOH"));
+        assertEquals(List.of(Map.entry("2026-11-01|VNP|AOH", 7L), Map.entry("2026-11-01|BJP|SHH", 3L)),
+                hitters.topK());
+    }
+
+    @Test
+    void neverUnderestimates() {
+        HeavyHitters hitters = new HeavyHitters(20);
+        Map<String, Long> actual = new HashMap<>();
+        Random random = new Random(12306);
+        // 键的数量超过每行计数器个数，必然有哈希冲突
+        for (int i = 0; i < 50_000; i++) {
+            String key = "key-" + random.nextInt(10_000);
+            actual.merge(key, 1L, Long::sum);
+            hitters.record(key);
+        }
+        actual.forEach((key, count) ->
+                assertTrue(hitters.estimate(key) >= count, key + " 估计 " + hitters.estimate(key) + " 实际 " + count));
+    }
+
+    @Test
+    void findsHeavyKeysAmongManyLightOnes() {
+        HeavyHitters hitters = new HeavyHitters(5);
+        List<String> stream = new ArrayList<>();
+        for (int heavy = 0; heavy < 5; heavy++) {
+            for (int i = 0; i < 200; i++) {
+                stream.add("heavy-" + heavy);
+            }
+        }
+        for (int light = 0; light < 5000; light++) {
+            stream.add("light-" + light);
+        }
+        Collections.shuffle(stream, new Random(12306));
+        stream.forEach(hitters::record);
+
+        List<Map.Entry<String, Long>> top = hitters.topK();
+        assertEquals(5, top.size());
+        Set<String> keys = top.stream().map(Map.Entry::getKey).collect(Collectors.toSet());
+        assertEquals(Set.of("heavy-0", "heavy-1", "heavy-2", "heavy-3", "heavy-4"), keys);
+        for (int i = 1; i < top.size(); i++) {
+            assertTrue(top.get(i - 1).getValue() >= top.get(i).getValue(), "应按次数从高到低排序: " + top);
+        }
+    }
+
+    @Test
+    void keepsAtMostCapacityKeys() {
+        HeavyHitters hitters = new HeavyHitters(3);
+        for (int i = 0; i < 100; i++) {
+            for (int repeat = 0; repeat <= i % 7; repeat++) {
+                hitters.record("key-" + i);
+            }
+            assertTrue(hitters.topK().size() <= 3);
+        }
+    }
+
+    @Test
+    void decayHalvesCountsAndDropsZeroes() {
+        HeavyHitters hitters = new HeavyHitters(10);
+        for (int i = 0; i < 8; i++) {
+            hitters.record("hot");
+        }
+        hitters.record("once");
+
+        hitters.decay();
+        assertEquals(4, hitters.estimate("hot"));
+        assertEquals(0, hitters.estimate("once"));
+        assertEquals(List.of(Map.entry("hot", 4L)), hitters.topK());
+
+        // 衰减后新出现的键可以取代次数降低的旧键
+        HeavyHitters single = new HeavyHitters(1);
+        for (int i = 0; i < 4; i++) {
+            single.record("old");
+        }
+        single.decay();
+        single.decay();
+        for (int i = 0; i < 2; i++) {
+            single.record("new");
+        }
+        assertEquals(List.of(Map.entry("new", 2L)), single.topK());
+    }
+}
@@ -0,0 +1,201 @@
+package com.mcp.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * PersistentStore 测试：读写、重启恢复、写了一半的记录和压缩
+ */
+class PersistentStoreTest {
+    /**
+     * 记录头长度，与 PersistentStore 的记录格式一致
+     */
+    private static final int HEADER_BYTES = 20;
+
+    private static final long FAR_FUTURE = Long.MAX_VALUE / 2;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void putGetOverwriteAndRemove() throws IOException {
+        PersistentStore store = PersistentStore.open(directory, 4096);
+
+        store.put("k1", "v1", FAR_FUTURE);
+        store.put("k2", "值2", 1234L);
+        assertEquals("v1", store.get("k1").value());
+        assertEquals("值2", store.get("k2").value());
+        assertEquals(1234L, store.get("k2").expiresAt());
+
+        store.put("k1", "v1'", FAR_FUTURE);
+        assertEquals("v1'", store.get("k1").value());
+
+        store.remove("k2");
+        assertNull(store.get("k2"));
+        assertNull(store.get("missing"));
+        assertEquals(1, store.size());
+        store.close();
+    }
+
+    @Test
+    void recordsSurviveRestart() throws IOException {
+        PersistentStore store = PersistentStore.open(directory, 4096);
+        store.put("kept", "v1", FAR_FUTURE);
+        store.put("overwritten", "old", FAR_FUTURE);
+        store.put("overwritten", "new", FAR_FUTURE);
+        store.put("removed", "v3", FAR_FUTURE);
+        store.remove("removed");
+        store.close();
+
+        PersistentStore reopened = PersistentStore.open(directory, 4096);
+        assertEquals("v1", reopened.get("kept").value());
+        assertEquals("new", reopened.get("overwritten").value());
+        assertNull(reopened.get("removed"));
+        assertEquals(2, reopened.size());
+        assertEquals(store.diskBytes(), reopened.diskBytes());
+
+        // 重启后继续追加，不覆盖已有记录
+        reopened.put("after", "v4", FAR_FUTURE);
+        reopened.close();
+        PersistentStore again = PersistentStore.open(directory, 4096);
+        assertEquals("v1", again.get("kept").value());
+        assertEquals("v4", again.get("after").value());
+        again.close();
+    }
+
+    @Test
+    void tornRecordEndsTheSegment() throws IOException {
+        PersistentStore store = PersistentStore.open(directory, 4096);
+        store.put("a", "1", FAR_FUTURE);
+        store.put("b", "2", FAR_FUTURE);
+        store.put("c", "3", FAR_FUTURE);
+        store.close();
+
+        // 模拟写b时进程崩溃：校验和最后写入，崩溃时仍为0
+        int offsetB = HEADER_BYTES + 2;
+        overwrite(onlySegment(), offsetB, new byte[4]);
+
+        PersistentStore reopened = PersistentStore.open(directory, 4096);
+        assertEquals("1", reopened.get("a").value());
+        assertNull(reopened.get("b"));
+        assertNull(reopened.get("c"));
+        assertEquals(offsetB, reopened.diskBytes());
+
+        // 之后的写入从损坏处开始，长度与b相同，恰好写到c之前，c不能被重新读出
+        reopened.put("d", "4", FAR_FUTURE);
+        reopened.close();
+        PersistentStore again = PersistentStore.open(directory, 4096);
+        assertEquals("1", again.get("a").value());
+        assertEquals("4", again.get("d").value());
+        assertNull(again.get("b"));
+        assertNull(again.get("c"));
+        assertEquals(2, again.size());
+        again.close();
+    }
+
+    @Test
+    void corruptedValueFailsChecksum() throws IOException {
+        PersistentStore store = PersistentStore.open(directory, 4096);
+        store.put("a", "1", FAR_FUTURE);
+        store.put("b", "2", FAR_FUTURE);
+        store.close();
+
+        int valueOfB = 2 * HEADER_BYTES + 2 + 1;
+        overwrite(onlySegment(), valueOfB, "x".getBytes(StandardCharsets.UTF_8));
+
+        PersistentStore reopened = PersistentStore.open(directory, 4096);
+        assertEquals("1", reopened.get("a").value());
+        assertNull(reopened.get("b"));
+        reopened.close();
+    }
+
+    @Test
+    void compactionReclaimsOverwrittenRecords() throws IOException {
+        int segmentBytes = 256;
+        PersistentStore store = PersistentStore.open(directory, segmentBytes);
+        store.put("stable", "s", FAR_FUTURE);
+        for (int i = 0; i < 500; i++) {
+            store.put("hot", "value-" + i, FAR_FUTURE);
+        }
+        assertEquals("value-499", store.get("hot").value());
+        assertEquals("s", store.get("stable").value());
+        assertTrue(store.diskBytes() <= 3L * segmentBytes, "压缩后磁盘占用应有上限: " + store.diskBytes());
+        assertTrue(segmentCount() <= 3, "压缩后应删除旧段文件: " + segmentCount());
+        store.close();
+
+        PersistentStore reopened = PersistentStore.open(directory, segmentBytes);
+        assertEquals("value-499", reopened.get("hot").value());
+        assertEquals("s", reopened.get("stable").value());
+        assertEquals(2, reopened.size());
+        reopened.close();
+    }
+
+    @Test
+    void compactionDropsLongExpiredRecords() throws IOException {
+        PersistentStore store = PersistentStore.open(directory, 256);
+        long twoDaysAgo = System.currentTimeMillis() - 2 * 24 * 60 * 60_000L;
+        store.put("expired", "old", twoDaysAgo);
+        store.put("recent", "new", System.currentTimeMillis() - 60_000L);
+        assertNotNull(store.get("expired"));
+        for (int i = 0; i < 200; i++) {
+            store.put("hot", "value-" + i, FAR_FUTURE);
+        }
+        assertNull(store.get("expired"));
+        // 刚过期的记录保留，供上游不可用时降级返回
+        assertEquals("new", store.get("recent").value());
+        store.close();
+    }
+
+    @Test
+    void oversizedRecordIsNotStored() throws IOException {
+        PersistentStore store = PersistentStore.open(directory, 64);
+        store.put("big", "x".repeat(100), FAR_FUTURE);
+        assertNull(store.get("big"));
+        assertEquals(0, store.diskBytes());
+        store.close();
+    }
+
+    @Test
+    void disabledStoreKeepsNothing() {
+        PersistentStore store = PersistentStore.disabled();
+        store.put("k", "v", FAR_FUTURE);
+        assertFalse(store.isEnabled());
+        assertNull(store.get("k"));
+        assertEquals(0, store.size());
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith("segment-"))
+                    .findFirst()
+                    .orElseThrow();
+        }
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith("segment-")).count();
+        }
+    }
+
+    private static void overwrite(Path file, int offset, byte[] bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes), offset);
+        }
+    }
+}
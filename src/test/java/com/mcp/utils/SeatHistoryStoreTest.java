@@ -0,0 +1,242 @@
+package com.mcp.utils;
+
+import com.mcp.model.LeftTicketResult;
+import com.mcp.model.TicketData;
+import com.mcp.model.TicketDelta;
+import com.mcp.model.TicketInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * SeatHistoryStore 测试：读写、重启恢复、未提交的行、增量采样、分区滚动和剪枝
+ */
+class SeatHistoryStoreTest {
+
+    private static final long HOUR = 60 * 60_000L;
+
+    /**
+     * 整点的采样时间基准
+     */
+    private static final long T0 = 1_790_000_000_000L / HOUR * HOUR;
+
+    private static final String DATE = "2026-11-01";
+
+    private static final int ZE = TicketParser.seatIndex("ze");
+
+    private static final int ZY = TicketParser.seatIndex("zy");
+
+    private static final int SWZ = TicketParser.seatIndex("swz");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordsEverySeatClassOfEveryTrain() throws IOException {
+        SeatHistoryStore store = open(1000, HOUR, 24 * HOUR);
+        store.record(result("VNP", "AOH", T0, null, g1("有", "5", "无"), train("G3", "12")));
+
+        List<SeatHistoryStore.Sample> samples = store.query("VNP", "AOH", DATE, 0).samples();
+        assertEquals(List.of(
+                new SeatHistoryStore.Sample(T0, "G1", SWZ, 0),
+                new SeatHistoryStore.Sample(T0, "G1", ZY, 5),
+                new SeatHistoryStore.Sample(T0, "G1", ZE, SeatHistoryStore.PLENTY),
+                new SeatHistoryStore.Sample(T0, "G3", ZE, 12)), samples);
+        assertEquals(4, store.sampleCount());
+
+        // 其他线路、其他乘车日期和采样时间下限之后都没有样本
+        assertTrue(store.query("AOH", "VNP", DATE, 0).samples().isEmpty());
+        assertTrue(store.query("VNP", "AOH", "2026-11-02", 0).samples().isEmpty());
+        assertTrue(store.query("VNP", "AOH", DATE, T0 + 1).samples().isEmpty());
+        store.close();
+    }
+
+    @Test
+    void samplesAndDictionarySurviveRestart() throws IOException {
+        SeatHistoryStore store = open(1000, HOUR, 24 * HOUR);
+        store.record(result("VNP", "AOH", T0, null, train("G1", "5")));
+        store.close();
+
+        SeatHistoryStore reopened = open(1000, HOUR, 24 * HOUR);
+        assertEquals(List.of(new SeatHistoryStore.Sample(T0, "G1", ZE, 5)),
+                reopened.query("VNP", "AOH", DATE, 0).samples());
+
+        // 重启后新增的线路和车次不能与已有编号冲突
+        reopened.record(result("BJP", "SHH", T0 + 60_000, null, train("T109", "3")));
+        reopened.close();
+        SeatHistoryStore again = open(1000, HOUR, 24 * HOUR);
+        assertEquals(List.of(new SeatHistoryStore.Sample(T0, "G1", ZE, 5)),
+                again.query("VNP", "AOH", DATE, 0).samples());
+        assertEquals(List.of(new SeatHistoryStore.Sample(T0 + 60_000, "T109", ZE, 3)),
+                again.query("BJP", "SHH", DATE, 0).samples());
+        again.close();
+    }
+
+    @Test
+    void rowsWrittenBeforeRowCountUpdateAreInvisibleAfterRestart() throws IOException {
+        SeatHistoryStore store = open(1000, HOUR, 24 * HOUR);
+        store.record(result("VNP", "AOH", T0, null, train("G1", "5"), train("G3", "7")));
+        store.close();
+
+        // 模拟写第二行时进程崩溃：各列已写入，头部行数还没更新
+        Path partition = onlyPartition();
+        writeInt(partition, 8, 1);
+        // 字典文件最后一行只写了一半
+        Files.writeString(directory.resolve("dictionary.txt"), "T\t9", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        SeatHistoryStore reopened = open(1000, HOUR, 24 * HOUR);
+        assertEquals(1, reopened.sampleCount());
+        assertEquals(List.of(new SeatHistoryStore.Sample(T0, "G1", ZE, 5)),
+                reopened.query("VNP", "AOH", DATE, 0).samples());
+
+        // 新样本覆盖未提交的行，新车次的字典条目从新行开始
+        reopened.record(result("VNP", "AOH", T0 + 60_000, null, train("G5", "9")));
+        assertEquals(2, reopened.sampleCount());
+        reopened.close();
+
+        SeatHistoryStore again = open(1000, HOUR, 24 * HOUR);
+        assertEquals(List.of(
+                new SeatHistoryStore.Sample(T0, "G1", ZE, 5),
+                new SeatHistoryStore.Sample(T0 + 60_000, "G5", ZE, 9)),
+                again.query("VNP", "AOH", DATE, 0).samples());
+        again.close();
+    }
+
+    @Test
+    void betweenFullSamplesOnlyChangedTrainsAreRecorded() throws IOException {
+        SeatHistoryStore store = open(1000, HOUR, 24 * HOUR);
+        store.record(result("VNP", "AOH", T0, null, train("G1", "5"), train("G3", "7")));
+
+        // 全量采样间隔内只记录有变化的车次
+        store.record(result("VNP", "AOH", T0 + 60_000, List.of(delta("G3")), train("G1", "5"), train("G3", "6")));
+        assertEquals(List.of(new SeatHistoryStore.Sample(T0 + 60_000, "G3", ZE, 6)),
+                store.query("VNP", "AOH", DATE, T0 + 1).samples());
+
+        // 没有变化时不记录
+        store.record(result("VNP", "AOH", T0 + 120_000, List.of(), train("G1", "5"), train("G3", "6")));
+        assertEquals(3, store.sampleCount());
+
+        // 超过全量采样间隔后重新记录全部车次
+        store.record(result("VNP", "AOH", T0 + HOUR / 2, List.of(delta("G3")), train("G1", "5"), train("G3", "6")));
+        assertEquals(5, store.sampleCount());
+        store.close();
+    }
+
+    @Test
+    void fullPartitionsRollAndExpiredPartitionsAreDropped() throws IOException {
+        SeatHistoryStore store = open(2, HOUR, 2 * HOUR);
+        store.record(result("VNP", "AOH", T0, null, train("G1", "1"), train("G3", "2"), train("G5", "3")));
+        // 每个分区最多2行，同一小时内的第3行写入下一个分区
+        assertEquals(2, store.partitionCount());
+        assertEquals(3, store.query("VNP", "AOH", DATE, 0).samples().size());
+
+        for (int hour = 1; hour <= 5; hour++) {
+            store.record(result("VNP", "AOH", T0 + hour * HOUR, null, train("G1", String.valueOf(hour))));
+        }
+        // 只保留最近2小时内的分区
+        assertTrue(store.partitionCount() <= 4, "过期分区应被删除: " + store.partitionCount());
+        assertEquals(store.partitionCount(), partitionFileCount());
+        List<SeatHistoryStore.Sample> samples = store.query("VNP", "AOH", DATE, 0).samples();
+        assertTrue(samples.stream().allMatch(sample -> sample.timestamp() >= T0 + 2 * HOUR), samples.toString());
+        assertEquals(T0 + 5 * HOUR, samples.get(samples.size() - 1).timestamp());
+        store.close();
+    }
+
+    @Test
+    void queryScansOnlyPartitionsContainingTheRoute() throws IOException {
+        SeatHistoryStore store = open(1000, HOUR, 24 * HOUR);
+        store.record(result("VNP", "AOH", T0, null, train("G1", "5")));
+        store.record(result("BJP", "SHH", T0 + HOUR, null, train("T109", "3")));
+        store.record(result("BJP", "SHH", T0 + 2 * HOUR, null, train("T109", "2")));
+
+        SeatHistoryStore.QueryResult result = store.query("VNP", "AOH", DATE, 0);
+        assertEquals(1, result.samples().size());
+        assertEquals(1, result.partitionsScanned());
+        assertEquals(3, result.partitionsTotal());
+
+        // 采样时间下限之前的分区也被跳过
+        assertEquals(1, store.query("BJP", "SHH", DATE, T0 + 2 * HOUR).partitionsScanned());
+        store.close();
+    }
+
+    @Test
+    void disabledStoreRecordsNothing() {
+        SeatHistoryStore store = SeatHistoryStore.disabled();
+        store.record(result("VNP", "AOH", T0, null, train("G1", "5")));
+        assertFalse(store.isEnabled());
+        assertEquals(0, store.sampleCount());
+        assertTrue(store.query("VNP", "AOH", DATE, 0).samples().isEmpty());
+    }
+
+    private SeatHistoryStore open(int rowsPerFile, long partitionMillis, long retentionMillis) throws IOException {
+        return SeatHistoryStore.open(directory, rowsPerFile, partitionMillis, retentionMillis, 10 * 60_000L);
+    }
+
+    private static LeftTicketResult result(String from, String to, long fetchedAt, List<TicketDelta> deltas,
+                                           TicketData... rows) {
+        LeftTicketResult result = new LeftTicketResult();
+        result.setDate(DATE);
+        result.setFromStation(from);
+        result.setToStation(to);
+        result.setFetchedAt(fetchedAt);
+        result.setRows(List.of(rows));
+        result.setDeltas(deltas);
+        return result;
+    }
+
+    /**
+     * 只有二等座的车次
+     */
+    private static TicketData train(String code, String ze) {
+        TicketData row = new TicketData();
+        row.setStationTrainCode(code);
+        row.setZeNum(ze);
+        return row;
+    }
+
+    private static TicketData g1(String ze, String zy, String swz) {
+        TicketData row = train("G1", ze);
+        row.setZyNum(zy);
+        row.setSwzNum(swz);
+        // 空字符串表示没有此席别，不记录
+        row.setWzNum("");
+        return row;
+    }
+
+    private static TicketDelta delta(String code) {
+        return new TicketDelta(code, new TicketInfo(), new TicketInfo());
+    }
+
+    private Path onlyPartition() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith("history-"))
+                    .findFirst()
+                    .orElseThrow();
+        }
+    }
+
+    private long partitionFileCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith("history-")).count();
+        }
+    }
+
+    private static void writeInt(Path file, int offset, int value) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, value), offset);
+        }
+    }
+}
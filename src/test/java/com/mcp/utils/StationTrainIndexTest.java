@@ -0,0 +1,119 @@
+package com.mcp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * StationTrainIndex 测试：倒排表合并、站序方向、重复经停和容量
+ */
+class StationTrainIndexTest {
+
+    @Test
+    void findsTrainsStoppingAtBothStationsInOrder() {
+        StationTrainIndex index = new StationTrainIndex(100);
+        add(index, "240000G10100", "G101", "VNP", "TJP", "NKH", "AOH");
+        add(index, "5l0000D70100", "D701", "AOH", "NKH", "VNP");
+        add(index, "240000G10300", "G103", "VNP", "AOH");
+        add(index, "240000K10500", "K105", "BJP", "TJP", "SHH");
+
+        assertEquals(List.of(
+                new StationTrainIndex.Match("240000G10100", "G101", 1, 4),
+                new StationTrainIndex.Match("240000G10300", "G103", 1, 2)),
+                index.between("VNP", "AOH"));
+        assertEquals(List.of(new StationTrainIndex.Match("5l0000D70100", "D701", 1, 3)),
+                index.between("AOH", "VNP"));
+        assertEquals(List.of(new StationTrainIndex.Match("240000G10100", "G101", 2, 3)),
+                index.between("TJP", "NKH"));
+        assertTrue(index.between("VNP", "SHH").isEmpty());
+        assertTrue(index.between("VNP", "XXX").isEmpty());
+        assertEquals(4, index.trainCount());
+        assertEquals(6, index.stationCount());
+    }
+
+    @Test
+    void loopTrainUsesEarliestDepartureAndLatestArrival() {
+        StationTrainIndex index = new StationTrainIndex(100);
+        // 环线：A B A B
+        add(index, "loop", "C1", "AAA", "BBB", "AAA", "BBB");
+
+        assertEquals(List.of(new StationTrainIndex.Match("loop", "C1", 1, 4)), index.between("AAA", "BBB"));
+        assertEquals(List.of(new StationTrainIndex.Match("loop", "C1", 2, 3)), index.between("BBB", "AAA"));
+    }
+
+    @Test
+    void skipsUnknownStationsAndKeepsStopNumbers() {
+        StationTrainIndex index = new StationTrainIndex(100);
+        index.add("240000G10100", null, Arrays.asList("VNP", null, "AOH"), List.of(1, 2, 3));
+
+        assertEquals(List.of(new StationTrainIndex.Match("240000G10100", null, 1, 3)), index.between("VNP", "AOH"));
+        assertEquals(2, index.stationCount());
+    }
+
+    @Test
+    void rejectsDuplicatesAndTrainsBeyondCapacity() {
+        StationTrainIndex index = new StationTrainIndex(2);
+        assertTrue(add(index, "t1", "G1", "AAA", "BBB"));
+        assertFalse(add(index, "t1", "G1", "AAA", "BBB"));
+        assertTrue(add(index, "t2", "G2", "AAA", "BBB"));
+        assertFalse(add(index, "t3", "G3", "AAA", "BBB"));
+        assertFalse(index.add(null, "G4", List.of("AAA"), List.of(1)));
+
+        assertTrue(index.contains("t2"));
+        assertFalse(index.contains("t3"));
+        assertEquals(2, index.trainCount());
+        assertEquals(2, index.between("AAA", "BBB").size());
+    }
+
+    @Test
+    void intersectionMatchesBruteForce() {
+        Random random = new Random(12306);
+        List<String> stations = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            stations.add(String.format("S%02d", i));
+        }
+        StationTrainIndex index = new StationTrainIndex(1000);
+        List<List<String>> paths = new ArrayList<>();
+        // 车次数超过内部数组的初始容量，覆盖扩容
+        for (int train = 0; train < 300; train++) {
+            List<String> shuffled = new ArrayList<>(stations);
+            Collections.shuffle(shuffled, random);
+            List<String> path = shuffled.subList(0, 2 + random.nextInt(12));
+            paths.add(path);
+            add(index, "t" + train, "G" + train, path.toArray(new String[0]));
+        }
+
+        for (int i = 0; i < 200; i++) {
+            String from = stations.get(random.nextInt(stations.size()));
+            String to = stations.get(random.nextInt(stations.size()));
+            List<StationTrainIndex.Match> expected = new ArrayList<>();
+            for (int train = 0; train < paths.size(); train++) {
+                int fromStop = paths.get(train).indexOf(from) + 1;
+                int toStop = paths.get(train).indexOf(to) + 1;
+                if (fromStop > 0 && fromStop < toStop) {
+                    expected.add(new StationTrainIndex.Match("t" + train, "G" + train, fromStop, toStop));
+                }
+            }
+            assertEquals(expected, index.between(from, to), from + " -> " + to);
+        }
+    }
+
+    /**
+     * 按顺序加入经停站，站序从1开始
+     */
+    private static boolean add(StationTrainIndex index, String trainNo, String trainCode, String... stationCodes) {
+        List<Integer> stops = new ArrayList<>();
+        for (int i = 1; i <= stationCodes.length; i++) {
+            stops.add(i);
+        }
+        return index.add(trainNo, trainCode, Arrays.asList(stationCodes), stops);
+    }
+}